@@ -0,0 +1,169 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dati condivisi dai benchmark: messaggi sensoriali TORCS reali e dataset sintetici
+ * con la stessa struttura (14 features grezze) di {@code human_dataset.csv}.
+ */
+final class BenchmarkData {
+
+    /** Messaggi registrati dal server TORCS (rettilineo, curva, fuori pista in ripartenza) */
+    static final String[] SENSOR_MESSAGES = {
+        "(angle 0.00873349)(curLapTime 23.506)(damage 0)(distFromStart 1185.32)(distRaced 1190.04)"
+            + "(fuel 93.7654)(gear 5)(lastLapTime 0)(opponents 200 200 200 200 200 200 200 200 200 200 200 200"
+            + " 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200)"
+            + "(racePos 1)(rpm 7312.47)(speedX 168.924)(speedY -0.614732)(speedZ -0.0219571)"
+            + "(track 5.35619 5.53521 6.18456 7.52541 10.4612 15.8723 21.1097 31.2154 61.0381 200 68.3128"
+            + " 34.4719 23.8614 17.3826 11.9741 8.59611 7.10913 6.32157 6.12287)(trackPos 0.0712498)"
+            + "(wheelSpinVel 148.283 148.462 149.117 149.322)(z 0.345121)(focus -1 -1 -1 -1 -1)",
+        "(angle -0.0962144)(curLapTime 41.228)(damage 0)(distFromStart 2207.91)(distRaced 2212.63)"
+            + "(fuel 93.1822)(gear 3)(lastLapTime 0)(opponents 200 200 200 200 200 200 200 200 200 200 200 200"
+            + " 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200)"
+            + "(racePos 1)(rpm 6811.09)(speedX 92.4461)(speedY 3.11854)(speedZ 0.0418327)"
+            + "(track 3.11742 3.20816 3.51291 4.13024 5.34187 7.68294 9.61127 12.4813 18.7321 30.9918 22.5106"
+            + " 14.2283 10.8822 8.93017 7.12465 6.03198 5.61829 5.38017 5.30981)(trackPos -0.284119)"
+            + "(wheelSpinVel 81.7294 85.3327 80.0156 83.9413)(z 0.339458)(focus -1 -1 -1 -1 -1)",
+        "(angle 0.734512)(curLapTime 57.904)(damage 312)(distFromStart 2991.46)(distRaced 2996.18)"
+            + "(fuel 92.8041)(gear 1)(lastLapTime 0)(opponents 200 200 200 200 200 200 200 200 200 200 200 200"
+            + " 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200)"
+            + "(racePos 1)(rpm 2945.31)(speedX 11.8213)(speedY -1.40726)(speedZ -0.0093481)"
+            + "(track -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1 -1)(trackPos 1.21843)"
+            + "(wheelSpinVel 10.3198 10.8841 9.52614 12.0073)(z 0.351877)(focus -1 -1 -1 -1 -1)"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Genera features grezze a blocchi di traiettorie continue (come giri registrati),
+     * negli stessi intervalli dei sensori reali: su dati uniformi a 14 dimensioni il KD-tree
+     * degenera in una ricerca esaustiva, cosa che non accade sui dataset di guida.
+     *
+     * @param count Numero di righe
+     * @param seed Seme del generatore
+     * @return Matrice count x 14
+     */
+    static double[][] syntheticFeatures(int count, long seed) {
+        Random random = new Random(seed);
+        double[][] rows = new double[count][];
+        double trackLength = 5784.10;
+        double position = 0.0;
+        double curvature = 0.0;
+
+        for (int i = 0; i < count; i++) {
+            position = (position + 0.9 + random.nextDouble() * 0.4) % trackLength;
+            if (i % 400 == 0) {
+                curvature = random.nextGaussian() * 0.6;
+            }
+
+            double[] row = new double[KNNDataset.FEATURE_COUNT];
+            for (int s = 0; s < 10; s++) {
+                double sensorAngle = (s - 4.5) / 4.5;
+                double reach = 200.0 / (1.0 + Math.abs(sensorAngle - curvature) * 8.0);
+                row[s] = Math.max(1.0, reach + random.nextGaussian() * 0.5);
+            }
+            row[10] = Math.max(0.0, 160.0 - Math.abs(curvature) * 90.0 + random.nextGaussian() * 4.0);
+            row[11] = curvature * 0.1 + random.nextGaussian() * 0.01;
+            row[12] = curvature * 0.4 + random.nextGaussian() * 0.05;
+            row[13] = position;
+            rows[i] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Genera query vicine al training (righe esistenti con rumore sui sensori), come i sensori
+     * letti in gara sulla stessa pista su cui è stato registrato il dataset.
+     *
+     * @param features Features del training
+     * @param count Numero di query
+     * @param seed Seme del generatore
+     * @return Matrice count x 14
+     */
+    static double[][] queriesNear(double[][] features, int count, long seed) {
+        Random random = new Random(seed);
+        double[][] queries = new double[count][];
+        for (int i = 0; i < count; i++) {
+            double[] query = features[random.nextInt(features.length)].clone();
+            for (int s = 0; s < 10; s++) {
+                query[s] = Math.max(1.0, query[s] + random.nextGaussian() * 1.5);
+            }
+            query[10] += random.nextGaussian() * 3.0;
+            query[11] += random.nextGaussian() * 0.01;
+            query[12] += random.nextGaussian() * 0.03;
+            query[13] += random.nextGaussian() * 2.0;
+            queries[i] = query;
+        }
+        return queries;
+    }
+
+    /**
+     * Crea punti per il driver regressivo a partire da features sintetiche.
+     */
+    static List<DataPoint> dataPoints(double[][] features) {
+        List<DataPoint> points = new ArrayList<>(features.length);
+        for (double[] row : features) {
+            double steering = Math.max(-1.0, Math.min(1.0, row[11] * 4.0 - row[12] * 0.5));
+            points.add(new DataPoint(row, steering, row[10] > 120 ? 0.6 : 0.9, row[10] > 150 ? 0.2 : 0.0));
+        }
+        return points;
+    }
+
+    /**
+     * Crea punti per il driver classificatore a partire da features sintetiche.
+     */
+    static List<DataPointClassifier> classifierPoints(double[][] features) {
+        List<DataPointClassifier> points = new ArrayList<>(features.length);
+        for (DataPoint point : dataPoints(features)) {
+            DrivingAction action = DrivingAction.fromContinuous(point.steering, point.acceleration, point.brake);
+            points.add(new DataPointClassifier(point.features, action));
+        }
+        return points;
+    }
+
+    /**
+     * Crea una rete MLP con pesi casuali (inizializzazione di He), lo standard scaling calcolato
+     * sulle features indicate e 3 uscite come la rete di {@link MLPDriver}.
+     */
+    static MLPModel mlpModel(double[][] features, int[] hidden, long seed) {
+        int inputs = features[0].length;
+        double[] mean = new double[inputs];
+        double[] scale = new double[inputs];
+        for (double[] row : features) {
+            for (int i = 0; i < inputs; i++) {
+                mean[i] += row[i] / features.length;
+            }
+        }
+        for (double[] row : features) {
+            for (int i = 0; i < inputs; i++) {
+                scale[i] += (row[i] - mean[i]) * (row[i] - mean[i]) / features.length;
+            }
+        }
+        for (int i = 0; i < inputs; i++) {
+            scale[i] = scale[i] > 0 ? Math.sqrt(scale[i]) : 1.0;
+        }
+
+        int[] sizes = new int[hidden.length + 2];
+        sizes[0] = inputs;
+        System.arraycopy(hidden, 0, sizes, 1, hidden.length);
+        sizes[sizes.length - 1] = 3;
+        Random random = new Random(seed);
+        double[][] weights = new double[sizes.length - 1][];
+        double[][] biases = new double[sizes.length - 1][];
+        for (int l = 0; l < weights.length; l++) {
+            weights[l] = new double[sizes[l] * sizes[l + 1]];
+            biases[l] = new double[sizes[l + 1]];
+            double std = Math.sqrt(2.0 / sizes[l]);
+            for (int i = 0; i < weights[l].length; i++) {
+                weights[l][i] = random.nextGaussian() * std;
+            }
+            for (int j = 0; j < biases[l].length; j++) {
+                biases[l][j] = random.nextGaussian() * 0.01;
+            }
+        }
+        return new MLPModel(sizes, mean, scale, weights, biases, MLPModel.Activation.RELU, MLPModel.Activation.IDENTITY);
+    }
+}
@@ -0,0 +1,107 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Verifica che il tick di controllo di {@link KNNClassifierDriver} non allochi memoria a regime,
+ * sull'indice completo, con la proiezione PCA delle query ({@link ProjectedIndex}) e con
+ * l'indice approssimato {@link LSHIndex}, che non allochi quello di {@link MLPDriver} con la
+ * rete valutata nel client e che non allochi la registrazione del tick di {@link EnhancedDataCollector}.
+ * Misura i byte allocati dal thread corrente (contatore della JVM HotSpot) su molti tick
+ * consecutivi dopo il riscaldamento del JIT e termina con codice 1 se sono diversi da zero.
+ * Uso: {@code ant alloc-check} dalla cartella benchmarks.
+ */
+public final class ControlStepAllocationCheck {
+
+    private static final int DATASET_SIZE = 50000;
+    private static final int WARMUP_TICKS = 200000;
+    private static final int MEASURED_TICKS = 100000;
+    private static final int PCA_COMPONENTS = 6;
+
+    private ControlStepAllocationCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        double[][] features = BenchmarkData.syntheticFeatures(DATASET_SIZE, 42L);
+        SensorModel[] sensors = new SensorModel[BenchmarkData.SENSOR_MESSAGES.length];
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = new MessageBasedSensorModel(BenchmarkData.SENSOR_MESSAGES[i]);
+        }
+
+        KNNConfig config = new KNNConfig(15, "benchmark", true, true);
+        KNNConfig projected = new KNNConfig(15, "benchmark", true, true);
+        projected.setPcaComponents(PCA_COMPONENTS);
+        KNNConfig hashed = new KNNConfig(15, "benchmark", true, true);
+        hashed.setLshParameters(LSHParameters.DEFAULT);
+
+        boolean ok = check("indice completo", classifier(config, features)::control, sensors);
+        ok &= check("PCA " + PCA_COMPONENTS + " componenti", classifier(projected, features)::control, sensors);
+        ok &= check("LSH " + LSHParameters.DEFAULT, classifier(hashed, features)::control, sensors);
+        ok &= check("MLP 14-32-16-3", new MLPDriver(BenchmarkData.mlpModel(features, new int[] { 32, 16 }, 7L))::control,
+                    sensors);
+
+        // Registrazione su file temporaneo, in attesa del thread di scrittura per non scartare record
+        Path csv = Files.createTempFile("alloc-check", ".csv");
+        Files.delete(csv);
+        EnhancedDataCollector collector =
+            new EnhancedDataCollector(EnhancedDataCollector.DEFAULT_CAPACITY, EnhancedDataCollector.Backpressure.BLOCK);
+        Action action = new Action();
+        collector.startCollection(csv.toString());
+        try {
+            ok &= check("registrazione dati", tick -> collector.recordData(tick, action, 95.0), sensors);
+            TelemetryWindow recent = collector.getRecentTicks();
+            int speed = recent.columnIndex("speedX");
+            ok &= check("finestra tick recenti", tick -> {
+                collector.recordData(tick, action, 95.0);
+                recent.mean(speed, Math.min(50, recent.size()));
+                recent.max(speed, Math.min(50, recent.size()));
+            }, sensors);
+        } finally {
+            collector.stopCollection();
+            Files.deleteIfExists(csv);
+        }
+        if (!ok) {
+            System.out.println("[ALLOC-CHECK] FALLITO: il tick di controllo alloca memoria");
+            System.exit(1);
+        }
+        System.out.println("[ALLOC-CHECK] OK: nessuna allocazione a regime");
+    }
+
+    private static KNNClassifierDriver classifier(KNNConfig config, double[][] features) {
+        return new KNNClassifierDriver(config, BenchmarkData.classifierPoints(features));
+    }
+
+    /**
+     * Misura i byte allocati dai tick di controllo indicati.
+     *
+     * @return true se a regime il tick non alloca
+     */
+    private static boolean check(String label, Consumer<SensorModel> step, SensorModel[] sensors) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+
+        // Riscaldamento: compilazione JIT e dimensionamento dei buffer del driver
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            step.accept(sensors[i % sensors.length]);
+        }
+
+        // Taratura: byte allocati dalla sola lettura del contatore
+        long before = threads.getThreadAllocatedBytes(thread);
+        long overhead = threads.getThreadAllocatedBytes(thread) - before;
+
+        before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_TICKS; i++) {
+            step.accept(sensors[i % sensors.length]);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+
+        System.out.printf("[ALLOC-CHECK] %s: %d tick, %d byte allocati (%.3f byte/tick)%n",
+            label, MEASURED_TICKS, allocated, (double) allocated / MEASURED_TICKS);
+        return allocated <= 0;
+    }
+}
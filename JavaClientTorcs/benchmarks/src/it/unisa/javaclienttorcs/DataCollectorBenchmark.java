@@ -0,0 +1,143 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark della serializzazione dei campioni raccolti da {@link EnhancedDataCollector} e del costo
+ * della registrazione di un tick sul thread di controllo, con la scrittura su disco nel thread dedicato,
+ * e delle interrogazioni sulla finestra dei tick recenti.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataCollectorBenchmark {
+
+    private EnhancedDataPoint point;
+    private String csvLine;
+
+    @Setup
+    public void setup() {
+        Action action = new Action();
+        action.accelerate = 0.8734;
+        action.steering = -0.1275;
+        action.gear = 3;
+
+        point = new EnhancedDataPoint(new MessageBasedSensorModel(BenchmarkData.SENSOR_MESSAGES[1]), action, 95.0);
+        csvLine = point.toCSV();
+    }
+
+    @Benchmark
+    public EnhancedDataPoint createPoint() {
+        return new EnhancedDataPoint(new MessageBasedSensorModel(BenchmarkData.SENSOR_MESSAGES[1]), new Action(), 95.0);
+    }
+
+    @Benchmark
+    public String toCSV() {
+        return point.toCSV();
+    }
+
+    @Benchmark
+    public String toStandardCSV() {
+        return point.toStandardCSV();
+    }
+
+    @Benchmark
+    public EnhancedDataPoint fromCSV() {
+        return EnhancedDataPoint.fromCSV(csvLine);
+    }
+
+    /**
+     * Raccolta attiva su un file temporaneo, con record scartati o attesa quando la coda è piena.
+     */
+    @State(Scope.Thread)
+    public static class Recording {
+
+        @Param({"drop", "block"})
+        public String backpressure;
+
+        EnhancedDataCollector collector;
+        SensorModel sensors;
+        Action action;
+        private Path file;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            file = Files.createTempFile("collector-benchmark", ".csv");
+            Files.delete(file);
+            collector = new EnhancedDataCollector(EnhancedDataCollector.DEFAULT_CAPACITY,
+                                                  EnhancedDataCollector.Backpressure.fromName(backpressure));
+            sensors = new MessageBasedSensorModel(BenchmarkData.SENSOR_MESSAGES[1]);
+            action = new Action();
+            collector.startCollection(file.toString());
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            collector.stopCollection();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public void recordData(Recording recording) {
+        recording.collector.recordData(recording.sensors, recording.action, 95.0);
+    }
+
+    /**
+     * Finestra dei tick recenti piena, con la velocità che varia da un tick all'altro.
+     */
+    @State(Scope.Thread)
+    public static class Window {
+
+        @Param({"50", "1024"})
+        public int ticks;
+
+        TelemetryWindow window;
+        double[] values;
+        int speed;
+
+        @Setup(Level.Trial)
+        public void fill() {
+            window = new TelemetryWindow(IOConfig.RECENT_TICKS_WINDOW, TelemetryFile.ENHANCED_SCHEMA);
+            values = new double[EnhancedDataPoint.VALUE_COUNT];
+            EnhancedDataPoint.copyValues(new MessageBasedSensorModel(BenchmarkData.SENSOR_MESSAGES[1]), new Action(),
+                                         95.0, values, 0);
+            speed = window.columnIndex("speedX");
+            for (int t = 0; t < window.capacity() * 2; t++) {
+                values[speed] = 100.0 + (t * 37 % 101);
+                window.append(values, 0);
+            }
+        }
+    }
+
+    @Benchmark
+    public void appendRecentTick(Window window) {
+        window.window.append(window.values, 0);
+    }
+
+    @Benchmark
+    public double queryRecentTicks(Window window) {
+        TelemetryWindow recent = window.window;
+        return recent.mean(window.speed, window.ticks) + recent.min(window.speed, window.ticks)
+               + recent.max(window.speed, window.ticks);
+    }
+}
@@ -0,0 +1,81 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark delle metriche di {@link DistanceKernel}: nucleo di distanza su un blocco di punti
+ * memorizzati per righe (come in {@link KDTreeIndex}) e query K-NN complete sull'albero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceKernelBenchmark {
+
+    private static final int DATASET_SIZE = 50000;
+    private static final int QUERY_COUNT = 1024;
+    private static final int SCAN_POINTS = 256;
+
+    @Param({"SQUARED_L2", "L1", "LINF", "WEIGHTED_L2"})
+    public DistanceKernel kernel;
+
+    private KDTreeIndex index;
+    private NeighborHeap heap;
+    private double[][] queries;
+    private double[] coords;
+    private int next;
+
+    @Setup
+    public void setup() {
+        double[][] features = BenchmarkData.syntheticFeatures(DATASET_SIZE, 42L);
+        double[] weights = new double[KNNDataset.FEATURE_COUNT];
+        Arrays.fill(weights, 1.0);
+        weights[KNNDataset.DISTANCE_FEATURE] = 0.25;
+
+        index = new KDTreeIndex(features, kernel, weights);
+        heap = new NeighborHeap(8);
+        queries = BenchmarkData.queriesNear(features, QUERY_COUNT, 7L);
+
+        coords = new double[SCAN_POINTS * KNNDataset.FEATURE_COUNT];
+        for (int i = 0; i < SCAN_POINTS; i++) {
+            System.arraycopy(features[i], 0, coords, i * KNNDataset.FEATURE_COUNT, KNNDataset.FEATURE_COUNT);
+        }
+    }
+
+    private double[] nextQuery() {
+        next = (next + 1) & (QUERY_COUNT - 1);
+        return queries[next];
+    }
+
+    /**
+     * Distanze di ordinamento da una query a {@value #SCAN_POINTS} punti contigui.
+     */
+    @Benchmark
+    public double scan() {
+        double[] query = nextQuery();
+        double best = Double.POSITIVE_INFINITY;
+        for (int base = 0; base < coords.length; base += KNNDataset.FEATURE_COUNT) {
+            best = Math.min(best, kernel.rank(query, coords, base, KNNDataset.FEATURE_COUNT));
+        }
+        return best;
+    }
+
+    @Benchmark
+    public int query() {
+        return index.query(nextQuery(), 8, heap);
+    }
+}
@@ -0,0 +1,152 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark dell'estrazione e normalizzazione delle features eseguite a ogni tick
+ * da {@link KNNDriver} e {@link KNNClassifierDriver}, e della predizione completa.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeaturePipelineBenchmark {
+
+    private static final int DATASET_SIZE = 50000;
+
+    private KNNDriver driver;
+    private KNNClassifierDriver classifierDriver;
+    private KNNClassifierDriver fullVoteDriver;
+    private KNNClassifierDriver policyDriver;
+    private PolicyTable policyTable;
+    private SensorModel sensors;
+    private SensorModel offTrackSensors;
+    private double[] rawFeatures;
+    private double[] prediction;
+
+    @Setup
+    public void setup() {
+        double[][] features = BenchmarkData.syntheticFeatures(DATASET_SIZE, 42L);
+        driver = new KNNDriver(new KNNConfig(8, "benchmark", true), BenchmarkData.dataPoints(features));
+        classifierDriver = new KNNClassifierDriver(new KNNConfig(15, "benchmark", true, true),
+            BenchmarkData.classifierPoints(features));
+
+        // Stesso classificatore con il voto sui K vicini completi
+        KNNConfig fullVoteConfig = new KNNConfig(15, "benchmark", true, true);
+        fullVoteConfig.setEarlyVote(false);
+        fullVoteDriver = new KNNClassifierDriver(fullVoteConfig, BenchmarkData.classifierPoints(features));
+
+        // Stesso classificatore con la tabella di decisione compilata sulle celle coperte dal training
+        policyDriver = new KNNClassifierDriver(new KNNConfig(15, "benchmark", true, true),
+            BenchmarkData.classifierPoints(features));
+        PolicyTableCompiler compiler = new PolicyTableCompiler(policyDriver, ForkJoinPool.commonPool());
+        compiler.setBins(6);
+        compiler.setSamplesPerCell(8);
+        policyTable = compiler.compile(features);
+        policyDriver.setPolicyTable(policyTable);
+
+        sensors = new MessageBasedSensorModel(BenchmarkData.SENSOR_MESSAGES[1]);
+        offTrackSensors = new MessageBasedSensorModel(BenchmarkData.SENSOR_MESSAGES[2]);
+        rawFeatures = BenchmarkData.queriesNear(features, 1, 7L)[0];
+        prediction = new double[3];
+    }
+
+    @Benchmark
+    public double[] extractFeatures() {
+        return driver.extractFeatures(sensors);
+    }
+
+    @Benchmark
+    public double[] normalizeFeatures() {
+        return driver.normalizeFeatures(rawFeatures);
+    }
+
+    @Benchmark
+    public double[] extractFeaturesClassifier() {
+        return classifierDriver.extractFeatures(sensors);
+    }
+
+    @Benchmark
+    public double[] normalizeFeaturesClassifier() {
+        return classifierDriver.normalizeFeatures(rawFeatures);
+    }
+
+    /**
+     * Normalizzazione, ricerca K=8 e media pesata del driver regressivo.
+     */
+    @Benchmark
+    public double[] predict() {
+        driver.predict(rawFeatures, prediction);
+        return prediction;
+    }
+
+    /**
+     * Normalizzazione, ricerca K=15 e voto pesato del driver classificatore
+     * (ricerca interrotta appena la classe vincente è determinata).
+     */
+    @Benchmark
+    public DrivingAction predictClass() {
+        return classifierDriver.predictClass(rawFeatures);
+    }
+
+    /**
+     * Come {@link #predictClass()}, cercando tutti i K vicini prima di votare.
+     */
+    @Benchmark
+    public DrivingAction predictClassFullVote() {
+        return fullVoteDriver.predictClass(rawFeatures);
+    }
+
+    /**
+     * Predizione con la tabella di decisione (ricerca KNN solo per celle assenti o ambigue).
+     */
+    @Benchmark
+    public DrivingAction predictClassPolicy() {
+        return policyDriver.predictClass(rawFeatures);
+    }
+
+    /**
+     * Sola ricerca della cella nella tabella di decisione.
+     */
+    @Benchmark
+    public int policyLookup() {
+        return policyTable.lookup(rawFeatures);
+    }
+
+    /**
+     * Tick completo del classificatore (sensori -> azione); a regime non deve allocare.
+     */
+    @Benchmark
+    public Action controlClassifier() {
+        return classifierDriver.control(sensors);
+    }
+
+    /**
+     * Tick completo del classificatore con il voto sui K vicini completi.
+     */
+    @Benchmark
+    public Action controlClassifierFullVote() {
+        return fullVoteDriver.control(sensors);
+    }
+
+    /**
+     * Tick del classificatore nel percorso di recupero fuori pista.
+     */
+    @Benchmark
+    public Action controlClassifierOffTrack() {
+        return classifierDriver.control(offTrackSensors);
+    }
+}
@@ -0,0 +1,81 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark delle query su {@link KDTree} e {@link KDTreeClassifier} al variare della dimensione
+ * del dataset, di K e della {@link SplitStrategy}. Le query sono righe del training perturbate
+ * con rumore sui sensori, come le letture in gara sulla pista registrata.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KDTreeBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"10000", "50000", "200000"})
+    public int datasetSize;
+
+    @Param({"ROUND_ROBIN", "MAX_VARIANCE", "SLIDING_MIDPOINT"})
+    public SplitStrategy split;
+
+    @Param({"1", "8", "15", "50"})
+    public int k;
+
+    private KDTree tree;
+    private KDTreeClassifier classifierTree;
+    private double[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        double[][] features = BenchmarkData.syntheticFeatures(datasetSize, 42L);
+        tree = new KDTree(BenchmarkData.dataPoints(features), DistanceKernel.SQUARED_L2, null, null, split, false);
+        classifierTree = new KDTreeClassifier(KNNDataset.FEATURE_COUNT, DistanceKernel.SQUARED_L2, null, null,
+            split, false);
+        classifierTree.build(BenchmarkData.classifierPoints(features));
+
+        queries = BenchmarkData.queriesNear(features, QUERY_COUNT, 7L);
+    }
+
+    private double[] nextQuery() {
+        next = (next + 1) & (QUERY_COUNT - 1);
+        return queries[next];
+    }
+
+    @Benchmark
+    public List<DataPoint> query() {
+        return tree.findKNearestNeighbors(nextQuery(), k);
+    }
+
+    @Benchmark
+    public List<DataPointClassifier> queryClassifier() {
+        return classifierTree.findKNearestNeighbors(nextQuery(), k);
+    }
+
+    /**
+     * Lotto di {@value #QUERY_COUNT} query sul pool comune (valutazione offline).
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public KNNBatchResult queryBatch() {
+        return tree.findKNearestNeighborsBatch(queries, k);
+    }
+}
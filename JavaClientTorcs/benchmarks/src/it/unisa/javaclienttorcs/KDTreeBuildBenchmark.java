@@ -0,0 +1,57 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark della costruzione di {@link KDTree} e {@link KDTreeClassifier}
+ * (caricamento del driver) al variare della dimensione del dataset e della {@link SplitStrategy}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class KDTreeBuildBenchmark {
+
+    @Param({"10000", "50000", "200000"})
+    public int datasetSize;
+
+    @Param({"ROUND_ROBIN", "MAX_VARIANCE", "SLIDING_MIDPOINT"})
+    public SplitStrategy split;
+
+    private List<DataPoint> points;
+    private List<DataPointClassifier> classifierPoints;
+
+    @Setup
+    public void setup() {
+        double[][] features = BenchmarkData.syntheticFeatures(datasetSize, 42L);
+        points = BenchmarkData.dataPoints(features);
+        classifierPoints = BenchmarkData.classifierPoints(features);
+    }
+
+    @Benchmark
+    public KDTree build() {
+        return new KDTree(points, DistanceKernel.SQUARED_L2, null, null, split, false);
+    }
+
+    @Benchmark
+    public KDTreeClassifier buildClassifier() {
+        KDTreeClassifier classifier = new KDTreeClassifier(KNNDataset.FEATURE_COUNT, DistanceKernel.SQUARED_L2,
+                                                           null, null, split, false);
+        classifier.build(classifierPoints);
+        return classifier;
+    }
+}
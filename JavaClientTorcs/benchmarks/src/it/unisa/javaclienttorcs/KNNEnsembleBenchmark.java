@@ -0,0 +1,98 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latenza per tick di {@link KNNEnsembleDriver} al variare del numero di indici, della
+ * combinazione e della pool di ricerca, da confrontare con il singolo {@link KNNDriver}
+ * sullo stesso numero di punti per indice. Le ricerche degli indici si sovrappongono solo
+ * con almeno tanti core quanti indici.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KNNEnsembleBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"50000"})
+    public int datasetSize;
+
+    @Param({"1", "3"})
+    public int members;
+
+    @Param({"blend", "merge"})
+    public String combine;
+
+    @Param({"0", "2"})
+    public int threads;
+
+    private KNNDriver single;
+    private KNNEnsembleDriver ensemble;
+    private double[][] queries;
+    private final double[] out = new double[3];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Righe alternate della stessa traiettoria: giri diversi sulla stessa pista
+        double[][] features = BenchmarkData.syntheticFeatures(datasetSize * members, 42L);
+        List<List<DataPoint>> datasets = new ArrayList<>();
+        double[] weights = new double[members];
+        for (int i = 0; i < members; i++) {
+            double[][] part = new double[datasetSize][];
+            for (int row = 0; row < datasetSize; row++) {
+                part[row] = features[row * members + i];
+            }
+            datasets.add(BenchmarkData.dataPoints(part));
+            weights[i] = 1.0;
+        }
+        queries = BenchmarkData.queriesNear(features, QUERY_COUNT, 7L);
+
+        KNNEnsembleConfig config = new KNNEnsembleConfig();
+        config.setCombineMode(KNNEnsembleConfig.CombineMode.fromName(combine));
+        config.setThreads(threads);
+        ensemble = new KNNEnsembleDriver(config, datasets, weights);
+        single = new KNNDriver(config.getBaseConfig(), datasets.get(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ensemble.shutdown();
+    }
+
+    private double[] nextQuery() {
+        next = (next + 1) & (QUERY_COUNT - 1);
+        return queries[next];
+    }
+
+    @Benchmark
+    public double[] singleIndex() {
+        single.predict(nextQuery(), out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] ensemble() {
+        ensemble.predict(nextQuery(), out);
+        return out;
+    }
+}
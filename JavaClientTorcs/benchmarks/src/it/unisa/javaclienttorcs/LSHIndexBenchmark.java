@@ -0,0 +1,66 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latenza delle query di {@link LSHIndex} rispetto al KD-tree esatto ({@link KDTreeIndex}) su
+ * dataset grandi. Il richiamo delle varianti LSH si misura con KNNEvaluator (opzione lsh:).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class LSHIndexBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+
+    /** exact per il KD-tree, altrimenti parametri LSH nel formato tabellexhashxlarghezza */
+    @Param({"exact", "8x6x4", "4x8x6"})
+    public String backend;
+
+    @Param({"200000", "2000000"})
+    public int datasetSize;
+
+    @Param({"15"})
+    public int k;
+
+    private NeighborIndex index;
+    private NeighborHeap heap;
+    private double[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        double[][] features = BenchmarkData.syntheticFeatures(datasetSize, 42L);
+        FeatureNormalizer normalizer = FeatureNormalizer.fixedRanges(KNNDataset.FEATURE_COUNT);
+        index = "exact".equals(backend)
+            ? new KDTreeIndex(features, DistanceKernel.SQUARED_L2, null, normalizer)
+            : new LSHIndex(features, DistanceKernel.SQUARED_L2, null, normalizer, LSHParameters.parse(backend));
+        queries = BenchmarkData.queriesNear(features, QUERY_COUNT, 7L);
+        heap = new NeighborHeap(k);
+    }
+
+    private double[] nextQuery() {
+        next = (next + 1) & (QUERY_COUNT - 1);
+        return queries[next];
+    }
+
+    @Benchmark
+    public int query() {
+        return index.query(nextQuery(), k, heap);
+    }
+}
@@ -0,0 +1,98 @@
+package it.unisa.javaclienttorcs;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark della rete MLP valutata nel client ({@link MLPModel}) e del tick di {@link MLPDriver},
+ * confrontati con la sola codifica e decodifica dei protocolli UDP verso il server Python, testuale
+ * e binario ({@link MLPProtocol}), senza rete né modello: il costo lato Java di ogni scambio.
+ * Le reti hanno pesi casuali e le dimensioni delle configurazioni di {@code parametrimodelli.txt}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MLPInferenceBenchmark {
+
+    @Param({"32-16", "10-8"})
+    public String hidden;
+
+    private MLPModel model;
+    private MLPDriver driver;
+    private SensorModel sensors;
+    private double[] features;
+    private double[] output;
+    private double[] workspace;
+    private String reply;
+    private ByteBuffer request;
+    private ByteBuffer response;
+    private int sequence;
+
+    @Setup
+    public void setup() {
+        double[][] data = BenchmarkData.syntheticFeatures(10000, 42L);
+        int[] sizes = Arrays.stream(hidden.split("-")).mapToInt(Integer::parseInt).toArray();
+        model = BenchmarkData.mlpModel(data, sizes, 7L);
+        driver = new MLPDriver(model);
+        sensors = new MessageBasedSensorModel(BenchmarkData.SENSOR_MESSAGES[1]);
+        features = BenchmarkData.queriesNear(data, 1, 7L)[0];
+        output = new double[model.getOutputCount()];
+        workspace = model.newWorkspace();
+        reply = "0.0123456789,0.8765432101,0.0";
+        request = MLPProtocol.newBuffer(MLPProtocol.REQUEST_SIZE);
+        response = MLPProtocol.newBuffer(MLPProtocol.RESPONSE_SIZE);
+        response.putInt(MLPProtocol.MAGIC).putInt(1).putDouble(0.0123456789).putDouble(0.8765432101).putDouble(0.0);
+    }
+
+    @Benchmark
+    public double[] predict() {
+        return model.predict(features, output, workspace);
+    }
+
+    @Benchmark
+    public Action controlTick() {
+        return driver.control(sensors);
+    }
+
+    /**
+     * Lavoro lato Java del tick con il server Python: messaggio testuale e parsing della risposta.
+     */
+    @Benchmark
+    public void textProtocolEncoding(Blackhole blackhole) {
+        double[] track = sensors.getTrackEdgeSensors();
+        StringBuilder message = new StringBuilder("(");
+        for (int i = 0; i <= 18; i += 2) {
+            message.append(track[i]).append(",");
+        }
+        message.append(sensors.getSpeed()).append(",").append(sensors.getAngleToTrackAxis())
+               .append(",").append(sensors.getTrackPosition()).append(",")
+               .append(sensors.getDistanceFromStartLine()).append(")");
+        blackhole.consume(message.toString().getBytes());
+        blackhole.consume(Arrays.stream(reply.split(",")).mapToDouble(Double::parseDouble).toArray());
+    }
+
+    /**
+     * Lavoro lato Java dello scambio binario: richiesta scritta nel buffer e risposta letta senza parsing.
+     */
+    @Benchmark
+    public long binaryProtocolEncoding() {
+        MLPProtocol.encodeRequest(request, ++sequence, features);
+        return MLPProtocol.decodeResponse(response, MLPProtocol.RESPONSE_SIZE, output);
+    }
+}
@@ -0,0 +1,69 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark di un'epoca di addestramento di {@link MLPTrainer} (rete 14-32-16-3, senza validazione)
+ * al variare dei thread del pool e della dimensione del mini-batch: misura quanto il calcolo
+ * parallelo dei gradienti scala con i core. Le uscite sono quelle di una rete casuale (insegnante)
+ * sulle features sintetiche.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MLPTrainingBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"200", "512", "2048"})
+    public int batch;
+
+    private ForkJoinPool pool;
+    private MLPTrainer.Samples samples;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        double[][] rows = BenchmarkData.syntheticFeatures(50000, 42L);
+        MLPModel teacher = BenchmarkData.mlpModel(rows, new int[] { 32, 16 }, 7L);
+        double[] features = new double[rows.length * KNNDataset.FEATURE_COUNT];
+        double[] targets = new double[rows.length * 3];
+        for (int r = 0; r < rows.length; r++) {
+            System.arraycopy(rows[r], 0, features, r * KNNDataset.FEATURE_COUNT, KNNDataset.FEATURE_COUNT);
+            System.arraycopy(teacher.predict(rows[r]), 0, targets, r * 3, 3);
+        }
+        samples = new MLPTrainer.Samples(features, targets, rows.length);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public MLPModel epoch() {
+        MLPTrainer trainer = new MLPTrainer(new int[] { 32, 16 }, pool);
+        trainer.setMaxEpochs(1);
+        trainer.setValidationFraction(0.0);
+        trainer.setBatchSize(batch);
+        return trainer.train(samples);
+    }
+}
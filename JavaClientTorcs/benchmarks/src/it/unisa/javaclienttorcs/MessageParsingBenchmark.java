@@ -0,0 +1,77 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark del percorso di ricezione e invio di ogni tick di controllo:
+ * parsing del messaggio sensoriale, accesso ai getter del modello e serializzazione dell'azione.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageParsingBenchmark {
+
+    /** Indice del messaggio in {@link BenchmarkData#SENSOR_MESSAGES} (0 rettilineo, 1 curva, 2 fuori pista) */
+    @Param({"0", "1", "2"})
+    public int messageIndex;
+
+    private String message;
+    private MessageBasedSensorModel sensors;
+    private Action action;
+
+    @Setup
+    public void setup() {
+        message = BenchmarkData.SENSOR_MESSAGES[messageIndex];
+        sensors = new MessageBasedSensorModel(message);
+
+        action = new Action();
+        action.accelerate = 0.8734;
+        action.brake = 0.0;
+        action.steering = -0.1275;
+        action.gear = 4;
+    }
+
+    @Benchmark
+    public MessageParser parseMessage() {
+        return new MessageParser(message);
+    }
+
+    @Benchmark
+    public MessageBasedSensorModel parseSensorModel() {
+        return new MessageBasedSensorModel(message);
+    }
+
+    /**
+     * Getter letti da un tick del driver KNN (estrazione delle 14 features e marcia automatica).
+     */
+    @Benchmark
+    public void sensorGetters(Blackhole blackhole) {
+        blackhole.consume(sensors.getTrackEdgeSensors());
+        blackhole.consume(sensors.getSpeed());
+        blackhole.consume(sensors.getAngleToTrackAxis());
+        blackhole.consume(sensors.getTrackPosition());
+        blackhole.consume(sensors.getDistanceFromStartLine());
+        blackhole.consume(sensors.getGear());
+        blackhole.consume(sensors.getRPM());
+    }
+
+    @Benchmark
+    public String actionToString() {
+        return action.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Confronto tra {@link KDTreeIndex} (array sullo heap) e {@link OffHeapKDTreeIndex} (memoria nativa)
+ * su dataset grandi. Con {@code -prof gc} la colonna gc.time mostra il costo delle raccolte
+ * con l'indice residente sullo heap; la matrice delle features grezze viene rilasciata dopo
+ * la costruzione, così lo heap contiene solo l'indice misurato.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class NeighborIndexStorageBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"heap", "offheap"})
+    public String storage;
+
+    @Param({"200000", "2000000"})
+    public int datasetSize;
+
+    @Param({"15"})
+    public int k;
+
+    private NeighborIndex index;
+    private NeighborHeap heap;
+    private double[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        double[][] features = BenchmarkData.syntheticFeatures(datasetSize, 42L);
+        FeatureNormalizer normalizer = FeatureNormalizer.fixedRanges(KNNDataset.FEATURE_COUNT);
+        index = NeighborIndex.build(features, DistanceKernel.SQUARED_L2, null, normalizer,
+            "offheap".equals(storage));
+        queries = BenchmarkData.queriesNear(features, QUERY_COUNT, 7L);
+        heap = new NeighborHeap(k);
+    }
+
+    private double[] nextQuery() {
+        next = (next + 1) & (QUERY_COUNT - 1);
+        return queries[next];
+    }
+
+    @Benchmark
+    public int query() {
+        return index.query(nextQuery(), k, heap);
+    }
+}
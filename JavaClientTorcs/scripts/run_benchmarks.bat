@@ -0,0 +1,37 @@
+@echo off
+REM Script per eseguire i benchmark JMH del client
+REM Uso: run_benchmarks.bat [filtro] [argomenti JMH aggiuntivi]
+REM Esempio: run_benchmarks.bat KDTreeBenchmark -p k=8 -p datasetSize=50000
+
+echo ========================================
+echo        Benchmark JMH del Client
+echo ========================================
+echo.
+
+REM Vai alla directory dei benchmark
+cd /d "%~dp0..\benchmarks"
+
+set FILTER=%1
+if "%FILTER%"=="" set FILTER=.*
+
+REM Compila progetto e benchmark (scarica JMH al primo avvio)
+echo [INFO] Compilazione dei benchmark...
+call ant -q jar
+if errorlevel 1 (
+    echo [ERROR] Errore durante la compilazione dei benchmark!
+    pause
+    exit /b 1
+)
+
+REM Esegui i benchmark con il profiler di allocazione (gc.alloc.rate.norm = byte per operazione)
+echo [INFO] Esecuzione benchmark: %FILTER%
+echo [INFO] Risultati JSON in benchmarks\build\jmh-results.json
+echo.
+shift
+java -jar build\benchmarks.jar %FILTER% -prof gc -rf json -rff build\jmh-results.json %1 %2 %3 %4 %5 %6 %7 %8 %9
+
+echo.
+echo ========================================
+echo      Benchmark Terminati
+echo ========================================
+pause
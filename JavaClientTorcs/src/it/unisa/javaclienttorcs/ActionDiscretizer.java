@@ -1,12 +1,15 @@
 package it.unisa.javaclienttorcs;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
  * Utility per discretizzare azioni continue in classi discrete.
  * Converte un dataset con azioni continue (steering, acceleration, brake)
  * in un dataset con classi di azioni discrete per il training del classificatore.
+ * Input e output possono essere CSV o registrazioni binarie ({@link TelemetryFile}, estensione .tlm).
  */
 public class ActionDiscretizer {
     
@@ -28,68 +31,73 @@ public class ActionDiscretizer {
         
         System.out.println("[DISCRETIZER] Inizio discretizzazione dataset: " + inputPath);
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputPath));
-             PrintWriter writer = new PrintWriter(new FileWriter(outputPath))) {
+        if (TelemetryFile.isTelemetry(inputPath) || outputPath.endsWith(TelemetryFile.EXTENSION)) {
+            validSamples = discretizeValues(inputPath, outputPath, actionCounts);
+            totalSamples = validSamples;
+        } else {
+            try (BufferedReader reader = new BufferedReader(new FileReader(inputPath));
+                 PrintWriter writer = new PrintWriter(new FileWriter(outputPath))) {
             
-            // Leggi e scrivi header
-            String headerLine = reader.readLine();
-            if (headerLine != null) {
-                // Modifica header per includere la classe di azione
-                String[] headers = headerLine.split(",");
-                StringBuilder newHeader = new StringBuilder();
+                // Leggi e scrivi header
+                String headerLine = reader.readLine();
+                if (headerLine != null) {
+                    // Modifica header per includere la classe di azione
+                    String[] headers = headerLine.split(",");
+                    StringBuilder newHeader = new StringBuilder();
                 
-                // Mantieni le features (sensori)
-                for (int i = 0; i < 14; i++) {
-                    if (i > 0) newHeader.append(",");
-                    newHeader.append(headers[i]);
-                }
+                    // Mantieni le features (sensori)
+                    for (int i = 0; i < 14; i++) {
+                        if (i > 0) newHeader.append(",");
+                        newHeader.append(headers[i]);
+                    }
                 
-                // Aggiungi colonna per la classe di azione
-                newHeader.append(",actionClass");
+                    // Aggiungi colonna per la classe di azione
+                    newHeader.append(",actionClass");
                 
-                // Mantieni le azioni originali per riferimento
-                newHeader.append(",steering,acceleration,brake");
+                    // Mantieni le azioni originali per riferimento
+                    newHeader.append(",steering,acceleration,brake");
                 
-                writer.println(newHeader.toString());
-            }
+                    writer.println(newHeader.toString());
+                }
             
-            String line;
-            while ((line = reader.readLine()) != null) {
-                totalSamples++;
-                String[] values = line.split(",");
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    totalSamples++;
+                    String[] values = line.split(",");
                 
-                try {
-                    // Estrai azioni continue
-                    double steering = Double.parseDouble(values[14]);
-                    double acceleration = Double.parseDouble(values[15]);
-                    double brake = Double.parseDouble(values[16]);
+                    try {
+                        // Estrai azioni continue
+                        double steering = Double.parseDouble(values[14]);
+                        double acceleration = Double.parseDouble(values[15]);
+                        double brake = Double.parseDouble(values[16]);
                     
-                    // Converti in classe discreta
-                    DrivingAction actionClass = DrivingAction.fromContinuous(steering, acceleration, brake);
-                    actionCounts.put(actionClass, actionCounts.get(actionClass) + 1);
+                        // Converti in classe discreta
+                        DrivingAction actionClass = DrivingAction.fromContinuous(steering, acceleration, brake);
+                        actionCounts.put(actionClass, actionCounts.get(actionClass) + 1);
                     
-                    // Scrivi riga con classe discreta
-                    StringBuilder newLine = new StringBuilder();
+                        // Scrivi riga con classe discreta
+                        StringBuilder newLine = new StringBuilder();
                     
-                    // Features (sensori)
-                    for (int i = 0; i < 14; i++) {
-                        if (i > 0) newLine.append(",");
-                        newLine.append(values[i]);
-                    }
+                        // Features (sensori)
+                        for (int i = 0; i < 14; i++) {
+                            if (i > 0) newLine.append(",");
+                            newLine.append(values[i]);
+                        }
                     
-                    // Classe di azione
-                    newLine.append(",").append(actionClass.name());
+                        // Classe di azione
+                        newLine.append(",").append(actionClass.name());
                     
-                    // Azioni originali per riferimento
-                    newLine.append(",").append(steering);
-                    newLine.append(",").append(acceleration);
-                    newLine.append(",").append(brake);
+                        // Azioni originali per riferimento
+                        newLine.append(",").append(steering);
+                        newLine.append(",").append(acceleration);
+                        newLine.append(",").append(brake);
                     
-                    writer.println(newLine.toString());
-                    validSamples++;
+                        writer.println(newLine.toString());
+                        validSamples++;
                     
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                    System.err.println("[DISCRETIZER] Errore parsing riga " + totalSamples + ": " + e.getMessage());
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        System.err.println("[DISCRETIZER] Errore parsing riga " + totalSamples + ": " + e.getMessage());
+                    }
                 }
             }
         }
@@ -101,6 +109,61 @@ public class ActionDiscretizer {
         printClassDistribution(actionCounts, validSamples);
     }
     
+    /**
+     * Discretizzazione per valori, quando input o output sono binari: le features e le azioni sono
+     * lette per nome di colonna ({@link KNNDataset}) e scritte nel formato dell'output.
+     *
+     * @return Campioni scritti
+     */
+    private static int discretizeValues(String inputPath, String outputPath,
+                                        Map<DrivingAction, Integer> actionCounts) throws IOException {
+        KNNDataset dataset = KNNDataset.load(inputPath);
+        int width = TelemetryFile.DISCRETIZED_SCHEMA.size();
+        int actionColumn = KNNDataset.FEATURE_COUNT;
+        double[] values = new double[width];
+        
+        if (outputPath.endsWith(TelemetryFile.EXTENSION)) {
+            Files.deleteIfExists(Path.of(outputPath));
+            try (TelemetryFile.Writer writer = TelemetryFile.append(Path.of(outputPath), TelemetryFile.DISCRETIZED_SCHEMA)) {
+                for (int row = 0; row < dataset.size(); row++) {
+                    DrivingAction actionClass = fillRow(dataset, row, values, actionCounts);
+                    values[actionColumn] = actionClass.ordinal();
+                    writer.write(values, 0);
+                }
+            }
+        } else {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(outputPath))) {
+                writer.println(TelemetryFile.csvHeader(TelemetryFile.DISCRETIZED_SCHEMA));
+                StringBuilder line = new StringBuilder();
+                for (int row = 0; row < dataset.size(); row++) {
+                    DrivingAction actionClass = fillRow(dataset, row, values, actionCounts);
+                    line.setLength(0);
+                    values[actionColumn] = actionClass.ordinal();
+                    for (int i = 0; i < width; i++) {
+                        if (i > 0) line.append(",");
+                        TelemetryFile.appendValue(line, TelemetryFile.DISCRETIZED_SCHEMA.get(i).type(), values[i]);
+                    }
+                    writer.println(line);
+                }
+            }
+        }
+        return dataset.size();
+    }
+    
+    /**
+     * Copia features e azioni di una riga nel record discretizzato e conta la sua classe.
+     */
+    private static DrivingAction fillRow(KNNDataset dataset, int row, double[] values,
+                                         Map<DrivingAction, Integer> actionCounts) {
+        double[] features = dataset.getFeatures(row);
+        double[] targets = dataset.getTargets(row);
+        System.arraycopy(features, 0, values, 0, KNNDataset.FEATURE_COUNT);
+        System.arraycopy(targets, 0, values, KNNDataset.FEATURE_COUNT + 1, 3);
+        DrivingAction actionClass = DrivingAction.fromContinuous(targets[0], targets[1], targets[2]);
+        actionCounts.put(actionClass, actionCounts.get(actionClass) + 1);
+        return actionClass;
+    }
+    
     /**
      * Stampa la distribuzione delle classi nel dataset discretizzato.
      * 
@@ -174,29 +237,43 @@ public class ActionDiscretizer {
         int totalSamples = 0;
         int validSamples = 0;
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(datasetPath))) {
-            String line = reader.readLine(); // Skip header
+        if (TelemetryFile.isTelemetry(datasetPath)) {
+            KNNDataset dataset = KNNDataset.load(datasetPath);
+            for (int row = 0; row < dataset.size(); row++) {
+                double[] targets = dataset.getTargets(row);
+                minSteering = Math.min(minSteering, targets[0]);
+                maxSteering = Math.max(maxSteering, targets[0]);
+                minAcceleration = Math.min(minAcceleration, targets[1]);
+                maxAcceleration = Math.max(maxAcceleration, targets[1]);
+                minBrake = Math.min(minBrake, targets[2]);
+                maxBrake = Math.max(maxBrake, targets[2]);
+            }
+            totalSamples = validSamples = dataset.size();
+        } else {
+            try (BufferedReader reader = new BufferedReader(new FileReader(datasetPath))) {
+                String line = reader.readLine(); // Skip header
             
-            while ((line = reader.readLine()) != null) {
-                totalSamples++;
-                String[] values = line.split(",");
+                while ((line = reader.readLine()) != null) {
+                    totalSamples++;
+                    String[] values = line.split(",");
                 
-                try {
-                    double steering = Double.parseDouble(values[14]);
-                    double acceleration = Double.parseDouble(values[15]);
-                    double brake = Double.parseDouble(values[16]);
+                    try {
+                        double steering = Double.parseDouble(values[14]);
+                        double acceleration = Double.parseDouble(values[15]);
+                        double brake = Double.parseDouble(values[16]);
                     
-                    minSteering = Math.min(minSteering, steering);
-                    maxSteering = Math.max(maxSteering, steering);
-                    minAcceleration = Math.min(minAcceleration, acceleration);
-                    maxAcceleration = Math.max(maxAcceleration, acceleration);
-                    minBrake = Math.min(minBrake, brake);
-                    maxBrake = Math.max(maxBrake, brake);
+                        minSteering = Math.min(minSteering, steering);
+                        maxSteering = Math.max(maxSteering, steering);
+                        minAcceleration = Math.min(minAcceleration, acceleration);
+                        maxAcceleration = Math.max(maxAcceleration, acceleration);
+                        minBrake = Math.min(minBrake, brake);
+                        maxBrake = Math.max(maxBrake, brake);
                     
-                    validSamples++;
+                        validSamples++;
                     
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                    // Ignora righe malformate
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        // Ignora righe malformate
+                    }
                 }
             }
         }
@@ -223,8 +300,14 @@ public class ActionDiscretizer {
         }
         
         String inputPath = args[0];
-        String outputPath = args.length > 1 ? args[1] : inputPath.replace(".csv", "_discretized.csv");
+        String outputPath = args.length > 1 ? args[1]
+            : TelemetryFile.derivedPath(inputPath, "_discretized"
+                + (inputPath.endsWith(TelemetryFile.EXTENSION) ? TelemetryFile.EXTENSION : ".csv"));
         boolean analyzeOnly = args.length > 2 && "true".equalsIgnoreCase(args[2]);
+        if (!analyzeOnly && TelemetryFile.samePath(inputPath, outputPath)) {
+            System.err.println("[DISCRETIZER] Il file di output coincide con il dataset di input: " + outputPath);
+            return;
+        }
         
         try {
             if (analyzeOnly) {
@@ -0,0 +1,78 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Task ricorsivo per la ricerca a lotti su un {@link NeighborIndex}.
+ * Vive solo dentro il pool che lo esegue: non viene mai serializzato.
+ */
+@SuppressWarnings("serial")
+final class BatchQueryTask extends RecursiveAction {
+
+    /** Numero minimo di query per sotto-task nella ricerca a lotti */
+    private static final int MIN_BATCH_CHUNK = 64;
+
+    /** Heap di lavoro per thread, riutilizzato da tutte le query a lotti eseguite dallo stesso worker */
+    private static final ThreadLocal<NeighborHeap> WORKER_SCRATCH =
+        ThreadLocal.withInitial(() -> new NeighborHeap(16));
+
+    private final NeighborIndex index;
+    private final double[][] queries;
+    private final int k;
+    private final KNNBatchResult result;
+    private final int from;
+    private final int to;
+    private final int chunk;
+
+    private BatchQueryTask(NeighborIndex index, double[][] queries, int k, KNNBatchResult result,
+                           int from, int to, int chunk) {
+        this.index = index;
+        this.queries = queries;
+        this.k = k;
+        this.result = result;
+        this.from = from;
+        this.to = to;
+        this.chunk = chunk;
+    }
+
+    /**
+     * Esegue le query del lotto sul pool indicato.
+     *
+     * @param index Indice da interrogare
+     * @param queries Matrice delle features di query (una riga per query)
+     * @param k Numero di vicini per query
+     * @param pool Pool su cui eseguire le query
+     * @return Matrici degli indici e delle distanze dei vicini
+     */
+    static KNNBatchResult run(NeighborIndex index, double[][] queries, int k, ForkJoinPool pool) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("K deve essere maggiore di 0");
+        }
+        KNNBatchResult result = new KNNBatchResult(queries.length, k);
+        if (queries.length == 0) {
+            return result;
+        }
+
+        // Circa 8 sotto-task per worker per bilanciare il carico
+        int chunk = Math.max(MIN_BATCH_CHUNK, queries.length / (pool.getParallelism() * 8));
+        pool.invoke(new BatchQueryTask(index, queries, k, result, 0, queries.length, chunk));
+        return result;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= chunk) {
+            NeighborHeap heap = WORKER_SCRATCH.get();
+            for (int q = from; q < to; q++) {
+                int count = index.query(queries[q], k, heap);
+                result.store(q, heap, count);
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        invokeAll(new BatchQueryTask(index, queries, k, result, from, middle, chunk),
+                  new BatchQueryTask(index, queries, k, result, middle, to, chunk));
+    }
+}
@@ -1,5 +1,6 @@
 package it.unisa.javaclienttorcs;
 
+import java.util.Arrays;
 import java.util.StringTokenizer;
 import it.unisa.javaclienttorcs.Controller.Stage;
 import java.lang.reflect.InvocationTargetException;
@@ -37,6 +38,25 @@ public class Client {
 	 *   - maxSteps:N - Passi massimi per gara (0 = illimitato)
 	 *   - stage:N - 0=WARMUP, 1=QUALIFYING, 2=RACE
 	 *   - trackName:name - Nome del tracciato
+	 *   - metric:euclidean|manhattan|chebyshev|weighted - Metrica del KNNDriver (default: euclidean)
+	 *   - weights:w0,...,w13 - Pesi per feature della metrica weighted
+	 *   - normalization:fixed|minmax|zscore - Normalizzazione del KNNDriver (default: fixed)
+	 *   - index:heap|offheap - Memoria dell'indice del KNNDriver (default: heap)
+	 *   - split:roundrobin|spread|variance|midpoint - Strategia di split del KD-tree del KNNDriver (default: roundrobin)
+	 *   - pca:N - Proiezione delle features del KNNDriver sulle prime N componenti principali (default: nessuna)
+	 *   - lsh:LxKxW - Indice approssimato LSH del KNNDriver al posto del KD-tree (default: KD-tree esatto)
+	 *   - datasets:a.csv,b.csv - Dataset del KNNEnsembleDriver, un indice per file
+	 *   - ensembleWeights:w0,w1,... - Pesi degli indici del KNNEnsembleDriver (default: uniformi)
+	 *   - combine:merge|blend - Combinazione delle risposte del KNNEnsembleDriver (default: blend; merge solo con normalization:fixed e senza pca)
+	 *   - threads:N - Thread di ricerca del KNNEnsembleDriver (default: 0, virtual thread)
+	 *   - budget:MICROS - Budget per tick delle ricerche del KNNEnsembleDriver e delle risposte del server dell'MLPDriver (default: 5000)
+	 *   - policy:tabella.bin - Tabella di decisione precompilata del KNNClassifierDriver (PolicyTableCompiler)
+	 *   - model:pesi.bin - Pesi della rete valutata nel client dall'MLPDriver (default: ../mlpDriver/mlp_model.bin)
+	 *   - mlp:server - MLPDriver con il server Python (mlpDrive.py) al posto della valutazione nel client
+	 *   - mlp:shm - MLPDriver con il server Python in memoria condivisa (mlpDrive.py --shm, default: ../mlpDriver/mlp_shm.bin)
+	 *   - shm:file.bin - File di memoria condivisa del server Python dell'MLPDriver
+	 *   - enhanced:file.csv|file.tlm - Registrazione enhanced dell'HumanController, binaria con .tlm (default: enhanced_dataset.csv)
+	 *   - backpressure:drop|block - Raccolta dati dell'HumanController con la coda verso il disco piena: scarta o attende (default: drop)
 	 */
 	public static void main(String[] args) {
 		// Fase 1: Parsing dei parametri da riga di comando
@@ -53,9 +73,32 @@ public class Client {
 			System.exit(1);
 		}
 		
-                if( driver instanceof MLPDriver){
-                    
-                }
+		// Gestione speciale per MLPDriver: file dei pesi o server Python (UDP o memoria condivisa)
+		if (driver instanceof MLPDriver mlpDriver) {
+			for (int i = 1; i < args.length; i++) {
+				if (args[i].startsWith("model:")) {
+					String modelFile = args[i].substring("model:".length());
+					try {
+						mlpDriver.loadModel(modelFile);
+					} catch (Exception e) {
+						System.err.println("[ERRORE] Impossibile caricare il modello MLP " + modelFile + ": " + e.getMessage());
+						System.err.println("[INFO] L'MLPDriver userà la configurazione di default");
+					}
+				} else if (args[i].equals("mlp:server")) {
+					mlpDriver.connectToServer();
+				} else if (args[i].equals("mlp:shm")) {
+					mlpDriver.connectSharedMemory(MLPDriver.DEFAULT_SHARED_MEMORY_PATH);
+				} else if (args[i].startsWith("shm:")) {
+					mlpDriver.connectSharedMemory(args[i].substring("shm:".length()));
+				} else if (args[i].startsWith("budget:")) {
+					try {
+						mlpDriver.setTickBudgetMicros(Long.parseLong(args[i].substring("budget:".length())));
+					} catch (IllegalArgumentException e) {
+						System.err.println("[WARN] Parametri: budget non valido - " + args[i]);
+					}
+				}
+			}
+		}
 		
 		// Gestione speciale per HumanController
 		if (driver instanceof HumanController humanController) {
@@ -64,7 +107,14 @@ public class Client {
 			for (String arg : args) {
 				if (arg.equals("--collect")) {
 					collectData = true;
-					break;
+				} else if (arg.startsWith("enhanced:")) {
+					humanController.setEnhancedFile(arg.substring("enhanced:".length()));
+				} else if (arg.startsWith("backpressure:")) {
+					try {
+						humanController.setBackpressure(EnhancedDataCollector.Backpressure.fromName(arg.substring("backpressure:".length())));
+					} catch (IllegalArgumentException e) {
+						System.err.println("[WARN] Parametri: " + e.getMessage());
+					}
 				}
 			}
 			
@@ -76,19 +126,71 @@ public class Client {
 		
 		// Gestione speciale per KNNDriver con dataset personalizzato
 		if (driver instanceof KNNDriver) {
-			// Cerca il nome del dataset negli argomenti
+			// Cerca il nome del dataset e la metrica di distanza negli argomenti
 			String datasetFile = null;
+			String metric = null;
+			String weights = null;
+			String normalization = null;
+			String index = null;
+			String split = null;
+			String pca = null;
+			String lsh = null;
 			for (int i = 1; i < args.length; i++) {
-				if (!args[i].contains(":") && !args[i].startsWith("--")) {
+				if (args[i].startsWith("metric:")) {
+					metric = args[i].substring("metric:".length());
+				} else if (args[i].startsWith("weights:")) {
+					weights = args[i].substring("weights:".length());
+				} else if (args[i].startsWith("normalization:")) {
+					normalization = args[i].substring("normalization:".length());
+				} else if (args[i].startsWith("index:")) {
+					index = args[i].substring("index:".length());
+				} else if (args[i].startsWith("split:")) {
+					split = args[i].substring("split:".length());
+				} else if (args[i].startsWith("pca:")) {
+					pca = args[i].substring("pca:".length());
+				} else if (args[i].startsWith("lsh:")) {
+					lsh = args[i].substring("lsh:".length());
+				} else if (datasetFile == null && !args[i].contains(":") && !args[i].startsWith("--")) {
 					datasetFile = args[i];
-					break;
 				}
 			}
 			
-			if (datasetFile != null) {
-				// Ricrea il KNNDriver con il dataset specificato
+			if (datasetFile != null || metric != null || normalization != null || index != null || split != null
+					|| pca != null || lsh != null) {
+				// Ricrea il KNNDriver con il dataset e la metrica specificati
 				try {
-					driver = new KNNDriver(datasetFile);
+					if (metric == null && normalization == null && index == null && split == null && pca == null
+							&& lsh == null) {
+						driver = new KNNDriver(datasetFile);
+					} else {
+						KNNConfig config = new KNNConfig(datasetFile != null ? datasetFile : "human_dataset.csv");
+						if (metric != null) {
+							config.setDistanceKernel(DistanceKernel.fromName(metric));
+						}
+						if (weights != null) {
+							config.setFeatureWeights(DistanceKernel.parseWeights(weights));
+						}
+						if (normalization != null) {
+							config.setNormalizationMode(FeatureNormalizer.Mode.fromName(normalization));
+						}
+						config.setOffHeapIndex("offheap".equals(index));
+						if (split != null) {
+							config.setSplitStrategy(SplitStrategy.fromName(split));
+						}
+						if (pca != null) {
+							config.setPcaComponents(Integer.parseInt(pca));
+						}
+						if (lsh != null) {
+							config.setLshParameters(LSHParameters.parse(lsh));
+						}
+						driver = new KNNDriver(config);
+						System.out.println("[INFO] KNNDriver con metrica: " + config.getDistanceKernel()
+							+ ", normalizzazione: " + config.getNormalizationMode()
+							+ ", split: " + config.getSplitStrategy()
+							+ (config.getPcaComponents() > 0 ? ", PCA " + config.getPcaComponents() + " componenti" : "")
+							+ (config.getLshParameters() != null ? ", LSH " + config.getLshParameters() : "")
+							+ (config.isOffHeapIndex() ? ", indice fuori heap" : ""));
+					}
 					System.out.println("[INFO] KNNDriver inizializzato con dataset: " + datasetFile);
 				} catch (Exception e) {
 					System.err.println("[ERRORE] Impossibile inizializzare KNNDriver con dataset " + datasetFile + ": " + e.getMessage());
@@ -97,6 +199,69 @@ public class Client {
 			}
 		}
 
+		// Gestione speciale per KNNClassifierDriver con tabella di decisione precompilata
+		if (driver instanceof KNNClassifierDriver classifierDriver) {
+			for (int i = 1; i < args.length; i++) {
+				if (args[i].startsWith("policy:")) {
+					String policyFile = args[i].substring("policy:".length());
+					try {
+						classifierDriver.loadPolicyTable(policyFile);
+					} catch (Exception e) {
+						System.err.println("[ERRORE] Impossibile caricare la tabella di decisione " + policyFile + ": " + e.getMessage());
+						System.err.println("[INFO] Il KNNClassifierDriver userà solo la ricerca KNN");
+					}
+				}
+			}
+		}
+
+		// Gestione speciale per KNNEnsembleDriver con dataset e combinazione personalizzati
+		if (driver instanceof KNNEnsembleDriver) {
+			KNNEnsembleConfig ensembleConfig = KNNEnsembleConfig.forHumanDatasets();
+			boolean customized = false;
+			try {
+				for (int i = 1; i < args.length; i++) {
+					String arg = args[i];
+					String value = arg.substring(arg.indexOf(':') + 1);
+					if (arg.startsWith("datasets:")) {
+						ensembleConfig.setDatasetPaths(Arrays.asList(value.split(",")));
+					} else if (arg.startsWith("ensembleWeights:")) {
+						ensembleConfig.setMemberWeights(DistanceKernel.parseWeights(value));
+					} else if (arg.startsWith("combine:")) {
+						ensembleConfig.setCombineMode(KNNEnsembleConfig.CombineMode.fromName(value));
+					} else if (arg.startsWith("threads:")) {
+						ensembleConfig.setThreads(Integer.parseInt(value));
+					} else if (arg.startsWith("budget:")) {
+						ensembleConfig.setTickBudgetMicros(Long.parseLong(value));
+					} else if (arg.startsWith("metric:")) {
+						ensembleConfig.getBaseConfig().setDistanceKernel(DistanceKernel.fromName(value));
+					} else if (arg.startsWith("weights:")) {
+						ensembleConfig.getBaseConfig().setFeatureWeights(DistanceKernel.parseWeights(value));
+					} else if (arg.startsWith("normalization:")) {
+						ensembleConfig.getBaseConfig().setNormalizationMode(FeatureNormalizer.Mode.fromName(value));
+					} else if (arg.startsWith("index:")) {
+						ensembleConfig.getBaseConfig().setOffHeapIndex("offheap".equals(value));
+					} else if (arg.startsWith("split:")) {
+						ensembleConfig.getBaseConfig().setSplitStrategy(SplitStrategy.fromName(value));
+					} else if (arg.startsWith("pca:")) {
+						ensembleConfig.getBaseConfig().setPcaComponents(Integer.parseInt(value));
+					} else if (arg.startsWith("lsh:")) {
+						ensembleConfig.getBaseConfig().setLshParameters(LSHParameters.parse(value));
+					} else {
+						continue;
+					}
+					customized = true;
+				}
+				if (customized) {
+					driver.shutdown();
+					driver = new KNNEnsembleDriver(ensembleConfig);
+				}
+				System.out.println("[INFO] KNNEnsembleDriver con " + ((KNNEnsembleDriver) driver).getMemberCount()
+					+ " indici, combinazione: " + ((KNNEnsembleDriver) driver).getConfig().getCombineMode());
+			} catch (Exception e) {
+				System.err.println("[ERRORE] Impossibile inizializzare KNNEnsembleDriver: " + e.getMessage());
+				System.err.println("[INFO] Utilizzo configurazione di default");
+			}
+		}
 		
 		driver.setStage(stage);
 	driver.setTrackName(trackName);
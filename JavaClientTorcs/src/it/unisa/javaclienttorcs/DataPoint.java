@@ -54,19 +54,19 @@ public class DataPoint {
      * @throws IllegalArgumentException se le dimensioni delle features non sono uguali
      */
     public double euclideanDistance(double[] otherFeatures) {
-        if (features.length != otherFeatures.length) {
-            throw new IllegalArgumentException("Le dimensioni delle features devono essere uguali");
-        }
-        
-        double sum = 0.0;
-        for (int i = 0; i < features.length; i++) {
-            double diff = features[i] - otherFeatures[i];
-            sum += diff * diff;
-        }
-        return Math.sqrt(sum);
+        return DistanceKernel.SQUARED_L2.distance(features, otherFeatures);
     }
     
-
+    /**
+     * Calcola la distanza tra questo punto e un altro set di features con la metrica indicata
+     * @param otherFeatures Le features dell'altro punto
+     * @param kernel Metrica di distanza (senza pesi)
+     * @return La distanza secondo la metrica
+     * @throws IllegalArgumentException se le dimensioni delle features non sono uguali
+     */
+    public double distance(double[] otherFeatures, DistanceKernel kernel) {
+        return kernel.distance(features, otherFeatures);
+    }
     
     /**
      * Calcola la distanza euclidea tra questo punto e un altro set di features
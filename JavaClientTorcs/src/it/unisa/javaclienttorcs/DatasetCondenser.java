@@ -0,0 +1,374 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Riduzione offline del dataset del classificatore KNN.
+ * Applica una pulizia di tipo Wilson (ENN, rimuove i campioni in disaccordo con i propri vicini)
+ * e una condensazione di tipo Hart (CNN, mantiene solo i prototipi necessari a classificare
+ * correttamente gli altri campioni con 1-NN), nella stessa normalizzazione di {@link KNNClassifierDriver}.
+ * La CNN è eseguita a blocchi: i campioni di un blocco vengono interrogati in parallelo sui prototipi
+ * correnti e quelli classificati male entrano tutti insieme tra i prototipi.
+ * Il risultato è un dataset discretizzato caricabile direttamente da {@link KNNClassifierDriver}.
+ */
+public class DatasetCondenser {
+
+    /** Header del formato discretizzato (lo stesso scritto da {@link ActionDiscretizer}) */
+    private static final String DISCRETIZED_HEADER =
+        "track0,track2,track4,track6,track8,track10,track12,track14,track16,track18,"
+        + "speedX,angleToTrackAxis,trackPosition,distanceFromStartLine,actionClass,steering,acceleration,brake";
+
+    /** Metodi di riduzione disponibili */
+    public enum Method {
+        /** Solo pulizia (Wilson): rimuove rumore ai confini tra classi */
+        ENN,
+        /** Solo condensazione (Hart): mantiene i prototipi di confine */
+        CNN,
+        /** Pulizia seguita da condensazione */
+        ENN_CNN
+    }
+
+    private final KNNDataset dataset;
+    private final ForkJoinPool pool;
+    private final int k;
+    private final double[][] features;
+    private final FeatureNormalizer normalizer;
+    private final int[] labels;
+    private final int[] reference;
+
+    /**
+     * Prepara la riduzione: adotta la normalizzazione del classificatore (memorizzata nel suo indice)
+     * e calcola le sue decisioni sul dataset completo (leave-one-out: ogni riga esclude se stessa dai vicini).
+     *
+     * @param dataset Dataset da ridurre
+     * @param k K del classificatore di riferimento
+     * @param normalize Se applicare la normalizzazione del classificatore
+     * @param pool Pool per le ricerche a lotti
+     */
+    public DatasetCondenser(KNNDataset dataset, int k, boolean normalize, ForkJoinPool pool) {
+        this.dataset = dataset;
+        this.pool = pool;
+        this.k = k;
+
+        KNNClassifierDriver fullDriver = new KNNClassifierDriver(new KNNConfig(k, dataset.getSource(), normalize, true),
+            dataset.toClassifierPoints(dataset.allRows()));
+
+        int n = dataset.size();
+        this.features = new double[n][];
+        this.labels = new int[n];
+        for (int row = 0; row < n; row++) {
+            features[row] = dataset.getFeatures(row);
+            labels[row] = dataset.getActionClass(row).ordinal();
+        }
+
+        this.normalizer = fullDriver.getKDTree().getNormalizer();
+
+        KNNBatchResult neighbors = fullDriver.getKDTree().findKNearestNeighborsBatch(features, k + 1, pool);
+        this.reference = new int[n];
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(row ->
+            reference[row] = vote(neighbors, row, row, k, null))).join();
+    }
+
+    /**
+     * Voto pesato sull'inverso della distanza (come il classificatore) sui primi K vicini,
+     * escludendo il punto con indice skip.
+     *
+     * @param neighbors Risultato della ricerca a lotti
+     * @param query Riga della query nel risultato
+     * @param skip Indice del vicino da escludere (la query stessa), -1 per nessuno
+     * @param k Numero di vicini votanti
+     * @param rowOf Conversione indice vicino -> riga del dataset, null se coincidono
+     * @return Ordinale della classe vincente
+     */
+    private int vote(KNNBatchResult neighbors, int query, int skip, int k, int[] rowOf) {
+        double[] votes = new double[DrivingAction.values().length];
+        int best = DrivingAction.STRAIGHT_NORMAL.ordinal();
+        int used = 0;
+
+        int count = neighbors.getNeighborCount(query);
+        for (int j = 0; j < count && used < k; j++) {
+            int row = rowOf == null ? neighbors.getIndex(query, j) : rowOf[neighbors.getIndex(query, j)];
+            if (row == skip) {
+                continue;
+            }
+            int c = labels[row];
+            votes[c] += 1.0 / (neighbors.getDistance(query, j) + 1e-10);
+            if (votes[c] > votes[best]) {
+                best = c;
+            }
+            used++;
+        }
+        return best;
+    }
+
+    /**
+     * Pulizia di Wilson: rimuove le righe la cui classe differisce dal voto dei propri vicini.
+     *
+     * @param rows Righe candidate
+     * @param ennK Numero di vicini votanti
+     * @return Righe mantenute (in ordine crescente)
+     */
+    public int[] editedNearestNeighbor(int[] rows, int ennK) {
+        KDTreeIndex index = buildIndex(rows);
+        double[][] queries = select(rows);
+        KNNBatchResult neighbors = index.queryBatch(queries, ennK + 1, pool);
+
+        boolean[] keep = new boolean[rows.length];
+        pool.submit(() -> IntStream.range(0, rows.length).parallel().forEach(q ->
+            keep[q] = vote(neighbors, q, rows[q], ennK, rows) == labels[rows[q]])).join();
+
+        return filter(rows, keep);
+    }
+
+    /**
+     * Condensazione di Hart a blocchi: parte da un prototipo per classe e, a ogni blocco di righe
+     * (in ordine casuale), aggiunge ai prototipi le righe classificate male dal 1-NN sui prototipi correnti.
+     * Le passate si ripetono finché una passata completa non aggiunge più nulla.
+     *
+     * @param rows Righe candidate
+     * @param blockSize Righe interrogate in parallelo prima di aggiornare i prototipi
+     * @param maxPasses Numero massimo di passate
+     * @param seed Seme per l'ordine casuale
+     * @return Righe dei prototipi (in ordine crescente)
+     */
+    public int[] condensedNearestNeighbor(int[] rows, int blockSize, int maxPasses, long seed) {
+        int[] order = rows.clone();
+        Random random = new Random(seed);
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        boolean[] isPrototype = new boolean[dataset.size()];
+        boolean[] seenClass = new boolean[DrivingAction.values().length];
+        int[] prototypes = new int[Math.max(16, rows.length / 8)];
+        int prototypeCount = 0;
+        for (int row : order) {
+            if (!seenClass[labels[row]]) {
+                seenClass[labels[row]] = true;
+                isPrototype[row] = true;
+                prototypes[prototypeCount++] = row;
+            }
+        }
+
+        for (int pass = 1; pass <= maxPasses; pass++) {
+            int added = 0;
+            for (int from = 0; from < order.length; from += blockSize) {
+                int to = Math.min(order.length, from + blockSize);
+                int[] block = Arrays.copyOfRange(order, from, to);
+
+                int[] current = Arrays.copyOf(prototypes, prototypeCount);
+                KNNBatchResult nearest = buildIndex(current).queryBatch(select(block), 1, pool);
+                for (int q = 0; q < block.length; q++) {
+                    int row = block[q];
+                    if (isPrototype[row] || labels[current[nearest.getIndex(q, 0)]] == labels[row]) {
+                        continue;
+                    }
+                    if (prototypeCount == prototypes.length) {
+                        prototypes = Arrays.copyOf(prototypes, prototypes.length * 2);
+                    }
+                    isPrototype[row] = true;
+                    prototypes[prototypeCount++] = row;
+                    added++;
+                }
+            }
+            System.out.printf("[CONDENSER] CNN passata %d: +%d prototipi (totale %d)%n", pass, added, prototypeCount);
+            if (added == 0) {
+                break;
+            }
+        }
+
+        int[] result = Arrays.copyOf(prototypes, prototypeCount);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Misura l'accordo del classificatore costruito sulle righe indicate con il classificatore
+     * completo, su tutte le righe del dataset (leave-one-out per le righe mantenute).
+     *
+     * @param rows Righe mantenute
+     * @param voters K del classificatore ridotto
+     * @return Frazione di decisioni uguali a quelle del classificatore completo
+     */
+    public double agreement(int[] rows, int voters) {
+        KNNBatchResult neighbors = buildIndex(rows).queryBatch(features, voters + 1, pool);
+        long matches = pool.submit(() -> IntStream.range(0, features.length).parallel()
+            .filter(row -> vote(neighbors, row, row, voters, rows) == reference[row])
+            .count()).join();
+        return (double) matches / features.length;
+    }
+
+    /**
+     * Misura il throughput delle query K-NN (a lotti, su tutte le righe) sull'indice ridotto.
+     *
+     * @param rows Righe dell'indice
+     * @return Query al secondo
+     */
+    public double queryThroughput(int[] rows) {
+        KDTreeIndex index = buildIndex(rows);
+        long start = System.nanoTime();
+        index.queryBatch(features, k, pool);
+        return features.length / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Stampa una riga della tabella di confronto tra dimensione e accordo.
+     */
+    private void report(String name, int[] rows) {
+        System.out.printf("[CONDENSER] %-8s | %8d | %6.2f%% | %7.2f%% | %7.2f%% | %10.0f%n", name, rows.length,
+            (rows.length * 100.0) / dataset.size(), agreement(rows, 1) * 100.0, agreement(rows, k) * 100.0,
+            queryThroughput(rows));
+    }
+
+    /**
+     * Scrive le righe indicate nel formato discretizzato.
+     *
+     * @param rows Righe da scrivere
+     * @param outputPath Percorso del file di output
+     * @throws IOException Se si verifica un errore durante la scrittura
+     */
+    public void write(int[] rows, String outputPath) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(outputPath), IOConfig.FILE_BUFFER_SIZE_LARGE))) {
+            writer.println(DISCRETIZED_HEADER);
+            StringBuilder line = new StringBuilder(IOConfig.STRINGBUILDER_CSV_STANDARD);
+            for (int row : rows) {
+                line.setLength(0);
+                for (double value : dataset.getFeatures(row)) {
+                    line.append(value).append(',');
+                }
+                double[] targets = dataset.getTargets(row);
+                line.append(dataset.getActionClass(row).name())
+                    .append(',').append(targets[0])
+                    .append(',').append(targets[1])
+                    .append(',').append(targets[2]);
+                writer.println(line);
+            }
+        }
+        System.out.printf("[CONDENSER] Dataset ridotto salvato: %s (%d righe)%n", outputPath, rows.length);
+    }
+
+    private KDTreeIndex buildIndex(int[] rows) {
+        return new KDTreeIndex(select(rows), DistanceKernel.SQUARED_L2, null, normalizer);
+    }
+
+    private double[][] select(int[] rows) {
+        double[][] selected = new double[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            selected[i] = features[rows[i]];
+        }
+        return selected;
+    }
+
+    private static int[] filter(int[] rows, boolean[] keep) {
+        int count = 0;
+        for (boolean kept : keep) {
+            if (kept) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        int next = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (keep[i]) {
+                result[next++] = rows[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Riduce un dataset da riga di comando e confronta dimensione e accordo dei diversi metodi.
+     *
+     * @param args Parametri chiave:valore (input, output, method, k, ennK, block, normalize, threads, seed)
+     */
+    public static void main(String[] args) {
+        String inputPath = null;
+        String outputPath = null;
+        Method method = Method.ENN_CNN;
+        int k = 15;
+        int ennK = 3;
+        int blockSize = 2048;
+        boolean normalize = true;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+
+        for (String arg : args) {
+            int sep = arg.indexOf(':');
+            if (sep <= 0) {
+                System.err.println("[CONDENSER] Parametro non riconosciuto: " + arg);
+                continue;
+            }
+            String key = arg.substring(0, sep);
+            String value = arg.substring(sep + 1);
+            switch (key) {
+                case "input" -> inputPath = value;
+                case "output" -> outputPath = value;
+                case "method" -> method = Method.valueOf(value.toUpperCase().replace('+', '_'));
+                case "k" -> k = Integer.parseInt(value);
+                case "ennK" -> ennK = Integer.parseInt(value);
+                case "block" -> blockSize = Integer.parseInt(value);
+                case "normalize" -> normalize = !value.equals("off");
+                case "threads" -> threads = Integer.parseInt(value);
+                case "seed" -> seed = Long.parseLong(value);
+                default -> System.err.println("[CONDENSER] Parametro non riconosciuto: " + arg);
+            }
+        }
+
+        if (inputPath == null) {
+            System.out.println("Uso: java DatasetCondenser input:<dataset.csv> [output:<ridotto.csv>] [method:enn|cnn|enn+cnn]");
+            System.out.println("       [k:15] [ennK:3] [block:2048] [normalize:on|off] [threads:N] [seed:42]");
+            System.out.println("  L'output è in formato discretizzato, caricabile da KNNClassifierDriver");
+            return;
+        }
+        if (outputPath == null) {
+            outputPath = TelemetryFile.derivedPath(inputPath, "_condensed.csv");
+        }
+        if (TelemetryFile.samePath(inputPath, outputPath)) {
+            System.err.println("[CONDENSER] Il file di output coincide con il dataset di input: " + outputPath);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            KNNDataset dataset = KNNDataset.load(inputPath);
+            long start = System.nanoTime();
+            DatasetCondenser condenser = new DatasetCondenser(dataset, k, normalize, pool);
+
+            int[] enn = condenser.editedNearestNeighbor(dataset.allRows(), ennK);
+            int[] cnn = condenser.condensedNearestNeighbor(dataset.allRows(), blockSize, 10, seed);
+            int[] ennCnn = condenser.condensedNearestNeighbor(enn, blockSize, 10, seed);
+            System.out.printf("[CONDENSER] Riduzione completata in %.2f s%n", (System.nanoTime() - start) / 1e9);
+
+            System.out.printf("%n[CONDENSER] Accordo con il classificatore completo (K=%d), leave-one-out su %d righe%n",
+                k, dataset.size());
+            System.out.printf("[CONDENSER] %-8s | %8s | %7s | %8s | %8s | %10s%n",
+                "metodo", "righe", "quota", "acc. K=1", "acc. K=" + k, "query/s");
+            condenser.report("FULL", dataset.allRows());
+            condenser.report("ENN", enn);
+            condenser.report("CNN", cnn);
+            condenser.report("ENN+CNN", ennCnn);
+
+            int[] selected = switch (method) {
+                case ENN -> enn;
+                case CNN -> cnn;
+                case ENN_CNN -> ennCnn;
+            };
+            System.out.println();
+            condenser.write(selected, outputPath);
+        } catch (IOException e) {
+            System.err.println("[CONDENSER] Errore: " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -6,20 +6,32 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
- * DatasetConverter - Utility per convertire dataset enhanced in formato standard
+ * DatasetConverter - Utility per convertire dataset enhanced in formato standard.
+ * Input e output possono essere CSV o registrazioni binarie ({@link TelemetryFile}, estensione .tlm).
  */
 public class DatasetConverter {
     
+    /** Colonne del file enhanced CSV copiate nel dataset standard, nell'ordine di {@link TelemetryFile#STANDARD_SCHEMA} */
+    private static final int[] STANDARD_COLUMNS = { 0, 2, 4, 6, 8, 10, 12, 14, 16, 18, 19, 20, 21, 25, 42, 43, 44 };
+    
     /**
-     * Converte un file CSV enhanced nel formato dataset standard.
+     * Converte un file enhanced nel formato dataset standard.
+     * Se input e output sono CSV le colonne sono copiate come testo, altrimenti passano per i valori.
      * 
-     * @param enhancedFile Percorso del file CSV enhanced di input
-     * @param standardFile Percorso del file CSV standard di output
+     * @param enhancedFile Percorso del file enhanced di input (CSV o binario)
+     * @param standardFile Percorso del file standard di output (binario se termina con .tlm)
      * @throws java.io.IOException Se si verificano errori durante la lettura/scrittura
      */
     public static void convertToStandardDataset(String enhancedFile, String standardFile) throws IOException {
+        if (TelemetryFile.isTelemetry(enhancedFile) || standardFile.endsWith(TelemetryFile.EXTENSION)) {
+            convertValues(enhancedFile, standardFile);
+            return;
+        }
+        
         // Ottimizzazione I/O: Streaming invece di caricare tutto in memoria
         int bufferSize = calculateOptimalBufferSize(new File(enhancedFile));
         int processedLines = 0;
@@ -55,6 +67,97 @@ public class DatasetConverter {
         System.out.println("[INFO] Convertito " + processedLines + " punti in formato dataset standard (streaming I/O)");
     }
     
+    /**
+     * Conversione per valori, quando input o output sono binari: legge le colonne standard per nome
+     * da una registrazione o per posizione da un CSV enhanced e le scrive nel formato dell'output.
+     */
+    private static void convertValues(String enhancedFile, String standardFile) throws IOException {
+        int width = TelemetryFile.STANDARD_SCHEMA.size();
+        double[] values = new double[width];
+        long processed = 0;
+        
+        TelemetryFile.Writer binary = null;
+        BufferedWriter text = null;
+        TelemetryFile telemetry = null;
+        BufferedReader reader = null;
+        try {
+            if (standardFile.endsWith(TelemetryFile.EXTENSION)) {
+                Files.deleteIfExists(Path.of(standardFile));
+                binary = TelemetryFile.append(Path.of(standardFile), TelemetryFile.STANDARD_SCHEMA);
+            } else {
+                text = new BufferedWriter(new FileWriter(standardFile), calculateOptimalBufferSize(new File(enhancedFile)));
+                text.write(getOptimizedHeader());
+                text.newLine();
+            }
+            StringBuilder line = new StringBuilder(200);
+            
+            int[] columns = null;
+            if (TelemetryFile.isTelemetry(enhancedFile)) {
+                telemetry = TelemetryFile.open(Path.of(enhancedFile));
+                columns = telemetry.requireColumns(TelemetryFile.csvHeader(TelemetryFile.STANDARD_SCHEMA).split(","));
+            } else {
+                reader = new BufferedReader(new FileReader(enhancedFile), calculateOptimalBufferSize(new File(enhancedFile)));
+            }
+            
+            long row = 0;
+            while (true) {
+                if (telemetry != null) {
+                    if (row == telemetry.size()) {
+                        break;
+                    }
+                    telemetry.read(row++, columns, values, 0);
+                } else {
+                    String csv = reader.readLine();
+                    if (csv == null) {
+                        break;
+                    }
+                    String[] parts = csv.split(",");
+                    if (csv.trim().isEmpty() || csv.contains("track0") || parts.length < 45) {
+                        continue; // Header o riga malformata
+                    }
+                    try {
+                        for (int i = 0; i < width; i++) {
+                            values[i] = Double.parseDouble(parts[STANDARD_COLUMNS[i]]);
+                        }
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                }
+                
+                if (binary != null) {
+                    binary.write(values, 0);
+                } else {
+                    line.setLength(0);
+                    for (int i = 0; i < width; i++) {
+                        if (i > 0) {
+                            line.append(',');
+                        }
+                        TelemetryFile.appendValue(line, TelemetryFile.STANDARD_SCHEMA.get(i).type(), values[i]);
+                    }
+                    text.append(line);
+                    text.newLine();
+                }
+                processed++;
+            }
+        } finally {
+            if (telemetry != null) {
+                telemetry.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+            if (binary != null) {
+                binary.close();
+            }
+            if (text != null) {
+                text.close();
+            }
+        }
+        
+        System.out.println("[INFO] Convertito " + processed + " punti in formato dataset standard ("
+                + (binary != null ? "binario" : "CSV") + ")");
+    }
+    
     /**
      * Calcola buffer size ottimale basato sulla dimensione del file
      * Utilizza configurazione centralizzata IOConfig
@@ -118,11 +221,16 @@ public class DatasetConverter {
      * Metodo main per testing standalone del convertitore di dataset.
      * Permette di convertire un file enhanced in formato standard da riga di comando.
      * 
-     * @param args Array di argomenti: [0]=file_enhanced.csv [1]=file_standard.csv
+     * @param args Array di argomenti: [0]=file_enhanced.csv|.tlm [1]=file_standard.csv|.tlm
      */
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println("Usage: java DatasetConverter <enhanced_file.csv> <standard_file.csv>");
+            System.out.println("Usage: java DatasetConverter <enhanced_file.csv|.tlm> <standard_file.csv|.tlm>");
+            return;
+        }
+        
+        if (TelemetryFile.samePath(args[0], args[1])) {
+            System.err.println("[ERROR] Il file di output coincide con quello di input: " + args[1]);
             return;
         }
         
@@ -0,0 +1,236 @@
+package it.unisa.javaclienttorcs;
+
+/**
+ * Metriche di distanza utilizzabili dal KD-Tree, scelte alla costruzione dell'indice.
+ * Ogni metrica lavora su una distanza "di ordinamento" (rank) monotona rispetto a quella finale:
+ * ad esempio la Euclidea confronta i quadrati ed estrae la radice solo sui vicini restituiti.
+ * I nuclei di calcolo sono metodi statici separati, con una versione srotolata per le 14 features
+ * dei driver: ogni punto di chiamata vede un solo metodo e il JIT può inlinearlo e vettorizzarlo.
+ */
+public enum DistanceKernel {
+
+    /** Distanza Euclidea (confronto sui quadrati) */
+    SQUARED_L2,
+
+    /** Distanza di Manhattan (somma dei valori assoluti) */
+    L1,
+
+    /** Distanza di Chebyshev (massimo dei valori assoluti) */
+    LINF,
+
+    /**
+     * Distanza Euclidea con un peso per feature. I pesi vengono incorporati nelle features
+     * memorizzate (moltiplicate per la radice del peso) e nella query, così la ricerca
+     * usa lo stesso nucleo di {@link #SQUARED_L2}.
+     */
+    WEIGHTED_L2;
+
+    /** Numero di features dei driver KNN, per cui esiste la versione srotolata dei nuclei */
+    static final int UNROLLED_DIMENSIONS = 14;
+
+    /**
+     * Restituisce la metrica corrispondente al nome indicato (case insensitive).
+     * Accetta sia i nomi delle costanti sia euclidean, manhattan, chebyshev e weighted.
+     *
+     * @param name Nome della metrica
+     * @return Metrica corrispondente
+     * @throws IllegalArgumentException Se il nome non corrisponde a nessuna metrica
+     */
+    public static DistanceKernel fromName(String name) {
+        return switch (name.toLowerCase()) {
+            case "euclidean", "l2", "squared_l2" -> SQUARED_L2;
+            case "manhattan", "l1" -> L1;
+            case "chebyshev", "linf" -> LINF;
+            case "weighted", "weighted_l2" -> WEIGHTED_L2;
+            default -> throw new IllegalArgumentException("Metrica di distanza non supportata: " + name);
+        };
+    }
+
+    /**
+     * Calcola la distanza di ordinamento tra il target e il punto memorizzato a partire da base.
+     * Per {@link #WEIGHTED_L2} target e punto devono essere già scalati con {@link #scaleFactors(double[])}.
+     *
+     * @param target Features della query
+     * @param coords Array delle coordinate (punti memorizzati per righe)
+     * @param base Offset del punto nell'array delle coordinate
+     * @param dimensions Numero di features
+     * @return Distanza di ordinamento
+     */
+    double rank(double[] target, double[] coords, int base, int dimensions) {
+        return switch (this) {
+            case L1 -> dimensions == UNROLLED_DIMENSIONS ? l1x14(target, coords, base) : l1(target, coords, base, dimensions);
+            case LINF -> dimensions == UNROLLED_DIMENSIONS ? lInfx14(target, coords, base) : lInf(target, coords, base, dimensions);
+            default -> dimensions == UNROLLED_DIMENSIONS ? squaredL2x14(target, coords, base)
+                                                         : squaredL2(target, coords, base, dimensions);
+        };
+    }
+
+    /**
+     * Limite inferiore della distanza di ordinamento da qualunque punto oltre il piano di split.
+     * Tutte le metriche sono somme o massimi di termini per coordinata, quindi il solo termine
+     * della dimensione di split è un limite valido per la potatura.
+     *
+     * @param diff Differenza tra il target e il piano sulla dimensione di split
+     * @return Limite inferiore nella stessa unità di {@link #rank}
+     */
+    double planeBound(double diff) {
+        return this == L1 || this == LINF ? Math.abs(diff) : diff * diff;
+    }
+
+    /**
+     * Aggiorna il limite inferiore di una cella quando il termine di una coordinata cresce
+     * (la query passa oltre un nuovo piano di split sulla stessa dimensione).
+     * Per le metriche a somma sostituisce il termine, per Chebyshev prende il massimo.
+     *
+     * @param bound Limite inferiore della cella di partenza
+     * @param oldTerm Termine precedente della coordinata (valore di {@link #planeBound(double)})
+     * @param newTerm Nuovo termine della coordinata, non minore del precedente
+     * @return Limite inferiore della nuova cella
+     */
+    double replaceBound(double bound, double oldTerm, double newTerm) {
+        return this == LINF ? Math.max(bound, newTerm) : bound + (newTerm - oldTerm);
+    }
+
+    /**
+     * Converte una distanza di ordinamento nella distanza finale della metrica.
+     *
+     * @param rank Distanza di ordinamento
+     * @return Distanza finale
+     */
+    double toDistance(double rank) {
+        return this == L1 || this == LINF ? rank : Math.sqrt(rank);
+    }
+
+    /**
+     * Calcola la distanza finale tra due vettori di features (senza pesi).
+     *
+     * @param a Primo vettore
+     * @param b Secondo vettore
+     * @return Distanza secondo la metrica
+     */
+    public double distance(double[] a, double[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Le dimensioni delle features devono essere uguali");
+        }
+        return toDistance(rank(a, b, 0, a.length));
+    }
+
+    /**
+     * Indica se la metrica richiede i pesi per feature.
+     *
+     * @return true per {@link #WEIGHTED_L2}
+     */
+    public boolean isWeighted() {
+        return this == WEIGHTED_L2;
+    }
+
+    /**
+     * Converte i pesi della metrica pesata nei fattori di scala da applicare alle features.
+     *
+     * @param weights Pesi per feature (non negativi)
+     * @return Radici quadrate dei pesi
+     */
+    static double[] scaleFactors(double[] weights) {
+        double[] scale = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("I pesi delle features non possono essere negativi");
+            }
+            scale[i] = Math.sqrt(weights[i]);
+        }
+        return scale;
+    }
+
+    /**
+     * Interpreta una lista di pesi separati da virgola.
+     *
+     * @param list Pesi, ad esempio "1,1,1,1,1,1,1,1,1,1,2,1,4,0"
+     * @return Array dei pesi
+     */
+    public static double[] parseWeights(String list) {
+        String[] values = list.split(",");
+        double[] weights = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            weights[i] = Double.parseDouble(values[i].trim());
+        }
+        return weights;
+    }
+
+    static double squaredL2(double[] t, double[] c, int base, int dimensions) {
+        double sum = 0.0;
+        for (int i = 0; i < dimensions; i++) {
+            double d = c[base + i] - t[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    static double l1(double[] t, double[] c, int base, int dimensions) {
+        double sum = 0.0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += Math.abs(c[base + i] - t[i]);
+        }
+        return sum;
+    }
+
+    static double lInf(double[] t, double[] c, int base, int dimensions) {
+        double max = 0.0;
+        for (int i = 0; i < dimensions; i++) {
+            max = max(max, Math.abs(c[base + i] - t[i]));
+        }
+        return max;
+    }
+
+    // Versioni srotolate per 14 features: due accumulatori indipendenti accorciano la catena
+    // di dipendenze delle somme rispetto al ciclo generico
+
+    static double squaredL2x14(double[] t, double[] c, int base) {
+        double d0 = c[base] - t[0];
+        double d1 = c[base + 1] - t[1];
+        double d2 = c[base + 2] - t[2];
+        double d3 = c[base + 3] - t[3];
+        double d4 = c[base + 4] - t[4];
+        double d5 = c[base + 5] - t[5];
+        double d6 = c[base + 6] - t[6];
+        double d7 = c[base + 7] - t[7];
+        double d8 = c[base + 8] - t[8];
+        double d9 = c[base + 9] - t[9];
+        double d10 = c[base + 10] - t[10];
+        double d11 = c[base + 11] - t[11];
+        double d12 = c[base + 12] - t[12];
+        double d13 = c[base + 13] - t[13];
+        double even = d0 * d0 + d2 * d2 + d4 * d4 + d6 * d6 + d8 * d8 + d10 * d10 + d12 * d12;
+        double odd = d1 * d1 + d3 * d3 + d5 * d5 + d7 * d7 + d9 * d9 + d11 * d11 + d13 * d13;
+        return even + odd;
+    }
+
+    static double l1x14(double[] t, double[] c, int base) {
+        double even = Math.abs(c[base] - t[0]) + Math.abs(c[base + 2] - t[2]) + Math.abs(c[base + 4] - t[4])
+            + Math.abs(c[base + 6] - t[6]) + Math.abs(c[base + 8] - t[8]) + Math.abs(c[base + 10] - t[10])
+            + Math.abs(c[base + 12] - t[12]);
+        double odd = Math.abs(c[base + 1] - t[1]) + Math.abs(c[base + 3] - t[3]) + Math.abs(c[base + 5] - t[5])
+            + Math.abs(c[base + 7] - t[7]) + Math.abs(c[base + 9] - t[9]) + Math.abs(c[base + 11] - t[11])
+            + Math.abs(c[base + 13] - t[13]);
+        return even + odd;
+    }
+
+    static double lInfx14(double[] t, double[] c, int base) {
+        double even = max(max(max(Math.abs(c[base] - t[0]), Math.abs(c[base + 2] - t[2])),
+                              max(Math.abs(c[base + 4] - t[4]), Math.abs(c[base + 6] - t[6]))),
+                          max(max(Math.abs(c[base + 8] - t[8]), Math.abs(c[base + 10] - t[10])),
+                              Math.abs(c[base + 12] - t[12])));
+        double odd = max(max(max(Math.abs(c[base + 1] - t[1]), Math.abs(c[base + 3] - t[3])),
+                             max(Math.abs(c[base + 5] - t[5]), Math.abs(c[base + 7] - t[7]))),
+                         max(max(Math.abs(c[base + 9] - t[9]), Math.abs(c[base + 11] - t[11])),
+                             Math.abs(c[base + 13] - t[13])));
+        return max(even, odd);
+    }
+
+    /**
+     * Massimo senza la gestione di NaN e -0.0 di {@link Math#max}: le distanze sono valori assoluti finiti
+     * e il confronto semplice si traduce in una singola istruzione.
+     */
+    private static double max(double a, double b) {
+        return a >= b ? a : b;
+    }
+}
@@ -134,6 +134,22 @@ public enum DrivingAction {
         return action;
     }
     
+    /**
+     * Scrive i valori di questa azione in un'azione esistente, riportando gli altri
+     * comandi (frizione, focus, restart) ai valori di default di {@link Action}.
+     * Permette ai driver di riutilizzare la stessa istanza a ogni tick.
+     * 
+     * @param action Azione da sovrascrivere (la marcia non viene modificata)
+     */
+    public void applyTo(Action action) {
+        action.steering = this.steering;
+        action.accelerate = this.acceleration;
+        action.brake = this.brake;
+        action.clutch = 0;
+        action.restartRace = false;
+        action.focus = 360;
+    }
+    
     /**
      * Restituisce una rappresentazione stringa dell'azione.
      * 
@@ -9,7 +9,7 @@ import java.io.IOException;
 public class EnhancedDataCollectionManager {
     
     private final EnhancedDataCollector enhancedCollector;
-    private final String enhancedFilePath;
+    private String enhancedFilePath;
     private final String outputDatasetFile;
     
     /**
@@ -30,6 +30,25 @@ public class EnhancedDataCollectionManager {
         this.outputDatasetFile = outputFilename;
     }
     
+    /**
+     * Imposta il file della registrazione enhanced (default: enhanced_dataset.csv).
+     * Con l'estensione .tlm la registrazione è in formato binario ({@link TelemetryFile}).
+     *
+     * @param enhancedFilePath Percorso del file CSV o binario
+     */
+    public void setEnhancedFilePath(String enhancedFilePath) {
+        this.enhancedFilePath = enhancedFilePath;
+    }
+    
+    /**
+     * Imposta il comportamento della raccolta quando il disco resta indietro.
+     *
+     * @param backpressure Scarta i record ({@code DROP}) o attende uno slot libero ({@code BLOCK})
+     */
+    public void setBackpressure(EnhancedDataCollector.Backpressure backpressure) {
+        enhancedCollector.setBackpressure(backpressure);
+    }
+    
     /**
      * Avvia la raccolta dati enhanced
      */
@@ -78,6 +97,7 @@ public class EnhancedDataCollectionManager {
      */
     public void stopCollection() {
         enhancedCollector.stopCollection();
+        printRecentSummary();
         
         // Genera automaticamente il file dataset
         try {
@@ -98,6 +118,29 @@ public class EnhancedDataCollectionManager {
         }
     }
 
+    /**
+     * Restituisce la finestra degli ultimi tick registrati (vedi {@link EnhancedDataCollector#getRecentTicks()}).
+     *
+     * @return Finestra dei tick recenti
+     */
+    public TelemetryWindow getRecentTicks() {
+        return enhancedCollector.getRecentTicks();
+    }
+
+    /**
+     * Stampa velocità e posizione in pista negli ultimi tick registrati.
+     */
+    private void printRecentSummary() {
+        TelemetryWindow recent = enhancedCollector.getRecentTicks();
+        if (recent.size() == 0) {
+            return;
+        }
+        int speed = recent.columnIndex("speedX");
+        int position = recent.columnIndex("trackPosition");
+        System.out.printf("[INFO] Ultimi %d tick: velocità media %.1f km/h (max %.1f), posizione in pista [%.2f, %.2f]%n",
+                recent.size(), recent.mean(speed), recent.max(speed), recent.min(position), recent.max(position));
+    }
+
     /**
      * Controlla se la raccolta dati è attualmente attiva.
      * 
@@ -7,36 +7,117 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * EnhancedDataCollector - Raccoglie tutti i sensori disponibili tranne quelli degli avversari
- * e tutte le azioni tranne meta
+ * e tutte le azioni tranne meta.
+ *
+ * Il thread di controllo copia solo i valori primitivi del tick in una {@link TelemetryRing}
+ * preallocata, senza allocazioni né lock; la formattazione CSV e la scrittura su disco sono compito
+ * di un thread di scrittura dedicato, così la latenza del disco non entra nel ciclo di guida.
+ * Se il disco resta indietro e la coda si riempie, il comportamento dipende da {@link Backpressure}:
+ * il record viene scartato (e contato) oppure il thread di controllo attende uno slot libero.
+ *
+ * Gli ultimi {@link IOConfig#RECENT_TICKS_WINDOW} tick registrati restano anche in memoria in una
+ * {@link TelemetryWindow} a colonne, interrogabile dal thread di controllo (ultimi N valori, media,
+ * minimo e massimo) senza rileggere il file.
  */
 public class EnhancedDataCollector {
-    private List<EnhancedDataPoint> dataset;
-    private PrintWriter writer;
-    private BufferedWriter bufferedWriter;
-    private boolean collecting;
-    
-    // Ottimizzazioni I/O - utilizza configurazione centralizzata
-    private int recordCount = 0;
-    private StringBuilder batchBuffer = new StringBuilder(IOConfig.STRINGBUILDER_BATCH);
-    
+
     /**
-     * Costruisce un nuovo raccoglitore di dati avanzato.
-     * Inizializza il dataset interno e imposta lo stato di raccolta a false.
+     * Comportamento di {@link #recordData} quando la coda verso il thread di scrittura è piena.
+     */
+    public enum Backpressure {
+        /** Scarta il record e lo conta: il tick non attende mai il disco */
+        DROP,
+        /** Attende che il thread di scrittura liberi uno slot: nessun record perso */
+        BLOCK;
+
+        /**
+         * Restituisce il comportamento corrispondente al nome indicato (case insensitive).
+         *
+         * @param name Nome del comportamento (drop, block)
+         * @return Comportamento corrispondente
+         * @throws IllegalArgumentException Se il nome non corrisponde a nessun comportamento
+         */
+        public static Backpressure fromName(String name) {
+            return switch (name.toLowerCase()) {
+                case "drop" -> DROP;
+                case "block" -> BLOCK;
+                default -> throw new IllegalArgumentException("Backpressure non supportata: " + name);
+            };
+        }
+    }
+
+    /** Record in coda di default: circa 80 secondi di guida a 50 tick al secondo */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** Terminatore delle righe CSV, lo stesso di {@link BufferedWriter#newLine()} usato per l'header */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Pausa del thread di scrittura quando la coda è vuota */
+    private static final long WRITER_PARK_NANOS = 2_000_000;
+
+    /** Pausa del thread di controllo in attesa di uno slot con {@link Backpressure#BLOCK} */
+    private static final long PRODUCER_PARK_NANOS = 50_000;
+
+    private final TelemetryRing ring;
+    private final TelemetryWindow recentTicks;
+    private final double[] droppedValues = new double[EnhancedDataPoint.VALUE_COUNT];
+    private Backpressure backpressure;
+    private Thread writerThread;
+    private volatile boolean collecting;
+    private volatile boolean stopping;
+    private volatile boolean writerFailed;
+
+    // Contatori del thread di controllo: record messi in coda e record scartati prima della coda
+    private long recordCount = 0;
+    private volatile long droppedRecords = 0;
+
+    // Contatori del thread di scrittura: record scritti e record in coda persi per un errore di scrittura
+    private volatile long writtenRecords = 0;
+    private volatile long failedRecords = 0;
+
+    /**
+     * Costruisce un nuovo raccoglitore di dati avanzato con la coda di default
+     * e record scartati quando la coda è piena.
      */
     public EnhancedDataCollector() {
-        this.dataset = new ArrayList<>();
+        this(DEFAULT_CAPACITY, Backpressure.DROP);
+    }
+
+    /**
+     * Costruisce un nuovo raccoglitore di dati avanzato.
+     *
+     * @param capacity Record che possono attendere il thread di scrittura
+     * @param backpressure Comportamento quando la coda è piena
+     */
+    public EnhancedDataCollector(int capacity, Backpressure backpressure) {
+        this.ring = new TelemetryRing(capacity, EnhancedDataPoint.VALUE_COUNT);
+        this.recentTicks = new TelemetryWindow(IOConfig.RECENT_TICKS_WINDOW, TelemetryFile.ENHANCED_SCHEMA);
+        this.backpressure = backpressure;
         this.collecting = false;
     }
-    
+
     /**
-     * Avvia la raccolta dati su file specifico.
+     * Imposta il comportamento quando la coda verso il thread di scrittura è piena.
+     *
+     * @param backpressure {@link Backpressure#DROP} o {@link Backpressure#BLOCK}
+     */
+    public void setBackpressure(Backpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    /**
+     * Avvia la raccolta dati su file specifico. Con l'estensione {@link TelemetryFile#EXTENSION}
+     * i record sono accodati in formato binario ({@link TelemetryFile}), altrimenti in CSV.
+     * In entrambi i casi un file esistente viene esteso.
      * 
-     * @param filename Nome del file CSV dove salvare i dati raccolti
+     * @param filename Nome del file CSV o binario dove salvare i dati raccolti
      * @throws java.io.IOException Se si verificano errori durante la creazione del file
      */
     public void startCollection(String filename) throws IOException {
@@ -45,29 +126,45 @@ public class EnhancedDataCollector {
             stopCollection();
         }
         
-        File file = new File(filename);
-        boolean fileExists = file.exists();
-        
         this.recordCount = 0;
-        this.batchBuffer.setLength(0); // Reset buffer
-        
-        // Ottimizzazione I/O: Buffer size dinamico da configurazione
-        FileWriter fileWriter = new FileWriter(filename, true);
-        int bufferSize = IOConfig.getOptimalBufferSize(file.length());
-        this.bufferedWriter = new BufferedWriter(fileWriter, bufferSize);
-        this.writer = new PrintWriter(bufferedWriter);
-        
-        // Scrivi header solo se il file è nuovo
-        if (!fileExists) {
-            writeHeaderOptimized();
+        this.droppedRecords = 0;
+        this.writtenRecords = 0;
+        this.failedRecords = 0;
+        recentTicks.clear();
+        
+        Runnable writerLoop;
+        if (filename.endsWith(TelemetryFile.EXTENSION)) {
+            // Record binari copiati dalla coda al file mappato, senza formattazione
+            TelemetryFile.Writer output = TelemetryFile.append(Path.of(filename), TelemetryFile.ENHANCED_SCHEMA);
+            writerLoop = () -> writeRecords(null, output);
+        } else {
+            File file = new File(filename);
+            boolean fileExists = file.exists();
+            
+            // Ottimizzazione I/O: Buffer size dinamico da configurazione
+            FileWriter fileWriter = new FileWriter(filename, true);
+            int bufferSize = IOConfig.getOptimalBufferSize(file.length());
+            BufferedWriter output = new BufferedWriter(fileWriter, bufferSize);
+            
+            // Scrivi header solo se il file è nuovo
+            if (!fileExists) {
+                output.write(TelemetryFile.csvHeader(TelemetryFile.ENHANCED_SCHEMA));
+                output.newLine();
+            }
+            writerLoop = () -> writeRecords(output, null);
         }
         
+        stopping = false;
+        writerFailed = false;
         collecting = true;
-        System.out.println("[INFO] Raccolta dati avviata (I/O ottimizzato) su: " + filename);
+        writerThread = Thread.ofPlatform().daemon().name("telemetry-writer").start(writerLoop);
+        System.out.println("[INFO] Raccolta dati avviata (scrittura asincrona, " + ring.capacity()
+                + " record in coda, backpressure " + backpressure.name().toLowerCase() + ") su: " + filename);
     }
     
     /**
      * Registra tutti i sensori (tranne avversari) e tutte le azioni (tranne meta).
+     * Copia i valori nella coda del thread di scrittura e nella finestra dei tick recenti senza allocare.
      * 
      * @param sensors Modello sensoriale contenente lo stato attuale del veicolo
      * @param action Azione di controllo eseguita dal driver
@@ -76,54 +173,152 @@ public class EnhancedDataCollector {
     public void recordData(SensorModel sensors, Action action, double targetSpeed) {
         if (!collecting) return;
         
-        EnhancedDataPoint point = new EnhancedDataPoint(sensors, action, targetSpeed);
-        
-        // Ottimizzazione memoria: gestione buffer circolare
-        if (dataset.size() < IOConfig.MAX_IN_MEMORY_RECORDS) {
-            dataset.add(point);
-        } else {
-            dataset.remove(0);
-            dataset.add(point);
+        // Dopo un errore di scrittura nessun record viene più messo in coda
+        boolean writable = !writerFailed;
+        int offset = writable ? ring.claim() : -1;
+        if (offset < 0 && writable && backpressure == Backpressure.BLOCK) {
+            offset = awaitSlot();
         }
-        
-        // Batch writing per performance migliori
-        batchBuffer.append(point.toCSV()).append("\n");
-        recordCount++;
-        
-        if (recordCount % IOConfig.BATCH_WRITE_SIZE == 0) {
-            flushBatch();
+        if (offset < 0) {
+            // Il record non arriva al file ma resta nella finestra dei tick recenti
+            droppedRecords++;
+            EnhancedDataPoint.copyValues(sensors, action, targetSpeed, droppedValues, 0);
+            recentTicks.append(droppedValues, 0);
+            return;
         }
+        EnhancedDataPoint.copyValues(sensors, action, targetSpeed, ring.values(), offset);
+        // Lo slot resta del thread di controllo fino a publish: la finestra lo legge prima
+        recentTicks.append(ring.values(), offset);
+        ring.publish();
+        recordCount++;
     }
     
     /**
-     * Header ottimizzato per performance migliori
+     * Attende che il thread di scrittura liberi uno slot, finché è attivo.
+     *
+     * @return Offset dello slot riservato, o -1 se il thread di scrittura si è fermato
      */
-    private void writeHeaderOptimized() {
-        // Header pre-costruito per performance migliori
-        String header = "track0,track1,track2,track3,track4,track5,track6,track7,track8,track9," +
-                       "track10,track11,track12,track13,track14,track15,track16,track17,track18," +
-                       "speedX,angleToTrackAxis,trackPosition," +
-                       "lateralSpeed,currentLapTime,damage,distanceFromStartLine," +
-                       "distanceRaced,fuelLevel,lastLapTime,RPM,zSpeed,z," +
-                       "focus0,focus1,focus2,focus3,focus4," +
-                       "wheelSpinFL,wheelSpinFR,wheelSpinRL,wheelSpinRR," +
-                       "targetSpeed,steering,acceleration,brake,gear,clutch";
-        
-        writer.println(header);
+    private int awaitSlot() {
+        int offset;
+        while ((offset = ring.claim()) < 0) {
+            if (writerFailed || stopping) {
+                return -1;
+            }
+            LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+        }
+        return offset;
     }
     
     /**
-     * Flush del batch buffer per scrittura ottimizzata
+     * Ciclo del thread di scrittura: svuota la coda formattando i record in CSV (scaricando il buffer
+     * su disco ogni {@link IOConfig#BATCH_WRITE_SIZE} record) o copiandoli nella registrazione binaria;
+     * alla fermata svuota la coda e chiude il file.
+     *
+     * @param output File CSV, o null
+     * @param telemetry Registrazione binaria, o null
      */
-    private void flushBatch() {
-        if (batchBuffer.length() > 0 && writer != null) {
-            writer.print(batchBuffer.toString());
-            writer.flush(); // Forza scrittura su disco
-            batchBuffer.setLength(0); // Reset buffer
+    private void writeRecords(BufferedWriter output, TelemetryFile.Writer telemetry) {
+        StringBuilder line = new StringBuilder(IOConfig.STRINGBUILDER_CSV_FULL);
+        char[] chars = new char[IOConfig.STRINGBUILDER_CSV_FULL];
+        double[] values = ring.values();
+        long unflushed = 0;
+        try {
+            while (true) {
+                // La fermata va letta prima della coda: i record pubblicati prima di essa restano visibili
+                boolean stop = stopping;
+                int offset = ring.peek();
+                if (offset < 0) {
+                    if (stop) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, WRITER_PARK_NANOS);
+                    continue;
+                }
+                if (telemetry != null) {
+                    telemetry.write(values, offset);
+                    ring.release();
+                    writtenRecords++;
+                    continue;
+                }
+                line.setLength(0);
+                EnhancedDataPoint.appendCSV(line, values, offset);
+                ring.release();
+                // Un record formattato è scritto solo dopo il flush del buffer: fino ad allora, se la
+                // scrittura fallisce, è contato tra quelli persi
+                unflushed++;
+                line.append(LINE_SEPARATOR);
+                if (chars.length < line.length()) {
+                    chars = new char[line.length() * 2];
+                }
+                line.getChars(0, line.length(), chars, 0);
+                output.write(chars, 0, line.length());
+                if (unflushed == IOConfig.BATCH_WRITE_SIZE) {
+                    output.flush(); // Forza scrittura su disco
+                    writtenRecords += unflushed;
+                    unflushed = 0;
+                }
+            }
+            if (output != null) {
+                output.flush();
+                writtenRecords += unflushed;
+            }
+        } catch (IOException e) {
+            writerFailed = true;
+            failedRecords += unflushed;
+            System.err.println("[ERROR] Errore durante scrittura dati: " + e.getMessage());
+            // Scarta i record in coda fino alla fermata, compresi quelli pubblicati prima che il
+            // thread di controllo veda l'errore: non restano slot occupati né record non contati
+            while (true) {
+                boolean stop = stopping;
+                if (ring.peek() >= 0) {
+                    ring.release();
+                    failedRecords++;
+                } else if (stop) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(this, WRITER_PARK_NANOS);
+                }
+            }
+        } finally {
+            try {
+                if (output != null) {
+                    output.close();
+                } else {
+                    telemetry.close();
+                }
+            } catch (IOException e) {
+                System.err.println("[ERROR] Errore chiusura file: " + e.getMessage());
+            }
         }
     }
     
-
+    /**
+     * Restituisce la finestra degli ultimi tick registrati, con le colonne di
+     * {@link TelemetryFile#ENHANCED_SCHEMA}. Va letta dal thread che chiama {@link #recordData}.
+     *
+     * @return Finestra dei tick recenti, svuotata a ogni avvio della raccolta
+     */
+    public TelemetryWindow getRecentTicks() {
+        return recentTicks;
+    }
+    
+    /**
+     * Restituisce i record scartati perché la coda era piena o la scrittura è fallita.
+     *
+     * @return Record scartati dall'avvio della raccolta
+     */
+    public long getDroppedRecords() {
+        return droppedRecords + failedRecords;
+    }
+    
+    /**
+     * Restituisce i record già scritti dal thread di scrittura (per il CSV, già scaricati dal buffer).
+     *
+     * @return Record scritti dall'avvio della raccolta
+     */
+    public long getWrittenRecords() {
+        return writtenRecords;
+    }
     
     /**
      * Converte enhanced dataset in formato standard.
@@ -154,10 +349,21 @@ public class EnhancedDataCollector {
     }
     
     /**
-     * Carica dataset enhanced
+     * Carica dataset enhanced (CSV o registrazione binaria)
      */
     private List<EnhancedDataPoint> loadEnhancedDataset(String filename) throws IOException {
         List<EnhancedDataPoint> loaded = new ArrayList<>();
+        if (TelemetryFile.isTelemetry(filename)) {
+            try (TelemetryFile telemetry = TelemetryFile.open(Path.of(filename))) {
+                int[] columns = telemetry.requireColumns(TelemetryFile.csvHeader(TelemetryFile.ENHANCED_SCHEMA).split(","));
+                double[] values = new double[EnhancedDataPoint.VALUE_COUNT];
+                for (long row = 0; row < telemetry.size(); row++) {
+                    telemetry.read(row, columns, values, 0);
+                    loaded.add(EnhancedDataPoint.fromValues(values, 0));
+                }
+            }
+            return loaded;
+        }
         try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
             String line;
             boolean firstLine = true;
@@ -184,33 +390,21 @@ public class EnhancedDataCollector {
         if (!collecting) {
             return;
         }
+        collecting = false;
         
-        // Flush finale del batch buffer
-        if (batchBuffer.length() > 0) {
-            flushBatch();
-        }
-        
-        if (writer != null) {
-            try {
-                writer.flush(); // Forza scrittura buffer
-                writer.close();
-                writer = null;
-            } catch (Exception e) {
-                System.err.println("[ERROR] Errore durante chiusura file: " + e.getMessage());
-            }
-        }
-        
-        if (bufferedWriter != null) {
-            try {
-                bufferedWriter.close();
-            } catch (IOException e) {
-                System.err.println("[ERROR] Errore chiusura BufferedWriter: " + e.getMessage());
-            }
-            bufferedWriter = null;
+        // Il thread di scrittura svuota la coda, scarica il buffer e chiude il file
+        stopping = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("[ERROR] Interrotto in attesa del thread di scrittura");
         }
+        writerThread = null;
         
-        collecting = false;
-        System.out.println("[INFO] Raccolta dati terminata (I/O ottimizzato). Punti raccolti: " + recordCount);
+        System.out.println("[INFO] Raccolta dati terminata (scrittura asincrona). Punti raccolti: " + (recordCount + droppedRecords)
+                + " | scritti: " + writtenRecords + " | scartati: " + getDroppedRecords());
     }
     
     /**
@@ -230,206 +424,3 @@ public class EnhancedDataCollector {
         stopCollection();
     }
 }
-
-/**
- * Classe per rappresentare un punto dati completo
- */
-class EnhancedDataPoint {
-    // Sensori track (19)
-    double[] trackSensors;
-    
-    // Sensori base
-    double speedX;
-    double angleToTrackAxis;
-    double trackPosition;
-    
-    // Sensori avanzati
-    double lateralSpeed;
-    double currentLapTime;
-    double damage;
-    double distanceFromStartLine;
-    double distanceRaced;
-    double fuelLevel;
-    double lastLapTime;
-    double RPM;
-    double zSpeed;
-    double z;
-    
-    // Sensori focus
-    double[] focusSensors;
-    
-    // Sensori ruote
-    double[] wheelSpinVelocity;
-    
-    // Azioni
-    double targetSpeed;
-    double steering;
-    double acceleration;
-    double brake;
-    int gear;
-    double clutch;
-    
-    public EnhancedDataPoint(SensorModel sensors, Action action, double targetSpeed) {
-        // Track sensors
-        this.trackSensors = sensors.getTrackEdgeSensors().clone();
-        
-        // Base sensors
-        this.speedX = sensors.getSpeed();
-        this.angleToTrackAxis = sensors.getAngleToTrackAxis();
-        this.trackPosition = sensors.getTrackPosition();
-        
-        // Advanced sensors (excluding opponent sensors)
-        this.lateralSpeed = sensors.getLateralSpeed();
-        this.currentLapTime = sensors.getCurrentLapTime();
-        this.damage = sensors.getDamage();
-        this.distanceFromStartLine = sensors.getDistanceFromStartLine();
-        this.distanceRaced = sensors.getDistanceRaced();
-        this.fuelLevel = sensors.getFuelLevel();
-        this.lastLapTime = sensors.getLastLapTime();
-        this.RPM = sensors.getRPM();
-        this.zSpeed = sensors.getZSpeed();
-        this.z = sensors.getZ();
-        
-        // Focus sensors
-        this.focusSensors = sensors.getFocusSensors();
-        
-        // Wheel sensors
-        this.wheelSpinVelocity = sensors.getWheelSpinVelocity();
-        
-        // Actions
-        this.targetSpeed = targetSpeed;
-        this.steering = action.steering;
-        this.acceleration = action.accelerate;
-        this.brake = action.brake;
-        this.gear = action.gear;
-        this.clutch = action.clutch;
-    }
-    
-    // Pool di StringBuilder per ottimizzare allocazioni - utilizza IOConfig
-    private static final ThreadLocal<StringBuilder> CSV_BUILDER_POOL = 
-        ThreadLocal.withInitial(() -> new StringBuilder(IOConfig.STRINGBUILDER_CSV_FULL));
-    
-    private static final ThreadLocal<StringBuilder> STANDARD_CSV_BUILDER_POOL = 
-        ThreadLocal.withInitial(() -> new StringBuilder(IOConfig.STRINGBUILDER_CSV_STANDARD));
-    
-    /**
-     * Converte in formato CSV completo (ottimizzato)
-     */
-    public String toCSV() {
-        StringBuilder sb = CSV_BUILDER_POOL.get();
-        sb.setLength(0); // Reset del buffer riutilizzabile
-        
-        // Track sensors (19) - accesso diretto per performance
-        sb.append(trackSensors[0]).append(',').append(trackSensors[1]).append(',').append(trackSensors[2]).append(',')
-          .append(trackSensors[3]).append(',').append(trackSensors[4]).append(',').append(trackSensors[5]).append(',')
-          .append(trackSensors[6]).append(',').append(trackSensors[7]).append(',').append(trackSensors[8]).append(',')
-          .append(trackSensors[9]).append(',').append(trackSensors[10]).append(',').append(trackSensors[11]).append(',')
-          .append(trackSensors[12]).append(',').append(trackSensors[13]).append(',').append(trackSensors[14]).append(',')
-          .append(trackSensors[15]).append(',').append(trackSensors[16]).append(',').append(trackSensors[17]).append(',')
-          .append(trackSensors[18]).append(',');
-        
-        // Base sensors - concatenazione ottimizzata
-        sb.append(speedX).append(',').append(angleToTrackAxis).append(',').append(trackPosition).append(',');
-        
-        // Advanced sensors - concatenazione ottimizzata
-        sb.append(lateralSpeed).append(',').append(currentLapTime).append(',').append(damage).append(',')
-          .append(distanceFromStartLine).append(',').append(distanceRaced).append(',').append(fuelLevel).append(',')
-          .append(lastLapTime).append(',').append(RPM).append(',').append(zSpeed).append(',').append(z).append(',');
-        
-        // Focus sensors (5) - accesso diretto
-        sb.append(focusSensors[0]).append(',').append(focusSensors[1]).append(',').append(focusSensors[2]).append(',')
-          .append(focusSensors[3]).append(',').append(focusSensors[4]).append(',');
-        
-        // Wheel sensors (4) - accesso diretto
-        sb.append(wheelSpinVelocity[0]).append(',').append(wheelSpinVelocity[1]).append(',')
-          .append(wheelSpinVelocity[2]).append(',').append(wheelSpinVelocity[3]).append(',');
-        
-        // Actions - concatenazione finale
-        sb.append(targetSpeed).append(',').append(steering).append(',').append(acceleration).append(',')
-          .append(brake).append(',').append(gear).append(',').append(clutch);
-        
-        return sb.toString();
-    }
-    
-    /**
-     * Converte in formato CSV standard ottimizzato per modello di guida autonoma
-     * Sensori selezionati: track alternati, posizione/velocità essenziali, azioni principali
-     */
-    public String toStandardCSV() {
-        StringBuilder sb = STANDARD_CSV_BUILDER_POOL.get();
-        sb.setLength(0); // Reset del buffer riutilizzabile
-        
-        // Track sensors alternati (0,2,4,6,8,10,12,14,16,18) per copertura ottimale
-        sb.append(trackSensors[0]).append(',').append(trackSensors[2]).append(',').append(trackSensors[4]).append(',')
-          .append(trackSensors[6]).append(',').append(trackSensors[8]).append(',').append(trackSensors[10]).append(',')
-          .append(trackSensors[12]).append(',').append(trackSensors[14]).append(',').append(trackSensors[16]).append(',')
-          .append(trackSensors[18]).append(',');
-        
-        // Sensori di posizione e velocità essenziali
-        sb.append(speedX).append(',').append(angleToTrackAxis).append(',').append(trackPosition).append(',')
-          .append(distanceFromStartLine).append(',');
-        
-        // Azioni di controllo principali
-        sb.append(steering).append(',').append(acceleration).append(',').append(brake);
-        
-        return sb.toString();
-    }
-    
-    /**
-     * Carica da formato CSV
-     */
-    public static EnhancedDataPoint fromCSV(String csv) {
-        String[] parts = csv.split(",");
-        EnhancedDataPoint point = new EnhancedDataPoint();
-        
-        int index = 0;
-        
-        // Track sensors (19)
-        point.trackSensors = new double[19];
-        for (int i = 0; i < 19; i++) {
-            point.trackSensors[i] = Double.parseDouble(parts[index++]);
-        }
-        
-        // Base sensors
-        point.speedX = Double.parseDouble(parts[index++]);
-        point.angleToTrackAxis = Double.parseDouble(parts[index++]);
-        point.trackPosition = Double.parseDouble(parts[index++]);
-        
-        // Advanced sensors
-        point.lateralSpeed = Double.parseDouble(parts[index++]);
-        point.currentLapTime = Double.parseDouble(parts[index++]);
-        point.damage = Double.parseDouble(parts[index++]);
-        point.distanceFromStartLine = Double.parseDouble(parts[index++]);
-        point.distanceRaced = Double.parseDouble(parts[index++]);
-        point.fuelLevel = Double.parseDouble(parts[index++]);
-        point.lastLapTime = Double.parseDouble(parts[index++]);
-        point.RPM = Double.parseDouble(parts[index++]);
-        point.zSpeed = Double.parseDouble(parts[index++]);
-        point.z = Double.parseDouble(parts[index++]);
-        
-        // Focus sensors (5)
-        point.focusSensors = new double[5];
-        for (int i = 0; i < 5; i++) {
-            point.focusSensors[i] = Double.parseDouble(parts[index++]);
-        }
-        
-        // Wheel sensors (4)
-        point.wheelSpinVelocity = new double[4];
-        for (int i = 0; i < 4; i++) {
-            point.wheelSpinVelocity[i] = Double.parseDouble(parts[index++]);
-        }
-        
-        // Actions
-        point.targetSpeed = Double.parseDouble(parts[index++]);
-        point.steering = Double.parseDouble(parts[index++]);
-        point.acceleration = Double.parseDouble(parts[index++]);
-        point.brake = Double.parseDouble(parts[index++]);
-        point.gear = Integer.parseInt(parts[index++]);
-        point.clutch = Double.parseDouble(parts[index]);
-        
-        return point;
-    }
-    
-    // Costruttore vuoto per fromCSV
-    private EnhancedDataPoint() {}
-}
\ No newline at end of file
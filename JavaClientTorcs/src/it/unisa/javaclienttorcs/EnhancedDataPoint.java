@@ -0,0 +1,301 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+
+/**
+ * Classe per rappresentare un punto dati completo
+ */
+class EnhancedDataPoint {
+    // Sensori track (19)
+    double[] trackSensors;
+    
+    // Sensori base
+    double speedX;
+    double angleToTrackAxis;
+    double trackPosition;
+    
+    // Sensori avanzati
+    double lateralSpeed;
+    double currentLapTime;
+    double damage;
+    double distanceFromStartLine;
+    double distanceRaced;
+    double fuelLevel;
+    double lastLapTime;
+    double RPM;
+    double zSpeed;
+    double z;
+    
+    // Sensori focus
+    double[] focusSensors;
+    
+    // Sensori ruote
+    double[] wheelSpinVelocity;
+    
+    // Azioni
+    double targetSpeed;
+    double steering;
+    double acceleration;
+    double brake;
+    int gear;
+    double clutch;
+    
+    public EnhancedDataPoint(SensorModel sensors, Action action, double targetSpeed) {
+        // Track sensors
+        this.trackSensors = sensors.getTrackEdgeSensors().clone();
+        
+        // Base sensors
+        this.speedX = sensors.getSpeed();
+        this.angleToTrackAxis = sensors.getAngleToTrackAxis();
+        this.trackPosition = sensors.getTrackPosition();
+        
+        // Advanced sensors (excluding opponent sensors)
+        this.lateralSpeed = sensors.getLateralSpeed();
+        this.currentLapTime = sensors.getCurrentLapTime();
+        this.damage = sensors.getDamage();
+        this.distanceFromStartLine = sensors.getDistanceFromStartLine();
+        this.distanceRaced = sensors.getDistanceRaced();
+        this.fuelLevel = sensors.getFuelLevel();
+        this.lastLapTime = sensors.getLastLapTime();
+        this.RPM = sensors.getRPM();
+        this.zSpeed = sensors.getZSpeed();
+        this.z = sensors.getZ();
+        
+        // Focus sensors
+        this.focusSensors = sensors.getFocusSensors();
+        
+        // Wheel sensors
+        this.wheelSpinVelocity = sensors.getWheelSpinVelocity();
+        
+        // Actions
+        this.targetSpeed = targetSpeed;
+        this.steering = action.steering;
+        this.acceleration = action.accelerate;
+        this.brake = action.brake;
+        this.gear = action.gear;
+        this.clutch = action.clutch;
+    }
+    
+    /** Valori di un record nell'ordine delle colonne di {@link #toCSV()} */
+    static final int VALUE_COUNT = 47;
+
+    /** Posizione della marcia, l'unico valore intero del record */
+    private static final int GEAR_INDEX = 45;
+    
+    /**
+     * Copia i valori di un tick in un array, nell'ordine delle colonne di {@link #toCSV()},
+     * senza allocare: è il formato dei record della coda di {@link EnhancedDataCollector}.
+     *
+     * @param sensors Modello sensoriale del tick
+     * @param action Azione eseguita dal driver
+     * @param targetSpeed Velocità target del tick
+     * @param values Array di destinazione
+     * @param offset Posizione del primo valore
+     */
+    static void copyValues(SensorModel sensors, Action action, double targetSpeed, double[] values, int offset) {
+        System.arraycopy(sensors.getTrackEdgeSensors(), 0, values, offset, 19);
+        values[offset + 19] = sensors.getSpeed();
+        values[offset + 20] = sensors.getAngleToTrackAxis();
+        values[offset + 21] = sensors.getTrackPosition();
+        values[offset + 22] = sensors.getLateralSpeed();
+        values[offset + 23] = sensors.getCurrentLapTime();
+        values[offset + 24] = sensors.getDamage();
+        values[offset + 25] = sensors.getDistanceFromStartLine();
+        values[offset + 26] = sensors.getDistanceRaced();
+        values[offset + 27] = sensors.getFuelLevel();
+        values[offset + 28] = sensors.getLastLapTime();
+        values[offset + 29] = sensors.getRPM();
+        values[offset + 30] = sensors.getZSpeed();
+        values[offset + 31] = sensors.getZ();
+        System.arraycopy(sensors.getFocusSensors(), 0, values, offset + 32, 5);
+        System.arraycopy(sensors.getWheelSpinVelocity(), 0, values, offset + 37, 4);
+        values[offset + 41] = targetSpeed;
+        values[offset + 42] = action.steering;
+        values[offset + 43] = action.accelerate;
+        values[offset + 44] = action.brake;
+        values[offset + GEAR_INDEX] = action.gear;
+        values[offset + 46] = action.clutch;
+    }
+    
+    /**
+     * Formatta un record copiato con {@link #copyValues} come una riga di {@link #toCSV()}.
+     *
+     * @param sb Buffer a cui aggiungere la riga (senza terminatore)
+     * @param values Array dei record
+     * @param offset Posizione del primo valore del record
+     */
+    static void appendCSV(StringBuilder sb, double[] values, int offset) {
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (i == GEAR_INDEX) {
+                sb.append((int) values[offset + i]);
+            } else {
+                sb.append(values[offset + i]);
+            }
+        }
+    }
+    
+    // Pool di StringBuilder per ottimizzare allocazioni - utilizza IOConfig
+    private static final ThreadLocal<StringBuilder> CSV_BUILDER_POOL = 
+        ThreadLocal.withInitial(() -> new StringBuilder(IOConfig.STRINGBUILDER_CSV_FULL));
+    
+    private static final ThreadLocal<StringBuilder> STANDARD_CSV_BUILDER_POOL = 
+        ThreadLocal.withInitial(() -> new StringBuilder(IOConfig.STRINGBUILDER_CSV_STANDARD));
+    
+    /**
+     * Converte in formato CSV completo (ottimizzato)
+     */
+    public String toCSV() {
+        StringBuilder sb = CSV_BUILDER_POOL.get();
+        sb.setLength(0); // Reset del buffer riutilizzabile
+        
+        // Track sensors (19) - accesso diretto per performance
+        sb.append(trackSensors[0]).append(',').append(trackSensors[1]).append(',').append(trackSensors[2]).append(',')
+          .append(trackSensors[3]).append(',').append(trackSensors[4]).append(',').append(trackSensors[5]).append(',')
+          .append(trackSensors[6]).append(',').append(trackSensors[7]).append(',').append(trackSensors[8]).append(',')
+          .append(trackSensors[9]).append(',').append(trackSensors[10]).append(',').append(trackSensors[11]).append(',')
+          .append(trackSensors[12]).append(',').append(trackSensors[13]).append(',').append(trackSensors[14]).append(',')
+          .append(trackSensors[15]).append(',').append(trackSensors[16]).append(',').append(trackSensors[17]).append(',')
+          .append(trackSensors[18]).append(',');
+        
+        // Base sensors - concatenazione ottimizzata
+        sb.append(speedX).append(',').append(angleToTrackAxis).append(',').append(trackPosition).append(',');
+        
+        // Advanced sensors - concatenazione ottimizzata
+        sb.append(lateralSpeed).append(',').append(currentLapTime).append(',').append(damage).append(',')
+          .append(distanceFromStartLine).append(',').append(distanceRaced).append(',').append(fuelLevel).append(',')
+          .append(lastLapTime).append(',').append(RPM).append(',').append(zSpeed).append(',').append(z).append(',');
+        
+        // Focus sensors (5) - accesso diretto
+        sb.append(focusSensors[0]).append(',').append(focusSensors[1]).append(',').append(focusSensors[2]).append(',')
+          .append(focusSensors[3]).append(',').append(focusSensors[4]).append(',');
+        
+        // Wheel sensors (4) - accesso diretto
+        sb.append(wheelSpinVelocity[0]).append(',').append(wheelSpinVelocity[1]).append(',')
+          .append(wheelSpinVelocity[2]).append(',').append(wheelSpinVelocity[3]).append(',');
+        
+        // Actions - concatenazione finale
+        sb.append(targetSpeed).append(',').append(steering).append(',').append(acceleration).append(',')
+          .append(brake).append(',').append(gear).append(',').append(clutch);
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Converte in formato CSV standard ottimizzato per modello di guida autonoma
+     * Sensori selezionati: track alternati, posizione/velocità essenziali, azioni principali
+     */
+    public String toStandardCSV() {
+        StringBuilder sb = STANDARD_CSV_BUILDER_POOL.get();
+        sb.setLength(0); // Reset del buffer riutilizzabile
+        
+        // Track sensors alternati (0,2,4,6,8,10,12,14,16,18) per copertura ottimale
+        sb.append(trackSensors[0]).append(',').append(trackSensors[2]).append(',').append(trackSensors[4]).append(',')
+          .append(trackSensors[6]).append(',').append(trackSensors[8]).append(',').append(trackSensors[10]).append(',')
+          .append(trackSensors[12]).append(',').append(trackSensors[14]).append(',').append(trackSensors[16]).append(',')
+          .append(trackSensors[18]).append(',');
+        
+        // Sensori di posizione e velocità essenziali
+        sb.append(speedX).append(',').append(angleToTrackAxis).append(',').append(trackPosition).append(',')
+          .append(distanceFromStartLine).append(',');
+        
+        // Azioni di controllo principali
+        sb.append(steering).append(',').append(acceleration).append(',').append(brake);
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Crea un punto da un record copiato con {@link #copyValues} o letto da una registrazione binaria.
+     *
+     * @param values Array dei record
+     * @param offset Posizione del primo valore del record
+     * @return Punto dati
+     */
+    static EnhancedDataPoint fromValues(double[] values, int offset) {
+        EnhancedDataPoint point = new EnhancedDataPoint();
+        point.trackSensors = Arrays.copyOfRange(values, offset, offset + 19);
+        point.speedX = values[offset + 19];
+        point.angleToTrackAxis = values[offset + 20];
+        point.trackPosition = values[offset + 21];
+        point.lateralSpeed = values[offset + 22];
+        point.currentLapTime = values[offset + 23];
+        point.damage = values[offset + 24];
+        point.distanceFromStartLine = values[offset + 25];
+        point.distanceRaced = values[offset + 26];
+        point.fuelLevel = values[offset + 27];
+        point.lastLapTime = values[offset + 28];
+        point.RPM = values[offset + 29];
+        point.zSpeed = values[offset + 30];
+        point.z = values[offset + 31];
+        point.focusSensors = Arrays.copyOfRange(values, offset + 32, offset + 37);
+        point.wheelSpinVelocity = Arrays.copyOfRange(values, offset + 37, offset + 41);
+        point.targetSpeed = values[offset + 41];
+        point.steering = values[offset + 42];
+        point.acceleration = values[offset + 43];
+        point.brake = values[offset + 44];
+        point.gear = (int) values[offset + GEAR_INDEX];
+        point.clutch = values[offset + 46];
+        return point;
+    }
+    
+    /**
+     * Carica da formato CSV
+     */
+    public static EnhancedDataPoint fromCSV(String csv) {
+        String[] parts = csv.split(",");
+        EnhancedDataPoint point = new EnhancedDataPoint();
+        
+        int index = 0;
+        
+        // Track sensors (19)
+        point.trackSensors = new double[19];
+        for (int i = 0; i < 19; i++) {
+            point.trackSensors[i] = Double.parseDouble(parts[index++]);
+        }
+        
+        // Base sensors
+        point.speedX = Double.parseDouble(parts[index++]);
+        point.angleToTrackAxis = Double.parseDouble(parts[index++]);
+        point.trackPosition = Double.parseDouble(parts[index++]);
+        
+        // Advanced sensors
+        point.lateralSpeed = Double.parseDouble(parts[index++]);
+        point.currentLapTime = Double.parseDouble(parts[index++]);
+        point.damage = Double.parseDouble(parts[index++]);
+        point.distanceFromStartLine = Double.parseDouble(parts[index++]);
+        point.distanceRaced = Double.parseDouble(parts[index++]);
+        point.fuelLevel = Double.parseDouble(parts[index++]);
+        point.lastLapTime = Double.parseDouble(parts[index++]);
+        point.RPM = Double.parseDouble(parts[index++]);
+        point.zSpeed = Double.parseDouble(parts[index++]);
+        point.z = Double.parseDouble(parts[index++]);
+        
+        // Focus sensors (5)
+        point.focusSensors = new double[5];
+        for (int i = 0; i < 5; i++) {
+            point.focusSensors[i] = Double.parseDouble(parts[index++]);
+        }
+        
+        // Wheel sensors (4)
+        point.wheelSpinVelocity = new double[4];
+        for (int i = 0; i < 4; i++) {
+            point.wheelSpinVelocity[i] = Double.parseDouble(parts[index++]);
+        }
+        
+        // Actions
+        point.targetSpeed = Double.parseDouble(parts[index++]);
+        point.steering = Double.parseDouble(parts[index++]);
+        point.acceleration = Double.parseDouble(parts[index++]);
+        point.brake = Double.parseDouble(parts[index++]);
+        point.gear = Integer.parseInt(parts[index++]);
+        point.clutch = Double.parseDouble(parts[index]);
+        
+        return point;
+    }
+    
+    // Costruttore vuoto per fromCSV
+    private EnhancedDataPoint() {}
+}
@@ -0,0 +1,341 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+
+/**
+ * Normalizzazione delle features come trasformazione affine con limiti per feature:
+ * {@code clamp(valore * scale + offset, lower, upper)}.
+ * I vettori vengono calcolati una volta (dai range fissi dei sensori o dalle statistiche del dataset)
+ * e memorizzati con l'indice: {@link KDTreeIndex} normalizza i dati di training durante la copia
+ * nelle proprie coordinate e le query durante il calcolo della distanza dalla radice.
+ * La trasformazione è monotona non decrescente su ogni feature, quindi preserva l'ordinamento
+ * usato per costruire l'albero.
+ */
+public final class FeatureNormalizer {
+
+    /**
+     * Modalità di calcolo dei parametri di normalizzazione.
+     */
+    public enum Mode {
+        /** Range fissi dei sensori TORCS mappati in [0, 10] (comportamento storico dei driver) */
+        FIXED,
+        /** Minimo e massimo del dataset mappati in [0, 10], query limitate allo stesso intervallo */
+        MINMAX,
+        /** Media e deviazione standard del dataset (z-score), senza limiti */
+        ZSCORE;
+
+        /**
+         * Restituisce la modalità corrispondente al nome indicato (case insensitive).
+         *
+         * @param name Nome della modalità (fixed, minmax, zscore)
+         * @return Modalità corrispondente
+         * @throws IllegalArgumentException Se il nome non corrisponde a nessuna modalità
+         */
+        public static Mode fromName(String name) {
+            return switch (name.toLowerCase()) {
+                case "fixed" -> FIXED;
+                case "minmax", "min-max" -> MINMAX;
+                case "zscore", "z-score" -> ZSCORE;
+                default -> throw new IllegalArgumentException("Normalizzazione non supportata: " + name);
+            };
+        }
+    }
+
+    /** Estremo superiore dell'intervallo normalizzato per FIXED e MINMAX */
+    private static final double RANGE = 10.0;
+
+    /** Distanza massima misurata dai sensori track (m) */
+    private static final double TRACK_RANGE = 200.0;
+
+    /** Velocità massima considerata (km/h) */
+    private static final double MAX_SPEED = 288.0;
+
+    /** Lunghezza della pista di riferimento (m) */
+    private static final double TRACK_LENGTH = 5784.10;
+
+    private final Mode mode;
+    private final double[] scale;
+    private final double[] offset;
+    private final double[] lower;
+    private final double[] upper;
+
+    private FeatureNormalizer(Mode mode, double[] scale, double[] offset, double[] lower, double[] upper) {
+        this.mode = mode;
+        this.scale = scale;
+        this.offset = offset;
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * Calcola la normalizzazione della modalità indicata.
+     *
+     * @param mode Modalità di normalizzazione
+     * @param rows Features grezze del dataset (usate da MINMAX e ZSCORE)
+     * @param dimensions Numero di features
+     * @return Normalizzazione calcolata
+     */
+    public static FeatureNormalizer fit(Mode mode, double[][] rows, int dimensions) {
+        return switch (mode) {
+            case FIXED -> fixedRanges(dimensions);
+            case MINMAX -> minMax(rows, dimensions);
+            case ZSCORE -> zScore(rows, dimensions);
+        };
+    }
+
+    /**
+     * Normalizzazione con i range fissi dei sensori, in [0, 10]:
+     * - Track sensors (0-9): [0, 200] -> [0, 10] (valori negativi fuori pista -> 0)
+     * - speedX (10): [0, 288] -> [0, 10]
+     * - angleToTrackAxis (11): [-π, +π] -> [0, 10]
+     * - trackPosition (12): [-1, +1] -> [0, 10]
+     * - distanceFromStartLine (13): [0, 5784.10] -> [0, 10]
+     * Eventuali features oltre la quattordicesima restano invariate.
+     *
+     * @param dimensions Numero di features
+     * @return Normalizzazione a range fissi
+     */
+    public static FeatureNormalizer fixedRanges(int dimensions) {
+        FeatureNormalizer n = identity(Mode.FIXED, dimensions);
+        for (int i = 0; i < dimensions && i < KNNDataset.FEATURE_COUNT; i++) {
+            n.lower[i] = 0.0;
+            n.upper[i] = RANGE;
+            if (i < 10) {
+                n.scale[i] = RANGE / TRACK_RANGE;
+            } else if (i == 10) {
+                n.scale[i] = RANGE / MAX_SPEED;
+            } else if (i == 11) {
+                n.scale[i] = RANGE / (2 * Math.PI);
+                n.offset[i] = RANGE / 2;
+            } else if (i == 12) {
+                n.scale[i] = RANGE / 2;
+                n.offset[i] = RANGE / 2;
+            } else {
+                n.scale[i] = RANGE / TRACK_LENGTH;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Normalizzazione min-max sui dati: ogni feature viene mappata in [0, 10] dal proprio
+     * intervallo nel dataset. Le features costanti vengono annullate.
+     *
+     * @param rows Features grezze del dataset
+     * @param dimensions Numero di features
+     * @return Normalizzazione min-max
+     */
+    public static FeatureNormalizer minMax(double[][] rows, int dimensions) {
+        FeatureNormalizer n = identity(Mode.MINMAX, dimensions);
+        if (rows.length == 0) {
+            return n;
+        }
+
+        double[] min = new double[dimensions];
+        double[] max = new double[dimensions];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (double[] row : rows) {
+            for (int i = 0; i < dimensions; i++) {
+                min[i] = Math.min(min[i], row[i]);
+                max[i] = Math.max(max[i], row[i]);
+            }
+        }
+
+        for (int i = 0; i < dimensions; i++) {
+            double range = max[i] - min[i];
+            n.scale[i] = range > 0 ? RANGE / range : 0.0;
+            n.offset[i] = -min[i] * n.scale[i];
+            n.lower[i] = 0.0;
+            n.upper[i] = RANGE;
+        }
+        return n;
+    }
+
+    /**
+     * Normalizzazione z-score sui dati: ogni feature viene centrata sulla media e divisa per la
+     * deviazione standard del dataset. Le features costanti vengono annullate.
+     *
+     * @param rows Features grezze del dataset
+     * @param dimensions Numero di features
+     * @return Normalizzazione z-score
+     */
+    public static FeatureNormalizer zScore(double[][] rows, int dimensions) {
+        FeatureNormalizer n = identity(Mode.ZSCORE, dimensions);
+        if (rows.length == 0) {
+            return n;
+        }
+
+        // Algoritmo di Welford: stabile anche con medie grandi rispetto alla varianza (distFromStart)
+        double[] mean = new double[dimensions];
+        double[] m2 = new double[dimensions];
+        int count = 0;
+        for (double[] row : rows) {
+            count++;
+            for (int i = 0; i < dimensions; i++) {
+                double delta = row[i] - mean[i];
+                mean[i] += delta / count;
+                m2[i] += delta * (row[i] - mean[i]);
+            }
+        }
+
+        for (int i = 0; i < dimensions; i++) {
+            double std = Math.sqrt(m2[i] / count);
+            n.scale[i] = std > 0 ? 1.0 / std : 0.0;
+            n.offset[i] = -mean[i] * n.scale[i];
+        }
+        return n;
+    }
+
+    private static FeatureNormalizer identity(Mode mode, int dimensions) {
+        double[] scale = new double[dimensions];
+        double[] lower = new double[dimensions];
+        double[] upper = new double[dimensions];
+        Arrays.fill(scale, 1.0);
+        Arrays.fill(lower, Double.NEGATIVE_INFINITY);
+        Arrays.fill(upper, Double.POSITIVE_INFINITY);
+        return new FeatureNormalizer(mode, scale, new double[dimensions], lower, upper);
+    }
+
+    /**
+     * Restituisce una trasformazione equivalente seguita da un fattore di scala per feature.
+     * Usato dall'indice per incorporare i pesi della metrica pesata nella stessa passata.
+     *
+     * @param factors Fattori di scala non negativi
+     * @return Nuova normalizzazione
+     */
+    FeatureNormalizer thenScale(double[] factors) {
+        double[] s = scale.clone();
+        double[] o = offset.clone();
+        double[] lo = lower.clone();
+        double[] hi = upper.clone();
+        for (int i = 0; i < s.length; i++) {
+            if (factors[i] == 0) {
+                // Feature esclusa: evita 0 * infinito nei limiti
+                s[i] = o[i] = lo[i] = hi[i] = 0.0;
+                continue;
+            }
+            s[i] *= factors[i];
+            o[i] *= factors[i];
+            lo[i] *= factors[i];
+            hi[i] *= factors[i];
+        }
+        return new FeatureNormalizer(mode, s, o, lo, hi);
+    }
+
+    /**
+     * Combina normalizzazione e pesi della metrica nella trasformazione applicata da un indice
+     * alle coordinate memorizzate e alle query.
+     *
+     * @param normalizer Normalizzazione, null per valori grezzi
+     * @param kernel Metrica dell'indice
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param dimensions Numero di features dei punti, -1 se l'indice è vuoto
+     * @return Trasformazione complessiva, null se l'indice usa i valori grezzi
+     */
+    static FeatureNormalizer forIndex(FeatureNormalizer normalizer, DistanceKernel kernel, double[] weights,
+                                      int dimensions) {
+        if (normalizer != null && dimensions >= 0 && normalizer.getDimensions() != dimensions) {
+            throw new IllegalArgumentException("La normalizzazione gestisce " + normalizer.getDimensions()
+                + " features invece di " + dimensions);
+        }
+        if (!kernel.isWeighted()) {
+            return normalizer;
+        }
+        if (weights == null || (dimensions >= 0 && weights.length != dimensions)) {
+            throw new IllegalArgumentException("La metrica pesata richiede un peso per ognuna delle "
+                + Math.max(dimensions, 0) + " features");
+        }
+        double[] factors = DistanceKernel.scaleFactors(weights);
+        return normalizer != null ? normalizer.thenScale(factors) : scaling(factors);
+    }
+
+    /**
+     * Trasformazione di sola scala (senza normalizzazione), per la metrica pesata su dati grezzi.
+     *
+     * @param factors Fattori di scala non negativi
+     * @return Trasformazione di scala
+     */
+    static FeatureNormalizer scaling(double[] factors) {
+        return identity(Mode.FIXED, factors.length).thenScale(factors);
+    }
+
+    /**
+     * Restituisce i vettori della trasformazione (per la serializzazione dell'indice).
+     *
+     * @return Array {scale, offset, lower, upper} (non copiati)
+     */
+    double[][] vectors() {
+        return new double[][] {scale, offset, lower, upper};
+    }
+
+    /**
+     * Ricostruisce una normalizzazione dai vettori restituiti da {@link #vectors()}.
+     *
+     * @param mode Modalità di normalizzazione
+     * @param vectors Array {scale, offset, lower, upper}
+     * @return Normalizzazione equivalente
+     */
+    static FeatureNormalizer fromVectors(Mode mode, double[][] vectors) {
+        return new FeatureNormalizer(mode, vectors[0], vectors[1], vectors[2], vectors[3]);
+    }
+
+    /**
+     * Normalizza il valore di una feature.
+     *
+     * @param i Indice della feature
+     * @param value Valore grezzo
+     * @return Valore normalizzato
+     */
+    double apply(int i, double value) {
+        double x = value * scale[i] + offset[i];
+        return x < lower[i] ? lower[i] : (x > upper[i] ? upper[i] : x);
+    }
+
+    /**
+     * Normalizza un vettore di features nel buffer indicato.
+     *
+     * @param features Features grezze
+     * @param out Buffer di output (stessa lunghezza delle features)
+     * @return Il buffer di output
+     */
+    public double[] apply(double[] features, double[] out) {
+        for (int i = 0; i < scale.length; i++) {
+            out[i] = apply(i, features[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Normalizza un vettore di features in un nuovo array.
+     *
+     * @param features Features grezze
+     * @return Features normalizzate
+     */
+    public double[] apply(double[] features) {
+        return apply(features, new double[scale.length]);
+    }
+
+    /**
+     * Restituisce la modalità con cui è stata calcolata la normalizzazione.
+     *
+     * @return Modalità di normalizzazione
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Restituisce il numero di features gestite.
+     *
+     * @return Numero di features
+     */
+    public int getDimensions() {
+        return scale.length;
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureNormalizer{mode=" + mode + ", dimensions=" + scale.length + "}";
+    }
+}
@@ -681,6 +681,24 @@ public class HumanController extends Controller {
         return false;
     }
     
+    /**
+     * Imposta il file della registrazione enhanced: con l'estensione .tlm è in formato binario.
+     *
+     * @param path Percorso del file CSV o binario
+     */
+    public void setEnhancedFile(String path) {
+        dataManager.setEnhancedFilePath(path);
+    }
+    
+    /**
+     * Imposta il comportamento della raccolta dati quando la coda verso il disco è piena.
+     *
+     * @param backpressure Scarta i record ({@code DROP}) o attende uno slot libero ({@code BLOCK})
+     */
+    public void setBackpressure(EnhancedDataCollector.Backpressure backpressure) {
+        dataManager.setBackpressure(backpressure);
+    }
+    
     public void setCollectingMode(boolean enabled) {
         this.collectingData = enabled;
         if (enabled) {
@@ -37,9 +37,10 @@ public final class IOConfig {
     public static final int BATCH_WRITE_SIZE = 100;
     
     /**
-     * Dimensione massima lista in memoria per evitare memory leak
+     * Tick recenti mantenuti in memoria da EnhancedDataCollector ({@link TelemetryWindow}):
+     * circa 20 secondi di guida a 50 tick al secondo
      */
-    public static final int MAX_IN_MEMORY_RECORDS = 10000;
+    public static final int RECENT_TICKS_WINDOW = 1024;
     
     // ========== CONFIGURAZIONE NETWORK I/O ==========
     
@@ -117,7 +118,7 @@ public final class IOConfig {
         sb.append("UDP Buffers: ").append(UDP_SOCKET_SEND_BUFFER).append("/")
           .append(UDP_SOCKET_RECEIVE_BUFFER).append(" byte\n");
         sb.append("Performance Stats: ").append(ENABLE_PERFORMANCE_STATS ? "Enabled" : "Disabled").append("\n");
-        sb.append("Max Memory Records: ").append(MAX_IN_MEMORY_RECORDS).append("\n");
+        sb.append("Recent Ticks Window: ").append(RECENT_TICKS_WINDOW).append("\n");
         return sb.toString();
     }
     
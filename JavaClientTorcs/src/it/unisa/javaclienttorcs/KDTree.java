@@ -2,180 +2,211 @@ package it.unisa.javaclienttorcs;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implementazione di un KD-Tree per la ricerca efficiente dei K vicini più prossimi.
- * Supporta solo distanza Euclidea.
+ * La metrica di distanza è scelta alla costruzione (Euclidea di default, vedi {@link DistanceKernel}).
+ * La struttura dell'albero è delegata a un {@link NeighborIndex} ({@link KDTreeIndex} su array primitivi
+ * o {@link OffHeapKDTreeIndex} in memoria nativa, oppure l'indice approssimato {@link LSHIndex});
+ * questa classe associa gli indici restituiti alle azioni dei punti di training.
+ * Dopo la costruzione le features esistono solo nell'indice (normalizzate ed eventualmente proiettate
+ * o fuori heap): dei punti restano le sole azioni, in un array piatto, e i {@link DataPoint}
+ * restituiti dalle ricerche non contengono features.
  */
 public class KDTree {
     
-    private KDNode root;
+    /** Azioni per punto nell'array piatto delle azioni: sterzo, accelerazione, freno */
+    private static final int TARGETS = 3;
+    private static final double[] NO_FEATURES = new double[0];
+    
+    // [punto * TARGETS + azione]: sterzo, accelerazione e freno dei punti di training
+    private final double[] targets;
+    private final NeighborIndex index;
     private int dimensions;
     
     /**
-     * Nodo del KD-Tree
+     * Costruttore del KD-Tree con distanza Euclidea
+     * @param dataPoints Lista dei punti dati
      */
-    private static class KDNode {
-        DataPoint dataPoint;
-        KDNode left;
-        KDNode right;
-        int splitDimension;
-        
-        KDNode(DataPoint dataPoint, int splitDimension) {
-            this.dataPoint = dataPoint;
-            this.splitDimension = splitDimension;
-        }
+    public KDTree(List<DataPoint> dataPoints) {
+        this(dataPoints, DistanceKernel.SQUARED_L2, null);
     }
     
     /**
-     * Costruttore del KD-Tree
+     * Costruttore del KD-Tree con metrica personalizzata
      * @param dataPoints Lista dei punti dati
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
      */
-    public KDTree(List<DataPoint> dataPoints) {
-        if (!dataPoints.isEmpty()) {
-            this.dimensions = dataPoints.get(0).features.length;
-            this.root = buildTree(new ArrayList<>(dataPoints), 0);
-        }
+    public KDTree(List<DataPoint> dataPoints, DistanceKernel kernel, double[] weights) {
+        this(dataPoints, kernel, weights, null);
+    }
+    
+    /**
+     * Costruttore del KD-Tree con metrica e normalizzazione memorizzata nell'indice.
+     * I punti mantengono le features grezze: i parametri di normalizzazione vengono calcolati
+     * sui punti e l'indice conserva l'unica copia normalizzata. Le query usano features grezze.
+     * @param dataPoints Lista dei punti dati (features grezze)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     */
+    public KDTree(List<DataPoint> dataPoints, DistanceKernel kernel, double[] weights,
+                  FeatureNormalizer.Mode normalization) {
+        this(dataPoints, kernel, weights, normalization, false);
+    }
+    
+    /**
+     * Costruttore del KD-Tree con scelta della memoria dell'indice.
+     * Fuori heap coordinate e nodi non pesano sul garbage collector (utile per dataset molto grandi).
+     * @param dataPoints Lista dei punti dati (features grezze)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     * @param offHeap true per memorizzare l'indice in memoria nativa ({@link OffHeapKDTreeIndex})
+     */
+    public KDTree(List<DataPoint> dataPoints, DistanceKernel kernel, double[] weights,
+                  FeatureNormalizer.Mode normalization, boolean offHeap) {
+        this(dataPoints, kernel, weights, normalization, SplitStrategy.ROUND_ROBIN, offHeap);
+    }
+    
+    /**
+     * Costruttore del KD-Tree con scelta della strategia di split e della memoria dell'indice.
+     * @param dataPoints Lista dei punti dati (features grezze)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     * @param offHeap true per memorizzare l'indice in memoria nativa ({@link OffHeapKDTreeIndex})
+     */
+    public KDTree(List<DataPoint> dataPoints, DistanceKernel kernel, double[] weights,
+                  FeatureNormalizer.Mode normalization, SplitStrategy strategy, boolean offHeap) {
+        this(dataPoints, kernel, weights, normalization, strategy, 0, false, offHeap);
+    }
+    
+    /**
+     * Costruttore del KD-Tree con proiezione PCA delle features ({@link ProjectedIndex}).
+     * La proiezione è calcolata sui punti (dopo la normalizzazione) e memorizzata con l'indice;
+     * le query restano features grezze.
+     * @param dataPoints Lista dei punti dati (features grezze)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     * @param pcaComponents Componenti principali da mantenere, 0 per non proiettare
+     * @param pcaWhiten true per dividere ogni componente per la propria deviazione standard
+     * @param offHeap true per memorizzare l'indice in memoria nativa ({@link OffHeapKDTreeIndex})
+     */
+    public KDTree(List<DataPoint> dataPoints, DistanceKernel kernel, double[] weights,
+                  FeatureNormalizer.Mode normalization, SplitStrategy strategy,
+                  int pcaComponents, boolean pcaWhiten, boolean offHeap) {
+        this(dataPoints, kernel, weights, normalization, strategy, pcaComponents, pcaWhiten, offHeap, null);
     }
-
     
     /**
-     * Costruisce ricorsivamente il KD-Tree
-     * @param points Lista dei punti da inserire
-     * @param depth Profondità corrente (determina la dimensione di split)
-     * @return Il nodo radice del sottoalbero
+     * Costruttore con l'indice approssimato {@link LSHIndex} al posto del KD-tree esatto,
+     * per dataset registrati molto grandi. I vicini restituiti possono non essere i K più prossimi.
+     * @param dataPoints Lista dei punti dati (features grezze)
+     * @param kernel Metrica di distanza (Euclidea, Euclidea pesata o Manhattan)
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     * @param lsh Parametri dell'indice LSH
      */
-    private KDNode buildTree(List<DataPoint> points, int depth) {
-        if (points.isEmpty()) {
-            return null;
+    public KDTree(List<DataPoint> dataPoints, DistanceKernel kernel, double[] weights,
+                  FeatureNormalizer.Mode normalization, LSHParameters lsh) {
+        this(dataPoints, kernel, weights, normalization, SplitStrategy.ROUND_ROBIN, 0, false, false, lsh);
+    }
+    
+    private KDTree(List<DataPoint> dataPoints, DistanceKernel kernel, double[] weights,
+                   FeatureNormalizer.Mode normalization, SplitStrategy strategy,
+                   int pcaComponents, boolean pcaWhiten, boolean offHeap, LSHParameters lsh) {
+        double[][] features = new double[dataPoints.size()][];
+        this.targets = new double[features.length * TARGETS];
+        for (int i = 0; i < features.length; i++) {
+            DataPoint point = dataPoints.get(i);
+            features[i] = point.features;
+            targets[i * TARGETS] = point.steering;
+            targets[i * TARGETS + 1] = point.acceleration;
+            targets[i * TARGETS + 2] = point.brake;
         }
         
-        if (points.size() == 1) {
-            return new KDNode(points.get(0), depth % dimensions);
+        if (!dataPoints.isEmpty()) {
+            this.dimensions = dataPoints.get(0).features.length;
         }
-        
-        // Determina la dimensione su cui fare lo split
-        int splitDim = depth % dimensions;
-        
-        // Ordina i punti sulla dimensione di split
-        points.sort((a, b) -> Double.compare(a.features[splitDim], b.features[splitDim]));
-        
-        // Trova il punto mediano
-        int medianIndex = points.size() / 2;
-        DataPoint medianPoint = points.get(medianIndex);
-        
-        // Crea il nodo
-        KDNode node = new KDNode(medianPoint, splitDim);
-        
-        // Costruisci ricorsivamente i sottoalberi
-        node.left = buildTree(points.subList(0, medianIndex), depth + 1);
-        node.right = buildTree(points.subList(medianIndex + 1, points.size()), depth + 1);
-        
-        return node;
+        FeatureNormalizer normalizer = normalization == null ? null
+            : FeatureNormalizer.fit(normalization, features, dimensions);
+        this.index = lsh != null ? new LSHIndex(features, kernel, weights, normalizer, lsh)
+            : NeighborIndex.build(features, kernel, weights, normalizer, strategy, pcaComponents, pcaWhiten, offHeap);
     }
     
     /**
      * Trova i K vicini più prossimi al punto target
-     * @param targetFeatures Le features del punto target
+     * @param targetFeatures Le features grezze del punto target (normalizzate dall'indice)
      * @param k Numero di vicini da trovare
      * @return Lista dei K vicini più prossimi ordinati per distanza
      */
     public List<DataPoint> findKNearestNeighbors(double[] targetFeatures, int k) {
-        if (root == null || k <= 0) {
+        if (index.size() == 0 || k <= 0) {
             return new ArrayList<>();
         }
         
-        // Usa una PriorityQueue per mantenere i K migliori vicini
-        // Ordina per distanza decrescente (il più lontano in cima)
-        PriorityQueue<DataPoint> bestNeighbors = new PriorityQueue<>(
-            (a, b) -> Double.compare(b.distance, a.distance)
-        );
+        NeighborHeap heap = new NeighborHeap(k);
+        int count = index.query(targetFeatures, k, heap);
         
-        searchKNN(root, targetFeatures, k, bestNeighbors);
-        
-        // Converti in lista e ordina per distanza crescente
-        List<DataPoint> result = new ArrayList<>(bestNeighbors);
-        result.sort((a, b) -> Double.compare(a.distance, b.distance));
+        // Crea i vicini con azioni e distanza calcolata, già ordinati per distanza crescente
+        List<DataPoint> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DataPoint candidate = getDataPoint(heap.getId(i));
+            candidate.setDistance(heap.getDistance(i));
+            result.add(candidate);
+        }
         
         return result;
     }
     
     /**
-     * Ricerca ricorsiva dei K vicini più prossimi
-     * @param node Nodo corrente
-     * @param target Features del punto target
-     * @param k Numero di vicini da trovare
-     * @param bestNeighbors Coda di priorità dei migliori vicini trovati finora
+     * Trova i K vicini più prossimi per un lotto di query, in parallelo sul pool comune.
+     * Pensato per carichi offline (valutazione, analisi dati): non crea oggetti per vicino.
+     * @param queries Matrice delle features di query (una riga per query)
+     * @param k Numero di vicini da trovare per ogni query
+     * @return Matrici degli indici (riferiti a {@link #getTarget(int, int)}) e delle distanze
      */
-    private void searchKNN(KDNode node, double[] target, int k, PriorityQueue<DataPoint> bestNeighbors) {
-        if (node == null) {
-            return;
-        }
-        
-        // Calcola la distanza dal nodo corrente al target
-        double distance = calculateDistance(node.dataPoint.features, target);
-        
-        // Crea una copia del punto con la distanza calcolata
-        DataPoint candidate = new DataPoint(node.dataPoint);
-        candidate.setDistance(distance);
-        
-        // Aggiungi il candidato se abbiamo spazio o se è migliore del peggiore
-        if (bestNeighbors.size() < k) {
-            bestNeighbors.offer(candidate);
-        } else if (distance < bestNeighbors.peek().distance) {
-            bestNeighbors.poll(); // Rimuovi il peggiore
-            bestNeighbors.offer(candidate);
-        }
-        
-        // Determina quale sottoalbero esplorare per primo
-        int splitDim = node.splitDimension;
-        double splitValue = node.dataPoint.features[splitDim];
-        double targetValue = target[splitDim];
-        
-        KDNode firstChild, secondChild;
-        if (targetValue <= splitValue) {
-            firstChild = node.left;
-            secondChild = node.right;
-        } else {
-            firstChild = node.right;
-            secondChild = node.left;
-        }
-        
-        // Esplora il sottoalbero più promettente
-        searchKNN(firstChild, target, k, bestNeighbors);
-        
-        // Controlla se vale la pena esplorare l'altro sottoalbero
-        double distanceToSplitPlane = Math.abs(targetValue - splitValue);
-        
-        if (bestNeighbors.size() < k || distanceToSplitPlane < bestNeighbors.peek().distance) {
-            searchKNN(secondChild, target, k, bestNeighbors);
-        }
+    public KNNBatchResult findKNearestNeighborsBatch(double[][] queries, int k) {
+        return index.queryBatch(queries, k);
     }
     
     /**
-     * Calcola la distanza tra due punti usando la distanza euclidea
-     * @param features1 Features del primo punto
-     * @param features2 Features del secondo punto
-     * @return La distanza euclidea calcolata
+     * Trova i K vicini più prossimi per un lotto di query, in parallelo sul pool indicato.
+     * @param queries Matrice delle features di query (una riga per query)
+     * @param k Numero di vicini da trovare per ogni query
+     * @param pool Pool su cui eseguire le query
+     * @return Matrici degli indici (riferiti a {@link #getTarget(int, int)}) e delle distanze
      */
-    private double calculateDistance(double[] features1, double[] features2) {
-        return euclideanDistance(features1, features2);
+    public KNNBatchResult findKNearestNeighborsBatch(double[][] queries, int k, ForkJoinPool pool) {
+        return index.queryBatch(queries, k, pool);
     }
     
     /**
-     * Calcola la distanza Euclidea tra due punti
+     * Restituisce il punto dati con l'indice indicato (posizione nella lista di costruzione).
+     * Il punto è creato dalle azioni memorizzate e non contiene features.
+     * @param index Indice del punto
+     * @return Nuovo punto dati con le azioni del punto di training
      */
-    private double euclideanDistance(double[] features1, double[] features2) {
-        double sum = 0.0;
-        for (int i = 0; i < features1.length; i++) {
-            double diff = features1[i] - features2[i];
-            sum += diff * diff;
-        }
-        return Math.sqrt(sum);
+    public DataPoint getDataPoint(int index) {
+        int base = index * TARGETS;
+        return new DataPoint(NO_FEATURES, targets[base], targets[base + 1], targets[base + 2]);
     }
     
-
+    /**
+     * Restituisce un'azione del punto con l'indice indicato, senza creare oggetti.
+     * @param index Indice del punto (posizione nella lista di costruzione)
+     * @param target Azione: 0 sterzo, 1 accelerazione, 2 freno
+     * @return Valore dell'azione nel punto di training
+     */
+    public double getTarget(int index, int target) {
+        return targets[index * TARGETS + target];
+    }
     
     /**
      * Trova il vicino più prossimo (caso speciale di K=1)
@@ -192,19 +223,31 @@ public class KDTree {
      * @return Il numero di nodi
      */
     public int size() {
-        return countNodes(root);
+        return index.size();
     }
     
     /**
-     * Conta ricorsivamente i nodi nell'albero
+     * Restituisce il numero di dimensioni delle features
+     * @return Il numero di dimensioni
      */
-    private int countNodes(KDNode node) {
-        if (node == null) {
-            return 0;
-        }
-        return 1 + countNodes(node.left) + countNodes(node.right);
+    public int getDimensions() {
+        return dimensions;
     }
     
+    /**
+     * Restituisce la normalizzazione memorizzata con l'indice
+     * @return La normalizzazione, o null se l'albero lavora su valori grezzi
+     */
+    public FeatureNormalizer getNormalizer() {
+        return index.getNormalizer();
+    }
     
+    /**
+     * Restituisce l'indice primitivo sottostante
+     * @return L'indice KD-Tree
+     */
+    public NeighborIndex getIndex() {
+        return index;
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package it.unisa.javaclienttorcs;
+
+/**
+ * Costruzione della struttura dei KD-tree, condivisa da {@link KDTreeIndex} (array sullo heap)
+ * e {@link OffHeapKDTreeIndex} (segmento nativo).
+ * Riordina la permutazione dei punti in modo che ogni sottoalbero occupi un intervallo contiguo
+ * [lo, hi) con il proprio nodo in una posizione interna: il sottoalbero sinistro precede il nodo,
+ * il destro lo segue. Dimensione di split e figli di ogni nodo vengono passati a un
+ * {@link NodeSink}, che li scrive nella rappresentazione dell'indice.
+ * Lungo la dimensione di split le coordinate (trasformate) del sottoalbero sinistro non superano
+ * quella del nodo e quelle del destro non sono inferiori, come richiesto dalla potatura delle ricerche.
+ */
+final class KDTreeBuilder {
+
+    /**
+     * Profondità oltre la quale lo split a metà intervallo torna al mediano: limita l'altezza
+     * (e la ricorsione delle ricerche) su distribuzioni molto sbilanciate.
+     */
+    static final int MAX_UNBALANCED_DEPTH = 64;
+
+    /**
+     * Destinazione dei nodi costruiti.
+     */
+    interface NodeSink {
+
+        /**
+         * Registra un nodo.
+         *
+         * @param pos Posizione del nodo nell'ordine dell'albero
+         * @param splitDim Dimensione di split
+         * @param left Posizione del figlio sinistro, -1 se assente
+         * @param right Posizione del figlio destro, -1 se assente
+         */
+        void node(int pos, int splitDim, int left, int right);
+    }
+
+    private final double[][] points;
+    private final int[] order;
+    private final FeatureNormalizer transform;
+    private final SplitStrategy strategy;
+    private final int dimensions;
+    private final NodeSink sink;
+    private final double[] low;
+    private final double[] high;
+    private final double[] origin;
+
+    private KDTreeBuilder(double[][] points, int[] order, FeatureNormalizer transform,
+                          SplitStrategy strategy, NodeSink sink) {
+        this.points = points;
+        this.order = order;
+        this.transform = transform;
+        this.strategy = strategy;
+        this.dimensions = points.length > 0 ? points[0].length : 0;
+        this.sink = sink;
+        this.low = new double[dimensions];
+        this.high = new double[dimensions];
+        this.origin = new double[dimensions];
+    }
+
+    /**
+     * Costruisce l'albero sui punti indicati.
+     *
+     * @param points Matrice delle features grezze
+     * @param order Permutazione degli indici dei punti, riordinata nell'ordine dell'albero
+     * @param transform Trasformazione applicata dall'indice alle coordinate, null per valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     * @param sink Destinazione dei nodi
+     * @return Posizione della radice, -1 se non ci sono punti
+     */
+    static int build(double[][] points, int[] order, FeatureNormalizer transform,
+                     SplitStrategy strategy, NodeSink sink) {
+        return new KDTreeBuilder(points, order, transform, strategy, sink).build(0, points.length, 0);
+    }
+
+    private int build(int lo, int hi, int depth) {
+        if (lo >= hi) {
+            return -1;
+        }
+
+        int splitDim;
+        int mid = -1;
+        switch (strategy) {
+            case MAX_SPREAD -> splitDim = widestDimension(lo, hi);
+            case MAX_VARIANCE -> splitDim = maxVarianceDimension(lo, hi);
+            case SLIDING_MIDPOINT -> {
+                splitDim = widestDimension(lo, hi);
+                if (depth < MAX_UNBALANCED_DEPTH && high[splitDim] > low[splitDim]) {
+                    mid = slidingMidpoint(lo, hi, splitDim, (low[splitDim] + high[splitDim]) * 0.5);
+                }
+            }
+            default -> splitDim = depth % dimensions;
+        }
+        if (mid < 0) {
+            // La trasformazione è monotona non decrescente: il mediano sulle coordinate grezze
+            // resta un mediano valido (eventualmente a pari merito) su quelle trasformate
+            mid = lo + (hi - lo) / 2;
+            KDTreeIndex.select(points, order, lo, hi - 1, mid, splitDim);
+        }
+
+        int left = build(lo, mid, depth + 1);
+        int right = build(mid + 1, hi, depth + 1);
+        sink.node(mid, splitDim, left, right);
+        return mid;
+    }
+
+    /**
+     * Coordinata trasformata di un punto, come memorizzata dall'indice.
+     */
+    private double value(int row, int dim) {
+        double v = points[row][dim];
+        return transform == null ? v : transform.apply(dim, v);
+    }
+
+    /**
+     * Calcola minimo e massimo di ogni dimensione nell'intervallo e restituisce la più ampia.
+     */
+    private int widestDimension(int lo, int hi) {
+        for (int d = 0; d < dimensions; d++) {
+            low[d] = Double.POSITIVE_INFINITY;
+            high[d] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = lo; i < hi; i++) {
+            int row = order[i];
+            for (int d = 0; d < dimensions; d++) {
+                double v = value(row, d);
+                if (v < low[d]) {
+                    low[d] = v;
+                }
+                if (v > high[d]) {
+                    high[d] = v;
+                }
+            }
+        }
+        int best = 0;
+        for (int d = 1; d < dimensions; d++) {
+            if (high[d] - low[d] > high[best] - low[best]) {
+                best = d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Restituisce la dimensione con la varianza massima nell'intervallo.
+     * Le somme sono calcolate rispetto al primo punto per limitare la cancellazione numerica.
+     */
+    private int maxVarianceDimension(int lo, int hi) {
+        for (int d = 0; d < dimensions; d++) {
+            origin[d] = value(order[lo], d);
+            low[d] = 0.0;   // somma degli scarti
+            high[d] = 0.0;  // somma dei quadrati degli scarti
+        }
+        for (int i = lo; i < hi; i++) {
+            int row = order[i];
+            for (int d = 0; d < dimensions; d++) {
+                double x = value(row, d) - origin[d];
+                low[d] += x;
+                high[d] += x * x;
+            }
+        }
+        int n = hi - lo;
+        int best = 0;
+        double bestVariance = Double.NEGATIVE_INFINITY;
+        for (int d = 0; d < dimensions; d++) {
+            double variance = high[d] - low[d] * low[d] / n;
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                best = d;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Divide l'intervallo sul valore di taglio: i punti sotto il taglio vanno a sinistra, il più
+     * piccolo dei restanti diventa il nodo (se il lato sinistro resta vuoto il piano scivola su di
+     * esso) e gli altri vanno a destra.
+     *
+     * @return Posizione del nodo, -1 se nessun punto raggiunge il taglio
+     */
+    private int slidingMidpoint(int lo, int hi, int dim, double cut) {
+        int split = lo;
+        for (int i = lo; i < hi; i++) {
+            if (value(order[i], dim) < cut) {
+                KDTreeIndex.swap(order, i, split++);
+            }
+        }
+        if (split == hi) {
+            return -1;
+        }
+        int min = split;
+        double minValue = value(order[split], dim);
+        for (int i = split + 1; i < hi; i++) {
+            double v = value(order[i], dim);
+            if (v < minValue) {
+                minValue = v;
+                min = i;
+            }
+        }
+        KDTreeIndex.swap(order, split, min);
+        return split;
+    }
+}
@@ -1,202 +1,298 @@
 package it.unisa.javaclienttorcs;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implementazione di un KD-Tree ottimizzato per il classificatore KNN.
  * Gestisce DataPointClassifier con classi discrete di azioni.
+ * La struttura dell'albero è delegata a un {@link NeighborIndex} ({@link KDTreeIndex} su array primitivi
+ * o {@link OffHeapKDTreeIndex} in memoria nativa, oppure l'indice approssimato {@link LSHIndex}).
+ * Dopo la costruzione le features esistono solo nell'indice: dei punti restano le sole classi
+ * (ordinali in un array di interi) e i {@link DataPointClassifier} restituiti dalle ricerche
+ * non contengono features.
  */
 public class KDTreeClassifier {
     
+    private static final DrivingAction[] ACTIONS = DrivingAction.values();
+    private static final double[] NO_FEATURES = new double[0];
+    
+    private int[] labels;
+    private NeighborIndex index;
+    private final int dimensions;
+    private final DistanceKernel kernel;
+    private final double[] weights;
+    private final FeatureNormalizer.Mode normalization;
+    private final SplitStrategy strategy;
+    private final int pcaComponents;
+    private final boolean pcaWhiten;
+    private final boolean offHeap;
+    private final LSHParameters lsh;
+    
     /**
-     * Nodo interno del KD-Tree per il classificatore.
+     * Costruttore del KD-Tree per classificatore con distanza Euclidea.
+     * 
+     * @param dimensions Numero di dimensioni delle features
      */
-    private static class Node {
-        DataPointClassifier dataPoint;
-        Node left, right;
-        int dimension;
-        
-        Node(DataPointClassifier dataPoint, int dimension) {
-            this.dataPoint = dataPoint;
-            this.dimension = dimension;
-        }
+    public KDTreeClassifier(int dimensions) {
+        this(dimensions, DistanceKernel.SQUARED_L2, null);
     }
     
-    private Node root;
-    private final int dimensions;
+    /**
+     * Costruttore del KD-Tree per classificatore con metrica personalizzata.
+     * 
+     * @param dimensions Numero di dimensioni delle features
+     * @param kernel Metrica di distanza usata da {@link #build(List)}
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     */
+    public KDTreeClassifier(int dimensions, DistanceKernel kernel, double[] weights) {
+        this(dimensions, kernel, weights, null);
+    }
     
     /**
-     * Costruttore del KD-Tree per classificatore.
+     * Costruttore del KD-Tree per classificatore con metrica e normalizzazione memorizzata nell'indice.
+     * I parametri di normalizzazione vengono calcolati da {@link #build(List)} sui punti di training;
+     * le query usano features grezze.
      * 
      * @param dimensions Numero di dimensioni delle features
+     * @param kernel Metrica di distanza usata da {@link #build(List)}
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
      */
-    public KDTreeClassifier(int dimensions) {
-        this.dimensions = dimensions;
-        this.root = null;
+    public KDTreeClassifier(int dimensions, DistanceKernel kernel, double[] weights,
+                            FeatureNormalizer.Mode normalization) {
+        this(dimensions, kernel, weights, normalization, false);
     }
     
     /**
-     * Costruisce il KD-Tree dai punti dati di training.
+     * Costruttore del KD-Tree per classificatore con scelta della memoria dell'indice.
      * 
-     * @param points Lista dei punti dati di training
+     * @param dimensions Numero di dimensioni delle features
+     * @param kernel Metrica di distanza usata da {@link #build(List)}
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     * @param offHeap true per memorizzare l'indice in memoria nativa ({@link OffHeapKDTreeIndex})
      */
-    public void build(List<DataPointClassifier> points) {
-        if (points == null || points.isEmpty()) {
-            root = null;
-            return;
-        }
-        
-        // Crea copie dei punti per evitare modifiche ai dati originali
-        List<DataPointClassifier> pointsCopy = new ArrayList<>();
-        for (DataPointClassifier point : points) {
-            pointsCopy.add(new DataPointClassifier(point));
-        }
-        
-        root = buildRecursive(pointsCopy, 0);
+    public KDTreeClassifier(int dimensions, DistanceKernel kernel, double[] weights,
+                            FeatureNormalizer.Mode normalization, boolean offHeap) {
+        this(dimensions, kernel, weights, normalization, SplitStrategy.ROUND_ROBIN, offHeap);
     }
     
     /**
-     * Costruzione ricorsiva del KD-Tree.
+     * Costruttore del KD-Tree per classificatore con scelta della strategia di split e della memoria.
      * 
-     * @param points Lista dei punti da inserire
-     * @param depth Profondità corrente nell'albero
-     * @return Nodo radice del sottoalbero
+     * @param dimensions Numero di dimensioni delle features
+     * @param kernel Metrica di distanza usata da {@link #build(List)}
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     * @param offHeap true per memorizzare l'indice in memoria nativa ({@link OffHeapKDTreeIndex})
      */
-    private Node buildRecursive(List<DataPointClassifier> points, int depth) {
-        if (points.isEmpty()) {
-            return null;
+    public KDTreeClassifier(int dimensions, DistanceKernel kernel, double[] weights,
+                            FeatureNormalizer.Mode normalization, SplitStrategy strategy, boolean offHeap) {
+        this(dimensions, kernel, weights, normalization, strategy, 0, false, offHeap);
+    }
+    
+    /**
+     * Costruttore del KD-Tree per classificatore con proiezione PCA delle features ({@link ProjectedIndex}),
+     * calcolata da {@link #build(List)} sui punti di training normalizzati.
+     * 
+     * @param dimensions Numero di dimensioni delle features
+     * @param kernel Metrica di distanza usata da {@link #build(List)}
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     * @param pcaComponents Componenti principali da mantenere, 0 per non proiettare
+     * @param pcaWhiten true per dividere ogni componente per la propria deviazione standard
+     * @param offHeap true per memorizzare l'indice in memoria nativa ({@link OffHeapKDTreeIndex})
+     */
+    public KDTreeClassifier(int dimensions, DistanceKernel kernel, double[] weights,
+                            FeatureNormalizer.Mode normalization, SplitStrategy strategy,
+                            int pcaComponents, boolean pcaWhiten, boolean offHeap) {
+        this(dimensions, kernel, weights, normalization, strategy, pcaComponents, pcaWhiten, offHeap, null);
+    }
+    
+    /**
+     * Costruttore con l'indice approssimato {@link LSHIndex} al posto del KD-tree esatto,
+     * per dataset registrati molto grandi. I vicini restituiti possono non essere i K più prossimi.
+     * 
+     * @param dimensions Numero di dimensioni delle features
+     * @param kernel Metrica di distanza (Euclidea, Euclidea pesata o Manhattan)
+     * @param weights Pesi per feature (solo per {@link DistanceKernel#WEIGHTED_L2}, altrimenti null)
+     * @param normalization Modalità di normalizzazione, null per usare i valori grezzi
+     * @param lsh Parametri dell'indice LSH
+     */
+    public KDTreeClassifier(int dimensions, DistanceKernel kernel, double[] weights,
+                            FeatureNormalizer.Mode normalization, LSHParameters lsh) {
+        this(dimensions, kernel, weights, normalization, SplitStrategy.ROUND_ROBIN, 0, false, false, lsh);
+    }
+    
+    private KDTreeClassifier(int dimensions, DistanceKernel kernel, double[] weights,
+                             FeatureNormalizer.Mode normalization, SplitStrategy strategy,
+                             int pcaComponents, boolean pcaWhiten, boolean offHeap, LSHParameters lsh) {
+        this.lsh = lsh;
+        this.strategy = strategy;
+        this.pcaComponents = pcaComponents;
+        this.pcaWhiten = pcaWhiten;
+        this.offHeap = offHeap;
+        this.dimensions = dimensions;
+        this.kernel = kernel;
+        this.weights = weights;
+        this.normalization = normalization;
+        this.labels = new int[0];
+        this.index = null;
+    }
+    
+    /**
+     * Costruisce il KD-Tree dai punti dati di training.
+     * I punti non vengono conservati: l'indice mantiene la propria copia (normalizzata) delle features
+     * e l'albero le sole classi, quindi dopo la costruzione la lista può essere rilasciata.
+     * 
+     * @param points Lista dei punti dati di training (features grezze)
+     */
+    public void build(List<DataPointClassifier> points) {
+        if (points == null || points.isEmpty()) {
+            this.labels = new int[0];
+            this.index = null;
+            return;
         }
         
-        if (points.size() == 1) {
-            return new Node(points.get(0), depth % dimensions);
+        double[][] features = new double[points.size()][];
+        this.labels = new int[points.size()];
+        for (int i = 0; i < features.length; i++) {
+            DataPointClassifier point = points.get(i);
+            features[i] = point.features;
+            labels[i] = point.getActionClass().ordinal();
         }
         
-        // Determina la dimensione di split
-        int dimension = depth % dimensions;
-        
-        // Ordina i punti per la dimensione corrente
-        points.sort((a, b) -> Double.compare(a.features[dimension], b.features[dimension]));
-        
-        // Trova il punto mediano
-        int medianIndex = points.size() / 2;
-        DataPointClassifier medianPoint = points.get(medianIndex);
-        
-        // Crea il nodo
-        Node node = new Node(medianPoint, dimension);
-        
-        // Dividi ricorsivamente
-        List<DataPointClassifier> leftPoints = new ArrayList<>(points.subList(0, medianIndex));
-        List<DataPointClassifier> rightPoints = new ArrayList<>(points.subList(medianIndex + 1, points.size()));
-        
-        node.left = buildRecursive(leftPoints, depth + 1);
-        node.right = buildRecursive(rightPoints, depth + 1);
-        
-        return node;
+        FeatureNormalizer normalizer = normalization == null ? null
+            : FeatureNormalizer.fit(normalization, features, dimensions);
+        this.index = lsh != null ? new LSHIndex(features, kernel, weights, normalizer, lsh)
+            : NeighborIndex.build(features, kernel, weights, normalizer, strategy, pcaComponents, pcaWhiten, offHeap);
     }
     
     /**
      * Trova i K vicini più prossimi per un punto di query.
      * 
-     * @param target Features del punto di query
+     * @param target Features grezze del punto di query (normalizzate dall'indice)
      * @param k Numero di vicini da trovare
      * @return Lista dei K vicini più prossimi ordinati per distanza
      */
     public List<DataPointClassifier> findKNearestNeighbors(double[] target, int k) {
-        if (root == null || k <= 0) {
+        if (index == null || k <= 0) {
             return new ArrayList<>();
         }
         
-        // Coda di priorità per mantenere i K migliori vicini
-        // Ordine decrescente per distanza (il più lontano in cima)
-        PriorityQueue<DataPointClassifier> bestNeighbors = new PriorityQueue<>(
-            (a, b) -> Double.compare(b.distance, a.distance)
-        );
+        if (target.length != dimensions) {
+            throw new IllegalArgumentException("I vettori devono avere la stessa lunghezza");
+        }
         
-        searchKNN(root, target, k, bestNeighbors);
+        NeighborHeap heap = new NeighborHeap(k);
+        int count = index.query(target, k, heap);
         
-        // Converti in lista ordinata per distanza crescente
-        List<DataPointClassifier> result = new ArrayList<>(bestNeighbors);
-        result.sort((a, b) -> Double.compare(a.distance, b.distance));
+        // Crea i vicini con classe e distanza calcolata, già ordinati per distanza crescente
+        List<DataPointClassifier> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DataPointClassifier candidate = getDataPoint(heap.getId(i));
+            candidate.setDistance(heap.getDistance(i));
+            result.add(candidate);
+        }
         
         return result;
     }
     
     /**
-     * Ricerca ricorsiva dei K vicini più prossimi.
+     * Trova i K vicini più prossimi per un lotto di query, in parallelo sul pool comune.
+     * Pensato per carichi offline (valutazione, analisi dati): non crea oggetti per vicino.
      * 
-     * @param node Nodo corrente
-     * @param target Punto di query
-     * @param k Numero di vicini desiderati
-     * @param bestNeighbors Coda di priorità dei migliori vicini
+     * @param queries Matrice delle features di query (una riga per query)
+     * @param k Numero di vicini da trovare per ogni query
+     * @return Matrici degli indici (riferiti a {@link #getActionClass(int)}) e delle distanze
      */
-    private void searchKNN(Node node, double[] target, int k, PriorityQueue<DataPointClassifier> bestNeighbors) {
-        if (node == null) {
-            return;
+    public KNNBatchResult findKNearestNeighborsBatch(double[][] queries, int k) {
+        return findKNearestNeighborsBatch(queries, k, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Trova i K vicini più prossimi per un lotto di query, in parallelo sul pool indicato.
+     * 
+     * @param queries Matrice delle features di query (una riga per query)
+     * @param k Numero di vicini da trovare per ogni query
+     * @param pool Pool su cui eseguire le query
+     * @return Matrici degli indici (riferiti a {@link #getActionClass(int)}) e delle distanze
+     */
+    public KNNBatchResult findKNearestNeighborsBatch(double[][] queries, int k, ForkJoinPool pool) {
+        if (index == null) {
+            return new KDTreeIndex(new double[0][]).queryBatch(queries, k, pool);
         }
-        
-        // Calcola la distanza dal nodo corrente
-        double distance = calculateDistance(node.dataPoint.features, target);
-        
-        // Crea una copia del punto dati con la distanza calcolata
-        DataPointClassifier candidate = new DataPointClassifier(node.dataPoint);
-        candidate.setDistance(distance);
-        
-        // Aggiungi alla coda se c'è spazio o se è migliore del peggiore
-        if (bestNeighbors.size() < k) {
-            bestNeighbors.offer(candidate);
-        } else if (distance < bestNeighbors.peek().distance) {
-            bestNeighbors.poll();
-            bestNeighbors.offer(candidate);
+        return index.queryBatch(queries, k, pool);
+    }
+    
+    /**
+     * Trova i K vicini più prossimi usando l'heap fornito, senza creare oggetti.
+     * Al termine l'heap contiene gli indici (da usare con {@link #getActionClass(int)}) e le distanze
+     * dei vicini in ordine crescente.
+     * 
+     * @param target Features grezze del punto di query (normalizzate dall'indice)
+     * @param k Numero di vicini da trovare
+     * @param heap Heap di lavoro riutilizzabile
+     * @return Numero di vicini trovati
+     */
+    public int findKNearestNeighbors(double[] target, int k, NeighborHeap heap) {
+        if (index == null) {
+            heap.reset(k);
+            return 0;
         }
-        
-        // Determina quale sottoalbero esplorare per primo
-        int dimension = node.dimension;
-        boolean goLeft = target[dimension] < node.dataPoint.features[dimension];
-        
-        Node firstChild = goLeft ? node.left : node.right;
-        Node secondChild = goLeft ? node.right : node.left;
-        
-        // Esplora il sottoalbero più promettente
-        searchKNN(firstChild, target, k, bestNeighbors);
-        
-        // Controlla se vale la pena esplorare l'altro sottoalbero
-        double dimensionDistance = Math.abs(target[dimension] - node.dataPoint.features[dimension]);
-        
-        if (bestNeighbors.size() < k || dimensionDistance < bestNeighbors.peek().distance) {
-            searchKNN(secondChild, target, k, bestNeighbors);
+        return index.query(target, k, heap);
+    }
+    
+    /**
+     * Vota la classe dei K vicini più prossimi pesando ogni vicino con l'inverso della distanza,
+     * senza creare oggetti. Con l'indice sullo heap la ricerca si ferma appena la classe
+     * vincente non può più cambiare ({@link KDTreeIndex#vote(double[], int, int[], NeighborVote)}).
+     * 
+     * @param target Features grezze del punto di query (normalizzate dall'indice)
+     * @param k Numero di vicini che votano
+     * @param vote Stato di lavoro riutilizzabile (una posizione per classe di {@link DrivingAction})
+     * @return Ordinale della classe vincente, -1 se l'albero è vuoto
+     */
+    public int vote(double[] target, int k, NeighborVote vote) {
+        if (index == null) {
+            vote.reset();
+            return -1;
         }
+        return index.vote(target, k, labels, vote);
     }
     
     /**
-     * Calcola la distanza euclidea tra due punti.
+     * Restituisce la classe di azione del punto con l'indice indicato.
      * 
-     * @param point1 Primo punto
-     * @param point2 Secondo punto
-     * @return Distanza euclidea
+     * @param index Indice del punto (posizione nella lista di costruzione)
+     * @return Classe di azione del punto
      */
-    private double calculateDistance(double[] point1, double[] point2) {
-        return euclideanDistance(point1, point2);
+    public DrivingAction getActionClass(int index) {
+        return ACTIONS[labels[index]];
     }
     
     /**
-     * Calcola la distanza euclidea tra due vettori di features.
+     * Restituisce la normalizzazione memorizzata con l'indice.
      * 
-     * @param features1 Primo vettore di features
-     * @param features2 Secondo vettore di features
-     * @return Distanza euclidea
+     * @return Normalizzazione delle features, null se vuoto o senza normalizzazione
      */
-    private double euclideanDistance(double[] features1, double[] features2) {
-        if (features1.length != features2.length) {
-            throw new IllegalArgumentException("I vettori devono avere la stessa lunghezza");
-        }
-        
-        double sum = 0.0;
-        for (int i = 0; i < features1.length; i++) {
-            double diff = features1[i] - features2[i];
-            sum += diff * diff;
-        }
-        
-        return Math.sqrt(sum);
+    public FeatureNormalizer getNormalizer() {
+        return index == null ? null : index.getNormalizer();
+    }
+    
+    /**
+     * Restituisce il punto dati con l'indice indicato (posizione nella lista di costruzione).
+     * Il punto è creato dalla classe memorizzata e non contiene features.
+     * 
+     * @param index Indice del punto
+     * @return Nuovo punto dati con la classe del punto di training
+     */
+    public DataPointClassifier getDataPoint(int index) {
+        return new DataPointClassifier(NO_FEATURES, getActionClass(index));
     }
     
     /**
@@ -205,7 +301,7 @@ public class KDTreeClassifier {
      * @return true se l'albero è vuoto
      */
     public boolean isEmpty() {
-        return root == null;
+        return index == null;
     }
     
     /**
@@ -214,33 +310,35 @@ public class KDTreeClassifier {
      * @return Stringa con informazioni di debug
      */
     public String getDebugInfo() {
-        if (root == null) {
+        if (index == null) {
             return "KDTreeClassifier: vuoto";
         }
         
-        int[] nodeCount = {0};
-        int height = calculateHeight(root, nodeCount);
-        
-        return String.format("KDTreeClassifier: %d nodi, altezza %d, dimensioni %d", 
-                           nodeCount[0], height, dimensions);
+        if (index instanceof LSHIndex lshIndex) {
+            return String.format("KDTreeClassifier: %d nodi, dimensioni %d, metrica %s, %s", 
+                               index.size(), dimensions, kernel, lshIndex);
+        }
+        return String.format("KDTreeClassifier: %d nodi, altezza %d, dimensioni %d, metrica %s, split %s%s", 
+                           index.size(), index.height(), dimensions, kernel, strategy,
+                           (index instanceof ProjectedIndex p ? ", " + p.getProjection() : "")
+                           + (offHeap ? ", fuori heap" : ""));
     }
     
     /**
-     * Calcola l'altezza dell'albero e conta i nodi.
+     * Restituisce l'indice primitivo sottostante.
      * 
-     * @param node Nodo corrente
-     * @param nodeCount Array per contare i nodi (passato per riferimento)
-     * @return Altezza del sottoalbero
+     * @return L'indice KD-Tree, null se l'albero è vuoto
      */
-    private int calculateHeight(Node node, int[] nodeCount) {
-        if (node == null) {
-            return 0;
-        }
-        
-        nodeCount[0]++;
-        int leftHeight = calculateHeight(node.left, nodeCount);
-        int rightHeight = calculateHeight(node.right, nodeCount);
-        
-        return 1 + Math.max(leftHeight, rightHeight);
+    public NeighborIndex getIndex() {
+        return index;
+    }
+    
+    /**
+     * Restituisce il numero di punti nell'albero.
+     * 
+     * @return Numero di punti
+     */
+    public int size() {
+        return index == null ? 0 : index.size();
     }
 }
\ No newline at end of file
@@ -0,0 +1,431 @@
+package it.unisa.javaclienttorcs;
+
+/**
+ * Nucleo primitivo del KD-Tree sullo heap Java, condiviso da {@link KDTree} e {@link KDTreeClassifier}.
+ * I punti sono memorizzati in array contigui (coordinate per righe nell'ordine dell'albero,
+ * dimensione di split e figli per posizione), senza oggetti per nodo: le query non allocano
+ * e possono essere eseguite in parallelo da più thread sulla stessa istanza.
+ * Le ricerche restituiscono gli indici dei punti nella lista originale usata per la costruzione.
+ * La metrica ({@link DistanceKernel}) è fissata alla costruzione: le ricerche confrontano la sua
+ * distanza di ordinamento e la potatura usa il limite inferiore della metrica sul piano di split.
+ * Una eventuale {@link FeatureNormalizer} è memorizzata con l'indice: i punti vengono normalizzati
+ * una sola volta durante la copia nelle coordinate e le query accettano features grezze,
+ * normalizzate nella stessa passata che calcola la distanza dalla radice.
+ */
+public class KDTreeIndex implements NeighborIndex {
+
+    /** Dimensione dei sottoalberi che il voto anticipato scandisce in sequenza invece di espanderli */
+    static final int VOTE_BUCKET_SIZE = 32;
+
+    private final int dimensions;
+    private final int size;
+    private final DistanceKernel kernel;
+    private final FeatureNormalizer normalizer;
+    private final FeatureNormalizer transform;
+    private final double[] coords;
+    private final int[] pointIds;
+    private final int[] splitDims;
+    private final int[] leftChild;
+    private final int[] rightChild;
+    private final int root;
+
+    /**
+     * Costruisce l'indice con distanza Euclidea a partire dalle features dei punti.
+     * I valori vengono copiati: modifiche successive alle righe non influenzano l'albero.
+     *
+     * @param points Matrice delle features (una riga per punto, tutte della stessa lunghezza)
+     */
+    public KDTreeIndex(double[][] points) {
+        this(points, DistanceKernel.SQUARED_L2, null, null);
+    }
+
+    /**
+     * Costruisce l'indice con la metrica indicata.
+     * Per {@link DistanceKernel#WEIGHTED_L2} le coordinate vengono memorizzate già moltiplicate
+     * per la radice dei pesi; ogni query viene scalata allo stesso modo nel buffer dell'heap.
+     *
+     * @param points Matrice delle features (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     */
+    public KDTreeIndex(double[][] points, DistanceKernel kernel, double[] weights) {
+        this(points, kernel, weights, null);
+    }
+
+    /**
+     * Costruisce l'indice con la metrica e la normalizzazione indicate.
+     * I punti e le query sono features grezze: la normalizzazione (seguita dai pesi della metrica
+     * pesata, applicati alle features normalizzate) viene applicata dall'indice.
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     */
+    public KDTreeIndex(double[][] points, DistanceKernel kernel, double[] weights, FeatureNormalizer normalizer) {
+        this(points, kernel, weights, normalizer, SplitStrategy.ROUND_ROBIN);
+    }
+
+    /**
+     * Costruisce l'indice con la metrica, la normalizzazione e la strategia di split indicate.
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     */
+    public KDTreeIndex(double[][] points, DistanceKernel kernel, double[] weights, FeatureNormalizer normalizer,
+                       SplitStrategy strategy) {
+        this.size = points.length;
+        this.dimensions = size > 0 ? points[0].length : 0;
+        this.kernel = kernel;
+        this.coords = new double[size * dimensions];
+        this.pointIds = new int[size];
+        this.splitDims = new int[size];
+        this.leftChild = new int[size];
+        this.rightChild = new int[size];
+
+        this.normalizer = normalizer;
+        this.transform = FeatureNormalizer.forIndex(normalizer, kernel, weights, size > 0 ? dimensions : -1);
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        this.root = KDTreeBuilder.build(points, order, transform, strategy, (pos, splitDim, left, right) -> {
+            splitDims[pos] = splitDim;
+            leftChild[pos] = left;
+            rightChild[pos] = right;
+        });
+
+        // Copia le coordinate nell'ordine dell'albero per un accesso sequenziale in ricerca,
+        // normalizzandole durante la copia (unica copia normalizzata del training)
+        for (int pos = 0; pos < size; pos++) {
+            pointIds[pos] = order[pos];
+            double[] point = points[order[pos]];
+            int base = pos * dimensions;
+            if (transform == null) {
+                System.arraycopy(point, 0, coords, base, dimensions);
+            } else {
+                for (int i = 0; i < dimensions; i++) {
+                    coords[base + i] = transform.apply(i, point[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Quickselect: riordina order[lo..hi] in modo che in posizione nth ci sia l'elemento
+     * che vi starebbe con un ordinamento completo sulla dimensione indicata.
+     */
+    static void select(double[][] points, int[] order, int lo, int hi, int nth, int dim) {
+        while (hi > lo) {
+            // Pivot mediano di tre per evitare il caso peggiore su dati già ordinati
+            int m = lo + (hi - lo) / 2;
+            if (points[order[m]][dim] < points[order[lo]][dim]) swap(order, lo, m);
+            if (points[order[hi]][dim] < points[order[lo]][dim]) swap(order, lo, hi);
+            if (points[order[hi]][dim] < points[order[m]][dim]) swap(order, m, hi);
+            double pivot = points[order[m]][dim];
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (points[order[i]][dim] < pivot) i++;
+                while (points[order[j]][dim] > pivot) j--;
+                if (i <= j) {
+                    swap(order, i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (nth <= j) {
+                hi = j;
+            } else if (nth >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    static void swap(int[] array, int a, int b) {
+        int tmp = array[a];
+        array[a] = array[b];
+        array[b] = tmp;
+    }
+
+    /**
+     * Trova i K vicini più prossimi al punto target usando l'heap fornito come spazio di lavoro.
+     * Al termine l'heap contiene i vicini ordinati per distanza crescente secondo la metrica dell'indice.
+     * Le features della query sono grezze: se l'indice ha una normalizzazione, viene applicata
+     * nel buffer dell'heap durante il calcolo della distanza dalla radice.
+     *
+     * @param target Features grezze del punto di query
+     * @param k Numero di vicini da trovare
+     * @param heap Heap di lavoro (viene svuotato all'inizio)
+     * @return Numero di vicini trovati (al più K)
+     */
+    @Override
+    public int query(double[] target, int k, NeighborHeap heap) {
+        heap.reset(k);
+        if (root < 0 || k <= 0) {
+            return 0;
+        }
+
+        if (transform != null) {
+            double[] normalized = heap.queryBuffer(dimensions);
+            double rootRank = normalizeQuery(target, normalized);
+            visit(root, normalized, heap, rootRank);
+        } else {
+            searchKNN(root, target, heap);
+        }
+
+        int count = heap.sortAscending();
+        for (int i = 0; i < count; i++) {
+            heap.setDistance(i, kernel.toDistance(heap.getDistance(i)));
+        }
+        return count;
+    }
+
+    /**
+     * Normalizza la query nel buffer e, nella stessa passata, calcola la distanza di ordinamento
+     * dalla radice: la normalizzazione non richiede una scansione separata delle features.
+     *
+     * @param target Features grezze della query
+     * @param out Buffer per le features normalizzate
+     * @return Distanza di ordinamento tra la query normalizzata e la radice
+     */
+    private double normalizeQuery(double[] target, double[] out) {
+        int base = root * dimensions;
+        double acc = 0.0;
+        switch (kernel) {
+            case L1 -> {
+                for (int i = 0; i < dimensions; i++) {
+                    double q = transform.apply(i, target[i]);
+                    out[i] = q;
+                    acc += Math.abs(coords[base + i] - q);
+                }
+            }
+            case LINF -> {
+                for (int i = 0; i < dimensions; i++) {
+                    double q = transform.apply(i, target[i]);
+                    out[i] = q;
+                    double d = Math.abs(coords[base + i] - q);
+                    acc = d > acc ? d : acc;
+                }
+            }
+            default -> {
+                for (int i = 0; i < dimensions; i++) {
+                    double q = transform.apply(i, target[i]);
+                    out[i] = q;
+                    double d = coords[base + i] - q;
+                    acc += d * d;
+                }
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Ricerca ricorsiva dei K vicini più prossimi sulla distanza di ordinamento della metrica.
+     *
+     * @param node Posizione del nodo corrente
+     * @param target Features del punto di query (nello spazio delle coordinate)
+     * @param heap Heap dei migliori vicini trovati finora
+     */
+    private void searchKNN(int node, double[] target, NeighborHeap heap) {
+        visit(node, target, heap, kernel.rank(target, coords, node * dimensions, dimensions));
+    }
+
+    /**
+     * Visita un nodo di cui è già nota la distanza di ordinamento dal target.
+     *
+     * @param node Posizione del nodo corrente
+     * @param target Features del punto di query (nello spazio delle coordinate)
+     * @param heap Heap dei migliori vicini trovati finora
+     * @param rank Distanza di ordinamento tra il target e il nodo
+     */
+    private void visit(int node, double[] target, NeighborHeap heap, double rank) {
+        int base = node * dimensions;
+        heap.offer(pointIds[node], rank);
+
+        // Determina quale sottoalbero esplorare per primo
+        int splitDim = splitDims[node];
+        double diff = target[splitDim] - coords[base + splitDim];
+        int firstChild = diff <= 0 ? leftChild[node] : rightChild[node];
+        int secondChild = diff <= 0 ? rightChild[node] : leftChild[node];
+
+        if (firstChild >= 0) {
+            searchKNN(firstChild, target, heap);
+        }
+
+        // Esplora l'altro sottoalbero solo se il piano di split è più vicino del peggiore
+        if (secondChild >= 0 && kernel.planeBound(diff) < heap.worstDistance()) {
+            searchKNN(secondChild, target, heap);
+        }
+    }
+
+    /**
+     * Voto pesato dei K vicini con terminazione anticipata.
+     * I nodi vengono visitati in ordine di limite inferiore della distanza dalla loro cella
+     * (aggiornato a ogni piano di split attraversato) e un punto è confermato come prossimo vicino
+     * quando nessun nodo ancora in coda può contenerne uno più vicino. Ognuno dei vicini mancanti
+     * è quindi a distanza non inferiore al limite della coda e pesa al più il suo inverso: la ricerca
+     * si ferma quando il vantaggio della classe in testa supera il peso che essi possono ancora
+     * dare alla seconda.
+     *
+     * @param target Features grezze del punto di query
+     * @param k Numero di vicini che votano
+     * @param labels Classe di ogni punto, per indice nella matrice di costruzione
+     * @param vote Stato di lavoro (voti e statistiche dell'ultima ricerca)
+     * @return Classe vincente (la prima con il voto massimo), -1 se nessun vicino
+     */
+    @Override
+    public int vote(double[] target, int k, int[] labels, NeighborVote vote) {
+        vote.reset();
+        if (root < 0 || k <= 0) {
+            return -1;
+        }
+
+        double[] query = target;
+        double rootRank;
+        if (transform != null) {
+            query = vote.queryBuffer(dimensions);
+            rootRank = normalizeQuery(target, query);
+        } else {
+            rootRank = kernel.rank(query, coords, root * dimensions, dimensions);
+        }
+        int node = root;
+        int lo = 0;
+        int hi = size;
+        int cell = vote.rootCell(dimensions);
+        double bound = 0.0;
+        int confirmed = 0;
+
+        while (true) {
+            // Discesa lungo i figli dal lato della query: hanno lo stesso limite del sottoalbero
+            // estratto, quindi resterebbero in testa alla coda e non vi vengono inseriti
+            while (hi - lo > VOTE_BUCKET_SIZE) {
+                vote.countVisit();
+                vote.offerCandidate(pointIds[node],
+                    node == root ? rootRank : kernel.rank(query, coords, node * dimensions, dimensions),
+                    k - confirmed);
+
+                int splitDim = splitDims[node];
+                double diff = query[splitDim] - coords[node * dimensions + splitDim];
+                // Limite incrementale: per il lato opposto il termine della dimensione di split
+                // diventa la distanza dal piano
+                double term = kernel.planeBound(diff);
+                double farBound = kernel.replaceBound(bound, vote.cellTerm(cell, dimensions, splitDim), term);
+                boolean farUseful = farBound < vote.candidateLimit(k - confirmed);
+                // Il sottoalbero sinistro occupa [lo, node), il destro [node + 1, hi)
+                if (diff <= 0) {
+                    if (farUseful && rightChild[node] >= 0) {
+                        vote.pushNode(rightChild[node], node + 1, hi, farBound,
+                            vote.childCell(cell, dimensions, splitDim, term));
+                    }
+                    hi = node;
+                    node = leftChild[node];
+                } else {
+                    if (farUseful && leftChild[node] >= 0) {
+                        vote.pushNode(leftChild[node], lo, node, farBound,
+                            vote.childCell(cell, dimensions, splitDim, term));
+                    }
+                    lo = node + 1;
+                    node = rightChild[node];
+                }
+            }
+            // Sottoalberi piccoli: scansione sequenziale delle coordinate, senza passare dalla coda
+            for (int pos = lo; pos < hi; pos++) {
+                vote.countVisit();
+                vote.offerCandidate(pointIds[pos],
+                    pos == root ? rootRank : kernel.rank(query, coords, pos * dimensions, dimensions),
+                    k - confirmed);
+            }
+
+            // Conferma i candidati che nessun sottoalbero in coda può più superare
+            double next = vote.nextNodeBound();
+            int slot;
+            while (confirmed < k && (slot = vote.nearestCandidate()) >= 0 && vote.candidateRank(slot) <= next) {
+                vote.add(labels[vote.candidateId(slot)], kernel.toDistance(vote.candidateRank(slot)));
+                vote.removeNearestCandidate();
+                confirmed++;
+            }
+            if (confirmed == k || !vote.hasNodes()) {
+                // Senza sottoalberi in coda il limite è infinito: tutti i candidati sono già confermati
+                return vote.winner();
+            }
+            // I vicini mancanti sono candidati oltre il limite della coda o punti non ancora visitati
+            if (confirmed > 0 && vote.isDecided(k - confirmed, kernel.toDistance(next))) {
+                vote.markTerminatedEarly();
+                return vote.winner();
+            }
+
+            bound = next;
+            node = vote.nextNode();
+            lo = vote.nextNodeLo();
+            hi = vote.nextNodeHi();
+            cell = vote.nextNodeCell();
+            vote.popNode();
+        }
+    }
+
+    /**
+     * Restituisce il numero di punti nell'indice.
+     *
+     * @return Numero di punti
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce il numero di dimensioni delle features.
+     *
+     * @return Numero di dimensioni
+     */
+    @Override
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Restituisce la metrica di distanza dell'indice.
+     *
+     * @return Metrica scelta alla costruzione
+     */
+    @Override
+    public DistanceKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Restituisce la normalizzazione memorizzata con l'indice.
+     *
+     * @return Normalizzazione delle features, null se l'indice lavora su valori grezzi
+     */
+    @Override
+    public FeatureNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * Calcola l'altezza dell'albero.
+     *
+     * @return Altezza (0 se vuoto)
+     */
+    @Override
+    public int height() {
+        return height(root);
+    }
+
+    private int height(int node) {
+        if (node < 0) {
+            return 0;
+        }
+        return 1 + Math.max(height(leftChild[node]), height(rightChild[node]));
+    }
+}
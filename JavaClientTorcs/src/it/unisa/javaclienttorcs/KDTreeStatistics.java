@@ -0,0 +1,127 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+
+/**
+ * Statistiche di qualità di un KD-tree misurate su un campione di query: altezza rispetto a
+ * quella di un albero bilanciato e nodi visitati per ricerca dei K vicini. A parità di dataset
+ * le visite misurano quanto la {@link SplitStrategy} scelta aiuta la potatura.
+ */
+public final class KDTreeStatistics {
+
+    private final int size;
+    private final int height;
+    private final int queries;
+    private final double averageVisits;
+    private final int p90Visits;
+    private final double averageMicros;
+
+    private KDTreeStatistics(int size, int height, int queries, double averageVisits, int p90Visits,
+                             double averageMicros) {
+        this.size = size;
+        this.height = height;
+        this.queries = queries;
+        this.averageVisits = averageVisits;
+        this.p90Visits = p90Visits;
+        this.averageMicros = averageMicros;
+    }
+
+    /**
+     * Esegue le query del campione sull'indice e raccoglie le statistiche.
+     *
+     * @param index Indice da valutare
+     * @param sample Features grezze delle query (ad esempio righe di un dataset di test)
+     * @param k Numero di vicini per query
+     * @return Statistiche dell'indice
+     */
+    public static KDTreeStatistics measure(NeighborIndex index, double[][] sample, int k) {
+        NeighborHeap heap = new NeighborHeap(k);
+        int[] visits = new int[sample.length];
+        long total = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < sample.length; i++) {
+            index.query(sample[i], k, heap);
+            visits[i] = heap.getOfferCount();
+            total += visits[i];
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(visits);
+        int n = sample.length;
+        return new KDTreeStatistics(index.size(), index.height(), n,
+            n == 0 ? 0.0 : (double) total / n,
+            n == 0 ? 0 : visits[Math.min(n - 1, (int) (n * 0.9))],
+            n == 0 ? 0.0 : elapsed / 1e3 / n);
+    }
+
+    /**
+     * Restituisce l'altezza minima di un albero binario con lo stesso numero di nodi.
+     *
+     * @return Altezza di un albero bilanciato
+     */
+    public int getBalancedHeight() {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * Restituisce il numero di punti dell'indice.
+     *
+     * @return Numero di punti
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Restituisce l'altezza dell'albero.
+     *
+     * @return Altezza
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Restituisce il numero di query del campione.
+     *
+     * @return Query eseguite
+     */
+    public int getQueries() {
+        return queries;
+    }
+
+    /**
+     * Restituisce i nodi visitati in media per query.
+     *
+     * @return Visite medie
+     */
+    public double getAverageVisits() {
+        return averageVisits;
+    }
+
+    /**
+     * Restituisce il 90-esimo percentile dei nodi visitati per query.
+     *
+     * @return Visite al 90-esimo percentile
+     */
+    public int getP90Visits() {
+        return p90Visits;
+    }
+
+    /**
+     * Restituisce il tempo medio per query (un solo thread, comprende il riscaldamento del JIT).
+     *
+     * @return Microsecondi per query
+     */
+    public double getAverageMicros() {
+        return averageMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("KDTreeStatistics{punti=%d, altezza=%d (bilanciato %d), visite medie=%.1f"
+                             + " (%.2f%% dei punti), visite p90=%d, tempo medio=%.1f us}",
+                             size, height, getBalancedHeight(), averageVisits,
+                             size == 0 ? 0.0 : averageVisits * 100.0 / size, p90Visits, averageMicros);
+    }
+}
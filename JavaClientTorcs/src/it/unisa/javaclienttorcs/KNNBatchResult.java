@@ -0,0 +1,120 @@
+package it.unisa.javaclienttorcs;
+
+/**
+ * Risultato di una query KNN a lotti.
+ * Contiene le matrici (memorizzate per righe in array primitivi) degli indici dei vicini
+ * e delle rispettive distanze: la riga q corrisponde alla q-esima query, ordinata per distanza crescente.
+ * Le posizioni non riempite (dataset con meno di K punti) hanno indice -1 e distanza +infinito.
+ */
+public class KNNBatchResult {
+
+    private final int queryCount;
+    private final int k;
+    private final int[] indices;
+    private final double[] distances;
+    private final int[] counts;
+
+    /**
+     * Costruttore del risultato.
+     *
+     * @param queryCount Numero di query
+     * @param k Numero di vicini per query
+     */
+    public KNNBatchResult(int queryCount, int k) {
+        this.queryCount = queryCount;
+        this.k = k;
+        this.indices = new int[queryCount * k];
+        this.distances = new double[queryCount * k];
+        this.counts = new int[queryCount];
+    }
+
+    /**
+     * Copia nella riga indicata i vicini ordinati contenuti nell'heap.
+     *
+     * @param query Indice della query
+     * @param heap Heap con i vicini già ordinati per distanza crescente
+     * @param count Numero di vicini validi nell'heap
+     */
+    void store(int query, NeighborHeap heap, int count) {
+        int base = query * k;
+        for (int j = 0; j < count; j++) {
+            indices[base + j] = heap.getId(j);
+            distances[base + j] = heap.getDistance(j);
+        }
+        for (int j = count; j < k; j++) {
+            indices[base + j] = -1;
+            distances[base + j] = Double.POSITIVE_INFINITY;
+        }
+        counts[query] = count;
+    }
+
+    /**
+     * Restituisce il numero di query.
+     *
+     * @return Numero di righe delle matrici
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+
+    /**
+     * Restituisce il numero di vicini richiesti per query.
+     *
+     * @return K (numero di colonne delle matrici)
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Restituisce il numero di vicini effettivamente trovati per una query.
+     *
+     * @param query Indice della query
+     * @return Numero di vicini validi (al più K)
+     */
+    public int getNeighborCount(int query) {
+        return counts[query];
+    }
+
+    /**
+     * Restituisce l'indice del j-esimo vicino della query indicata.
+     *
+     * @param query Indice della query
+     * @param j Posizione del vicino (0 = il più vicino)
+     * @return Indice del punto nel dataset di training, -1 se assente
+     */
+    public int getIndex(int query, int j) {
+        return indices[query * k + j];
+    }
+
+    /**
+     * Restituisce la distanza del j-esimo vicino della query indicata.
+     *
+     * @param query Indice della query
+     * @param j Posizione del vicino (0 = il più vicino)
+     * @return Distanza dal punto di query, +infinito se assente
+     */
+    public double getDistance(int query, int j) {
+        return distances[query * k + j];
+    }
+
+    /**
+     * Restituisce la matrice degli indici memorizzata per righe (queryCount x K).
+     * L'array non viene copiato.
+     *
+     * @return Array degli indici dei vicini
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * Restituisce la matrice delle distanze memorizzata per righe (queryCount x K).
+     * L'array non viene copiato.
+     *
+     * @return Array delle distanze dei vicini
+     */
+    public double[] getDistances() {
+        return distances;
+    }
+}
@@ -3,10 +3,13 @@ package it.unisa.javaclienttorcs;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Driver KNN Classificatore che utilizza un algoritmo K-Nearest Neighbors
@@ -14,15 +17,39 @@ import java.util.Map;
  */
 public class KNNClassifierDriver extends Controller {
     
+    /** Indici dei sensori track usati come features (da -90° a +90° ogni 20°) */
+    private static final int[] TRACK_INDICES = {0, 2, 4, 6, 8, 10, 12, 14, 16, 18};
+    
+    /** Classi di azione in ordine di ordinale (values() crea una copia a ogni chiamata) */
+    private static final DrivingAction[] ACTIONS = DrivingAction.values();
+    
+    /** Stato del voto per {@link #predictClass(double[])}, invocabile da più thread */
+    private static final ThreadLocal<NeighborVote> VOTE_SCRATCH =
+        ThreadLocal.withInitial(() -> new NeighborVote(ACTIONS.length));
+    
     private KDTreeClassifier kdTree;
-    private List<DataPointClassifier> trainingData;
     private KNNConfig config;
-    private double[] featureMin;
-    private double[] featureMax;
     
-    // Statistiche per debug
+    // Statistiche per debug (contatori per ordinale della classe)
     private int totalPredictions = 0;
-    private Map<DrivingAction, Integer> actionCounts = new HashMap<>();
+    private final int[] actionCounts = new int[ACTIONS.length];
+    
+    // Buffer riutilizzati da control(): il tick di controllo non alloca memoria a regime
+    private final double[] rawBuffer = new double[14];
+    private final double[] voteBuffer = new double[ACTIONS.length];
+    private final NeighborHeap neighborHeap = new NeighborHeap(16);
+    private final NeighborVote neighborVote = new NeighborVote(ACTIONS.length);
+    private final Action actionBuffer = new Action();
+    
+    // Tabella di decisione precompilata (null per usare sempre la ricerca KNN)
+    private PolicyTable policyTable;
+    private int tableLookups = 0;
+    private int tableHits = 0;
+    
+    // Statistiche del voto con terminazione anticipata
+    private int voteSearches = 0;
+    private int earlyVotes = 0;
+    private long visitedNodes = 0;
     
     /**
      * Costruttore del driver KNN classificatore con dataset di default.
@@ -38,7 +65,6 @@ public class KNNClassifierDriver extends Controller {
      * @param datasetPath Percorso del file dataset discretizzato
      */
     public KNNClassifierDriver(String datasetPath) {
-        this.trainingData = new ArrayList<>();
         this.config = new KNNConfig(datasetPath);
         this.config.setClassifierMode(true); // Imposta modalità classificatore
         
@@ -48,11 +74,6 @@ public class KNNClassifierDriver extends Controller {
         
         this.kdTree = null;
         
-        // Inizializza contatori azioni
-        for (DrivingAction action : DrivingAction.values()) {
-            actionCounts.put(action, 0);
-        }
-        
         System.out.println("[KNN-CLASSIFIER] Driver inizializzato con configurazione ottimizzata:");
         System.out.println("[KNN-CLASSIFIER] - K = " + config.getK() + " (ottimizzato per casi fuori strada)");
         System.out.println("[KNN-CLASSIFIER] - Normalizzazione = " + config.isNormalizeData());
@@ -63,14 +84,7 @@ public class KNNClassifierDriver extends Controller {
         try {
             System.out.println("[KNN-CLASSIFIER] Inizializzazione dataset: " + datasetPath);
             
-            loadTrainingData();
-            
-            if (config.isNormalizeData()) {
-                calculateNormalizationParameters();
-                normalizeTrainingData();
-            }
-            
-            buildKDTree();
+            buildKDTree(loadTrainingData());
             
             System.out.println("[KNN-CLASSIFIER] Inizializzazione completata! Dataset: " + getTrainingDataSize() + " punti");
             printClassDistribution();
@@ -82,18 +96,36 @@ public class KNNClassifierDriver extends Controller {
         }
     }
     
+    /**
+     * Costruttore che utilizza punti di training già in memoria invece del file del dataset.
+     * Usato dalle elaborazioni offline (ad esempio {@link KNNEvaluator}) per costruire
+     * il classificatore su sottoinsiemi del dataset. I punti non vengono modificati né conservati:
+     * la normalizzazione viene applicata dall'indice durante la costruzione.
+     * 
+     * @param config Configurazione del KNN (K e normalizzazione vengono usati così come sono)
+     * @param trainingPoints Punti di training con features grezze
+     */
+    public KNNClassifierDriver(KNNConfig config, List<DataPointClassifier> trainingPoints) {
+        this.config = config;
+        this.config.setClassifierMode(true);
+        
+        buildKDTree(trainingPoints);
+    }
+    
     /**
      * Metodo principale di controllo che determina l'azione da eseguire.
      * Utilizza il classificatore KNN per predire la classe di azione ottimale.
      * PERFORMANCE: Nessun caricamento lazy - tutto precaricato nel costruttore.
+     * A regime il tick non alloca memoria: features, vicini e voti usano buffer del driver
+     * e l'azione restituita è sempre la stessa istanza, sovrascritta al tick successivo.
      * 
      * @param sensors Modello sensoriale contenente lo stato attuale del veicolo
-     * @return Azione da eseguire basata sulla classe predetta
+     * @return Azione da eseguire basata sulla classe predetta (valida fino alla prossima chiamata)
      */
     @Override
     public Action control(SensorModel sensors) {
         // Controllo rapido: se non inizializzato, usa azione di default
-        if (kdTree == null || trainingData.isEmpty()) {
+        if (kdTree == null || kdTree.isEmpty()) {
             return getDefaultAction(sensors);
         }
         
@@ -102,97 +134,274 @@ public class KNNClassifierDriver extends Controller {
             return getOffTrackRecoveryAction(sensors);
         }
         
-        // Estrai le features dai sensori
-        double[] features = extractFeatures(sensors);
-        if (config.isNormalizeData()) {
-            features = normalizeFeatures(features);
-        }
-        
-        // Trova i K vicini più prossimi
-        List<DataPointClassifier> neighbors = kdTree.findKNearestNeighbors(features, config.getK());
-        
-        // Predici la classe di azione
-        DrivingAction predictedAction = predictActionClass(neighbors);
+        // Estrai le features dai sensori nei buffer del driver
+        DrivingAction predictedAction = predictFromSensors(sensors);
         
         // Aggiorna statistiche
         totalPredictions++;
-        actionCounts.put(predictedAction, actionCounts.get(predictedAction) + 1);
+        actionCounts[predictedAction.ordinal()]++;
         
         // Converti la classe in azione e aggiungi gestione marce
-        Action action = predictedAction.toAction();
-        action.gear = getAutoGear(sensors);
+        predictedAction.applyTo(actionBuffer);
+        actionBuffer.gear = getAutoGear(sensors);
         
-        // Debug periodico
-        if (totalPredictions % 100 == 0) {
+        // Debug periodico (la formattazione alloca: solo con logging abilitato)
+        if (config.isEnableLogging() && totalPredictions % 100 == 0) {
             System.out.printf("[KNN-CLASSIFIER] Predizioni: %d | Azione: %s | Vicini: %d%n", 
-                totalPredictions, predictedAction.getDescription(), neighbors.size());
+                totalPredictions, predictedAction.getDescription(),
+                config.isEarlyVote() ? neighborVote.getNeighborCount() : neighborHeap.size());
         }
         
-        return action;
+        return actionBuffer;
+    }
+    
+    /**
+     * Estrae le features nel buffer del driver, cerca i vicini e vota la classe.
+     * La normalizzazione è fusa nella ricerca dall'indice. Con una tabella di decisione la ricerca
+     * avviene solo per le celle assenti o ambigue.
+     * Usato dal tick di controllo (un solo thread): non alloca memoria.
+     * 
+     * @param sensors Modello sensoriale del veicolo
+     * @return Classe di azione predetta
+     */
+    private DrivingAction predictFromSensors(SensorModel sensors) {
+        extractFeatures(sensors, rawBuffer);
+        if (policyTable != null) {
+            tableLookups++;
+            int decision = policyTable.lookup(rawBuffer);
+            if (decision != PolicyTable.MISS) {
+                tableHits++;
+                return ACTIONS[decision];
+            }
+        }
+        if (config.isEarlyVote()) {
+            int winner = kdTree.vote(rawBuffer, config.getK(), neighborVote);
+            voteSearches++;
+            visitedNodes += neighborVote.getVisitedNodes();
+            if (neighborVote.isTerminatedEarly()) {
+                earlyVotes++;
+            }
+            return winner < 0 ? DrivingAction.STRAIGHT_NORMAL : ACTIONS[winner];
+        }
+        int count = kdTree.findKNearestNeighbors(rawBuffer, config.getK(), neighborHeap);
+        return voteActionClass(neighborHeap, count, voteBuffer);
+    }
+    
+    /**
+     * Predice la classe di azione a partire da features grezze, seguendo lo stesso percorso di
+     * {@link #control(SensorModel)} (tabella di decisione se presente, normalizzazione,
+     * ricerca dei vicini, voto pesato).
+     * Non aggiorna le statistiche del driver e può essere invocato da più thread.
+     * 
+     * @param rawFeatures Array di 14 features non normalizzate
+     * @return Classe di azione predetta
+     */
+    public DrivingAction predictClass(double[] rawFeatures) {
+        if (kdTree == null || kdTree.isEmpty()) {
+            return DrivingAction.STRAIGHT_NORMAL;
+        }
+        if (policyTable != null) {
+            int decision = policyTable.lookup(rawFeatures);
+            if (decision != PolicyTable.MISS) {
+                return ACTIONS[decision];
+            }
+        }
+        
+        // Stato per thread o buffer locali: il metodo può essere chiamato in parallelo sullo stesso driver
+        if (config.isEarlyVote()) {
+            int winner = kdTree.vote(rawFeatures, config.getK(), VOTE_SCRATCH.get());
+            return winner < 0 ? DrivingAction.STRAIGHT_NORMAL : ACTIONS[winner];
+        }
+        NeighborHeap heap = new NeighborHeap(config.getK());
+        int count = kdTree.findKNearestNeighbors(rawFeatures, config.getK(), heap);
+        return voteActionClass(heap, count, new double[ACTIONS.length]);
+    }
+    
+    /**
+     * Predice le classi di azione per un lotto di stati: la tabella di decisione (se presente) risponde
+     * per le sue celle, gli stati restanti sono cercati con una sola ricerca a lotti sul pool indicato
+     * ({@link KDTreeClassifier#findKNearestNeighborsBatch(double[][], int, ForkJoinPool)}) e votati come
+     * in {@link #predictClass(double[])}. Il voto anticipato non cambia la classe vincente, quindi le
+     * classi coincidono con quelle del tick di guida.
+     * 
+     * @param rawFeatures Features non normalizzate, una riga per stato
+     * @param pool Pool su cui eseguire le ricerche
+     * @return Classe di azione predetta per ogni stato, in ordine
+     */
+    public DrivingAction[] predictClassBatch(double[][] rawFeatures, ForkJoinPool pool) {
+        DrivingAction[] predicted = new DrivingAction[rawFeatures.length];
+        if (kdTree == null || kdTree.isEmpty()) {
+            Arrays.fill(predicted, DrivingAction.STRAIGHT_NORMAL);
+            return predicted;
+        }
+        
+        int[] misses = new int[rawFeatures.length];
+        int missCount = 0;
+        for (int q = 0; q < rawFeatures.length; q++) {
+            int decision = policyTable == null ? PolicyTable.MISS : policyTable.lookup(rawFeatures[q]);
+            if (decision != PolicyTable.MISS) {
+                predicted[q] = ACTIONS[decision];
+            } else {
+                misses[missCount++] = q;
+            }
+        }
+        if (missCount == 0) {
+            return predicted;
+        }
+        
+        double[][] queries = new double[missCount][];
+        for (int i = 0; i < missCount; i++) {
+            queries[i] = rawFeatures[misses[i]];
+        }
+        KNNBatchResult neighbors = kdTree.findKNearestNeighborsBatch(queries, config.getK(), pool);
+        double[] votes = new double[ACTIONS.length];
+        for (int i = 0; i < missCount; i++) {
+            Arrays.fill(votes, 0.0);
+            for (int j = 0; j < neighbors.getNeighborCount(i); j++) {
+                double weight = 1.0 / (neighbors.getDistance(i, j) + 1e-10);
+                votes[kdTree.getActionClass(neighbors.getIndex(i, j)).ordinal()] += weight;
+            }
+            predicted[misses[i]] = winningClass(votes);
+        }
+        return predicted;
+    }
+    
+    /**
+     * Restituisce il KD-tree costruito sui dati di training (indici nell'ordine dei punti di training).
+     * Le query sul KD-tree usano features grezze: la normalizzazione è memorizzata nell'indice.
+     * 
+     * @return KD-tree, o null se il driver non è inizializzato
+     */
+    public KDTreeClassifier getKDTree() {
+        return kdTree;
+    }
+    
+    /**
+     * Imposta la tabella di decisione precompilata ({@link PolicyTableCompiler}) consultata prima
+     * della ricerca KNN.
+     * 
+     * @param policyTable Tabella di decisione, null per usare sempre la ricerca KNN
+     */
+    public void setPolicyTable(PolicyTable policyTable) {
+        if (policyTable != null) {
+            if (policyTable.getDimensions() != rawBuffer.length) {
+                throw new IllegalArgumentException("La tabella di decisione gestisce " + policyTable.getDimensions()
+                    + " features invece di " + rawBuffer.length);
+            }
+            if (policyTable.getK() != config.getK() || policyTable.getNormalization() != config.getEffectiveNormalization()) {
+                throw new IllegalArgumentException("La tabella di decisione è compilata per K=" + policyTable.getK()
+                    + " e normalizzazione " + policyTable.getNormalization() + ", il classificatore usa K="
+                    + config.getK() + " e normalizzazione " + config.getEffectiveNormalization());
+            }
+        }
+        this.policyTable = policyTable;
+        this.tableLookups = 0;
+        this.tableHits = 0;
+    }
+    
+    /**
+     * Carica da file la tabella di decisione precompilata.
+     * 
+     * @param path Percorso della tabella salvata da {@link PolicyTableCompiler}
+     * @throws IOException Se il file non è leggibile o non è una tabella di decisione
+     */
+    public void loadPolicyTable(String path) throws IOException {
+        setPolicyTable(PolicyTable.load(Path.of(path)));
+        System.out.println("[KNN-CLASSIFIER] " + policyTable);
+    }
+    
+    /**
+     * Restituisce la configurazione del classificatore.
+     * 
+     * @return Configurazione corrente
+     */
+    public KNNConfig getConfig() {
+        return config;
+    }
+    
+    /**
+     * Restituisce la tabella di decisione in uso.
+     * 
+     * @return Tabella di decisione, o null se il driver usa sempre la ricerca KNN
+     */
+    public PolicyTable getPolicyTable() {
+        return policyTable;
     }
     
     /**
      * Carica i dati di training dal file CSV e li converte in classi discrete.
+     * 
+     * @return Punti di training, da rilasciare dopo la costruzione del KD-Tree
      */
-    private void loadTrainingData() {
+    private List<DataPointClassifier> loadTrainingData() {
         String datasetPath = config.getDatasetPath();
+        List<DataPointClassifier> trainingData = new ArrayList<>();
         int totalSamples = 0;
         int validSamples = 0;
         
         System.out.println("[KNN-CLASSIFIER] Caricamento dataset: " + datasetPath);
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(datasetPath))) {
-            String line = reader.readLine(); // Skip header
+        if (TelemetryFile.isTelemetry(datasetPath)) {
+            // Registrazione binaria: classe dalla colonna actionClass o dalle azioni continue
+            try {
+                KNNDataset dataset = KNNDataset.load(datasetPath);
+                trainingData.addAll(dataset.toClassifierPoints(dataset.allRows()));
+            } catch (IOException e) {
+                throw new RuntimeException("Errore lettura dataset: " + e.getMessage(), e);
+            }
+            totalSamples = validSamples = trainingData.size();
+        } else {
+            try (BufferedReader reader = new BufferedReader(new FileReader(datasetPath))) {
+                String line = reader.readLine(); // Skip header
             
-            while ((line = reader.readLine()) != null) {
-                totalSamples++;
-                String[] values = line.split(",");
+                while ((line = reader.readLine()) != null) {
+                    totalSamples++;
+                    String[] values = line.split(",");
                 
-                try {
-                    // Estrai features (sensori)
-                    double[] features = new double[14]; // 10 sensori track + 4 sensori posizione
+                    try {
+                        // Estrai features (sensori)
+                        double[] features = new double[14]; // 10 sensori track + 4 sensori posizione
                     
-                    // Track sensors (0,2,4,6,8,10,12,14,16,18)
-                    for (int i = 0; i < 10; i++) {
-                        features[i] = Double.parseDouble(values[i]);
-                    }
+                        // Track sensors (0,2,4,6,8,10,12,14,16,18)
+                        for (int i = 0; i < 10; i++) {
+                            features[i] = Double.parseDouble(values[i]);
+                        }
                     
-                    // Position sensors
-                    features[10] = Double.parseDouble(values[10]); // speedX
-                    features[11] = Double.parseDouble(values[11]); // angleToTrackAxis
-                    features[12] = Double.parseDouble(values[12]); // trackPosition
-                    features[13] = Double.parseDouble(values[13]); // distanceFromStartLine
+                        // Position sensors
+                        features[10] = Double.parseDouble(values[10]); // speedX
+                        features[11] = Double.parseDouble(values[11]); // angleToTrackAxis
+                        features[12] = Double.parseDouble(values[12]); // trackPosition
+                        features[13] = Double.parseDouble(values[13]); // distanceFromStartLine
                     
-                    // Leggi direttamente la classe di azione dal dataset discretizzato (colonna 15, indice 14)
-                    String actionClassName = values[14].trim();
-                    DrivingAction actionClass = DrivingAction.valueOf(actionClassName);
+                        // Leggi direttamente la classe di azione dal dataset discretizzato (colonna 15, indice 14)
+                        String actionClassName = values[14].trim();
+                        DrivingAction actionClass = DrivingAction.valueOf(actionClassName);
                     
-                    // Crea punto dati classificatore
-                    DataPointClassifier dataPoint = new DataPointClassifier(features, actionClass);
-                    trainingData.add(dataPoint);
-                    validSamples++;
+                        // Crea punto dati classificatore
+                        DataPointClassifier dataPoint = new DataPointClassifier(features, actionClass);
+                        trainingData.add(dataPoint);
+                        validSamples++;
                     
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                    System.err.println("[KNN-CLASSIFIER] Errore parsing riga " + totalSamples + ": " + e.getMessage());
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        System.err.println("[KNN-CLASSIFIER] Errore parsing riga " + totalSamples + ": " + e.getMessage());
+                    }
                 }
-            }
             
-        } catch (IOException e) {
-            throw new RuntimeException("Errore lettura dataset: " + e.getMessage(), e);
+            } catch (IOException e) {
+                throw new RuntimeException("Errore lettura dataset: " + e.getMessage(), e);
+            }
         }
         
         System.out.printf("[KNN-CLASSIFIER] Dataset caricato: %d/%d campioni validi%n", validSamples, totalSamples);
         
-        // Stampa distribuzione delle classi
-        printClassDistribution();
-        
         if (validSamples == 0) {
             throw new RuntimeException("Nessun campione valido trovato nel dataset");
         }
+        return trainingData;
     }
     
     /**
-     * Stampa la distribuzione delle classi nel dataset.
+     * Stampa la distribuzione delle classi nel dataset (dalle classi memorizzate nel KD-Tree).
      */
     private void printClassDistribution() {
         Map<DrivingAction, Integer> distribution = new HashMap<>();
@@ -200,14 +409,16 @@ public class KNNClassifierDriver extends Controller {
             distribution.put(action, 0);
         }
         
-        for (DataPointClassifier point : trainingData) {
-            distribution.put(point.getActionClass(), distribution.get(point.getActionClass()) + 1);
+        int size = getTrainingDataSize();
+        for (int i = 0; i < size; i++) {
+            DrivingAction actionClass = kdTree.getActionClass(i);
+            distribution.put(actionClass, distribution.get(actionClass) + 1);
         }
         
         System.out.println("[KNN-CLASSIFIER] Distribuzione classi nel dataset:");
         for (Map.Entry<DrivingAction, Integer> entry : distribution.entrySet()) {
             if (entry.getValue() > 0) {
-                double percentage = (entry.getValue() * 100.0) / trainingData.size();
+                double percentage = (entry.getValue() * 100.0) / size;
                 System.out.printf("[KNN-CLASSIFIER] - %s: %d (%.1f%%)%n", 
                     entry.getKey().getDescription(), entry.getValue(), percentage);
             }
@@ -215,91 +426,38 @@ public class KNNClassifierDriver extends Controller {
     }
     
     /**
-     * Calcola i parametri di normalizzazione (min/max) per ogni feature.
-     */
-    private void calculateNormalizationParameters() {
-        if (trainingData.isEmpty()) {
-            return;
-        }
-        
-        int numFeatures = trainingData.get(0).features.length;
-        featureMin = new double[numFeatures];
-        featureMax = new double[numFeatures];
-        
-        // Inizializza con il primo punto
-        System.arraycopy(trainingData.get(0).features, 0, featureMin, 0, numFeatures);
-        System.arraycopy(trainingData.get(0).features, 0, featureMax, 0, numFeatures);
-        
-        // Trova min e max per ogni feature
-        for (DataPointClassifier point : trainingData) {
-            for (int i = 0; i < numFeatures; i++) {
-                featureMin[i] = Math.min(featureMin[i], point.features[i]);
-                featureMax[i] = Math.max(featureMax[i], point.features[i]);
-            }
-        }
-    }
-    
-    /**
-     * Normalizza tutti i dati di training.
-     */
-    private void normalizeTrainingData() {
-        for (DataPointClassifier point : trainingData) {
-            point.features = normalizeFeatures(point.features);
-        }
-    }
-    
-    /**
-     * Normalizza un array di features usando normalizzazione manuale ottimizzata.
+     * Normalizza un array di features con la normalizzazione memorizzata nel KD-Tree
+     * (range fissi in [0, 10] di default, vedi {@link FeatureNormalizer}).
+     * Non serve per le ricerche, che accettano features grezze: resta per analisi e benchmark.
      * 
      * @param features Array delle features da normalizzare
-     * @return Array delle features normalizzate nel range [0, 10]
+     * @return Nuovo array delle features normalizzate
      */
-    private double[] normalizeFeatures(double[] features) {
-        if (!config.isNormalizeData()) {
-            return features.clone();
-        }
-        
-        double[] normalized = new double[features.length];
-        
-        for (int i = 0; i < features.length; i++) {
-            if (i < 10) {
-                // Track sensors: normalizzazione manuale [0, 200] -> [0, 10]
-                if (features[i] < 0) {
-                    normalized[i] = 0.0;
-                } else {
-                    normalized[i] = Math.min(features[i] / 200.0, 1.0) * 10.0;
-                }
-            } else if (i == 10) {
-                // speedX: [0, 288] -> [0, 10]
-                normalized[i] = Math.max(0.0, Math.min(features[i] / 288.0, 1.0)) * 10.0;
-            } else if (i == 11) {
-                // angleToTrackAxis: [-π, +π] -> [0, 10]
-                double normalizedAngle = (features[i] + Math.PI) / (2 * Math.PI);
-                normalized[i] = Math.max(0.0, Math.min(1.0, normalizedAngle)) * 10.0;
-            } else if (i == 12) {
-                // trackPosition: [-1, +1] -> [0, 10]
-                double normalizedPos = (features[i] + 1.0) / 2.0;
-                normalized[i] = Math.max(0.0, Math.min(1.0, normalizedPos)) * 10.0;
-            } else if (i == 13) {
-                // distanceFromStartLine: [0, 5784.10] -> [0, 10]
-                normalized[i] = Math.max(0.0, Math.min(features[i] / 5784.10, 1.0)) * 10.0;
-            } else {
-                normalized[i] = features[i];
-            }
-        }
-        return normalized;
+    double[] normalizeFeatures(double[] features) {
+        FeatureNormalizer normalizer = kdTree == null ? null : kdTree.getNormalizer();
+        return normalizer == null ? features.clone() : normalizer.apply(features);
     }
     
     /**
-     * Costruisce il KD-Tree dai dati di training.
+     * Costruisce il KD-Tree dai dati di training, con la normalizzazione della configurazione
+     * calcolata sui dati e memorizzata nell'indice. Il KD-Tree non conserva i punti.
+     * 
+     * @param trainingData Punti di training (features grezze)
      */
-    private void buildKDTree() {
+    private void buildKDTree(List<DataPointClassifier> trainingData) {
         if (trainingData.isEmpty()) {
             throw new RuntimeException("Nessun dato di training disponibile per costruire il KD-Tree");
         }
         
         int dimensions = trainingData.get(0).features.length;
-        kdTree = new KDTreeClassifier(dimensions);
+        if (config.getLshParameters() != null) {
+            kdTree = new KDTreeClassifier(dimensions, config.getDistanceKernel(), config.getFeatureWeights(),
+                                          config.getEffectiveNormalization(), config.getLshParameters());
+        } else {
+            kdTree = new KDTreeClassifier(dimensions, config.getDistanceKernel(), config.getFeatureWeights(),
+                                          config.getEffectiveNormalization(), config.getSplitStrategy(),
+                                          config.getPcaComponents(), config.isPcaWhiten(), config.isOffHeapIndex());
+        }
         kdTree.build(trainingData);
         
         System.out.println("[KNN-CLASSIFIER] " + kdTree.getDebugInfo());
@@ -311,15 +469,22 @@ public class KNNClassifierDriver extends Controller {
      * @param sensors Modello sensoriale del veicolo
      * @return Array di 14 features estratte
      */
-    private double[] extractFeatures(SensorModel sensors) {
-        double[] features = new double[14];
-        
+    double[] extractFeatures(SensorModel sensors) {
+        return extractFeatures(sensors, new double[14]);
+    }
+    
+    /**
+     * Estrae le features dai sensori del veicolo nel buffer indicato.
+     * 
+     * @param sensors Modello sensoriale del veicolo
+     * @param features Buffer di output di 14 elementi
+     * @return Il buffer di output con le features estratte
+     */
+    double[] extractFeatures(SensorModel sensors, double[] features) {
         // Track sensors (0,2,4,6,8,10,12,14,16,18)
         double[] trackSensors = sensors.getTrackEdgeSensors();
-        int[] selectedIndices = {0, 2, 4, 6, 8, 10, 12, 14, 16, 18};
-        
-        for (int i = 0; i < 10; i++) {
-            features[i] = trackSensors[selectedIndices[i]];
+        for (int i = 0; i < TRACK_INDICES.length; i++) {
+            features[i] = trackSensors[TRACK_INDICES[i]];
         }
         
         // Position sensors
@@ -333,37 +498,40 @@ public class KNNClassifierDriver extends Controller {
     
     /**
      * Predice la classe di azione basandosi sui vicini più prossimi.
-     * Utilizza voto di maggioranza con peso basato sulla distanza.
+     * Utilizza voto di maggioranza con peso basato sulla distanza, accumulato per ordinale
+     * della classe in un array primitivo.
      * 
-     * @param neighbors Lista dei vicini più prossimi
+     * @param heap Heap con i vicini ordinati (indici riferiti al KD-tree)
+     * @param count Numero di vicini validi
+     * @param votes Buffer dei voti (una posizione per classe), azzerato prima del voto
      * @return Classe di azione predetta
      */
-    private DrivingAction predictActionClass(List<DataPointClassifier> neighbors) {
-        if (neighbors.isEmpty()) {
+    private DrivingAction voteActionClass(NeighborHeap heap, int count, double[] votes) {
+        if (count == 0) {
             return DrivingAction.STRAIGHT_NORMAL; // Azione di default
         }
         
-        // Mappa per contare i voti per ogni classe
-        Map<DrivingAction, Double> votes = new HashMap<>();
-        for (DrivingAction action : DrivingAction.values()) {
-            votes.put(action, 0.0);
-        }
-        
         // Calcola voti pesati per distanza
-        for (DataPointClassifier neighbor : neighbors) {
-            double weight = 1.0 / (neighbor.distance + 1e-10); // Evita divisione per zero
-            DrivingAction actionClass = neighbor.getActionClass();
-            votes.put(actionClass, votes.get(actionClass) + weight);
+        Arrays.fill(votes, 0.0);
+        for (int i = 0; i < count; i++) {
+            double weight = 1.0 / (heap.getDistance(i) + 1e-10); // Evita divisione per zero
+            votes[kdTree.getActionClass(heap.getId(i)).ordinal()] += weight;
         }
         
-        // Trova la classe con il voto più alto
+        return winningClass(votes);
+    }
+    
+    /**
+     * Trova la classe con il voto più alto (la prima a parità, quella di default senza voti).
+     */
+    private static DrivingAction winningClass(double[] votes) {
         DrivingAction bestAction = DrivingAction.STRAIGHT_NORMAL;
         double maxVotes = 0.0;
         
-        for (Map.Entry<DrivingAction, Double> entry : votes.entrySet()) {
-            if (entry.getValue() > maxVotes) {
-                maxVotes = entry.getValue();
-                bestAction = entry.getKey();
+        for (int c = 0; c < votes.length; c++) {
+            if (votes[c] > maxVotes) {
+                maxVotes = votes[c];
+                bestAction = ACTIONS[c];
             }
         }
         
@@ -441,32 +609,21 @@ public class KNNClassifierDriver extends Controller {
      * @return Azione di recupero determinata dal KNN
      */
     private Action getOffTrackRecoveryAction(SensorModel sensors) {
-        // Estrae le caratteristiche dai sensori
-        double[] features = extractFeatures(sensors);
-        
-        // Normalizza le caratteristiche se necessario
-        if (config.isNormalizeData()) {
-            features = normalizeFeatures(features);
-        }
-        
-        // Trova i K vicini più prossimi
-        List<DataPointClassifier> neighbors = kdTree.findKNearestNeighbors(features, config.getK());
-        
-        // Predice l'azione basandosi sui vicini
-        DrivingAction predictedAction = predictActionClass(neighbors);
+        // Estrae le caratteristiche, trova i vicini (normalizzati dall'indice) e predice l'azione
+        DrivingAction predictedAction = predictFromSensors(sensors);
         
         // Converte l'azione e imposta la marcia
-        Action action = predictedAction.toAction();
-        action.gear = getAutoGear(sensors);
+        predictedAction.applyTo(actionBuffer);
+        actionBuffer.gear = getAutoGear(sensors);
         
-        // Debug per il recupero
-        if (totalPredictions % 25 == 0) {
+        // Debug per il recupero (solo con logging abilitato)
+        if (config.isEnableLogging() && totalPredictions % 25 == 0) {
             System.out.printf("[KNN-CLASSIFIER] FUORI STRADA - KNN Predice: %s%n", predictedAction.getDescription());
             System.out.printf("[KNN-CLASSIFIER] - Velocità: %.1f | Angolo: %.2f%n", 
                 sensors.getSpeed(), sensors.getAngleToTrackAxis());
         }
         
-        return action;
+        return actionBuffer;
     }
     
     /**
@@ -475,13 +632,22 @@ public class KNNClassifierDriver extends Controller {
     public void printFinalStatistics() {
         System.out.println("\n[KNN-CLASSIFIER] Statistiche finali:");
         System.out.println("[KNN-CLASSIFIER] Predizioni totali: " + totalPredictions);
+        if (policyTable != null && tableLookups > 0) {
+            System.out.printf("[KNN-CLASSIFIER] Risposte dalla tabella di decisione: %d/%d (%.1f%%)%n",
+                tableHits, tableLookups, (tableHits * 100.0) / tableLookups);
+        }
+        if (voteSearches > 0) {
+            System.out.printf("[KNN-CLASSIFIER] Voti chiusi in anticipo: %d/%d (%.1f%%), punti visitati in media: %.1f%n",
+                earlyVotes, voteSearches, (earlyVotes * 100.0) / voteSearches, (double) visitedNodes / voteSearches);
+        }
         System.out.println("[KNN-CLASSIFIER] Distribuzione azioni predette:");
         
-        for (Map.Entry<DrivingAction, Integer> entry : actionCounts.entrySet()) {
-            if (entry.getValue() > 0) {
-                double percentage = (entry.getValue() * 100.0) / totalPredictions;
+        for (DrivingAction action : ACTIONS) {
+            int count = actionCounts[action.ordinal()];
+            if (count > 0) {
+                double percentage = (count * 100.0) / totalPredictions;
                 System.out.printf("[KNN-CLASSIFIER] - %s: %d (%.1f%%)%n", 
-                    entry.getKey().getDescription(), entry.getValue(), percentage);
+                    action.getDescription(), count, percentage);
             }
         }
     }
@@ -492,7 +658,7 @@ public class KNNClassifierDriver extends Controller {
      * @return Numero di punti dati di training
      */
     public int getTrainingDataSize() {
-        return trainingData.size();
+        return kdTree == null ? 0 : kdTree.size();
     }
     
     /**
@@ -501,7 +667,7 @@ public class KNNClassifierDriver extends Controller {
      * @return true se il KD-Tree è costruito e i dati sono caricati
      */
     public boolean isReady() {
-        return kdTree != null && !trainingData.isEmpty();
+        return kdTree != null && !kdTree.isEmpty();
     }
     
     /**
@@ -512,9 +678,12 @@ public class KNNClassifierDriver extends Controller {
     public void reset() {
         // Reset delle statistiche
         totalPredictions = 0;
-        for (DrivingAction action : DrivingAction.values()) {
-            actionCounts.put(action, 0);
-        }
+        tableLookups = 0;
+        tableHits = 0;
+        voteSearches = 0;
+        earlyVotes = 0;
+        visitedNodes = 0;
+        Arrays.fill(actionCounts, 0);
         
         System.out.println("[KNN-CLASSIFIER] Driver resettato");
     }
@@ -1,5 +1,8 @@
 package it.unisa.javaclienttorcs;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Configurazione per l'algoritmo KNN.
  * Contiene i parametri necessari per il funzionamento del driver KNN.
@@ -16,9 +19,39 @@ public class KNNConfig {
     // Flag per abilitare la normalizzazione dei dati
     private boolean normalizeData = true;
     
+    // Modalità di calcolo della normalizzazione (range fissi dei sensori o statistiche del dataset)
+    private FeatureNormalizer.Mode normalizationMode = FeatureNormalizer.Mode.FIXED;
+    
     // Modalità di funzionamento: true per classificatore, false per regressore
     private boolean classifierMode = false;
     
+    // Metrica di distanza usata dal KD-tree
+    private DistanceKernel distanceKernel = DistanceKernel.SQUARED_L2;
+    
+    // Pesi per feature della metrica pesata (null per le altre metriche)
+    private double[] featureWeights = null;
+    
+    // Indice KD-tree in memoria nativa invece che sullo heap Java
+    private boolean offHeapIndex = false;
+    
+    // Strategia di scelta del piano di split nella costruzione del KD-tree
+    private SplitStrategy splitStrategy = SplitStrategy.ROUND_ROBIN;
+    
+    // Componenti principali su cui proiettare le features prima della ricerca (0 = nessuna proiezione)
+    private int pcaComponents = 0;
+    
+    // Whitening delle componenti principali (varianza unitaria per componente)
+    private boolean pcaWhiten = false;
+    
+    // Parametri dell'indice approssimato LSH al posto del KD-tree (null = KD-tree esatto)
+    private LSHParameters lshParameters = null;
+    
+    // Voto del classificatore con terminazione anticipata della ricerca dei vicini
+    private boolean earlyVote = true;
+    
+    // Flag per il logging periodico dei driver (disabilitato per performance)
+    private boolean enableLogging = false;
+    
     /**
      * Costruttore di default.
      */
@@ -123,6 +156,36 @@ public class KNNConfig {
         this.normalizeData = normalizeData;
     }
     
+    /**
+     * Restituisce la modalità di normalizzazione usata quando la normalizzazione è abilitata.
+     * 
+     * @return Modalità di normalizzazione
+     */
+    public FeatureNormalizer.Mode getNormalizationMode() {
+        return normalizationMode;
+    }
+    
+    /**
+     * Imposta la modalità di normalizzazione (range fissi, min-max o z-score sul dataset).
+     * 
+     * @param normalizationMode Modalità di normalizzazione
+     */
+    public void setNormalizationMode(FeatureNormalizer.Mode normalizationMode) {
+        if (normalizationMode == null) {
+            throw new IllegalArgumentException("La modalità di normalizzazione non può essere null");
+        }
+        this.normalizationMode = normalizationMode;
+    }
+    
+    /**
+     * Restituisce la modalità di normalizzazione da memorizzare nell'indice.
+     * 
+     * @return Modalità di normalizzazione, o null se la normalizzazione è disabilitata
+     */
+    public FeatureNormalizer.Mode getEffectiveNormalization() {
+        return normalizeData ? normalizationMode : null;
+    }
+    
     /**
      * Verifica se è abilitata la modalità classificatore.
      * 
@@ -142,12 +205,176 @@ public class KNNConfig {
     }
     
     /**
-     * Verifica se il logging è abilitato (per compatibilità).
+     * Restituisce la metrica di distanza del KD-tree.
+     * 
+     * @return Metrica di distanza
+     */
+    public DistanceKernel getDistanceKernel() {
+        return distanceKernel;
+    }
+    
+    /**
+     * Imposta la metrica di distanza del KD-tree.
+     * 
+     * @param distanceKernel Metrica di distanza
+     */
+    public void setDistanceKernel(DistanceKernel distanceKernel) {
+        if (distanceKernel == null) {
+            throw new IllegalArgumentException("La metrica di distanza non può essere null");
+        }
+        this.distanceKernel = distanceKernel;
+    }
+    
+    /**
+     * Restituisce i pesi per feature della metrica pesata.
+     * 
+     * @return Pesi per feature, o null se non impostati
+     */
+    public double[] getFeatureWeights() {
+        return featureWeights;
+    }
+    
+    /**
+     * Imposta i pesi per feature della metrica pesata (applicati alle features già normalizzate).
+     * 
+     * @param featureWeights Pesi per feature (non negativi)
+     */
+    public void setFeatureWeights(double[] featureWeights) {
+        this.featureWeights = featureWeights == null ? null : featureWeights.clone();
+    }
+    
+    /**
+     * Verifica se l'indice KD-tree viene memorizzato fuori dallo heap Java.
+     * 
+     * @return true per l'indice in memoria nativa
+     */
+    public boolean isOffHeapIndex() {
+        return offHeapIndex;
+    }
+    
+    /**
+     * Sceglie dove memorizzare l'indice KD-tree: fuori heap coordinate e nodi non vengono
+     * visitati dal garbage collector, utile per dataset con milioni di punti.
      * 
-     * @return false (logging disabilitato di default)
+     * @param offHeapIndex true per l'indice in memoria nativa
+     */
+    public void setOffHeapIndex(boolean offHeapIndex) {
+        this.offHeapIndex = offHeapIndex;
+    }
+    
+    /**
+     * Restituisce la strategia di split usata nella costruzione del KD-tree.
+     * 
+     * @return Strategia di split (dimensioni a turno di default)
+     */
+    public SplitStrategy getSplitStrategy() {
+        return splitStrategy;
+    }
+    
+    /**
+     * Imposta la strategia di split del KD-tree. La migliore per un dataset si sceglie con le
+     * visite per query riportate da {@link KDTreeStatistics} (KNNEvaluator split:all).
+     * 
+     * @param splitStrategy Strategia di split
+     */
+    public void setSplitStrategy(SplitStrategy splitStrategy) {
+        this.splitStrategy = splitStrategy;
+    }
+    
+    /**
+     * Restituisce il numero di componenti principali su cui l'indice proietta le features.
+     * 
+     * @return Componenti mantenute, 0 se le features sono indicizzate senza proiezione
+     */
+    public int getPcaComponents() {
+        return pcaComponents;
+    }
+    
+    /**
+     * Imposta la proiezione PCA delle features, calcolata sul training e memorizzata con l'indice
+     * ({@link ProjectedIndex}). La varianza mantenuta è riportata nelle informazioni del KD-tree.
+     * 
+     * @param pcaComponents Componenti da mantenere (al più il numero di features), 0 per disabilitarla
+     */
+    public void setPcaComponents(int pcaComponents) {
+        this.pcaComponents = pcaComponents;
+    }
+    
+    /**
+     * Verifica se le componenti principali vengono portate a varianza unitaria.
+     * 
+     * @return true con whitening
+     */
+    public boolean isPcaWhiten() {
+        return pcaWhiten;
+    }
+    
+    /**
+     * Abilita il whitening delle componenti principali (ignorato senza proiezione PCA).
+     * 
+     * @param pcaWhiten true per dividere ogni componente per la propria deviazione standard
+     */
+    public void setPcaWhiten(boolean pcaWhiten) {
+        this.pcaWhiten = pcaWhiten;
+    }
+    
+    /**
+     * Restituisce i parametri dell'indice LSH.
+     * 
+     * @return Parametri LSH, null se i driver usano il KD-tree esatto
+     */
+    public LSHParameters getLshParameters() {
+        return lshParameters;
+    }
+    
+    /**
+     * Sostituisce il KD-tree esatto con l'indice approssimato {@link LSHIndex}, per dataset molto
+     * grandi. Strategia di split, proiezione PCA e indice fuori heap riguardano solo il KD-tree e
+     * vengono ignorati. Il richiamo si misura con KNNEvaluator (opzione lsh:).
+     * 
+     * @param lshParameters Parametri LSH, null per il KD-tree esatto
+     */
+    public void setLshParameters(LSHParameters lshParameters) {
+        this.lshParameters = lshParameters;
+    }
+    
+    /**
+     * Verifica se il classificatore vota con terminazione anticipata della ricerca.
+     * 
+     * @return true se la ricerca si ferma appena la classe vincente è determinata (default)
+     */
+    public boolean isEarlyVote() {
+        return earlyVote;
+    }
+    
+    /**
+     * Sceglie come il classificatore vota: con terminazione anticipata la ricerca visita i nodi
+     * in ordine di distanza e si ferma appena i vicini mancanti non possono più cambiare la classe
+     * vincente; altrimenti cerca tutti i K vicini prima di votare. La classe predetta è la stessa.
+     * 
+     * @param earlyVote true per il voto con terminazione anticipata
+     */
+    public void setEarlyVote(boolean earlyVote) {
+        this.earlyVote = earlyVote;
+    }
+    
+    /**
+     * Verifica se il logging periodico dei driver è abilitato.
+     * 
+     * @return true se il logging è abilitato (disabilitato di default per performance)
      */
     public boolean isEnableLogging() {
-        return false; // Logging disabilitato per performance
+        return enableLogging;
+    }
+    
+    /**
+     * Abilita o disabilita il logging periodico dei driver durante la guida.
+     * La formattazione dei messaggi alloca memoria a ogni stampa.
+     * 
+     * @param enableLogging Flag per il logging
+     */
+    public void setEnableLogging(boolean enableLogging) {
+        this.enableLogging = enableLogging;
     }
     
     /**
@@ -171,16 +398,39 @@ public class KNNConfig {
         return new KNNConfig("human_dataset.csv");
     }
     
+    /**
+     * Verifica se un'altra configurazione produce lo stesso indice sugli stessi punti: normalizzazione,
+     * metrica, pesi, strategia di split, proiezione PCA, LSH e memorizzazione fuori heap sono fissati
+     * alla costruzione dell'indice, mentre K, voto anticipato e logging si applicano alle query.
+     * Il percorso del dataset non è confrontato.
+     * 
+     * @param other Configurazione da confrontare
+     * @return true se l'indice costruito con questa configurazione vale anche per l'altra
+     */
+    public boolean buildsSameIndexAs(KNNConfig other) {
+        return getEffectiveNormalization() == other.getEffectiveNormalization()
+            && distanceKernel == other.distanceKernel
+            && Arrays.equals(featureWeights, other.featureWeights)
+            && splitStrategy == other.splitStrategy
+            && pcaComponents == other.pcaComponents
+            && pcaWhiten == other.pcaWhiten
+            && Objects.equals(lshParameters, other.lshParameters)
+            && offHeapIndex == other.offHeapIndex;
+    }
+    
     /**
      * Valida la configurazione corrente.
-     * Verifica che il percorso del dataset sia valido e non vuoto.
+     * Verifica che il percorso del dataset sia valido e non vuoto e che la metrica pesata abbia i pesi.
      * 
-     * @throws IllegalStateException Se il percorso del dataset è null o vuoto
+     * @throws IllegalStateException Se il percorso del dataset è null o vuoto o mancano i pesi
      */
     public void validate() {
         if (datasetPath == null || datasetPath.trim().isEmpty()) {
             throw new IllegalStateException("Il percorso del dataset non può essere vuoto");
         }
+        if (distanceKernel.isWeighted() && featureWeights == null) {
+            throw new IllegalStateException("La metrica pesata richiede i pesi delle features");
+        }
     }
     
     /**
@@ -190,7 +440,8 @@ public class KNNConfig {
      */
     @Override
     public String toString() {
-        return String.format("KNNConfig{k=%d, datasetPath='%s', normalizeData=%s, classifierMode=%s}", 
-                           k, datasetPath, normalizeData, classifierMode);
+        return String.format("KNNConfig{k=%d, datasetPath='%s', normalizeData=%s, normalizationMode=%s, classifierMode=%s, distanceKernel=%s, offHeapIndex=%s, splitStrategy=%s, pcaComponents=%d, pcaWhiten=%s, lsh=%s, earlyVote=%s}", 
+                           k, datasetPath, normalizeData, normalizationMode, classifierMode, distanceKernel, offHeapIndex,
+                           splitStrategy, pcaComponents, pcaWhiten, lshParameters, earlyVote);
     }
 }
\ No newline at end of file
@@ -0,0 +1,296 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dataset in memoria per le elaborazioni offline sui driver KNN (valutazione, analisi).
+ * Legge sia il formato standard ({@code human_dataset.csv}: 14 features + steering, acceleration, brake)
+ * sia il formato discretizzato prodotto da {@link ActionDiscretizer}
+ * (14 features + actionClass + steering, acceleration, brake), in CSV o come registrazione binaria
+ * ({@link TelemetryFile}, colonne cercate per nome: anche una registrazione enhanced).
+ * Le features sono mantenute grezze (non normalizzate), come nei file CSV.
+ */
+public class KNNDataset {
+
+    /** Numero di features: 10 sensori track + 4 sensori posizione */
+    public static final int FEATURE_COUNT = 14;
+
+    /** Indice della feature distanceFromStartLine */
+    public static final int DISTANCE_FEATURE = 13;
+
+    /**
+     * Salto all'indietro di distanceFromStartLine (in metri) oltre il quale inizia un nuovo episodio
+     * (passaggio sulla linea di partenza o nuova sessione di registrazione accodata al file).
+     */
+    private static final double EPISODE_GAP_METERS = 100.0;
+
+    private final String source;
+    private final double[][] features;
+    private final double[][] targets;
+    private final DrivingAction[] actionClasses;
+    private final int[] episodes;
+    private final boolean discretized;
+
+    private KNNDataset(String source, double[][] features, double[][] targets,
+                       DrivingAction[] actionClasses, int[] episodes, boolean discretized) {
+        this.source = source;
+        this.features = features;
+        this.targets = targets;
+        this.actionClasses = actionClasses;
+        this.episodes = episodes;
+        this.discretized = discretized;
+    }
+
+    /**
+     * Carica un dataset in formato standard o discretizzato (riconosciuto dall'header).
+     *
+     * @param path Percorso del file CSV o della registrazione binaria
+     * @return Dataset caricato
+     * @throws IOException Se si verifica un errore durante la lettura
+     */
+    public static KNNDataset load(String path) throws IOException {
+        if (TelemetryFile.isTelemetry(path)) {
+            return loadTelemetry(path);
+        }
+        List<double[]> featureRows = new ArrayList<>();
+        List<double[]> targetRows = new ArrayList<>();
+        List<DrivingAction> classRows = new ArrayList<>();
+        boolean discretized;
+        int totalSamples = 0;
+
+        int bufferSize = IOConfig.getOptimalBufferSize(new File(path).length());
+        try (BufferedReader reader = new BufferedReader(new FileReader(path), bufferSize)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException("Dataset vuoto: " + path);
+            }
+            discretized = header.contains("actionClass");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                totalSamples++;
+                String[] values = line.split(",");
+
+                try {
+                    double[] rowFeatures = new double[FEATURE_COUNT];
+                    for (int i = 0; i < FEATURE_COUNT; i++) {
+                        rowFeatures[i] = Double.parseDouble(values[i]);
+                    }
+
+                    double[] rowTargets = new double[3];
+                    DrivingAction actionClass;
+                    if (discretized) {
+                        // Classe in colonna 14, azioni continue originali (se presenti) in 15-17
+                        actionClass = DrivingAction.valueOf(values[14].trim());
+                        if (values.length >= 18) {
+                            rowTargets[0] = Double.parseDouble(values[15]);
+                            rowTargets[1] = Double.parseDouble(values[16]);
+                            rowTargets[2] = Double.parseDouble(values[17]);
+                        } else {
+                            rowTargets[0] = actionClass.getSteering();
+                            rowTargets[1] = actionClass.getAcceleration();
+                            rowTargets[2] = actionClass.getBrake();
+                        }
+                    } else {
+                        rowTargets[0] = Double.parseDouble(values[14]);
+                        rowTargets[1] = Double.parseDouble(values[15]);
+                        rowTargets[2] = Double.parseDouble(values[16]);
+                        actionClass = DrivingAction.fromContinuous(rowTargets[0], rowTargets[1], rowTargets[2]);
+                    }
+
+                    featureRows.add(rowFeatures);
+                    targetRows.add(rowTargets);
+                    classRows.add(actionClass);
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("[DATASET] Errore parsing riga " + totalSamples + ": " + e.getMessage());
+                }
+            }
+        }
+
+        int n = featureRows.size();
+        double[][] features = featureRows.toArray(new double[n][]);
+        double[][] targets = targetRows.toArray(new double[n][]);
+        DrivingAction[] classes = classRows.toArray(new DrivingAction[n]);
+
+        System.out.printf("[DATASET] %s: %d/%d campioni validi (%s)%n",
+            path, n, totalSamples, discretized ? "discretizzato" : "standard");
+
+        return new KNNDataset(path, features, targets, classes, detectEpisodes(features), discretized);
+    }
+
+    /**
+     * Carica una registrazione binaria: features e azioni per nome di colonna, classe di azione
+     * dalla colonna actionClass se presente, altrimenti dalle azioni continue.
+     */
+    private static KNNDataset loadTelemetry(String path) throws IOException {
+        try (TelemetryFile telemetry = TelemetryFile.open(Path.of(path))) {
+            int[] featureColumns = telemetry.requireColumns(TelemetryFile.FEATURE_COLUMNS);
+            int[] targetColumns = telemetry.requireColumns(TelemetryFile.TARGET_COLUMNS);
+            int actionColumn = telemetry.columnIndex(TelemetryFile.ACTION_COLUMN);
+            boolean discretized = actionColumn >= 0;
+            if (telemetry.size() > Integer.MAX_VALUE) {
+                throw new IOException("Registrazione troppo grande: " + telemetry.size() + " record");
+            }
+
+            int n = (int) telemetry.size();
+            double[][] features = new double[n][FEATURE_COUNT];
+            double[][] targets = new double[n][3];
+            DrivingAction[] classes = new DrivingAction[n];
+            DrivingAction[] actions = DrivingAction.values();
+            for (int row = 0; row < n; row++) {
+                telemetry.read(row, featureColumns, features[row], 0);
+                telemetry.read(row, targetColumns, targets[row], 0);
+                classes[row] = discretized
+                    ? actions[(int) telemetry.get(row, actionColumn)]
+                    : DrivingAction.fromContinuous(targets[row][0], targets[row][1], targets[row][2]);
+            }
+
+            System.out.printf("[DATASET] %s: %d campioni (%s, binario)%n",
+                path, n, discretized ? "discretizzato" : "standard");
+            return new KNNDataset(path, features, targets, classes, detectEpisodes(features), discretized);
+        }
+    }
+
+    /**
+     * Assegna a ogni riga un identificativo di episodio: un nuovo episodio inizia
+     * quando distanceFromStartLine torna indietro di più di {@link #EPISODE_GAP_METERS}.
+     */
+    private static int[] detectEpisodes(double[][] features) {
+        int[] episodes = new int[features.length];
+        int current = 0;
+        for (int i = 1; i < features.length; i++) {
+            if (features[i][DISTANCE_FEATURE] < features[i - 1][DISTANCE_FEATURE] - EPISODE_GAP_METERS) {
+                current++;
+            }
+            episodes[i] = current;
+        }
+        return episodes;
+    }
+
+    /**
+     * Crea i punti dati per il driver regressivo a partire dalle righe indicate.
+     *
+     * @param rows Indici delle righe da includere
+     * @return Lista di punti dati (features grezze)
+     */
+    public List<DataPoint> toDataPoints(int[] rows) {
+        List<DataPoint> points = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            points.add(new DataPoint(features[row], targets[row][0], targets[row][1], targets[row][2]));
+        }
+        return points;
+    }
+
+    /**
+     * Crea i punti dati per il driver classificatore a partire dalle righe indicate.
+     *
+     * @param rows Indici delle righe da includere
+     * @return Lista di punti dati classificatore (features grezze)
+     */
+    public List<DataPointClassifier> toClassifierPoints(int[] rows) {
+        List<DataPointClassifier> points = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            points.add(new DataPointClassifier(features[row], actionClasses[row]));
+        }
+        return points;
+    }
+
+    /**
+     * Restituisce gli indici di tutte le righe.
+     *
+     * @return Array 0..size-1
+     */
+    public int[] allRows() {
+        int[] rows = new int[size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    /**
+     * Restituisce il numero di righe.
+     *
+     * @return Numero di campioni validi
+     */
+    public int size() {
+        return features.length;
+    }
+
+    /**
+     * Restituisce le features grezze di una riga (l'array non viene copiato).
+     *
+     * @param row Indice della riga
+     * @return Features della riga
+     */
+    public double[] getFeatures(int row) {
+        return features[row];
+    }
+
+    /**
+     * Restituisce le azioni continue (steering, acceleration, brake) di una riga.
+     *
+     * @param row Indice della riga
+     * @return Azioni della riga (l'array non viene copiato)
+     */
+    public double[] getTargets(int row) {
+        return targets[row];
+    }
+
+    /**
+     * Restituisce la classe di azione di una riga.
+     * Per il formato standard è ottenuta con {@link DrivingAction#fromContinuous}.
+     *
+     * @param row Indice della riga
+     * @return Classe di azione
+     */
+    public DrivingAction getActionClass(int row) {
+        return actionClasses[row];
+    }
+
+    /**
+     * Restituisce l'episodio a cui appartiene una riga.
+     *
+     * @param row Indice della riga
+     * @return Identificativo dell'episodio (da 0)
+     */
+    public int getEpisode(int row) {
+        return episodes[row];
+    }
+
+    /**
+     * Restituisce il numero di episodi rilevati.
+     *
+     * @return Numero di episodi
+     */
+    public int getEpisodeCount() {
+        return episodes.length == 0 ? 0 : episodes[episodes.length - 1] + 1;
+    }
+
+    /**
+     * Verifica se il dataset è in formato discretizzato.
+     *
+     * @return true se il file contiene la colonna actionClass
+     */
+    public boolean isDiscretized() {
+        return discretized;
+    }
+
+    /**
+     * Restituisce il percorso del file di origine.
+     *
+     * @return Percorso del dataset
+     */
+    public String getSource() {
+        return source;
+    }
+}
@@ -4,7 +4,9 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * KNN Driver che utilizza un algoritmo K-Nearest Neighbors basato su KD-tree
@@ -13,10 +15,10 @@ import java.util.List;
 public class KNNDriver extends Controller {
     
     private KDTree kdTree;
-    private List<DataPoint> trainingData;
     private KNNConfig config;
-    private double[] featureMin;
-    private double[] featureMax;
+    
+    // false se i punti sono stati forniti in memoria e non letti dal dataset della configurazione
+    private boolean loadedFromDataset = true;
     
 
     
@@ -28,7 +30,6 @@ public class KNNDriver extends Controller {
      */
     public KNNDriver(KNNConfig config) {
         this.config = config;
-        this.trainingData = new ArrayList<>();
         
         config.validate();
         
@@ -36,12 +37,25 @@ public class KNNDriver extends Controller {
             System.out.println("[KNN] Inizializzazione con configurazione: " + config);
         }
         
-        loadTrainingData();
-        if (config.isNormalizeData()) {
-            calculateNormalizationParameters();
-            normalizeTrainingData();
-        }
-        buildKDTree();
+        buildKDTree(loadTrainingData());
+    }
+    
+    /**
+     * Costruttore che utilizza punti di training già in memoria invece del file del dataset.
+     * Usato dalle elaborazioni offline (ad esempio {@link KNNEvaluator}) per costruire
+     * il modello su sottoinsiemi del dataset. I punti non vengono modificati né conservati:
+     * la normalizzazione viene applicata dall'indice durante la costruzione.
+     * 
+     * @param config Configurazione del KNN
+     * @param trainingPoints Punti di training con features grezze
+     */
+    public KNNDriver(KNNConfig config, List<DataPoint> trainingPoints) {
+        this.config = config;
+        this.loadedFromDataset = false;
+        
+        config.validate();
+        
+        buildKDTree(trainingPoints);
     }
     
     /**
@@ -59,7 +73,6 @@ public class KNNDriver extends Controller {
      */
     public KNNDriver(String datasetFilename) {
         this.config = new KNNConfig(datasetFilename);
-        this.trainingData = new ArrayList<>();
         
         // PRECARICAMENTO - Inizializzazione immediata per evitare timeout
         try {
@@ -67,14 +80,7 @@ public class KNNDriver extends Controller {
                 System.out.println("[KNN] Inizializzazione dataset: " + datasetFilename);
             }
             
-            loadTrainingData();
-            
-            if (config.isNormalizeData()) {
-                calculateNormalizationParameters();
-                normalizeTrainingData();
-            }
-            
-            buildKDTree();
+            buildKDTree(loadTrainingData());
             
             if (config.isEnableLogging()) {
                 System.out.println("[KNN] Inizializzazione completata! Dataset: " + getTrainingDataSize() + " punti");
@@ -97,18 +103,13 @@ public class KNNDriver extends Controller {
     @Override
     public Action control(SensorModel sensors) {
         // Controllo rapido: se non inizializzato, usa azione di default
-        if (kdTree == null || trainingData.isEmpty()) {
+        if (kdTree == null || kdTree.size() == 0) {
             return getDefaultAction(sensors);
         }
         
-        // Estrai le features dai sensori
+        // Estrai le features dai sensori (la normalizzazione è applicata dall'indice)
         double[] features = extractFeatures(sensors);
         
-        // Normalizza le features se necessario
-        if (config.isNormalizeData()) {
-            features = normalizeFeatures(features);
-        }
-        
         // Trova i k vicini più prossimi
         List<DataPoint> neighbors = kdTree.findKNearestNeighbors(features, config.getK());
         
@@ -116,14 +117,100 @@ public class KNNDriver extends Controller {
         return predictAction(neighbors, sensors);
     }
     
+    /**
+     * Predice le azioni continue a partire da features grezze, seguendo lo stesso percorso di
+     * {@link #control(SensorModel)} (normalizzazione, ricerca dei vicini, media pesata).
+     * Non modifica lo stato del driver e può essere invocato da più thread.
+     * 
+     * @param rawFeatures Array di 14 features non normalizzate
+     * @param out Array di output: [steering, acceleration, brake] già limitati ai range validi
+     * @return Numero di vicini utilizzati (0 se il modello non è pronto)
+     */
+    public int predict(double[] rawFeatures, double[] out) {
+        if (kdTree == null || kdTree.size() == 0) {
+            out[0] = 0.0;
+            out[1] = 0.0;
+            out[2] = 0.0;
+            return 0;
+        }
+        
+        List<DataPoint> neighbors = kdTree.findKNearestNeighbors(rawFeatures, config.getK());
+        averageNeighbors(neighbors, out);
+        return neighbors.size();
+    }
+    
+    /**
+     * Predice le azioni continue per un lotto di stati con una sola ricerca a lotti sul pool indicato
+     * ({@link KDTree#findKNearestNeighborsBatch(double[][], int, ForkJoinPool)}), con la stessa media
+     * di {@link #predict(double[], double[])} ma senza creare oggetti per vicino.
+     * 
+     * @param rawFeatures Features non normalizzate, una riga per stato
+     * @param out Array di output: [steering, acceleration, brake] per ogni stato, in ordine
+     * @param pool Pool su cui eseguire le ricerche
+     */
+    public void predictBatch(double[][] rawFeatures, double[] out, ForkJoinPool pool) {
+        if (kdTree == null || kdTree.size() == 0) {
+            Arrays.fill(out, 0, rawFeatures.length * 3, 0.0);
+            return;
+        }
+        
+        KNNBatchResult neighbors = kdTree.findKNearestNeighborsBatch(rawFeatures, config.getK(), pool);
+        for (int q = 0; q < rawFeatures.length; q++) {
+            int count = neighbors.getNeighborCount(q);
+            double totalWeight = 0.0;
+            double steering = 0.0;
+            double acceleration = 0.0;
+            double brake = 0.0;
+            for (int j = 0; j < count; j++) {
+                int neighbor = neighbors.getIndex(q, j);
+                double weight = config.isUseWeightedVoting() ? 1.0 / (neighbors.getDistance(q, j) + 1e-10) : 1.0;
+                totalWeight += weight;
+                steering += kdTree.getTarget(neighbor, 0) * weight;
+                acceleration += kdTree.getTarget(neighbor, 1) * weight;
+                brake += kdTree.getTarget(neighbor, 2) * weight;
+            }
+            if (totalWeight > 0) {
+                steering /= totalWeight;
+                acceleration /= totalWeight;
+                brake /= totalWeight;
+            }
+            out[q * 3] = Math.max(-1.0, Math.min(1.0, steering));
+            out[q * 3 + 1] = Math.max(0.0, Math.min(1.0, acceleration));
+            out[q * 3 + 2] = Math.max(0.0, Math.min(1.0, brake));
+        }
+    }
+    
+    /**
+     * Restituisce il KD-tree costruito sui dati di training (indici nell'ordine dei punti di training).
+     * Le query sul KD-tree usano features grezze: la normalizzazione è memorizzata nell'indice.
+     * 
+     * @return KD-tree, o null se il driver non è inizializzato
+     */
+    public KDTree getKDTree() {
+        return kdTree;
+    }
+    
     /**
      * Carica i dati di training dal file CSV
+     * 
+     * @return Punti di training, da rilasciare dopo la costruzione del KD-tree
      */
-    private void loadTrainingData() {
+    private List<DataPoint> loadTrainingData() {
         String datasetPath = config.getDatasetPath();
+        List<DataPoint> trainingData = new ArrayList<>();
         int totalSamples = 0;
         int validSamples = 0;
         
+        if (TelemetryFile.isTelemetry(datasetPath)) {
+            try {
+                KNNDataset dataset = KNNDataset.load(datasetPath);
+                trainingData.addAll(dataset.toDataPoints(dataset.allRows()));
+            } catch (IOException e) {
+                System.err.println("[KNN] Errore nel caricamento del dataset: " + e.getMessage());
+            }
+            return trainingData;
+        }
+        
         try (BufferedReader reader = new BufferedReader(new FileReader(datasetPath))) {
             String line = reader.readLine(); // Skip header
             
@@ -161,101 +248,41 @@ public class KNNDriver extends Controller {
         } catch (IOException e) {
             System.err.println("[KNN] Errore nel caricamento del dataset: " + e.getMessage());
         }
+        return trainingData;
     }
     
     /**
-     * Calcola i parametri di normalizzazione (min e max) per ogni feature
-     * dai dati di training. Mantenuto per uso futuro anche se attualmente
-     * tutti i sensori utilizzano normalizzazione manuale.
-     */
-    private void calculateNormalizationParameters() {
-        if (trainingData.isEmpty()) return;
-        
-        int featureCount = trainingData.get(0).features.length;
-        featureMin = new double[featureCount];
-        featureMax = new double[featureCount];
-        
-        // Inizializza con il primo punto
-        System.arraycopy(trainingData.get(0).features, 0, featureMin, 0, featureCount);
-        System.arraycopy(trainingData.get(0).features, 0, featureMax, 0, featureCount);
-        
-        // Trova min e max per tutti i sensori
-        for (DataPoint point : trainingData) {
-            for (int i = 0; i < featureCount; i++) {
-                featureMin[i] = Math.min(featureMin[i], point.features[i]);
-                featureMax[i] = Math.max(featureMax[i], point.features[i]);
-            }
-        }
-    }
-
-    /**
-     * Normalizza tutti i dati di training usando normalizzazione manuale ottimizzata.
-     * Tutti i sensori utilizzano normalizzazione manuale con range [0, 10]:
-     * - Track sensors (0-9): [0, 200] -> [0, 10]
-     * - speedX (10): [0, 288] -> [0, 10]
-     * - angleToTrackAxis (11): [-π, +π] -> [0, 10]
-     * - trackPosition (12): [-1, +1] -> [0, 10]
-     * - distanceFromStartLine (13): [0, 5784.10] -> [0, 10]
-     */
-    private void normalizeTrainingData() {
-        for (DataPoint point : trainingData) {
-            point.features = normalizeFeatures(point.features);
-        }
-    }
-    
-    /**
-     * Normalizza un array di features usando normalizzazione manuale con range ottimizzato.
-     * Applica normalizzazione manuale per tutti i sensori con valori fissi predefiniti.
-     * Range ottimizzato [0, 10] per bilanciare granularità e performance.
+     * Normalizza un array di features con la normalizzazione memorizzata nel KD-tree
+     * (range fissi in [0, 10] di default, vedi {@link FeatureNormalizer}).
+     * Non serve per le ricerche, che accettano features grezze: resta per analisi e benchmark.
      * 
      * @param features Array delle features da normalizzare
-     * @return Array delle features normalizzate nel range [0, 10]
+     * @return Nuovo array delle features normalizzate
      */
-    private double[] normalizeFeatures(double[] features) {
-        if (!config.isNormalizeData()) {
-            return features.clone();
-        }
-        
-        double[] normalized = new double[features.length];
-        
-        for (int i = 0; i < features.length; i++) {
-            if (i < 10) {
-                // Track sensors (indici 0-9): normalizzazione manuale con range [0, 200] -> [0, 10]
-                if (features[i] < 0) {
-                    normalized[i] = 0.0; // Valore fuori pista
-                } else {
-                    // Normalizza da [0, 200] a [0, 10]
-                    normalized[i] = Math.min(features[i] / 200.0, 1.0) * 10.0;
-                }
-            } else if (i == 10) {
-                // speedX: normalizza da [0, 288] a [0, 10]
-                normalized[i] = Math.max(0.0, Math.min(features[i] / 288.0, 1.0)) * 10.0;
-            } else if (i == 11) {
-                // angleToTrackAxis: normalizza da [-π, +π] a [0, 10]
-                double normalizedAngle = (features[i] + Math.PI) / (2 * Math.PI);
-                normalized[i] = Math.max(0.0, Math.min(1.0, normalizedAngle)) * 10.0;
-            } else if (i == 12) {
-                // trackPosition: normalizza da [-1, +1] a [0, 10]
-                double normalizedPos = (features[i] + 1.0) / 2.0;
-                normalized[i] = Math.max(0.0, Math.min(1.0, normalizedPos)) * 10.0;
-            } else if (i == 13) {
-                // distanceFromStartLine: normalizza da [0, 5784.10] a [0, 10]
-                normalized[i] = Math.max(0.0, Math.min(features[i] / 5784.10, 1.0)) * 10.0;
-            } else {
-                // Altri sensori (se presenti): mantieni valore originale
-                normalized[i] = features[i];
-            }
-        }
-        return normalized;
+    double[] normalizeFeatures(double[] features) {
+        FeatureNormalizer normalizer = kdTree == null ? null : kdTree.getNormalizer();
+        return normalizer == null ? features.clone() : normalizer.apply(features);
     }
     
     /**
-     * Costruisce il KD-tree dai dati di training
+     * Costruisce il KD-tree dai dati di training, con la normalizzazione della configurazione
+     * calcolata sui dati e memorizzata nell'indice. Il KD-tree non conserva i punti.
+     * 
+     * @param trainingData Punti di training (features grezze)
      */
-    private void buildKDTree() {
-        kdTree = new KDTree(trainingData);
+    private void buildKDTree(List<DataPoint> trainingData) {
+        if (config.getLshParameters() != null) {
+            kdTree = new KDTree(trainingData, config.getDistanceKernel(), config.getFeatureWeights(),
+                                config.getEffectiveNormalization(), config.getLshParameters());
+        } else {
+            kdTree = new KDTree(trainingData, config.getDistanceKernel(), config.getFeatureWeights(),
+                                config.getEffectiveNormalization(), config.getSplitStrategy(),
+                                config.getPcaComponents(), config.isPcaWhiten(), config.isOffHeapIndex());
+        }
         if (config.isEnableLogging()) {
-            System.out.println("[KNN] KD-tree costruito con " + trainingData.size() + " nodi");
+            System.out.println("[KNN] KD-tree costruito con " + kdTree.size() + " nodi"
+                + (kdTree.getIndex() instanceof ProjectedIndex p ? ", " + p.getProjection() : "")
+                + (kdTree.getIndex() instanceof LSHIndex lsh ? ", " + lsh : ""));
         }
     }
     
@@ -266,7 +293,7 @@ public class KNNDriver extends Controller {
      * @param sensors Modello sensoriale del veicolo
      * @return Array di 14 features estratte
      */
-    private double[] extractFeatures(SensorModel sensors) {
+    double[] extractFeatures(SensorModel sensors) {
         double[] features = new double[14];
         
         // Track sensors (0,2,4,6,8,10,12,14,16,18)
@@ -288,7 +315,7 @@ public class KNNDriver extends Controller {
     
     /**
      * Predice l'azione da eseguire basandosi sui vicini più prossimi.
-     * Utilizza media pesata basata sulla distanza euclidea inversa.
+     * Utilizza media pesata basata sulla distanza inversa (metrica della configurazione).
      * 
      * @param neighbors Lista dei vicini più prossimi
      * @param sensors Modello sensoriale per informazioni aggiuntive
@@ -299,10 +326,45 @@ public class KNNDriver extends Controller {
             return getDefaultAction(sensors);
         }
         
+        double[] blended = new double[3];
+        averageNeighbors(neighbors, blended);
+        
+        // Crea e restituisci l'azione
+        Action action = new Action();
+        action.steering = blended[0];
+        action.accelerate = blended[1];
+        action.brake = blended[2];
+        
+        // Debug: stampa informazioni quando lo sterzo è significativo
+        if (Math.abs(action.steering) > 0.3) {
+            System.out.printf("[DEBUG] Sterzo: %.3f | TrackPos: %.3f | AngleToTrack: %.3f | Vicini: %d%n", 
+                action.steering, sensors.getTrackPosition(), sensors.getAngleToTrackAxis(), neighbors.size());
+            
+            System.out.print("[DEBUG] Sterzo vicini: ");
+            for (int i = 0; i < Math.min(3, neighbors.size()); i++) {
+                System.out.printf("%.3f ", neighbors.get(i).steering);
+            }
+            System.out.println();
+        }
+        
+        // Aggiungi gestione automatica delle marce
+        action.gear = getAutoGear(sensors);
+        
+        return action;
+    }
+    
+    /**
+     * Calcola la media (pesata sulla distanza inversa, o semplice) delle azioni dei vicini
+     * e la limita ai range validi.
+     * 
+     * @param neighbors Lista dei vicini più prossimi (non vuota)
+     * @param out Array di output: [steering, acceleration, brake]
+     */
+    private void averageNeighbors(List<DataPoint> neighbors, double[] out) {
         double weightedSteering, weightedAcceleration, weightedBrake;
         
         if (config.isUseWeightedVoting()) {
-            // Media pesata basata sulla distanza euclidea inversa
+            // Media pesata basata sulla distanza inversa
             double totalWeight = 0.0;
             weightedSteering = 0.0;
             weightedAcceleration = 0.0;
@@ -340,28 +402,9 @@ public class KNNDriver extends Controller {
             weightedBrake /= count;
         }
         
-        // Crea e restituisci l'azione
-        Action action = new Action();
-        action.steering = Math.max(-1.0, Math.min(1.0, weightedSteering));
-        action.accelerate = Math.max(0.0, Math.min(1.0, weightedAcceleration));
-        action.brake = Math.max(0.0, Math.min(1.0, weightedBrake));
-        
-        // Debug: stampa informazioni quando lo sterzo è significativo
-        if (Math.abs(action.steering) > 0.3) {
-            System.out.printf("[DEBUG] Sterzo: %.3f | TrackPos: %.3f | AngleToTrack: %.3f | Vicini: %d%n", 
-                action.steering, sensors.getTrackPosition(), sensors.getAngleToTrackAxis(), neighbors.size());
-            
-            System.out.print("[DEBUG] Sterzo vicini: ");
-            for (int i = 0; i < Math.min(3, neighbors.size()); i++) {
-                System.out.printf("%.3f ", neighbors.get(i).steering);
-            }
-            System.out.println();
-        }
-        
-        // Aggiungi gestione automatica delle marce
-        action.gear = getAutoGear(sensors);
-        
-        return action;
+        out[0] = Math.max(-1.0, Math.min(1.0, weightedSteering));
+        out[1] = Math.max(0.0, Math.min(1.0, weightedAcceleration));
+        out[2] = Math.max(0.0, Math.min(1.0, weightedBrake));
     }
     
     /**
@@ -371,7 +414,7 @@ public class KNNDriver extends Controller {
      * @param sensors Modello sensoriale contenente lo stato attuale della macchina
      * @return Marcia raccomandata (-1 per retromarcia, 0 per folle, 1-6 per marce avanti)
      */
-    private int getAutoGear(SensorModel sensors) {
+    static int getAutoGear(SensorModel sensors) {
         int currentGear = sensors.getGear();
         double rpm = sensors.getRPM();
         
@@ -397,7 +440,7 @@ public class KNNDriver extends Controller {
      * - Gestione automatica delle marce
      * - Evitamento ostacoli di base
      */
-    private Action getDefaultAction(SensorModel sensors) {
+    static Action getDefaultAction(SensorModel sensors) {
        //System.out.println("-------------------------------Sensori----------------------\n "+ sensors.toString() +"\n---------------------------------------------------");
         Action action = new Action();
         
@@ -448,24 +491,28 @@ public class KNNDriver extends Controller {
     }
     
     /**
-     * Aggiorna la configurazione del KNN e ricostruisce il modello se necessario.
+     * Aggiorna la configurazione del KNN e ricostruisce il modello se necessario: il dataset viene
+     * ricaricato e l'indice ricostruito quando cambia il percorso del dataset o uno dei parametri
+     * fissati nell'indice ({@link KNNConfig#buildsSameIndexAs(KNNConfig)}).
      * 
      * @param newConfig Nuova configurazione
+     * @throws IllegalStateException Se la configurazione non è valida, oppure se cambia l'indice di un
+     *         driver costruito con punti in memoria (che non possono essere ricaricati dal dataset)
      */
     public void updateConfig(KNNConfig newConfig) {
         newConfig.validate();
-        boolean needsRebuild = !config.getDatasetPath().equals(newConfig.getDatasetPath());
+        boolean datasetChanged = !config.getDatasetPath().equals(newConfig.getDatasetPath());
+        boolean indexChanged = !config.buildsSameIndexAs(newConfig);
+        if (indexChanged && !datasetChanged && !loadedFromDataset) {
+            throw new IllegalStateException("L'indice di un driver costruito con punti in memoria non può essere "
+                + "ricostruito: creare un nuovo driver con la configurazione " + newConfig);
+        }
         
         this.config = newConfig;
         
-        if (needsRebuild) {
-            trainingData.clear();
-            loadTrainingData();
-            if (config.isNormalizeData()) {
-                calculateNormalizationParameters();
-                normalizeTrainingData();
-            }
-            buildKDTree();
+        if (datasetChanged || indexChanged) {
+            loadedFromDataset = true;
+            buildKDTree(loadTrainingData());
         }
     }
     
@@ -475,7 +522,7 @@ public class KNNDriver extends Controller {
      * @return Numero di punti dati di training
      */
     public int getTrainingDataSize() {
-        return trainingData.size();
+        return kdTree == null ? 0 : kdTree.size();
     }
     
     /**
@@ -484,7 +531,7 @@ public class KNNDriver extends Controller {
      * @return true se il KD-tree è costruito e i dati sono caricati
      */
     public boolean isReady() {
-        return kdTree != null && !trainingData.isEmpty();
+        return kdTree != null && kdTree.size() > 0;
     }
     
 
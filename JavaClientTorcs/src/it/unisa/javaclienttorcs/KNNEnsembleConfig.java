@@ -0,0 +1,269 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configurazione per {@link KNNEnsembleDriver}.
+ * Ogni dataset diventa un indice KNN costruito con gli stessi parametri della configurazione
+ * di base (K, metrica, normalizzazione, memoria dell'indice); l'ensemble definisce come
+ * combinare le risposte, con quale peso e con quale budget di tempo per tick.
+ */
+public class KNNEnsembleConfig {
+
+    /**
+     * Modalità di combinazione delle risposte degli indici.
+     */
+    public enum CombineMode {
+        /** Unisce i vicini di tutti gli indici e tiene i K più vicini (voto pesato sulla distanza) */
+        MERGE,
+        /** Media pesata delle predizioni calcolate da ogni indice sui propri vicini */
+        BLEND;
+
+        /**
+         * Restituisce la modalità corrispondente al nome indicato (case insensitive).
+         *
+         * @param name Nome della modalità (merge, blend)
+         * @return Modalità corrispondente
+         * @throws IllegalArgumentException Se il nome non corrisponde a nessuna modalità
+         */
+        public static CombineMode fromName(String name) {
+            return switch (name.toLowerCase()) {
+                case "merge" -> MERGE;
+                case "blend" -> BLEND;
+                default -> throw new IllegalArgumentException("Combinazione non supportata: " + name);
+            };
+        }
+    }
+
+    // Configurazione condivisa dagli indici dell'ensemble (il percorso del dataset viene ignorato)
+    private KNNConfig baseConfig = new KNNConfig();
+
+    // Percorsi dei dataset, uno per indice
+    private List<String> datasetPaths = new ArrayList<>();
+
+    // Peso di ogni indice nella combinazione (null per pesi uniformi)
+    private double[] memberWeights = null;
+
+    // Modalità di combinazione delle risposte
+    private CombineMode combineMode = CombineMode.BLEND;
+
+    // Thread della pool di ricerca: 0 per un virtual thread per ricerca
+    private int threads = 0;
+
+    // Tempo massimo per le ricerche di un tick (microsecondi)
+    private long tickBudgetMicros = 5000;
+
+    /**
+     * Costruttore di default (nessun dataset).
+     */
+    public KNNEnsembleConfig() {
+        // Configurazione di default
+    }
+
+    /**
+     * Costruttore con i percorsi dei dataset e pesi uniformi.
+     *
+     * @param datasetPaths Percorsi dei dataset
+     */
+    public KNNEnsembleConfig(String... datasetPaths) {
+        this.datasetPaths = new ArrayList<>(Arrays.asList(datasetPaths));
+    }
+
+    /**
+     * Crea la configurazione con il dataset umano e la sua variante discretizzata.
+     *
+     * @return Configurazione dell'ensemble per i dataset umani
+     */
+    public static KNNEnsembleConfig forHumanDatasets() {
+        return new KNNEnsembleConfig("human_dataset.csv", "human_dataset_discrete.csv");
+    }
+
+    /**
+     * Restituisce la configurazione condivisa dagli indici.
+     *
+     * @return Configurazione KNN di base
+     */
+    public KNNConfig getBaseConfig() {
+        return baseConfig;
+    }
+
+    /**
+     * Imposta la configurazione condivisa dagli indici (K, metrica, normalizzazione, memoria).
+     *
+     * @param baseConfig Configurazione KNN di base
+     */
+    public void setBaseConfig(KNNConfig baseConfig) {
+        if (baseConfig == null) {
+            throw new IllegalArgumentException("La configurazione di base non può essere null");
+        }
+        this.baseConfig = baseConfig;
+    }
+
+    /**
+     * Restituisce i percorsi dei dataset.
+     *
+     * @return Percorsi dei dataset, uno per indice
+     */
+    public List<String> getDatasetPaths() {
+        return datasetPaths;
+    }
+
+    /**
+     * Imposta i percorsi dei dataset.
+     *
+     * @param datasetPaths Percorsi dei dataset, uno per indice
+     */
+    public void setDatasetPaths(List<String> datasetPaths) {
+        this.datasetPaths = new ArrayList<>(datasetPaths);
+    }
+
+    /**
+     * Restituisce il peso di un indice.
+     *
+     * @param member Posizione dell'indice nell'elenco dei dataset
+     * @return Peso dell'indice (1 se non impostati)
+     */
+    public double getMemberWeight(int member) {
+        return memberWeights == null ? 1.0 : memberWeights[member];
+    }
+
+    /**
+     * Imposta i pesi degli indici nella combinazione.
+     *
+     * @param memberWeights Pesi non negativi, uno per dataset (null per pesi uniformi)
+     */
+    public void setMemberWeights(double[] memberWeights) {
+        this.memberWeights = memberWeights == null ? null : memberWeights.clone();
+    }
+
+    /**
+     * Restituisce la modalità di combinazione.
+     *
+     * @return Modalità di combinazione
+     */
+    public CombineMode getCombineMode() {
+        return combineMode;
+    }
+
+    /**
+     * Imposta la modalità di combinazione. Con {@link CombineMode#MERGE} le distanze di indici
+     * diversi vengono confrontate direttamente: è ammessa solo la normalizzazione FIXED (uguale per
+     * tutti i dataset) o nessuna normalizzazione, senza proiezione PCA (vedi {@link #validateCombineMode()}).
+     *
+     * @param combineMode Modalità di combinazione
+     */
+    public void setCombineMode(CombineMode combineMode) {
+        if (combineMode == null) {
+            throw new IllegalArgumentException("La modalità di combinazione non può essere null");
+        }
+        this.combineMode = combineMode;
+    }
+
+    /**
+     * Restituisce il numero di thread della pool di ricerca.
+     *
+     * @return Numero di thread, 0 per i virtual thread
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Imposta il numero di thread della pool di ricerca.
+     *
+     * @param threads Numero di thread (0 per un virtual thread per ricerca)
+     */
+    public void setThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Il numero di thread non può essere negativo");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Restituisce il budget di tempo per le ricerche di un tick.
+     *
+     * @return Budget in microsecondi
+     */
+    public long getTickBudgetMicros() {
+        return tickBudgetMicros;
+    }
+
+    /**
+     * Imposta il budget di tempo per le ricerche di un tick: gli indici che non rispondono
+     * entro il budget vengono esclusi dalla combinazione di quel tick.
+     *
+     * @param tickBudgetMicros Budget in microsecondi (deve essere > 0)
+     */
+    public void setTickBudgetMicros(long tickBudgetMicros) {
+        if (tickBudgetMicros <= 0) {
+            throw new IllegalArgumentException("Il budget per tick deve essere maggiore di 0");
+        }
+        this.tickBudgetMicros = tickBudgetMicros;
+    }
+
+    /**
+     * Valida la configurazione corrente.
+     *
+     * @throws IllegalStateException Se non ci sono dataset, i pesi non corrispondono ai dataset,
+     *         la configurazione di base non è valida o la combinazione non è compatibile con essa
+     */
+    public void validate() {
+        if (datasetPaths.isEmpty()) {
+            throw new IllegalStateException("L'ensemble richiede almeno un dataset");
+        }
+        if (memberWeights != null) {
+            if (memberWeights.length != datasetPaths.size()) {
+                throw new IllegalStateException("Servono " + datasetPaths.size() + " pesi, uno per dataset");
+            }
+            for (double weight : memberWeights) {
+                if (!(weight >= 0)) {
+                    throw new IllegalStateException("I pesi dell'ensemble devono essere non negativi");
+                }
+            }
+        }
+        for (String path : datasetPaths) {
+            if (path == null || path.trim().isEmpty()) {
+                throw new IllegalStateException("Il percorso del dataset non può essere vuoto");
+            }
+        }
+        baseConfig.validate();
+        validateCombineMode();
+    }
+
+    /**
+     * Verifica che la modalità di combinazione sia compatibile con la configurazione di base.
+     * Con {@link CombineMode#MERGE} le distanze di indici diversi sono confrontate direttamente,
+     * quindi devono stare nello stesso spazio: normalizzazione MINMAX e ZSCORE e proiezione PCA
+     * sono calcolate sul dataset di ogni indice e lo renderebbero diverso da indice a indice.
+     *
+     * @throws IllegalStateException Se le distanze dei diversi indici non sono confrontabili
+     */
+    public void validateCombineMode() {
+        if (combineMode != CombineMode.MERGE) {
+            return;
+        }
+        FeatureNormalizer.Mode normalization = baseConfig.getEffectiveNormalization();
+        if (normalization != null && normalization != FeatureNormalizer.Mode.FIXED) {
+            throw new IllegalStateException("La combinazione merge richiede la normalizzazione fixed (o nessuna): "
+                                            + normalization.name().toLowerCase() + " è calcolata su ogni dataset");
+        }
+        if (baseConfig.getPcaComponents() > 0) {
+            throw new IllegalStateException("La combinazione merge non supporta la proiezione PCA, calcolata su ogni dataset");
+        }
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale della configurazione.
+     *
+     * @return Stringa con i parametri di configurazione
+     */
+    @Override
+    public String toString() {
+        return String.format("KNNEnsembleConfig{datasets=%s, weights=%s, combineMode=%s, threads=%d, tickBudgetMicros=%d, base=%s}",
+                           datasetPaths, memberWeights == null ? "uniformi" : Arrays.toString(memberWeights),
+                           combineMode, threads, tickBudgetMicros, baseConfig);
+    }
+}
@@ -0,0 +1,337 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Driver KNN che interroga in parallelo più indici, uno per dataset (piloti, giri o varianti
+ * discretizzate diverse), e ne combina le risposte secondo {@link KNNEnsembleConfig}.
+ * A ogni tick il primo indice viene interrogato dal thread di controllo e gli altri sulla pool
+ * (virtual thread o pool fissa); gli indici che non rispondono entro il budget del tick vengono
+ * esclusi dalla combinazione, così la latenza resta quella del singolo indice più il budget.
+ */
+public class KNNEnsembleDriver extends Controller {
+
+    private final KNNEnsembleConfig config;
+    private final KNNDriver[] members;
+    private final double[] memberWeights;
+    private final ExecutorService executor;
+    private long lateResponses;
+
+    /**
+     * Costruttore con parametri di default (dataset umano e variante discretizzata).
+     */
+    public KNNEnsembleDriver() {
+        this(KNNEnsembleConfig.forHumanDatasets());
+    }
+
+    /**
+     * Costruttore che carica i dataset della configurazione.
+     * I dataset che non possono essere letti vengono saltati (con il relativo peso).
+     *
+     * @param config Configurazione dell'ensemble
+     */
+    public KNNEnsembleDriver(KNNEnsembleConfig config) {
+        this(config, loadMembers(config));
+    }
+
+    /**
+     * Costruttore che utilizza punti di training già in memoria, un elenco per indice.
+     * Usato dalle elaborazioni offline e dai benchmark.
+     *
+     * @param config Configurazione dell'ensemble (i percorsi dei dataset vengono ignorati)
+     * @param datasets Punti di training con features grezze, un elenco per indice
+     * @param weights Peso di ogni indice
+     * @throws IllegalStateException Se la combinazione MERGE è usata con distanze non confrontabili tra indici
+     */
+    public KNNEnsembleDriver(KNNEnsembleConfig config, List<List<DataPoint>> datasets, double[] weights) {
+        this(config, buildMembers(config, datasets, weights));
+    }
+
+    private KNNEnsembleDriver(KNNEnsembleConfig config, Members loaded) {
+        this.config = config;
+        this.members = loaded.drivers;
+        this.memberWeights = loaded.weights;
+        this.executor = members.length <= 1 ? null
+            : config.getThreads() == 0 ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(config.getThreads(),
+                                           Thread.ofPlatform().daemon().name("knn-ensemble-", 0).factory());
+
+        if (config.getBaseConfig().isEnableLogging()) {
+            System.out.println("[KNN-ENSEMBLE] " + members.length + " indici, configurazione: " + config);
+        }
+    }
+
+    /**
+     * Indici costruiti e relativi pesi.
+     */
+    private record Members(KNNDriver[] drivers, double[] weights) {
+    }
+
+    private static Members loadMembers(KNNEnsembleConfig config) {
+        config.validate();
+        List<List<DataPoint>> datasets = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        List<String> paths = config.getDatasetPaths();
+        for (int i = 0; i < paths.size(); i++) {
+            try {
+                KNNDataset dataset = KNNDataset.load(paths.get(i));
+                datasets.add(dataset.toDataPoints(dataset.allRows()));
+                weights.add(config.getMemberWeight(i));
+            } catch (IOException e) {
+                System.err.println("[KNN-ENSEMBLE] Dataset " + paths.get(i) + " escluso: " + e.getMessage());
+            }
+        }
+        double[] w = new double[weights.size()];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = weights.get(i);
+        }
+        return buildMembers(config, datasets, w);
+    }
+
+    private static Members buildMembers(KNNEnsembleConfig config, List<List<DataPoint>> datasets, double[] weights) {
+        config.validateCombineMode();
+        KNNConfig base = config.getBaseConfig();
+        if (weights.length != datasets.size()) {
+            throw new IllegalArgumentException("Servono " + datasets.size() + " pesi, uno per dataset");
+        }
+        KNNDriver[] drivers = new KNNDriver[datasets.size()];
+        for (int i = 0; i < drivers.length; i++) {
+            drivers[i] = new KNNDriver(base, datasets.get(i));
+        }
+        return new Members(drivers, weights.clone());
+    }
+
+    /**
+     * Interroga gli indici in parallelo e combina le risposte ottenute entro il budget del tick.
+     *
+     * @param sensors Modello sensoriale contenente lo stato attuale del veicolo
+     * @return Azione da eseguire (sterzo, accelerazione, freno, marcia)
+     */
+    @Override
+    public Action control(SensorModel sensors) {
+        if (members.length == 0) {
+            return KNNDriver.getDefaultAction(sensors);
+        }
+
+        double[] out = new double[3];
+        int answered = predict(members[0].extractFeatures(sensors), out);
+        if (answered == 0) {
+            return KNNDriver.getDefaultAction(sensors);
+        }
+
+        Action action = new Action();
+        action.steering = out[0];
+        action.accelerate = out[1];
+        action.brake = out[2];
+        action.gear = KNNDriver.getAutoGear(sensors);
+        return action;
+    }
+
+    /**
+     * Predice le azioni continue a partire da features grezze interrogando tutti gli indici.
+     *
+     * Le ricerche escluse per il budget possono terminare dopo il ritorno: l'array delle features
+     * non va riutilizzato dal chiamante.
+     *
+     * @param rawFeatures Array di 14 features non normalizzate
+     * @param out Array di output: [steering, acceleration, brake] già limitati ai range validi
+     * @return Numero di indici che hanno risposto in tempo con almeno un vicino
+     */
+    public int predict(double[] rawFeatures, double[] out) {
+        if (members.length == 0) {
+            writeClamped(0.0, 0.0, 0.0, out);
+            return 0;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(config.getTickBudgetMicros());
+        boolean merge = config.getCombineMode() == KNNEnsembleConfig.CombineMode.MERGE;
+
+        // Gli indici dal secondo in poi vengono interrogati sulla pool, il primo dal thread corrente
+        List<Future<Object>> futures = new ArrayList<>(members.length - 1);
+        for (int i = 1; i < members.length; i++) {
+            futures.add(executor.submit(queryTask(members[i], rawFeatures, merge)));
+        }
+
+        Object[] answers = new Object[members.length];
+        try {
+            answers[0] = queryTask(members[0], rawFeatures, merge).call();
+        } catch (Exception e) {
+            answers[0] = null;
+        }
+        for (int i = 1; i < members.length; i++) {
+            Future<Object> future = futures.get(i - 1);
+            try {
+                answers[i] = future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                lateResponses++;
+            } catch (ExecutionException e) {
+                System.err.println("[KNN-ENSEMBLE] Errore nell'indice " + i + ": " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return merge ? mergeNeighbors(answers, out) : blendPredictions(answers, out);
+    }
+
+    /**
+     * Crea la ricerca su un indice: vicini (MERGE) o predizione (BLEND). Ogni ricerca restituisce
+     * un nuovo oggetto, quindi una risposta arrivata dopo il budget non tocca lo stato del tick successivo.
+     */
+    private Callable<Object> queryTask(KNNDriver member, double[] rawFeatures, boolean merge) {
+        if (merge) {
+            return () -> member.getKDTree().findKNearestNeighbors(rawFeatures, config.getBaseConfig().getK());
+        }
+        return () -> {
+            double[] prediction = new double[3];
+            return member.predict(rawFeatures, prediction) > 0 ? prediction : null;
+        };
+    }
+
+    /**
+     * Unisce i vicini degli indici che hanno risposto, tiene i K più vicini e calcola la media
+     * pesata sulla distanza inversa moltiplicata per il peso dell'indice di provenienza.
+     */
+    @SuppressWarnings("unchecked")
+    private int mergeNeighbors(Object[] answers, double[] out) {
+        List<DataPoint> merged = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        int answered = 0;
+        for (int i = 0; i < answers.length; i++) {
+            List<DataPoint> neighbors = (List<DataPoint>) answers[i];
+            if (neighbors == null || neighbors.isEmpty() || memberWeights[i] <= 0) {
+                continue;
+            }
+            answered++;
+            for (DataPoint neighbor : neighbors) {
+                merged.add(neighbor);
+                weights.add(memberWeights[i]);
+            }
+        }
+        if (answered == 0) {
+            return 0;
+        }
+
+        // Tiene i K candidati più vicini tra tutti gli indici
+        NeighborHeap heap = new NeighborHeap(config.getBaseConfig().getK());
+        for (int i = 0; i < merged.size(); i++) {
+            heap.offer(i, merged.get(i).distance);
+        }
+        int k = heap.sortAscending();
+
+        double totalWeight = 0.0;
+        double steering = 0.0, acceleration = 0.0, brake = 0.0;
+        for (int i = 0; i < k; i++) {
+            DataPoint neighbor = merged.get(heap.getId(i));
+            double weight = weights.get(heap.getId(i)) / (neighbor.distance + 1e-10);
+            totalWeight += weight;
+            steering += neighbor.steering * weight;
+            acceleration += neighbor.acceleration * weight;
+            brake += neighbor.brake * weight;
+        }
+        writeClamped(steering / totalWeight, acceleration / totalWeight, brake / totalWeight, out);
+        return answered;
+    }
+
+    /**
+     * Media pesata delle predizioni degli indici che hanno risposto, con i pesi rinormalizzati.
+     */
+    private int blendPredictions(Object[] answers, double[] out) {
+        double totalWeight = 0.0;
+        double steering = 0.0, acceleration = 0.0, brake = 0.0;
+        int answered = 0;
+        for (int i = 0; i < answers.length; i++) {
+            double[] prediction = (double[]) answers[i];
+            if (prediction == null || memberWeights[i] <= 0) {
+                continue;
+            }
+            answered++;
+            totalWeight += memberWeights[i];
+            steering += prediction[0] * memberWeights[i];
+            acceleration += prediction[1] * memberWeights[i];
+            brake += prediction[2] * memberWeights[i];
+        }
+        if (answered == 0) {
+            return 0;
+        }
+        writeClamped(steering / totalWeight, acceleration / totalWeight, brake / totalWeight, out);
+        return answered;
+    }
+
+    private static void writeClamped(double steering, double acceleration, double brake, double[] out) {
+        out[0] = Math.max(-1.0, Math.min(1.0, steering));
+        out[1] = Math.max(0.0, Math.min(1.0, acceleration));
+        out[2] = Math.max(0.0, Math.min(1.0, brake));
+    }
+
+    /**
+     * Resetta lo stato del driver per una nuova sessione.
+     */
+    @Override
+    public void reset() {
+        if (config.getBaseConfig().isEnableLogging()) {
+            System.out.println("[KNN-ENSEMBLE] Driver reset, risposte oltre il budget: " + lateResponses);
+        }
+    }
+
+    /**
+     * Termina la pool di ricerca.
+     */
+    @Override
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Restituisce la configurazione dell'ensemble.
+     *
+     * @return Configurazione dell'ensemble
+     */
+    public KNNEnsembleConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Restituisce il numero di indici caricati.
+     *
+     * @return Numero di indici
+     */
+    public int getMemberCount() {
+        return members.length;
+    }
+
+    /**
+     * Restituisce il numero di risposte escluse perché arrivate oltre il budget del tick.
+     *
+     * @return Numero di risposte in ritardo dall'avvio
+     */
+    public long getLateResponses() {
+        return lateResponses;
+    }
+
+    /**
+     * Verifica se il driver è pronto per essere utilizzato.
+     *
+     * @return true se almeno un indice è pronto
+     */
+    public boolean isReady() {
+        for (KNNDriver member : members) {
+            if (member.isReady()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,984 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Valutatore offline dei driver KNN su dataset di test, senza dover guidare un giro.
+ * Ripete le righe del dataset di test attraverso il percorso regressivo di {@link KNNDriver}
+ * e il voto pesato di {@link KNNClassifierDriver}, in parallelo su un {@link ForkJoinPool},
+ * e riporta errore/accuratezza per classe {@link DrivingAction}, query al secondo e percentili di latenza.
+ *
+ * Modalità di suddivisione supportate:
+ * - holdout: training e test da due file distinti
+ * - kfold: validazione incrociata a K fold sul solo dataset di training (righe mescolate)
+ * - loeo: leave-one-episode-out, ogni episodio (giro) a turno come test; evita che tick
+ *   adiacenti, quasi identici, finiscano sia nel training sia nel test
+ */
+public class KNNEvaluator {
+
+    /**
+     * Modalità di suddivisione training/test.
+     */
+    public enum Split {
+        HOLDOUT, KFOLD, LOEO
+    }
+
+    private final KNNDataset train;
+    private final KNNDataset test;
+    private final int[][] trainFolds;
+    private final int[][] testFolds;
+    private final boolean normalize;
+    private final ForkJoinPool pool;
+    private DistanceKernel kernel = DistanceKernel.SQUARED_L2;
+    private double[] weights = null;
+    private FeatureNormalizer.Mode normalizationMode = FeatureNormalizer.Mode.FIXED;
+    private boolean offHeapIndex = false;
+    private int policyBins = 0;
+    private boolean earlyVote = true;
+    private SplitStrategy splitStrategy = SplitStrategy.ROUND_ROBIN;
+    private int pcaComponents = 0;
+    private boolean pcaWhiten = false;
+    private LSHParameters lshParameters = null;
+
+    /**
+     * Costruttore del valutatore.
+     *
+     * @param train Dataset di training
+     * @param test Dataset di test (uguale a train per kfold e loeo)
+     * @param trainFolds Righe di training per ogni fold
+     * @param testFolds Righe di test per ogni fold
+     * @param normalize Flag per la normalizzazione delle features
+     * @param pool Pool su cui eseguire le predizioni
+     */
+    public KNNEvaluator(KNNDataset train, KNNDataset test, int[][] trainFolds, int[][] testFolds,
+                        boolean normalize, ForkJoinPool pool) {
+        this.train = train;
+        this.test = test;
+        this.trainFolds = trainFolds;
+        this.testFolds = testFolds;
+        this.normalize = normalize;
+        this.pool = pool;
+    }
+
+    /**
+     * Imposta la metrica di distanza dei driver valutati (Euclidea di default).
+     *
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (solo per la metrica pesata, altrimenti null)
+     */
+    public void setDistanceKernel(DistanceKernel kernel, double[] weights) {
+        this.kernel = kernel;
+        this.weights = weights;
+    }
+
+    /**
+     * Imposta la modalità di normalizzazione dei driver valutati (range fissi di default).
+     *
+     * @param normalizationMode Modalità di normalizzazione, calcolata sui dati di training di ogni fold
+     */
+    public void setNormalizationMode(FeatureNormalizer.Mode normalizationMode) {
+        this.normalizationMode = normalizationMode;
+    }
+
+    /**
+     * Sceglie la memoria degli indici dei driver valutati (heap Java di default).
+     *
+     * @param offHeapIndex true per gli indici in memoria nativa
+     */
+    public void setOffHeapIndex(boolean offHeapIndex) {
+        this.offHeapIndex = offHeapIndex;
+    }
+
+    /**
+     * Abilita la tabella di decisione del classificatore, compilata sul training di ogni fold
+     * (disabilitata di default).
+     *
+     * @param policyBins Intervalli per feature della griglia, 0 per la sola ricerca KNN
+     */
+    public void setPolicyBins(int policyBins) {
+        this.policyBins = policyBins;
+    }
+
+    /**
+     * Sceglie il voto del classificatore: con terminazione anticipata (default) o sui K vicini completi.
+     *
+     * @param earlyVote true per il voto con terminazione anticipata
+     */
+    public void setEarlyVote(boolean earlyVote) {
+        this.earlyVote = earlyVote;
+    }
+
+    /**
+     * Imposta la strategia di split degli indici dei driver valutati (dimensioni a turno di default).
+     *
+     * @param splitStrategy Strategia di split
+     */
+    public void setSplitStrategy(SplitStrategy splitStrategy) {
+        this.splitStrategy = splitStrategy;
+    }
+
+    /**
+     * Abilita la proiezione PCA degli indici dei driver valutati, calcolata sul training di ogni fold
+     * (disabilitata di default).
+     *
+     * @param components Componenti principali da mantenere, 0 per indicizzare le features senza proiezione
+     * @param whiten true per portare le componenti a varianza unitaria
+     */
+    public void setProjection(int components, boolean whiten) {
+        this.pcaComponents = components;
+        this.pcaWhiten = whiten;
+    }
+
+    /**
+     * Sostituisce il KD-tree dei driver valutati con l'indice approssimato {@link LSHIndex}
+     * (KD-tree esatto di default).
+     *
+     * @param lshParameters Parametri LSH, null per il KD-tree esatto
+     */
+    public void setLshParameters(LSHParameters lshParameters) {
+        this.lshParameters = lshParameters;
+    }
+
+    /**
+     * Crea la configurazione di un driver per un fold con la metrica e la normalizzazione del valutatore.
+     */
+    private KNNConfig createConfig(int k, boolean normalizeData, boolean classifierMode) {
+        KNNConfig config = new KNNConfig(k, train.getSource(), normalizeData, classifierMode);
+        config.setNormalizationMode(normalizationMode);
+        config.setOffHeapIndex(offHeapIndex);
+        config.setEarlyVote(earlyVote);
+        config.setSplitStrategy(splitStrategy);
+        config.setPcaComponents(pcaComponents);
+        config.setPcaWhiten(pcaWhiten);
+        config.setLshParameters(lshParameters);
+        config.setDistanceKernel(kernel);
+        config.setFeatureWeights(weights);
+        return config;
+    }
+
+    /**
+     * Descrive la normalizzazione applicata, per i titoli dei report.
+     */
+    private String normalizationLabel(boolean normalizeData) {
+        return normalizeData ? normalizationMode.name().toLowerCase() : "off";
+    }
+
+    /**
+     * Descrive la proiezione PCA applicata, per i titoli dei report.
+     */
+    private String projectionLabel() {
+        if (lshParameters != null) {
+            return ", LSH " + lshParameters;
+        }
+        return pcaComponents > 0 ? ", PCA " + pcaComponents + " componenti" + (pcaWhiten ? " con whitening" : "") : "";
+    }
+
+    /**
+     * Valuta il percorso regressivo di {@link KNNDriver}.
+     *
+     * @param k Numero di vicini
+     */
+    public void evaluateRegression(int k) {
+        double[][] predictions = new double[test.size()][3];
+        long[] latencies = new long[test.size()];
+        long totalNanos = 0;
+
+        System.out.printf("%n[KNN-EVAL] === Regressione (KNNDriver, K=%d, normalizzazione=%s%s) ===%n",
+            k, normalizationLabel(normalize), projectionLabel());
+
+        for (int fold = 0; fold < testFolds.length; fold++) {
+            KNNConfig config = createConfig(k, normalize, false);
+            KNNDriver driver = new KNNDriver(config, train.toDataPoints(trainFolds[fold]));
+
+            int[] rows = testFolds[fold];
+            long start = System.nanoTime();
+            pool.submit(() -> Arrays.stream(rows).parallel().forEach(row -> {
+                long t0 = System.nanoTime();
+                driver.predict(test.getFeatures(row), predictions[row]);
+                latencies[row] = System.nanoTime() - t0;
+            })).join();
+            totalNanos += System.nanoTime() - start;
+        }
+
+        printRegressionReport(predictions);
+        printPerformance(latencies, totalNanos);
+    }
+
+    /**
+     * Valuta il voto pesato di {@link KNNClassifierDriver}.
+     *
+     * @param k Numero di vicini
+     */
+    public void evaluateClassifier(int k) {
+        DrivingAction[] predictions = new DrivingAction[test.size()];
+        long[] latencies = new long[test.size()];
+        long totalNanos = 0;
+
+        System.out.printf("%n[KNN-EVAL] === Classificatore (KNNClassifierDriver, K=%d, normalizzazione=%s%s%s) ===%n",
+            k, normalizationLabel(normalize), projectionLabel(),
+            policyBins > 0 ? ", tabella " + policyBins + " intervalli" : "");
+
+        long tableHits = 0;
+        for (int fold = 0; fold < testFolds.length; fold++) {
+            KNNConfig config = createConfig(k, normalize, true);
+            KNNClassifierDriver driver = new KNNClassifierDriver(config, train.toClassifierPoints(trainFolds[fold]));
+
+            int[] rows = testFolds[fold];
+            if (policyBins > 0) {
+                PolicyTableCompiler compiler = new PolicyTableCompiler(driver, pool);
+                compiler.setBins(policyBins);
+                double[][] trainFeatures = new double[trainFolds[fold].length][];
+                for (int i = 0; i < trainFeatures.length; i++) {
+                    trainFeatures[i] = train.getFeatures(trainFolds[fold][i]);
+                }
+                PolicyTable table = compiler.compile(trainFeatures);
+                driver.setPolicyTable(table);
+                for (int row : rows) {
+                    if (table.lookup(test.getFeatures(row)) != PolicyTable.MISS) {
+                        tableHits++;
+                    }
+                }
+            }
+            long start = System.nanoTime();
+            pool.submit(() -> Arrays.stream(rows).parallel().forEach(row -> {
+                long t0 = System.nanoTime();
+                predictions[row] = driver.predictClass(test.getFeatures(row));
+                latencies[row] = System.nanoTime() - t0;
+            })).join();
+            totalNanos += System.nanoTime() - start;
+        }
+
+        printClassifierReport(predictions);
+        if (policyBins > 0) {
+            long total = collectLatencies(latencies).length;
+            System.out.printf("[KNN-EVAL] Risposte dalla tabella di decisione: %d/%d (%.1f%%)%n",
+                tableHits, total, (tableHits * 100.0) / total);
+        }
+        printPerformance(latencies, totalNanos);
+    }
+
+    /**
+     * Confronta le strategie di split del KD-tree del classificatore: per ogni fold costruisce un
+     * indice per strategia sul training e lo interroga con le righe di test, riportando tempo di
+     * costruzione, altezza, nodi visitati per query ({@link KDTreeStatistics}) e accuratezza.
+     * Le query sono sequenziali, così le latenze sono confrontabili tra le strategie.
+     *
+     * @param k Numero di vicini
+     */
+    public void compareSplitStrategies(int k) {
+        System.out.printf("%n[KNN-EVAL] === Strategie di split (KNNClassifierDriver, K=%d, normalizzazione=%s) ===%n",
+            k, normalizationLabel(normalize));
+
+        SplitStrategy previous = splitStrategy;
+        measureIndex(k);
+        try {
+            for (SplitStrategy strategy : SplitStrategy.values()) {
+                splitStrategy = strategy;
+                IndexTrial trial = measureIndex(k);
+                System.out.printf("[KNN-EVAL] %-16s costruzione %7.1f ms | altezza %3d (bilanciato %d) | visite medie %7.1f"
+                    + " | visite p90 %7.1f | %6.1f us/query | accuratezza %.2f%%%n",
+                    strategy, trial.buildMillis(), trial.height(), trial.balancedHeight(), trial.visits(),
+                    trial.p90Visits(), trial.micros(), trial.accuracy());
+            }
+        } finally {
+            splitStrategy = previous;
+        }
+    }
+
+    /**
+     * Confronta il classificatore con e senza proiezione PCA delle features: per ogni numero di
+     * componenti riporta la varianza mantenuta (media sui fold), i nodi visitati, il tempo per query,
+     * lo speedup rispetto alla prima voce dell'elenco e l'accuratezza.
+     *
+     * @param k Numero di vicini
+     * @param components Componenti da confrontare (0 per le features senza proiezione)
+     */
+    public void compareProjections(int k, int... components) {
+        System.out.printf("%n[KNN-EVAL] === Proiezione PCA (KNNClassifierDriver, K=%d, normalizzazione=%s, split %s%s) ===%n",
+            k, normalizationLabel(normalize), splitStrategy, pcaWhiten ? ", whitening" : "");
+
+        int previous = pcaComponents;
+        measureIndex(k);
+        try {
+            double baseline = 0.0;
+            for (int i = 0; i < components.length; i++) {
+                pcaComponents = components[i];
+                IndexTrial trial = measureIndex(k);
+                if (i == 0) {
+                    baseline = trial.micros();
+                }
+                System.out.printf("[KNN-EVAL] %-14s varianza %6.2f%% | costruzione %7.1f ms | visite medie %7.1f"
+                    + " | %6.1f us/query (x%.2f) | accuratezza %.2f%%%n",
+                    pcaComponents > 0 ? pcaComponents + " componenti" : "senza PCA", trial.varianceRetained() * 100.0,
+                    trial.buildMillis(), trial.visits(), trial.micros(), baseline / trial.micros(), trial.accuracy());
+            }
+        } finally {
+            pcaComponents = previous;
+        }
+    }
+
+    /**
+     * Confronta l'indice approssimato {@link LSHIndex} con il KD-tree esatto: per ogni fold costruisce
+     * entrambi sul training e interroga in sequenza le righe di test, riportando per ogni variante
+     * il richiamo (frazione dei K vicini esatti trovati), i candidati esaminati, il tempo per query,
+     * lo speedup rispetto al KD-tree e l'accuratezza del voto pesato sui vicini trovati.
+     *
+     * @param k Numero di vicini
+     * @param variants Parametri LSH da confrontare
+     */
+    public void compareLSH(int k, LSHParameters... variants) {
+        System.out.printf("%n[KNN-EVAL] === Indice LSH e KD-tree esatto (K=%d, normalizzazione=%s, metrica %s) ===%n",
+            k, normalizationLabel(normalize), kernel);
+
+        FeatureNormalizer.Mode mode = createConfig(k, normalize, true).getEffectiveNormalization();
+        int n = variants.length + 1;
+        long[] buildNanos = new long[n];
+        long[] searchNanos = new long[n];
+        long[] found = new long[n];
+        long[] candidates = new long[n];
+        long[] correct = new long[n];
+        double[] bucketSize = new double[n];
+        long queries = 0;
+        NeighborHeap exactHeap = new NeighborHeap(k);
+        NeighborHeap heap = new NeighborHeap(k);
+        NeighborVote vote = new NeighborVote(DrivingAction.values().length);
+
+        for (int fold = 0; fold < testFolds.length; fold++) {
+            int[] trainRows = trainFolds[fold];
+            double[][] points = new double[trainRows.length][];
+            int[] labels = new int[trainRows.length];
+            for (int i = 0; i < trainRows.length; i++) {
+                points[i] = train.getFeatures(trainRows[i]);
+                labels[i] = train.getActionClass(trainRows[i]).ordinal();
+            }
+            FeatureNormalizer normalizer = mode == null ? null
+                : FeatureNormalizer.fit(mode, points, KNNDataset.FEATURE_COUNT);
+
+            NeighborIndex[] indices = new NeighborIndex[n];
+            for (int v = 0; v < n; v++) {
+                long t0 = System.nanoTime();
+                indices[v] = v == 0 ? new KDTreeIndex(points, kernel, weights, normalizer, splitStrategy)
+                                    : new LSHIndex(points, kernel, weights, normalizer, variants[v - 1]);
+                buildNanos[v] += System.nanoTime() - t0;
+                if (indices[v] instanceof LSHIndex lsh) {
+                    bucketSize[v] += lsh.getAverageBucketSize() / testFolds.length;
+                }
+            }
+
+            // Vicini esatti di ogni query, come riferimento per il richiamo
+            int[] rows = testFolds[fold];
+            int[][] exact = new int[rows.length][];
+            for (int q = 0; q < rows.length; q++) {
+                int count = indices[0].query(test.getFeatures(rows[q]), k, exactHeap);
+                exact[q] = new int[count];
+                for (int j = 0; j < count; j++) {
+                    exact[q][j] = exactHeap.getId(j);
+                }
+                Arrays.sort(exact[q]);
+            }
+
+            for (int v = 0; v < n; v++) {
+                NeighborIndex index = indices[v];
+                long start = System.nanoTime();
+                for (int q = 0; q < rows.length; q++) {
+                    double[] features = test.getFeatures(rows[q]);
+                    int count = index.query(features, k, heap);
+                    candidates[v] += heap.getOfferCount();
+                    for (int j = 0; j < count; j++) {
+                        if (Arrays.binarySearch(exact[q], heap.getId(j)) >= 0) {
+                            found[v]++;
+                        }
+                    }
+                    if (index.vote(features, k, labels, vote) == test.getActionClass(rows[q]).ordinal()) {
+                        correct[v]++;
+                    }
+                }
+                searchNanos[v] += System.nanoTime() - start;
+            }
+            queries += rows.length;
+        }
+
+        // Il tempo misurato comprende ricerca e voto, quindi circa due ricerche per query
+        double exactMicros = searchNanos[0] / 2e3 / queries;
+        for (int v = 0; v < n; v++) {
+            double micros = searchNanos[v] / 2e3 / queries;
+            System.out.printf("[KNN-EVAL] %-14s richiamo %6.2f%% | candidati %8.1f | %6.1f us/query (x%.2f)"
+                + " | accuratezza %.2f%% | costruzione %7.1f ms%s%n",
+                v == 0 ? "KD-tree esatto" : "LSH " + variants[v - 1], (found[v] * 100.0) / Math.max(1, found[0]),
+                (double) candidates[v] / queries, micros, exactMicros / micros, (correct[v] * 100.0) / queries,
+                buildNanos[v] / 1e6, v == 0 ? "" : String.format(" | punti per bucket %.1f", bucketSize[v]));
+        }
+    }
+
+    /**
+     * Misure di un indice aggregate sui fold (medie pesate sul numero di query di ogni fold).
+     */
+    private record IndexTrial(double buildMillis, int height, int balancedHeight, double visits, double p90Visits,
+                              double micros, double accuracy, double varianceRetained) {
+    }
+
+    /**
+     * Costruisce per ogni fold il classificatore con la configurazione corrente e lo interroga
+     * in sequenza con le righe di test, misurando accuratezza e statistiche dell'indice.
+     * I confronti eseguono una prima passata a vuoto, così il riscaldamento del JIT non pesa
+     * sulla prima voce.
+     */
+    private IndexTrial measureIndex(int k) {
+        long buildNanos = 0;
+        long queries = 0;
+        long correct = 0;
+        double visits = 0.0;
+        double p90Visits = 0.0;
+        double micros = 0.0;
+        double variance = 0.0;
+        int height = 0;
+        int balancedHeight = 0;
+
+        for (int fold = 0; fold < testFolds.length; fold++) {
+            long t0 = System.nanoTime();
+            KNNClassifierDriver driver = new KNNClassifierDriver(createConfig(k, normalize, true),
+                train.toClassifierPoints(trainFolds[fold]));
+            buildNanos += System.nanoTime() - t0;
+
+            int[] rows = testFolds[fold];
+            double[][] sample = new double[rows.length][];
+            for (int i = 0; i < rows.length; i++) {
+                sample[i] = test.getFeatures(rows[i]);
+                if (driver.predictClass(sample[i]) == test.getActionClass(rows[i])) {
+                    correct++;
+                }
+            }
+            NeighborIndex index = driver.getKDTree().getIndex();
+            KDTreeStatistics stats = KDTreeStatistics.measure(index, sample, k);
+
+            queries += rows.length;
+            visits += stats.getAverageVisits() * rows.length;
+            p90Visits += stats.getP90Visits() * (double) rows.length;
+            micros += stats.getAverageMicros() * rows.length;
+            variance += (index instanceof ProjectedIndex p ? p.getProjection().getVarianceRetained() : 1.0)
+                        / testFolds.length;
+            height = Math.max(height, stats.getHeight());
+            balancedHeight = Math.max(balancedHeight, stats.getBalancedHeight());
+        }
+        return new IndexTrial(buildNanos / 1e6, height, balancedHeight, visits / queries, p90Visits / queries,
+                              micros / queries, (correct * 100.0) / queries, variance);
+    }
+
+    /**
+     * Sweep su K: per ogni fold e variante di normalizzazione costruisce un solo indice, interroga
+     * ogni punto di test una sola volta con K massimo (query a lotti) e ricava le predizioni di tutti
+     * i K minori dal prefisso ordinato dei vicini. Lo stesso elenco di vicini serve sia la media pesata
+     * del regressore sia il voto pesato del classificatore, perché i due driver usano le stesse features:
+     * l'intero sweep costa circa quanto una singola passata di valutazione.
+     *
+     * @param kMin K minimo (almeno 1)
+     * @param kMax K massimo
+     * @param normalizationVariants Varianti di normalizzazione da confrontare
+     */
+    public void sweepK(int kMin, int kMax, boolean... normalizationVariants) {
+        int ks = kMax + 1;
+
+        for (boolean variant : normalizationVariants) {
+            double[][] absErrors = new double[ks][3];
+            long[] correct = new long[ks];
+            long[] total = {0};
+            long buildNanos = 0;
+            long searchNanos = 0;
+            long aggregateNanos = 0;
+
+            for (int fold = 0; fold < testFolds.length; fold++) {
+                int[] trainRows = trainFolds[fold];
+                int[] rows = testFolds[fold];
+
+                // Un indice per fold e variante, condiviso da tutti i K e da entrambi i predittori
+                long t0 = System.nanoTime();
+                KNNConfig config = createConfig(kMax, variant, false);
+                KNNDriver driver = new KNNDriver(config, train.toDataPoints(trainRows));
+                double[][] queries = new double[rows.length][];
+                for (int i = 0; i < rows.length; i++) {
+                    queries[i] = test.getFeatures(rows[i]);
+                }
+                long t1 = System.nanoTime();
+                KNNBatchResult neighbors = driver.getKDTree().findKNearestNeighborsBatch(queries, kMax, pool);
+                long t2 = System.nanoTime();
+                aggregatePrefixes(neighbors, trainRows, rows, kMin, kMax, absErrors, correct);
+                long t3 = System.nanoTime();
+
+                total[0] += rows.length;
+                buildNanos += t1 - t0;
+                searchNanos += t2 - t1;
+                aggregateNanos += t3 - t2;
+            }
+
+            printSweepReport(variant, kMin, kMax, absErrors, correct, total[0]);
+            System.out.printf("[KNN-EVAL] Tempi: costruzione indice %.3f s | ricerca K=%d %.3f s | %d valori di K %.3f s%n",
+                buildNanos / 1e9, kMax, searchNanos / 1e9, kMax - kMin + 1, aggregateNanos / 1e9);
+        }
+    }
+
+    /**
+     * Accumula in parallelo gli errori del regressore e le risposte corrette del classificatore
+     * per ogni K, scorrendo una sola volta i vicini ordinati di ogni query.
+     */
+    private void aggregatePrefixes(KNNBatchResult neighbors, int[] trainRows, int[] rows,
+                                   int kMin, int kMax, double[][] absErrors, long[] correct) {
+        int chunks = Math.max(1, Math.min(rows.length, pool.getParallelism() * 4));
+        Object lock = new Object();
+
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            double[][] localErrors = new double[kMax + 1][3];
+            long[] localCorrect = new long[kMax + 1];
+            double[] votes = new double[DrivingAction.values().length];
+            DrivingAction[] actions = DrivingAction.values();
+
+            int from = (int) ((long) rows.length * chunk / chunks);
+            int to = (int) ((long) rows.length * (chunk + 1) / chunks);
+            for (int q = from; q < to; q++) {
+                double[] target = test.getTargets(rows[q]);
+                DrivingAction trueClass = test.getActionClass(rows[q]);
+                int count = neighbors.getNeighborCount(q);
+
+                double totalWeight = 0.0;
+                double steering = 0.0;
+                double acceleration = 0.0;
+                double brake = 0.0;
+                Arrays.fill(votes, 0.0);
+                int best = DrivingAction.STRAIGHT_NORMAL.ordinal();
+
+                for (int j = 0; j < kMax; j++) {
+                    // Oltre i vicini disponibili la predizione resta quella con tutti i vicini
+                    if (j < count) {
+                        int trainRow = trainRows[neighbors.getIndex(q, j)];
+                        double weight = 1.0 / (neighbors.getDistance(q, j) + 1e-10);
+                        double[] neighborTarget = train.getTargets(trainRow);
+                        totalWeight += weight;
+                        steering += neighborTarget[0] * weight;
+                        acceleration += neighborTarget[1] * weight;
+                        brake += neighborTarget[2] * weight;
+
+                        int c = train.getActionClass(trainRow).ordinal();
+                        votes[c] += weight;
+                        if (votes[c] > votes[best] || (votes[c] == votes[best] && c < best)) {
+                            best = c;
+                        }
+                    }
+
+                    int k = j + 1;
+                    if (k >= kMin && totalWeight > 0) {
+                        localErrors[k][0] += Math.abs(Math.max(-1.0, Math.min(1.0, steering / totalWeight)) - target[0]);
+                        localErrors[k][1] += Math.abs(Math.max(0.0, Math.min(1.0, acceleration / totalWeight)) - target[1]);
+                        localErrors[k][2] += Math.abs(Math.max(0.0, Math.min(1.0, brake / totalWeight)) - target[2]);
+                        if (actions[best] == trueClass) {
+                            localCorrect[k]++;
+                        }
+                    }
+                }
+            }
+
+            synchronized (lock) {
+                for (int k = kMin; k <= kMax; k++) {
+                    absErrors[k][0] += localErrors[k][0];
+                    absErrors[k][1] += localErrors[k][1];
+                    absErrors[k][2] += localErrors[k][2];
+                    correct[k] += localCorrect[k];
+                }
+            }
+        })).join();
+    }
+
+    /**
+     * Stampa la tabella dello sweep e i K migliori per regressione e classificazione.
+     */
+    private void printSweepReport(boolean variant, int kMin, int kMax, double[][] absErrors, long[] correct, long total) {
+        System.out.printf("%n[KNN-EVAL] === Sweep K=%d..%d (normalizzazione=%s, %d query) ===%n", kMin, kMax,
+            normalizationLabel(variant), total);
+        System.out.println("[KNN-EVAL]    K | MAE steering | MAE accel | MAE brake | accuratezza");
+
+        int bestRegression = kMin;
+        int bestClassifier = kMin;
+        for (int k = kMin; k <= kMax; k++) {
+            System.out.printf("[KNN-EVAL] %4d |     %.4f   |   %.4f  |   %.4f  |   %.2f%%%n", k,
+                absErrors[k][0] / total, absErrors[k][1] / total, absErrors[k][2] / total, (correct[k] * 100.0) / total);
+            if (absErrors[k][0] < absErrors[bestRegression][0]) {
+                bestRegression = k;
+            }
+            if (correct[k] > correct[bestClassifier]) {
+                bestClassifier = k;
+            }
+        }
+        System.out.printf("[KNN-EVAL] Miglior K regressione (MAE steering): %d | miglior K classificatore: %d%n",
+            bestRegression, bestClassifier);
+    }
+
+    /**
+     * Stampa l'errore assoluto medio per classe (classe vera della riga di test).
+     */
+    private void printRegressionReport(double[][] predictions) {
+        int classes = DrivingAction.values().length;
+        int[] counts = new int[classes];
+        double[][] absErrors = new double[classes][3];
+        double[] totalAbs = new double[3];
+        double[] totalSquared = new double[3];
+        int total = 0;
+
+        for (int[] rows : testFolds) {
+            for (int row : rows) {
+                int c = test.getActionClass(row).ordinal();
+                double[] target = test.getTargets(row);
+                counts[c]++;
+                total++;
+                for (int j = 0; j < 3; j++) {
+                    double error = predictions[row][j] - target[j];
+                    absErrors[c][j] += Math.abs(error);
+                    totalAbs[j] += Math.abs(error);
+                    totalSquared[j] += error * error;
+                }
+            }
+        }
+
+        System.out.println("[KNN-EVAL] Errore assoluto medio per classe (steering / acceleration / brake):");
+        for (DrivingAction action : DrivingAction.values()) {
+            int c = action.ordinal();
+            if (counts[c] > 0) {
+                System.out.printf("[KNN-EVAL] - %-25s: %6d  MAE %.4f / %.4f / %.4f%n",
+                    action.getDescription(), counts[c],
+                    absErrors[c][0] / counts[c], absErrors[c][1] / counts[c], absErrors[c][2] / counts[c]);
+            }
+        }
+        if (total > 0) {
+            System.out.printf("[KNN-EVAL] Totale %d campioni  MAE %.4f / %.4f / %.4f  RMSE %.4f / %.4f / %.4f%n",
+                total, totalAbs[0] / total, totalAbs[1] / total, totalAbs[2] / total,
+                Math.sqrt(totalSquared[0] / total), Math.sqrt(totalSquared[1] / total), Math.sqrt(totalSquared[2] / total));
+        }
+    }
+
+    /**
+     * Stampa l'accuratezza per classe (recall sulla classe vera) e l'accuratezza complessiva.
+     */
+    private void printClassifierReport(DrivingAction[] predictions) {
+        int classes = DrivingAction.values().length;
+        int[] counts = new int[classes];
+        int[] correct = new int[classes];
+        int total = 0;
+        int totalCorrect = 0;
+
+        for (int[] rows : testFolds) {
+            for (int row : rows) {
+                int c = test.getActionClass(row).ordinal();
+                counts[c]++;
+                total++;
+                if (predictions[row] == test.getActionClass(row)) {
+                    correct[c]++;
+                    totalCorrect++;
+                }
+            }
+        }
+
+        System.out.println("[KNN-EVAL] Accuratezza per classe:");
+        double macroSum = 0.0;
+        int presentClasses = 0;
+        for (DrivingAction action : DrivingAction.values()) {
+            int c = action.ordinal();
+            if (counts[c] > 0) {
+                double accuracy = (correct[c] * 100.0) / counts[c];
+                macroSum += accuracy;
+                presentClasses++;
+                System.out.printf("[KNN-EVAL] - %-25s: %6d/%6d (%.1f%%)%n",
+                    action.getDescription(), correct[c], counts[c], accuracy);
+            }
+        }
+        if (total > 0) {
+            System.out.printf("[KNN-EVAL] Accuratezza complessiva: %.2f%% | media per classe: %.2f%%%n",
+                (totalCorrect * 100.0) / total, macroSum / presentClasses);
+        }
+    }
+
+    /**
+     * Stampa query al secondo (sul tempo reale della fase parallela) e percentili di latenza per query.
+     */
+    private void printPerformance(long[] latencies, long totalNanos) {
+        long[] sorted = collectLatencies(latencies);
+        if (sorted.length == 0) {
+            return;
+        }
+        double seconds = totalNanos / 1e9;
+        System.out.printf("[KNN-EVAL] Throughput: %.0f query/s (%d query in %.3f s, parallelismo %d)%n",
+            sorted.length / seconds, sorted.length, seconds, pool.getParallelism());
+        System.out.printf("[KNN-EVAL] Latenza per query (us): p50 %.1f | p90 %.1f | p99 %.1f | max %.1f%n",
+            percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.90) / 1e3,
+            percentile(sorted, 0.99) / 1e3, sorted[sorted.length - 1] / 1e3);
+    }
+
+    /**
+     * Raccoglie e ordina le latenze delle sole righe di test.
+     */
+    private long[] collectLatencies(long[] latencies) {
+        int total = 0;
+        for (int[] rows : testFolds) {
+            total += rows.length;
+        }
+        long[] collected = new long[total];
+        int i = 0;
+        for (int[] rows : testFolds) {
+            for (int row : rows) {
+                collected[i++] = latencies[row];
+            }
+        }
+        Arrays.sort(collected);
+        return collected;
+    }
+
+    /**
+     * Percentile con metodo nearest-rank su un array ordinato.
+     */
+    static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+
+    /**
+     * Suddivide le righe in K fold dopo averle mescolate.
+     *
+     * @param dataset Dataset da suddividere
+     * @param folds Numero di fold (almeno 2)
+     * @param seed Seme per il mescolamento
+     * @return Coppia {training, test}: per ogni fold le righe corrispondenti
+     */
+    public static int[][][] kFoldSplit(KNNDataset dataset, int folds, long seed) {
+        int[] rows = dataset.allRows();
+        Random random = new Random(seed);
+        for (int i = rows.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = rows[i];
+            rows[i] = rows[j];
+            rows[j] = tmp;
+        }
+
+        int[] foldOf = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            foldOf[rows[i]] = i % folds;
+        }
+        return splitBy(foldOf, folds);
+    }
+
+    /**
+     * Suddivide le righe lasciando fuori un episodio alla volta.
+     *
+     * @param dataset Dataset da suddividere
+     * @return Coppia {training, test}: per ogni episodio le righe corrispondenti
+     */
+    public static int[][][] leaveOneEpisodeOutSplit(KNNDataset dataset) {
+        int[] episodeOf = new int[dataset.size()];
+        for (int row = 0; row < episodeOf.length; row++) {
+            episodeOf[row] = dataset.getEpisode(row);
+        }
+        return splitBy(episodeOf, dataset.getEpisodeCount());
+    }
+
+    /**
+     * Costruisce le righe di training e test per ogni gruppo: il gruppo g è il test del fold g.
+     */
+    private static int[][][] splitBy(int[] groupOf, int groups) {
+        int[] groupSizes = new int[groups];
+        for (int group : groupOf) {
+            groupSizes[group]++;
+        }
+
+        int[][] trainFolds = new int[groups][];
+        int[][] testFolds = new int[groups][];
+        for (int g = 0; g < groups; g++) {
+            trainFolds[g] = new int[groupOf.length - groupSizes[g]];
+            testFolds[g] = new int[groupSizes[g]];
+        }
+
+        int[] trainFill = new int[groups];
+        int[] testFill = new int[groups];
+        for (int row = 0; row < groupOf.length; row++) {
+            for (int g = 0; g < groups; g++) {
+                if (groupOf[row] == g) {
+                    testFolds[g][testFill[g]++] = row;
+                } else {
+                    trainFolds[g][trainFill[g]++] = row;
+                }
+            }
+        }
+        return new int[][][] {trainFolds, testFolds};
+    }
+
+    /**
+     * Metodo main per utilizzare il valutatore da riga di comando.
+     *
+     * @param args Parametri nel formato chiave:valore (vedi messaggio di uso)
+     */
+    public static void main(String[] args) {
+        String trainPath = null;
+        String testPath = null;
+        String splitName = null;
+        String mode = "both";
+        int folds = 5;
+        int kRegression = 8;
+        int kClassifier = 15;
+        boolean normalize = true;
+        boolean[] normalizationVariants = {true};
+        int sweepMin = 0;
+        int sweepMax = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+        DistanceKernel kernel = DistanceKernel.SQUARED_L2;
+        double[] weights = null;
+        FeatureNormalizer.Mode normalizationMode = FeatureNormalizer.Mode.FIXED;
+        boolean offHeapIndex = false;
+        int policyBins = 0;
+        boolean earlyVote = true;
+        SplitStrategy splitStrategy = SplitStrategy.ROUND_ROBIN;
+        boolean compareSplits = false;
+        int[] pcaComponents = {0};
+        LSHParameters[] lshVariants = {};
+        boolean pcaWhiten = false;
+
+        for (String arg : args) {
+            int sep = arg.indexOf(':');
+            if (sep <= 0) {
+                System.err.println("[KNN-EVAL] Parametro non riconosciuto: " + arg);
+                continue;
+            }
+            String key = arg.substring(0, sep);
+            String value = arg.substring(sep + 1);
+            switch (key) {
+                case "train" -> trainPath = value;
+                case "test" -> testPath = value;
+                case "split" -> splitName = value;
+                case "mode" -> mode = value;
+                case "folds" -> folds = Integer.parseInt(value);
+                case "kRegression" -> kRegression = Integer.parseInt(value);
+                case "kClassifier" -> kClassifier = Integer.parseInt(value);
+                case "normalize" -> {
+                    String[] variants = value.split(",");
+                    normalizationVariants = new boolean[variants.length];
+                    for (int i = 0; i < variants.length; i++) {
+                        normalizationVariants[i] = !variants[i].equals("off");
+                    }
+                    normalize = normalizationVariants[0];
+                }
+                case "sweep" -> {
+                    int dash = value.indexOf('-');
+                    sweepMin = dash > 0 ? Integer.parseInt(value.substring(0, dash)) : 1;
+                    sweepMax = Integer.parseInt(value.substring(dash + 1));
+                }
+                case "threads" -> threads = Integer.parseInt(value);
+                case "seed" -> seed = Long.parseLong(value);
+                case "metric" -> kernel = DistanceKernel.fromName(value);
+                case "weights" -> weights = DistanceKernel.parseWeights(value);
+                case "normalization" -> normalizationMode = FeatureNormalizer.Mode.fromName(value);
+                case "index" -> offHeapIndex = value.equals("offheap");
+                case "policyBins" -> policyBins = Integer.parseInt(value);
+                case "vote" -> earlyVote = !value.equals("full");
+                case "pca" -> pcaComponents = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                case "whiten" -> pcaWhiten = value.equals("on");
+                case "lsh" -> lshVariants = Arrays.stream(value.split(",")).map(LSHParameters::parse)
+                                                  .toArray(LSHParameters[]::new);
+                case "tree" -> {
+                    compareSplits = value.equals("all");
+                    if (!compareSplits) {
+                        splitStrategy = SplitStrategy.fromName(value);
+                    }
+                }
+                default -> System.err.println("[KNN-EVAL] Parametro non riconosciuto: " + arg);
+            }
+        }
+
+        if (trainPath == null) {
+            System.out.println("Uso: java KNNEvaluator train:<dataset.csv> [test:<dataset.csv>] [split:holdout|kfold|loeo]");
+            System.out.println("       [mode:regression|classifier|both] [folds:5] [kRegression:8] [kClassifier:15]");
+            System.out.println("       [normalize:on|off|on,off] [sweep:1-50] [threads:N] [seed:42]");
+            System.out.println("       [metric:euclidean|manhattan|chebyshev|weighted] [weights:w0,...,w13]");
+            System.out.println("       [normalization:fixed|minmax|zscore] [index:heap|offheap] [policyBins:0]");
+            System.out.println("       [vote:early|full] [tree:roundrobin|spread|variance|midpoint|all]");
+            System.out.println("       [pca:0|N|0,4,6,...] [whiten:on|off] [lsh:LxKxW|LxKxW,LxKxW,...]");
+            System.out.println("  Formati accettati: human_dataset.csv (standard) o dataset discretizzato (colonna actionClass)");
+            System.out.println("  split di default: holdout se è indicato test, altrimenti kfold");
+            System.out.println("  sweep: valuta tutti i K nell'intervallo con una sola ricerca per punto (ignora mode e K)");
+            System.out.println("  tree: strategia di split del KD-tree; all confronta tutte le strategie (ignora mode)");
+            System.out.println("  pca: componenti principali degli indici; con più valori confronta varianza e velocità (ignora mode)");
+            System.out.println("  lsh: indice LSH con L tabelle, K hash per tabella, bucket larghi W; con più varianti");
+            System.out.println("       confronta richiamo e latenza con il KD-tree esatto (ignora mode)");
+            return;
+        }
+
+        Split split = splitName != null ? Split.valueOf(splitName.toUpperCase())
+                                        : (testPath != null ? Split.HOLDOUT : Split.KFOLD);
+
+        try {
+            KNNDataset train = KNNDataset.load(trainPath);
+            KNNDataset test = train;
+            int[][][] partition;
+
+            switch (split) {
+                case HOLDOUT -> {
+                    if (testPath == null) {
+                        System.err.println("[KNN-EVAL] La modalità holdout richiede il parametro test:<file>");
+                        return;
+                    }
+                    test = KNNDataset.load(testPath);
+                    partition = new int[][][] {{train.allRows()}, {test.allRows()}};
+                }
+                case KFOLD -> partition = kFoldSplit(train, Math.max(2, folds), seed);
+                default -> {
+                    if (train.getEpisodeCount() < 2) {
+                        System.err.println("[KNN-EVAL] Leave-one-episode-out richiede almeno 2 episodi, trovati: "
+                            + train.getEpisodeCount());
+                        return;
+                    }
+                    partition = leaveOneEpisodeOutSplit(train);
+                }
+            }
+
+            System.out.printf("[KNN-EVAL] Split %s: %d fold, %d righe di test, %d thread%n",
+                split, partition[1].length, split == Split.HOLDOUT ? test.size() : train.size(), threads);
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                KNNEvaluator evaluator = new KNNEvaluator(train, test, partition[0], partition[1], normalize, pool);
+                evaluator.setDistanceKernel(kernel, weights);
+                evaluator.setNormalizationMode(normalizationMode);
+                evaluator.setOffHeapIndex(offHeapIndex);
+                evaluator.setPolicyBins(policyBins);
+                evaluator.setEarlyVote(earlyVote);
+                evaluator.setSplitStrategy(splitStrategy);
+                evaluator.setProjection(pcaComponents[0], pcaWhiten);
+                evaluator.setLshParameters(lshVariants.length == 1 ? lshVariants[0] : null);
+                if (lshVariants.length > 1) {
+                    evaluator.compareLSH(kClassifier, lshVariants);
+                    return;
+                }
+                if (pcaComponents.length > 1) {
+                    evaluator.compareProjections(kClassifier, pcaComponents);
+                    return;
+                }
+                if (compareSplits) {
+                    evaluator.compareSplitStrategies(kClassifier);
+                    return;
+                }
+                if (sweepMax > 0) {
+                    evaluator.sweepK(Math.max(1, sweepMin), sweepMax, normalizationVariants);
+                    return;
+                }
+                if (!mode.equals("classifier")) {
+                    evaluator.evaluateRegression(kRegression);
+                }
+                if (!mode.equals("regression")) {
+                    evaluator.evaluateClassifier(kClassifier);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        } catch (IOException e) {
+            System.err.println("[KNN-EVAL] Errore: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Indice approssimato per la ricerca dei K vicini basato su locality-sensitive hashing con
+ * proiezioni casuali p-stabili: gaussiane per la distanza Euclidea (anche pesata), di Cauchy per
+ * la Manhattan. Ogni funzione di hash proietta il punto su una direzione casuale e ne prende il
+ * bucket di larghezza fissa; ogni tabella concatena più funzioni in una chiave e i punti vicini
+ * finiscono con alta probabilità nello stesso bucket di almeno una tabella.
+ *
+ * Una ricerca calcola le chiavi della query, raccoglie i punti dei bucket corrispondenti
+ * (senza duplicati tra le tabelle) e li ordina con la distanza esatta della metrica: il costo
+ * dipende dalla dimensione dei bucket e non dalla potatura, che nel KD-tree degrada al crescere
+ * delle dimensioni. Se i bucket non forniscono K candidati vengono interrogati anche quelli
+ * adiacenti (una funzione di hash spostata di un bucket). Il risultato può non contenere alcuni
+ * dei veri vicini: richiamo e velocità si regolano con {@link LSHParameters}.
+ *
+ * Come {@link KDTreeIndex}, le coordinate e le tabelle sono array primitivi (i bucket di ogni
+ * tabella sono intervalli contigui di un unico array di indici, con le chiavi ordinate per la
+ * ricerca binaria), le query accettano features grezze e non allocano: la query trasformata, i
+ * valori di hash e i marcatori dei punti già visitati stanno nell'heap di lavoro.
+ */
+public final class LSHIndex implements NeighborIndex {
+
+    /** Moltiplicatore per combinare i valori di hash di una tabella in una sola chiave */
+    private static final long KEY_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final int dimensions;
+    private final int size;
+    private final DistanceKernel kernel;
+    private final FeatureNormalizer normalizer;
+    private final FeatureNormalizer transform;
+    private final LSHParameters parameters;
+    private final int tables;
+    private final int hashes;
+    private final double inverseWidth;
+    private final double[] coords;
+    private final double[] projections;
+    private final double[] offsets;
+    private final long[][] bucketKeys;
+    private final int[][] bucketStarts;
+    private final int[][] members;
+
+    /**
+     * Costruisce l'indice con la metrica, la normalizzazione e i parametri indicati.
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza (Euclidea, Euclidea pesata o Manhattan)
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @param parameters Tabelle, funzioni di hash per tabella e larghezza dei bucket
+     * @throws IllegalArgumentException Se la metrica non ha una famiglia di hash p-stabile (Chebyshev)
+     */
+    public LSHIndex(double[][] points, DistanceKernel kernel, double[] weights, FeatureNormalizer normalizer,
+                    LSHParameters parameters) {
+        if (kernel == DistanceKernel.LINF) {
+            throw new IllegalArgumentException("L'indice LSH supporta le metriche Euclidea, Euclidea pesata e Manhattan");
+        }
+        this.size = points.length;
+        this.dimensions = size > 0 ? points[0].length : 0;
+        this.kernel = kernel;
+        this.normalizer = normalizer;
+        this.transform = FeatureNormalizer.forIndex(normalizer, kernel, weights, size > 0 ? dimensions : -1);
+        this.parameters = parameters;
+        this.tables = parameters.tables();
+        this.hashes = parameters.hashes();
+        this.inverseWidth = 1.0 / parameters.bucketWidth();
+
+        // Coordinate trasformate nell'ordine originale dei punti
+        this.coords = new double[size * dimensions];
+        for (int p = 0; p < size; p++) {
+            for (int i = 0; i < dimensions; i++) {
+                double v = points[p][i];
+                coords[p * dimensions + i] = transform == null ? v : transform.apply(i, v);
+            }
+        }
+
+        // Direzioni p-stabili e scostamenti uniformi in [0, larghezza)
+        Random random = new Random(parameters.seed());
+        this.projections = new double[tables * hashes * dimensions];
+        this.offsets = new double[tables * hashes];
+        for (int h = 0; h < offsets.length; h++) {
+            for (int i = 0; i < dimensions; i++) {
+                projections[h * dimensions + i] = kernel == DistanceKernel.L1
+                    ? Math.tan(Math.PI * (random.nextDouble() - 0.5))
+                    : random.nextGaussian();
+            }
+            offsets[h] = random.nextDouble() * parameters.bucketWidth();
+        }
+
+        this.bucketKeys = new long[tables][];
+        this.bucketStarts = new int[tables][];
+        this.members = new int[tables][];
+        long[] keys = new long[size];
+        for (int t = 0; t < tables; t++) {
+            buildTable(t, keys);
+        }
+    }
+
+    /**
+     * Raggruppa i punti per chiave: chiavi distinte ordinate, inizio di ogni bucket e indici
+     * dei punti bucket per bucket.
+     */
+    private void buildTable(int table, long[] keys) {
+        for (int p = 0; p < size; p++) {
+            keys[p] = key(table, coords, p * dimensions);
+        }
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        long[] unique = Arrays.copyOf(sorted, distinct);
+
+        int[] starts = new int[distinct + 1];
+        int[] bucketOf = new int[size];
+        for (int p = 0; p < size; p++) {
+            bucketOf[p] = Arrays.binarySearch(unique, keys[p]);
+            starts[bucketOf[p] + 1]++;
+        }
+        for (int b = 0; b < distinct; b++) {
+            starts[b + 1] += starts[b];
+        }
+        int[] fill = Arrays.copyOf(starts, distinct);
+        int[] ids = new int[size];
+        for (int p = 0; p < size; p++) {
+            ids[fill[bucketOf[p]]++] = p;
+        }
+
+        bucketKeys[table] = unique;
+        bucketStarts[table] = starts;
+        members[table] = ids;
+    }
+
+    /**
+     * Valore di una funzione di hash: indice del bucket della proiezione del vettore.
+     */
+    private long hash(int h, double[] x, int base) {
+        int a = h * dimensions;
+        double dot = offsets[h];
+        for (int i = 0; i < dimensions; i++) {
+            dot += projections[a + i] * x[base + i];
+        }
+        return (long) Math.floor(dot * inverseWidth);
+    }
+
+    /**
+     * Chiave di una tabella: combinazione dei valori delle sue funzioni di hash.
+     */
+    private long key(int table, double[] x, int base) {
+        long key = 0;
+        for (int j = 0; j < hashes; j++) {
+            key = key * KEY_MULTIPLIER + hash(table * hashes + j, x, base);
+        }
+        return key;
+    }
+
+    /**
+     * Trova K vicini approssimati del punto target usando l'heap fornito come spazio di lavoro.
+     * Al termine l'heap contiene i vicini trovati ordinati per distanza crescente (distanze esatte).
+     *
+     * @param target Features grezze del punto di query
+     * @param k Numero di vicini da trovare
+     * @param heap Heap di lavoro (viene svuotato all'inizio)
+     * @return Numero di vicini trovati (al più K, meno se i bucket interrogati hanno meno punti)
+     */
+    @Override
+    public int query(double[] target, int k, NeighborHeap heap) {
+        heap.reset(k);
+        if (size == 0 || k <= 0) {
+            return 0;
+        }
+
+        // Il buffer contiene la query trasformata seguita dai valori di hash di tutte le tabelle
+        double[] buffer = heap.queryBuffer(dimensions + tables * hashes);
+        double[] query = target;
+        if (transform != null) {
+            query = transform.apply(target, buffer);
+        }
+        heap.beginVisit(size);
+
+        for (int t = 0; t < tables; t++) {
+            long key = 0;
+            for (int j = 0; j < hashes; j++) {
+                long h = hash(t * hashes + j, query, 0);
+                buffer[dimensions + t * hashes + j] = h;
+                key = key * KEY_MULTIPLIER + h;
+            }
+            scan(t, key, query, heap);
+        }
+
+        // Bucket adiacenti: una funzione di hash alla volta spostata di un bucket in entrambi i versi
+        for (int t = 0; t < tables && heap.size() < k; t++) {
+            for (int j = 0; j < hashes && heap.size() < k; j++) {
+                scan(t, probeKey(buffer, t, j, -1), query, heap);
+                scan(t, probeKey(buffer, t, j, 1), query, heap);
+            }
+        }
+
+        int count = heap.sortAscending();
+        for (int i = 0; i < count; i++) {
+            heap.setDistance(i, kernel.toDistance(heap.getDistance(i)));
+        }
+        return count;
+    }
+
+    /**
+     * Chiave di una tabella con il valore di una funzione di hash spostato di delta.
+     */
+    private long probeKey(double[] buffer, int table, int moved, int delta) {
+        int base = dimensions + table * hashes;
+        long key = 0;
+        for (int j = 0; j < hashes; j++) {
+            long h = (long) buffer[base + j];
+            key = key * KEY_MULTIPLIER + (j == moved ? h + delta : h);
+        }
+        return key;
+    }
+
+    /**
+     * Propone all'heap i punti non ancora visitati del bucket con la chiave indicata.
+     */
+    private void scan(int table, long key, double[] query, NeighborHeap heap) {
+        int bucket = Arrays.binarySearch(bucketKeys[table], key);
+        if (bucket < 0) {
+            return;
+        }
+        int[] ids = members[table];
+        int end = bucketStarts[table][bucket + 1];
+        for (int m = bucketStarts[table][bucket]; m < end; m++) {
+            int id = ids[m];
+            if (heap.markVisited(id)) {
+                heap.offer(id, kernel.rank(query, coords, id * dimensions, dimensions));
+            }
+        }
+    }
+
+    /**
+     * Restituisce i parametri dell'indice.
+     *
+     * @return Tabelle, funzioni di hash e larghezza dei bucket
+     */
+    public LSHParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Restituisce il numero medio di punti per bucket, sulle tabelle.
+     *
+     * @return Punti per bucket
+     */
+    public double getAverageBucketSize() {
+        long buckets = 0;
+        for (long[] keys : bucketKeys) {
+            buckets += keys.length;
+        }
+        return buckets == 0 ? 0.0 : (double) size * tables / buckets;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public DistanceKernel getKernel() {
+        return kernel;
+    }
+
+    @Override
+    public FeatureNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * L'indice non ha una struttura ad albero: un solo livello di bucket.
+     *
+     * @return 1 se l'indice contiene punti, altrimenti 0
+     */
+    @Override
+    public int height() {
+        return size > 0 ? 1 : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LSHIndex{punti=%d, tabelle=%d, hash=%d, larghezza=%.2f, punti per bucket=%.1f}",
+                             size, tables, hashes, parameters.bucketWidth(), getAverageBucketSize());
+    }
+}
@@ -0,0 +1,59 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Locale;
+
+/**
+ * Parametri di {@link LSHIndex}: bilanciano richiamo e velocità delle ricerche approssimate.
+ * Più tabelle aumentano il richiamo (più bucket interrogati), più funzioni di hash per tabella
+ * rendono i bucket più piccoli e selettivi (ricerche più veloci, richiamo minore), bucket più
+ * larghi raccolgono più candidati. Con la metrica Manhattan le proiezioni di Cauchy sono molto più
+ * disperse di quelle gaussiane e richiedono bucket più larghi a parità di richiamo.
+ *
+ * @param tables Numero di tabelle di hash (L)
+ * @param hashes Funzioni di hash concatenate per tabella (K)
+ * @param bucketWidth Larghezza dei bucket di ogni proiezione, nello spazio normalizzato dell'indice
+ * @param seed Seme delle proiezioni casuali
+ */
+public record LSHParameters(int tables, int hashes, double bucketWidth, long seed) {
+
+    /** Parametri di default: buon compromesso sul dataset registrato con normalizzazione fissa */
+    public static final LSHParameters DEFAULT = new LSHParameters(8, 6, 4.0, 42L);
+
+    /**
+     * Controlla i parametri.
+     *
+     * @throws IllegalArgumentException Se tabelle, funzioni di hash o larghezza non sono positive
+     */
+    public LSHParameters {
+        if (tables < 1 || hashes < 1 || !(bucketWidth > 0)) {
+            throw new IllegalArgumentException("Parametri LSH non validi: tabelle=" + tables
+                + ", hash=" + hashes + ", larghezza=" + bucketWidth);
+        }
+    }
+
+    /**
+     * Interpreta parametri nel formato {@code tabellexhashxlarghezza} (ad esempio {@code 8x6x4.0}).
+     * La larghezza è facoltativa ({@code 8x6}) e vale quella di default.
+     *
+     * @param text Parametri in forma testuale
+     * @return Parametri corrispondenti, con il seme di default
+     * @throws IllegalArgumentException Se il formato non è valido
+     */
+    public static LSHParameters parse(String text) {
+        String[] parts = text.toLowerCase().split("x");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Parametri LSH non validi: " + text + " (atteso tabellexhash[xlarghezza])");
+        }
+        try {
+            return new LSHParameters(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                parts.length == 3 ? Double.parseDouble(parts[2].trim()) : DEFAULT.bucketWidth(), DEFAULT.seed());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parametri LSH non validi: " + text, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%dx%dx%.2f", tables, hashes, bucketWidth);
+    }
+}
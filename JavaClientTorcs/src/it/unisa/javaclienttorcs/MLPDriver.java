@@ -6,20 +6,67 @@ package it.unisa.javaclienttorcs;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Driver guidato dalla rete MLP addestrata in {@code mlpDriver/mlpFitting.ipynb}.
+ * Se il file dei pesi esportato con {@code mlpExport.py} è disponibile la rete viene valutata
+ * nel client ({@link MLPModel}): il tick non attende il processo Python e non alloca.
+ * Altrimenti il driver invia i sensori al server Python ({@code mlpDrive.py}) via UDP, con il
+ * protocollo binario di {@link MLPProtocol} se il server lo supporta o con quello testuale.
+ * Con il protocollo binario le risposte sono ricevute in modo asincrono ({@link MLPPredictionChannel})
+ * e attese al più per il budget del tick: se la predizione non arriva in tempo il driver mantiene
+ * l'ultima ricevuta e, dopo alcuni tick senza risposta, rilascia l'acceleratore.
+ * Con il server sulla stessa macchina le richieste possono passare per un file mappato in memoria
+ * ({@link MLPSharedMemoryChannel}) invece che per la socket, con la stessa semantica.
  *
  * @author user
  */
 public class MLPDriver extends Controller {
     
+    /** File dei pesi caricato di default (relativo alla cartella del client) */
+    public static final String DEFAULT_MODEL_PATH = "../mlpDriver/mlp_model.bin";
+    
+    /** File di memoria condivisa di default (relativo alla cartella del client) */
+    public static final String DEFAULT_SHARED_MEMORY_PATH = "../mlpDriver/mlp_shm.bin";
+    
+    /** Sensori di pista usati come features (uno ogni due, come nel dataset) */
+    private static final int[] TRACK_SENSORS = { 0, 2, 4, 6, 8, 10, 12, 14, 16, 18 };
+    
+    /** Attesa massima della risposta alla negoziazione e alla chiusura */
+    private static final int HANDSHAKE_TIMEOUT_MS = 1000;
+    
+    /** Budget di default per la risposta del server in ogni tick (microsecondi) */
+    public static final long DEFAULT_TICK_BUDGET_MICROS = 5000;
+    
+    /** Tick consecutivi senza risposta dopo i quali l'acceleratore viene rilasciato */
+    private static final int MAX_HELD_TICKS = 10;
+    
     private SocketUDPClient socket;
     private final int port = 35567;
     
+    // Server Python: protocollo negoziato, trasporto delle predizioni e statistiche delle scadenze
+    private boolean binaryProtocol;
+    private MLPTransport channel;
+    private long tickBudgetMicros = DEFAULT_TICK_BUDGET_MICROS;
+    private long missedDeadlines;
+    private long lateTextReplies;
+    private int heldTicks;
+    
+    // Valutazione locale: modello e buffer riutilizzati a ogni tick
+    private MLPModel model;
+    private double[] workspace;
+    private final double[] features = new double[MLPProtocol.FEATURES];
+    private final double[] prediction = new double[MLPProtocol.OUTPUTS];
+    private final Action actionBuffer = new Action();
+    
     	/* === COSTANTI PER IL CAMBIO MARCIA === */
 	// RPM minimi per salire di marcia [per marcia 1-6]
 	final int[] gearUp = { 4500, 5500, 6500, 6500, 7000, 0 };
@@ -56,15 +103,98 @@ public class MLPDriver extends Controller {
         
         
     
+    /**
+     * Crea il driver con il modello di default se il file dei pesi esiste,
+     * altrimenti si connette al server Python.
+     */
     public MLPDriver() {
+        Path defaultModel = Path.of(DEFAULT_MODEL_PATH);
+        if (Files.isRegularFile(defaultModel)) {
+            try {
+                loadModel(defaultModel.toString());
+                return;
+            } catch (IOException | IllegalArgumentException ex) {
+                System.err.println("[MLP ERROR] Impossibile caricare il modello " + defaultModel + ": " + ex.getMessage());
+                System.err.println("[MLP] Uso del server Python");
+            }
+        }
+        connectToServer();
+    }
+    
+    /**
+     * Crea il driver con un modello già caricato, senza connessione al server Python.
+     * 
+     * @param model Modello con 14 ingressi e 3 uscite (sterzo, accelerazione, freno)
+     */
+    public MLPDriver(MLPModel model) {
+        setModel(model);
+    }
+    
+    /**
+     * Carica i pesi della rete e passa alla valutazione nel client.
+     * 
+     * @param path File dei pesi esportato con mlpExport.py
+     * @throws IOException Se il file non è leggibile o non è un modello MLP
+     * @throws IllegalArgumentException Se il modello non ha 14 ingressi e 3 uscite
+     */
+    public final void loadModel(String path) throws IOException {
+        setModel(MLPModel.load(Path.of(path)));
+        System.out.println("[MLP] Valutazione nel client: " + model);
+    }
+    
+    /**
+     * Imposta il modello valutato nel client e prepara i buffer del tick.
+     * L'eventuale connessione al server Python viene chiusa.
+     * 
+     * @param model Modello con 14 ingressi e 3 uscite (sterzo, accelerazione, freno)
+     * @throws IllegalArgumentException Se il modello non ha 14 ingressi e 3 uscite
+     */
+    public final void setModel(MLPModel model) {
+        if (model.getInputCount() != MLPProtocol.FEATURES || model.getOutputCount() != MLPProtocol.OUTPUTS) {
+            throw new IllegalArgumentException("Il modello deve avere " + MLPProtocol.FEATURES
+                + " ingressi e " + MLPProtocol.OUTPUTS + " uscite: " + model);
+        }
+        this.model = model;
+        this.workspace = model.newWorkspace();
+        closeConnection();
+    }
+    
+    /**
+     * Restituisce il modello valutato nel client.
+     * 
+     * @return Modello MLP, o null se il driver usa il server Python
+     */
+    public MLPModel getModel() {
+        return model;
+    }
+    
+    /**
+     * Apre la connessione al server Python e negozia il protocollo.
+     * 
+     * @throws RuntimeException Se la socket non può essere creata
+     */
+    public final void connectToServer() {
+        if (socket != null) {
+            return;
+        }
+        closeConnection();
         try {
             InetAddress serverAddress = InetAddress.getByName("localhost");
             this.socket = new SocketUDPClient(serverAddress,port);
             
-            // Test initial connectivity to MLP server
+            // Negotiate the binary protocol, which also tests connectivity to the MLP server
             System.out.println("[MLP] Testing connection to Python server on port " + port + "...");
-            testServerConnection();
-            System.out.println("[MLP] Successfully connected to Python server!");
+            negotiateProtocol();
+            if (binaryProtocol) {
+                System.out.println("[MLP] Successfully connected to Python server! Protocollo binario ("
+                    + MLPProtocol.REQUEST_SIZE + " byte per richiesta, " + MLPProtocol.RESPONSE_SIZE + " per risposta)");
+                channel = new MLPPredictionChannel(socket);
+            } else {
+                System.out.println("[MLP] Il server non ha risposto alla negoziazione: uso del protocollo testuale");
+                // Il protocollo testuale non ha sequenze: un timeout evita almeno che un datagramma perso blocchi il tick
+                socket.setTimeout(textTimeoutMillis());
+            }
+            System.out.println("[MLP] Budget per tick: " + tickBudgetMicros + " us");
             
         } catch (UnknownHostException ex) {
             System.err.println("[MLP ERROR] Cannot resolve localhost address!");
@@ -76,25 +206,119 @@ public class MLPDriver extends Controller {
             Logger.getLogger(MLPDriver.class.getName()).log(Level.SEVERE, "Cannot connect to MLP server", ex);
             throw new RuntimeException("MLP Server connection failed: " + ex.getMessage(), ex);
         }
+        this.model = null;
     }
     
     /**
-     * Tests the connection to the MLP Python server by sending a test message.
-     * @throws IOException if the server is not responding
+     * Si collega al server Python attraverso il file di memoria condivisa che il server serve
+     * ({@code mlpDrive.py --shm FILE}). Il server deve essere sulla stessa macchina e già avviato.
+     * 
+     * @param path File di memoria condivisa
+     * @throws RuntimeException Se il file non esiste o il server non lo sta servendo
      */
-    private void testServerConnection() throws IOException {
+    public final void connectSharedMemory(String path) {
+        closeConnection();
         try {
-            // Send a simple test message to verify server is responding
-            String testResponse = socket.sendAndReceive("test");
-            if (testResponse == null || testResponse.trim().isEmpty()) {
-                throw new IOException("Server responded with empty message");
-            }
+            channel = MLPSharedMemoryChannel.open(Path.of(path));
         } catch (IOException ex) {
-            throw new IOException("MLP Python server is not responding on port " + port + ". " +
-                                "Please start the server using: python mlpDriver/mlpDrive.py", ex);
+            System.err.println("[MLP ERROR] Memoria condivisa non disponibile: " + ex.getMessage());
+            System.err.println("[MLP ERROR] Avviare il server con: python mlpDrive.py --shm <file>");
+            throw new RuntimeException("MLP shared memory connection failed: " + ex.getMessage(), ex);
+        }
+        binaryProtocol = true;
+        this.model = null;
+        System.out.println("[MLP] Collegato al server Python in memoria condivisa (" + path + ")");
+        System.out.println("[MLP] Budget per tick: " + tickBudgetMicros + " us");
+    }
+    
+    /**
+     * Propone il protocollo binario al server. Un server che non lo supporta non risponde ai
+     * messaggi che non sa interpretare: allo scadere dell'attesa il driver usa il protocollo testuale.
+     * 
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    private void negotiateProtocol() throws IOException {
+        socket.setTimeout(HANDSHAKE_TIMEOUT_MS);
+        try {
+            binaryProtocol = MLPProtocol.HELLO_ACK.equals(socket.sendAndReceive(MLPProtocol.HELLO).trim());
+        } catch (SocketTimeoutException ex) {
+            binaryProtocol = false;
+        } finally {
+            socket.setTimeout(0);
+        }
+    }
+    
+    /**
+     * Imposta il tempo massimo di attesa della predizione del server in ogni tick.
+     * 
+     * @param micros Budget in microsecondi (positivo)
+     * @throws IllegalArgumentException Se il budget non è positivo
+     */
+    public void setTickBudgetMicros(long micros) {
+        if (micros <= 0) {
+            throw new IllegalArgumentException("Budget per tick non valido: " + micros);
+        }
+        this.tickBudgetMicros = micros;
+        if (socket != null && !binaryProtocol) {
+            try {
+                socket.setTimeout(textTimeoutMillis());
+            } catch (IOException ex) {
+                Logger.getLogger(MLPDriver.class.getName()).log(Level.WARNING, null, ex);
+            }
         }
     }
     
+    /**
+     * Restituisce il tempo massimo di attesa della predizione del server in ogni tick.
+     * 
+     * @return Budget in microsecondi
+     */
+    public long getTickBudgetMicros() {
+        return tickBudgetMicros;
+    }
+    
+    private int textTimeoutMillis() {
+        return (int) Math.max(1L, (tickBudgetMicros + 999) / 1000);
+    }
+    
+    /**
+     * Restituisce il numero di tick in cui la predizione del server non è arrivata entro il budget.
+     * 
+     * @return Scadenze mancate dall'avvio
+     */
+    public long getMissedDeadlines() {
+        return missedDeadlines;
+    }
+    
+    /**
+     * Restituisce il numero di risposte del server scartate perché arrivate dopo la scadenza
+     * del proprio tick (protocollo binario).
+     * 
+     * @return Risposte in ritardo dall'avvio
+     */
+    public long getLateReplies() {
+        return channel != null ? channel.getLateReplies() : 0L;
+    }
+    
+    /**
+     * Indica se il driver comunica con il server Python con il protocollo binario.
+     * 
+     * @return true con il protocollo binario (anche in memoria condivisa), false con quello testuale
+     *         o con la valutazione nel client
+     */
+    public boolean isBinaryProtocol() {
+        return binaryProtocol;
+    }
+    
+    /**
+     * Indica se le predizioni passano per la memoria condivisa invece che per la socket.
+     * 
+     * @return true con {@link MLPSharedMemoryChannel}
+     */
+    public boolean isSharedMemory() {
+        return channel instanceof MLPSharedMemoryChannel;
+    }
+    
     /**
      * Determina la marcia ottimale in base ai giri motore (RPM).
      * 
@@ -123,35 +347,32 @@ public class MLPDriver extends Controller {
     
     @Override
     public Action control(SensorModel sensors) {
-        Action action = new Action();
-        action.accelerate = 0;
-        action.brake = 0;
-        action.steering = 0;
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(tickBudgetMicros);
+        extractFeatures(sensors);
+        if (model != null) {
+            return predictLocally(sensors);
+        }
+        if (binaryProtocol) {
+            return predictRemotely(sensors, deadline);
+        }
         
         // Determina marcia ottimale in base a RPM e velocità
-	int gear = getGear(sensors);
-        
+        actionBuffer.gear = getGear(sensors);
+        boolean answered = false;
         try {
+            // Il protocollo testuale non ha sequenze: le risposte arrivate dopo la scadenza dei tick
+            // precedenti sono ancora in coda e verrebbero lette al posto di quella di questo tick
+            lateTextReplies += socket.discardPending();
+            
             System.out.println("Invio Sensori: "+ sensors);
             //track0,track2,track4,track6,track8,
             //track10,track12,track14,track16,track18,speedX,angleToTrackAxis,
             //trackPosition,distanceFromStartLine,
-            StringBuilder sensori_da_inviare = new StringBuilder();
-            
-            sensori_da_inviare.append("(").append(sensors.getTrackEdgeSensors()[0])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[2])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[4])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[6])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[8])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[10])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[12])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[14])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[16])
-                                           .append(",").append(sensors.getTrackEdgeSensors()[18])
-                                           .append(",").append(sensors.getSpeed())
-                                           .append(",").append(sensors.getAngleToTrackAxis())
-                                           .append(",").append(sensors.getTrackPosition()).append(",")
-                                           .append(sensors.getDistanceFromStartLine()).append(")");
+            StringBuilder sensori_da_inviare = new StringBuilder("(");
+            for (int i = 0; i < features.length; i++) {
+                sensori_da_inviare.append(i == 0 ? "" : ",").append(features[i]);
+            }
+            sensori_da_inviare.append(")");
             
             String risposta = socket.sendAndReceive(sensori_da_inviare.toString());
             // steering,acceleration,brake
@@ -159,36 +380,143 @@ public class MLPDriver extends Controller {
                                      .mapToDouble(Double::parseDouble)
                                      .toArray();
             
-            action.steering = arrayDiDouble[0];
-            action.accelerate = arrayDiDouble[1];
-            action.brake = arrayDiDouble[2];
-            action.gear = gear;
+            prediction[0] = arrayDiDouble[0];
+            prediction[1] = arrayDiDouble[1];
+            prediction[2] = arrayDiDouble[2];
+            answered = true;
             
             System.out.println("Ricevo:" + risposta);
            
+        } catch (SocketTimeoutException ex) {
+            // Risposta non arrivata entro il budget: resta l'ultima predizione
+        } catch (IOException ex) {
+            Logger.getLogger(MLPDriver.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return applyPrediction(answered);
+    }
+
+    /**
+     * Copia le features del tick nel buffer, nell'ordine delle colonne del dataset usato per
+     * l'addestramento.
+     */
+    private void extractFeatures(SensorModel sensors) {
+        double[] track = sensors.getTrackEdgeSensors();
+        for (int i = 0; i < TRACK_SENSORS.length; i++) {
+            features[i] = track[TRACK_SENSORS[i]];
+        }
+        int f = TRACK_SENSORS.length;
+        features[f] = sensors.getSpeed();
+        features[f + 1] = sensors.getAngleToTrackAxis();
+        features[f + 2] = sensors.getTrackPosition();
+        features[f + 3] = sensors.getDistanceFromStartLine();
+    }
+
+    /**
+     * Chiede la predizione al server Python con il protocollo binario e la attende fino alla
+     * scadenza del tick, senza allocare. Se la risposta non arriva in tempo il driver mantiene
+     * l'ultima predizione ricevuta (il buffer non viene modificato); dopo {@link #MAX_HELD_TICKS}
+     * tick consecutivi senza risposta rilascia l'acceleratore.
+     */
+    private Action predictRemotely(SensorModel sensors, long deadline) {
+        actionBuffer.gear = getGear(sensors);
+        boolean answered;
+        try {
+            answered = channel.await(channel.send(features), deadline, prediction);
         } catch (IOException ex) {
             Logger.getLogger(MLPDriver.class.getName()).log(Level.SEVERE, null, ex);
-            return action;
+            answered = false;
+        }
+        return applyPrediction(answered);
+    }
+
+    /**
+     * Applica all'azione l'ultima predizione ricevuta dal server e aggiorna le statistiche delle
+     * scadenze: senza risposta nel tick l'azione resta quella precedente (con la marcia del tick)
+     * e dopo {@link #MAX_HELD_TICKS} tick consecutivi l'acceleratore viene rilasciato.
+     */
+    private Action applyPrediction(boolean answered) {
+        if (answered) {
+            heldTicks = 0;
+        } else {
+            missedDeadlines++;
+            heldTicks++;
         }
+        actionBuffer.steering = prediction[0];
+        actionBuffer.accelerate = heldTicks > MAX_HELD_TICKS ? 0.0 : prediction[1];
+        actionBuffer.brake = prediction[2];
+        return actionBuffer;
+    }
+
+    /**
+     * Calcola l'azione con la rete valutata nel client, senza allocare (l'azione è riutilizzata).
+     */
+    private Action predictLocally(SensorModel sensors) {
+        model.predict(features, prediction, workspace);
         
-        return action;
+        actionBuffer.steering = prediction[0];
+        actionBuffer.accelerate = prediction[1];
+        actionBuffer.brake = prediction[2];
+        actionBuffer.gear = getGear(sensors);
+        return actionBuffer;
     }
 
     @Override
     public void reset() {
-        throw new UnsupportedOperationException("Not supported yet."); // Generated from nbfs://nbhost/SystemFileSystem/Templates/Classes/Code/GeneratedMethodBody
+        // Nessuno stato da reinizializzare: la gara può ripartire con l'ultima predizione ricevuta
+        heldTicks = 0;
+        if (socket != null || channel != null) {
+            printDeadlineStatistics();
+        }
+    }
+
+    private void printDeadlineStatistics() {
+        System.out.println("[MLP] Scadenze mancate: " + missedDeadlines
+            + (channel == null ? ", risposte in ritardo scartate: " + lateTextReplies : ", risposte in ritardo scartate: " + channel.getLateReplies()
+                + ", duplicate: " + channel.getDuplicateReplies() + ", non valide: " + channel.getInvalidReplies()));
     }
 
     @Override
     public void shutdown() {
+        if (socket == null && channel == null) {
+            return;
+        }
         System.out.println("Chiusura della socket per il  processo col modello MLP");
-        try {
-            socket.sendAndReceive("Chiudi");
-        } catch (IOException ex) {
+        printDeadlineStatistics();
+        // In memoria condivisa il server non tiene stato per il client: basta rilasciare la mappatura
+        if (socket != null && channel != null) {
+            // Il lettore riceve tutte le risposte: il messaggio di chiusura non ne attende una
+            try {
+                socket.send("Chiudi");
+            } catch (IOException ex) {
+                Logger.getLogger(MLPDriver.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        } else if (socket != null) {
+            try {
+                socket.setTimeout(HANDSHAKE_TIMEOUT_MS);
+                socket.sendAndReceive("Chiudi");
+            } catch (IOException ex) {
+                Logger.getLogger(MLPDriver.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        closeConnection();
+    }
+
+    /**
+     * Ferma il trasporto delle risposte e chiude la socket verso il server Python.
+     */
+    private void closeConnection() {
+        if (channel != null) {
+            channel.close();
+        }
+        if (socket != null) {
             socket.close();
-            Logger.getLogger(MLPDriver.class.getName()).log(Level.SEVERE, null, ex);
+            socket = null;
+        }
+        if (channel != null) {
+            channel.join(HANDSHAKE_TIMEOUT_MS);
+            channel = null;
         }
-        socket.close();
+        binaryProtocol = false;
     }
     
 }
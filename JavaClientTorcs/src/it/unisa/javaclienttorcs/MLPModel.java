@@ -0,0 +1,351 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Rete MLP di regressione (StandardScaler seguito da layer densi) valutata direttamente nel client,
+ * senza il processo Python e il giro UDP per ogni tick. I pesi sono esportati una volta da
+ * {@code best_mlp_model.pkl} con {@code mlpDriver/mlpExport.py} in un file binario.
+ *
+ * Ogni layer è un array primitivo contiguo con una riga per neurone di ingresso (lo stesso ordine
+ * di {@code coefs_} di scikit-learn): la propagazione scorre gli ingressi una sola volta e per
+ * ognuno aggiorna tutte le uscite con un ciclo sequenziale sulla riga, che il JIT vettorizza.
+ * Gli ingressi nulli (frequenti dopo ReLU) saltano l'intera riga. Le attivazioni intermedie stanno
+ * in uno spazio di lavoro fornito dal chiamante, quindi {@link #predict(double[], double[], double[])}
+ * non alloca e lo stesso modello può essere usato da più thread con spazi di lavoro distinti.
+ */
+public final class MLPModel {
+
+    private static final int MAGIC = 0x4D4C5057; // "MLPW"
+    private static final int VERSION = 1;
+
+    /**
+     * Funzioni di attivazione supportate, con i nomi usati da scikit-learn.
+     */
+    public enum Activation {
+        IDENTITY,
+        RELU,
+        TANH,
+        LOGISTIC;
+
+        /**
+         * Restituisce l'attivazione corrispondente al nome indicato (case insensitive).
+         *
+         * @param name Nome dell'attivazione (identity, relu, tanh, logistic)
+         * @return Attivazione corrispondente
+         * @throws IllegalArgumentException Se il nome non corrisponde a nessuna attivazione
+         */
+        public static Activation fromName(String name) {
+            return switch (name.toLowerCase()) {
+                case "identity", "linear" -> IDENTITY;
+                case "relu" -> RELU;
+                case "tanh" -> TANH;
+                case "logistic", "sigmoid" -> LOGISTIC;
+                default -> throw new IllegalArgumentException("Attivazione non supportata: " + name);
+            };
+        }
+
+        /**
+         * Applica l'attivazione agli elementi [from, from + length) del vettore.
+         */
+        void apply(double[] values, int from, int length) {
+            int end = from + length;
+            switch (this) {
+                case RELU -> {
+                    for (int i = from; i < end; i++) {
+                        values[i] = Math.max(values[i], 0.0);
+                    }
+                }
+                case TANH -> {
+                    for (int i = from; i < end; i++) {
+                        values[i] = Math.tanh(values[i]);
+                    }
+                }
+                case LOGISTIC -> {
+                    for (int i = from; i < end; i++) {
+                        values[i] = 1.0 / (1.0 + Math.exp(-values[i]));
+                    }
+                }
+                case IDENTITY -> {
+                }
+            }
+        }
+
+        /**
+         * Nome dell'attivazione nel formato di scikit-learn.
+         *
+         * @return Nome in minuscolo
+         */
+        public String sklearnName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final int[] sizes;
+    private final double[] mean;
+    private final double[] scale;
+    private final double[] inverseScale;
+    private final double[][] weights;
+    private final double[][] biases;
+    private final Activation hidden;
+    private final Activation output;
+    private final int maxWidth;
+
+    /**
+     * Crea il modello dai parametri della rete.
+     *
+     * @param sizes Neuroni di ogni layer, dagli ingressi alle uscite (almeno due valori)
+     * @param mean Media di ogni feature per lo standard scaling
+     * @param scale Deviazione standard di ogni feature per lo standard scaling (valori non nulli)
+     * @param weights Pesi di ogni layer denso, per righe: sizes[l] righe da sizes[l + 1] valori
+     * @param biases Bias di ogni layer denso (sizes[l + 1] valori)
+     * @param hidden Attivazione dei layer nascosti
+     * @param output Attivazione del layer di uscita
+     * @throws IllegalArgumentException Se le dimensioni dei parametri non sono coerenti
+     */
+    public MLPModel(int[] sizes, double[] mean, double[] scale, double[][] weights, double[][] biases,
+                    Activation hidden, Activation output) {
+        int layers = sizes.length - 1;
+        if (layers < 1 || weights.length != layers || biases.length != layers
+            || mean.length != sizes[0] || scale.length != sizes[0]) {
+            throw new IllegalArgumentException("Parametri della rete MLP non coerenti con i layer " + layerString(sizes));
+        }
+        int widest = 0;
+        for (int l = 0; l < layers; l++) {
+            if (sizes[l] < 1 || sizes[l + 1] < 1
+                || weights[l].length != sizes[l] * sizes[l + 1] || biases[l].length != sizes[l + 1]) {
+                throw new IllegalArgumentException("Dimensioni non valide per il layer " + l + " della rete MLP");
+            }
+            widest = Math.max(widest, Math.max(sizes[l], sizes[l + 1]));
+        }
+        this.sizes = sizes.clone();
+        this.mean = mean.clone();
+        this.scale = scale.clone();
+        this.inverseScale = new double[scale.length];
+        for (int i = 0; i < scale.length; i++) {
+            if (!(scale[i] != 0.0)) {
+                throw new IllegalArgumentException("Scala nulla o non valida per la feature " + i);
+            }
+            inverseScale[i] = 1.0 / scale[i];
+        }
+        this.weights = weights;
+        this.biases = biases;
+        this.hidden = hidden;
+        this.output = output;
+        this.maxWidth = widest;
+    }
+
+    /**
+     * Crea uno spazio di lavoro per {@link #predict(double[], double[], double[])}.
+     * Ogni thread che usa il modello deve avere il proprio.
+     *
+     * @return Buffer delle attivazioni intermedie
+     */
+    public double[] newWorkspace() {
+        return new double[2 * maxWidth];
+    }
+
+    /**
+     * Calcola le uscite della rete per un vettore di features grezze, senza allocare.
+     *
+     * @param features Features grezze (almeno {@link #getInputCount()} valori)
+     * @param out Buffer di output (almeno {@link #getOutputCount()} valori)
+     * @param workspace Spazio di lavoro creato con {@link #newWorkspace()}
+     * @return Il buffer di output
+     */
+    public double[] predict(double[] features, double[] out, double[] workspace) {
+        int inputs = sizes[0];
+        for (int i = 0; i < inputs; i++) {
+            workspace[i] = (features[i] - mean[i]) * inverseScale[i];
+        }
+
+        // Le attivazioni alternano tra le due metà dello spazio di lavoro; l'ultimo layer scrive nell'output
+        int source = 0;
+        int layers = weights.length;
+        for (int l = 0; l < layers; l++) {
+            boolean last = l == layers - 1;
+            double[] target = last ? out : workspace;
+            int base = last ? 0 : maxWidth - source;
+            dense(l, workspace, source, target, base);
+            (last ? output : hidden).apply(target, base, sizes[l + 1]);
+            source = base;
+        }
+        return out;
+    }
+
+    /**
+     * Layer denso: target[base + j] = bias[j] + somma su i di input[source + i] * pesi[i][j].
+     */
+    private void dense(int layer, double[] input, int source, double[] target, int base) {
+        int m = sizes[layer];
+        int n = sizes[layer + 1];
+        double[] w = weights[layer];
+        double[] b = biases[layer];
+        System.arraycopy(b, 0, target, base, n);
+        for (int i = 0; i < m; i++) {
+            double x = input[source + i];
+            if (x == 0.0) {
+                continue;
+            }
+            int row = i * n;
+            for (int j = 0; j < n; j++) {
+                target[base + j] += w[row + j] * x;
+            }
+        }
+    }
+
+    /**
+     * Calcola le uscite della rete allocando buffer nuovi (uso offline).
+     *
+     * @param features Features grezze
+     * @return Nuovo vettore delle uscite
+     */
+    public double[] predict(double[] features) {
+        return predict(features, new double[getOutputCount()], newWorkspace());
+    }
+
+    /**
+     * Salva il modello nel formato di {@code mlpExport.py}.
+     *
+     * @param path File di destinazione
+     * @throws IOException Se si verifica un errore durante la scrittura
+     */
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(weights.length);
+            for (int size : sizes) {
+                out.writeInt(size);
+            }
+            out.writeUTF(hidden.sklearnName());
+            out.writeUTF(output.sklearnName());
+            writeDoubles(out, mean);
+            writeDoubles(out, scale);
+            for (int l = 0; l < weights.length; l++) {
+                writeDoubles(out, weights[l]);
+                writeDoubles(out, biases[l]);
+            }
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        for (double v : values) {
+            out.writeDouble(v);
+        }
+    }
+
+    /**
+     * Carica un modello esportato con {@code mlpExport.py} o salvato con {@link #save(Path)}.
+     *
+     * @param path File dei pesi
+     * @return Modello caricato
+     * @throws IOException Se il file non è leggibile o non è un modello MLP
+     */
+    public static MLPModel load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Formato del modello MLP non riconosciuto: " + path);
+            }
+            int layers = in.readInt();
+            if (layers < 1) {
+                throw new IOException("Numero di layer non valido nel modello MLP: " + layers);
+            }
+            int[] sizes = new int[layers + 1];
+            for (int l = 0; l <= layers; l++) {
+                sizes[l] = in.readInt();
+            }
+            Activation hidden = Activation.fromName(in.readUTF());
+            Activation output = Activation.fromName(in.readUTF());
+            double[] mean = readDoubles(in, sizes[0]);
+            double[] scale = readDoubles(in, sizes[0]);
+            double[][] weights = new double[layers][];
+            double[][] biases = new double[layers][];
+            for (int l = 0; l < layers; l++) {
+                weights[l] = readDoubles(in, sizes[l] * sizes[l + 1]);
+                biases[l] = readDoubles(in, sizes[l + 1]);
+            }
+            return new MLPModel(sizes, mean, scale, weights, biases, hidden, output);
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in, int count) throws IOException {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Restituisce il numero di features in ingresso.
+     *
+     * @return Neuroni del layer di ingresso
+     */
+    public int getInputCount() {
+        return sizes[0];
+    }
+
+    /**
+     * Restituisce il numero di uscite della rete.
+     *
+     * @return Neuroni del layer di uscita
+     */
+    public int getOutputCount() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Restituisce il numero di neuroni di ogni layer, dagli ingressi alle uscite.
+     *
+     * @return Copia delle dimensioni dei layer
+     */
+    public int[] getLayerSizes() {
+        return sizes.clone();
+    }
+
+    /**
+     * Restituisce l'attivazione dei layer nascosti.
+     *
+     * @return Attivazione nascosta
+     */
+    public Activation getHiddenActivation() {
+        return hidden;
+    }
+
+    /**
+     * Restituisce il numero totale di pesi e bias.
+     *
+     * @return Parametri della rete
+     */
+    public int getParameterCount() {
+        int count = 0;
+        for (int l = 0; l < weights.length; l++) {
+            count += weights[l].length + biases[l].length;
+        }
+        return count;
+    }
+
+    private static String layerString(int[] sizes) {
+        StringBuilder text = new StringBuilder();
+        for (int size : sizes) {
+            if (text.length() > 0) {
+                text.append('-');
+            }
+            text.append(size);
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MLPModel{layer=%s, attivazione=%s, uscita=%s, parametri=%d}",
+                             layerString(sizes), hidden.sklearnName(), output.sklearnName(), getParameterCount());
+    }
+}
@@ -0,0 +1,170 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Canale asincrono delle predizioni del server Python via UDP con il protocollo binario di {@link MLPProtocol}.
+ * Il thread di controllo invia la richiesta del tick con un numero di sequenza e attende la risposta
+ * corrispondente al più fino alla scadenza del tick; le risposte sono ricevute da un virtual thread
+ * dedicato, quindi un datagramma perso costa al più il budget del tick e non blocca il driver.
+ *
+ * Il lettore pubblica solo la risposta alla richiesta in corso, in un'area di valori primitivi
+ * protetta da uno {@link StampedLock} (lettura ottimistica senza allocazioni né attese per il thread
+ * di controllo), e lo risveglia. Le risposte a richieste già superate (arrivate dopo la scadenza del
+ * loro tick), i duplicati e i datagrammi non validi vengono scartati e contati.
+ */
+final class MLPPredictionChannel implements MLPTransport {
+
+    private final SocketUDPClient socket;
+    private final ByteBuffer request = MLPProtocol.newBuffer(MLPProtocol.REQUEST_SIZE);
+    private final ByteBuffer response = MLPProtocol.newBuffer(MLPProtocol.RESPONSE_SIZE);
+    private final double[] received = new double[MLPProtocol.OUTPUTS];
+    private final Thread reader;
+
+    // Risposta pubblicata dal lettore (protetta dal lock)
+    private final StampedLock lock = new StampedLock();
+    private final double[] published = new double[MLPProtocol.OUTPUTS];
+    private int publishedSequence;
+
+    // Sequenza dell'ultima richiesta inviata e thread in attesa della risposta
+    private volatile int currentSequence;
+    private volatile Thread waiter;
+    private volatile boolean closed;
+
+    // Contatori scritti solo dal lettore
+    private volatile long lateReplies;
+    private volatile long duplicateReplies;
+    private volatile long invalidReplies;
+
+    /**
+     * Crea il canale e avvia il lettore delle risposte.
+     * Da questo momento le ricezioni sulla socket sono riservate al lettore.
+     *
+     * @param socket Socket connessa a un server che ha negoziato il protocollo binario
+     */
+    MLPPredictionChannel(SocketUDPClient socket) {
+        this.socket = socket;
+        this.reader = Thread.ofVirtual().name("mlp-reader").start(this::readReplies);
+    }
+
+    @Override
+    public int send(double[] features) throws IOException {
+        int sequence = currentSequence + 1;
+        // Da qui le risposte alle richieste precedenti sono in ritardo
+        currentSequence = sequence;
+        MLPProtocol.encodeRequest(request, sequence, features);
+        socket.send(request);
+        return sequence;
+    }
+
+    @Override
+    public boolean await(int sequence, long deadline, double[] out) {
+        waiter = Thread.currentThread();
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            int available = publishedSequence;
+            double steering = published[0];
+            double accelerate = published[1];
+            double brake = published[2];
+            if (!lock.validate(stamp)) {
+                continue;
+            }
+            if (available == sequence) {
+                out[0] = steering;
+                out[1] = accelerate;
+                out[2] = brake;
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || closed) {
+                return false;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * Ciclo del lettore: riceve le risposte e pubblica quella della richiesta in corso.
+     */
+    private void readReplies() {
+        while (!closed) {
+            int length;
+            try {
+                length = socket.receive(response);
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("[MLP ERROR] Ricezione delle predizioni interrotta: " + e.getMessage());
+                }
+                return;
+            }
+            long decoded = MLPProtocol.decodeResponse(response, length, received);
+            if (decoded == MLPProtocol.INVALID) {
+                invalidReplies++;
+                continue;
+            }
+            int sequence = (int) decoded;
+            int ahead = sequence - currentSequence;
+            if (ahead < 0) {
+                lateReplies++;
+                continue;
+            }
+            if (ahead > 0 || sequence == publishedSequence) {
+                // Duplicato, oppure sequenza mai inviata
+                duplicateReplies++;
+                continue;
+            }
+
+            long stamp = lock.writeLock();
+            try {
+                System.arraycopy(received, 0, published, 0, MLPProtocol.OUTPUTS);
+                publishedSequence = sequence;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            Thread target = waiter;
+            if (target != null) {
+                LockSupport.unpark(target);
+            }
+        }
+    }
+
+    @Override
+    public long getLateReplies() {
+        return lateReplies;
+    }
+
+    @Override
+    public long getDuplicateReplies() {
+        return duplicateReplies;
+    }
+
+    @Override
+    public long getInvalidReplies() {
+        return invalidReplies;
+    }
+
+    /**
+     * Ferma il lettore: i datagrammi ricevuti da qui in poi vengono ignorati.
+     * La socket non viene chiusa (la sua chiusura sblocca la ricezione in corso del lettore).
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread target = waiter;
+        if (target != null) {
+            LockSupport.unpark(target);
+        }
+    }
+
+    @Override
+    public void join(long millis) {
+        try {
+            reader.join(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
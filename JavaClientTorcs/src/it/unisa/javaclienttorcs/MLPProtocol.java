@@ -0,0 +1,93 @@
+package it.unisa.javaclienttorcs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Protocollo binario a layout fisso tra {@link MLPDriver} e il server Python ({@code mlpDrive.py}).
+ * Ogni datagramma inizia con un intero a 32 bit che contiene i caratteri "MLPB" e con il numero di
+ * sequenza della richiesta, seguiti dai valori come double little-endian (l'ordine nativo di numpy
+ * su x86 e ARM, che il server decodifica con {@code numpy.frombuffer} senza copie né parsing):
+ * <pre>
+ *   richiesta: magic (4) | sequenza (4) | 14 features (14 x 8)   = 120 byte
+ *   risposta:  magic (4) | sequenza (4) | sterzo, accelerazione, freno (3 x 8) = 32 byte
+ * </pre>
+ * Il protocollo viene negoziato alla connessione: il client invia {@link #HELLO} in testo e un server
+ * che lo supporta risponde {@link #HELLO_ACK}. Con un server che non risponde il driver resta sul
+ * protocollo testuale {@code (f0,...,f13)} / {@code sterzo,accelerazione,freno}.
+ */
+final class MLPProtocol {
+
+    /** "MLPB" letto come intero little-endian */
+    static final int MAGIC = 0x42504C4D;
+
+    /** Features per richiesta (nell'ordine delle colonne del dataset) */
+    static final int FEATURES = 14;
+
+    /** Uscite per risposta: sterzo, accelerazione, freno */
+    static final int OUTPUTS = 3;
+
+    private static final int HEADER_SIZE = 8;
+
+    /** Dimensione in byte di una richiesta */
+    static final int REQUEST_SIZE = HEADER_SIZE + FEATURES * Double.BYTES;
+
+    /** Dimensione in byte di una risposta */
+    static final int RESPONSE_SIZE = HEADER_SIZE + OUTPUTS * Double.BYTES;
+
+    /** Messaggio testuale di negoziazione inviato dal client */
+    static final String HELLO = "HELLO MLPB1";
+
+    /** Risposta di un server che supporta il protocollo binario */
+    static final String HELLO_ACK = "MLPB1";
+
+    /** Numero di sequenza restituito da {@link #decodeResponse} per datagrammi non validi */
+    static final long INVALID = -1L;
+
+    private MLPProtocol() {
+    }
+
+    /**
+     * Crea un buffer little-endian per richieste o risposte, da riutilizzare a ogni tick.
+     *
+     * @param size Dimensione in byte
+     * @return Buffer su heap con array accessibile
+     */
+    static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Scrive una richiesta nel buffer, senza allocare. Al termine la posizione è a fine richiesta.
+     *
+     * @param buffer Buffer little-endian di almeno {@link #REQUEST_SIZE} byte
+     * @param sequence Numero di sequenza della richiesta
+     * @param features Features nell'ordine del dataset
+     */
+    static void encodeRequest(ByteBuffer buffer, int sequence, double[] features) {
+        buffer.clear();
+        buffer.putInt(MAGIC).putInt(sequence);
+        for (int i = 0; i < FEATURES; i++) {
+            buffer.putDouble(features[i]);
+        }
+    }
+
+    /**
+     * Legge una risposta dal buffer, senza allocare.
+     *
+     * @param buffer Buffer little-endian con il datagramma ricevuto a partire dall'inizio
+     * @param length Byte ricevuti
+     * @param out Buffer delle uscite (almeno {@link #OUTPUTS} valori)
+     * @return Numero di sequenza della risposta (senza segno), o {@link #INVALID} se il datagramma
+     *         non è una risposta binaria
+     */
+    static long decodeResponse(ByteBuffer buffer, int length, double[] out) {
+        if (length < RESPONSE_SIZE || buffer.getInt(0) != MAGIC) {
+            return INVALID;
+        }
+        for (int i = 0; i < OUTPUTS; i++) {
+            out[i] = buffer.getDouble(HEADER_SIZE + i * Double.BYTES);
+        }
+        return Integer.toUnsignedLong(buffer.getInt(4));
+    }
+}
@@ -0,0 +1,243 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Canale delle predizioni su memoria condivisa con il server Python ({@code mlpDrive.py --shm FILE}),
+ * alternativo al canale UDP per client e server sulla stessa macchina: le features e le risposte
+ * passano per un file mappato in memoria da entrambi i processi, senza copie nel kernel né risvegli
+ * della socket. Il file contiene due slot a produttore e consumatore singolo: il client scrive la
+ * richiesta e il server, che interroga lo slot in attesa attiva, scrive la risposta.
+ *
+ * Layout little-endian, con ogni area su una propria linea di cache da 64 byte:
+ * <pre>
+ *   0    magic "MLPS" (int), versione (int), stato del server (long: 1 attivo, 0 fermo)
+ *   64   richiesta: sequenza iniziale (long), sequenza finale (long), 14 features (14 x 8)
+ *   192  risposta:  sequenza iniziale (long), sequenza finale (long), sterzo, accelerazione, freno (3 x 8)
+ * </pre>
+ * Ogni slot è scritto come un seqlock: chi scrive pubblica la sequenza iniziale, poi i valori e infine
+ * la sequenza finale; chi legge legge la sequenza finale, i valori e la sequenza iniziale, e scarta
+ * la lettura se le due sequenze non coincidono (lo slot è stato riscritto nel frattempo).
+ * La semantica è la stessa di {@link MLPPredictionChannel}: il server risponde all'ultima richiesta
+ * con la stessa sequenza e le risposte che arrivano dopo una richiesta più recente sono in ritardo.
+ *
+ * L'attesa della risposta è attiva per i primi {@link #SPIN_NANOS} nanosecondi (la latenza del
+ * passaggio è di pochi microsecondi), poi cede il processore al server fino a {@link #YIELD_NANOS}
+ * e infine prosegue con brevi pause fino alla scadenza del tick. Con un solo processore l'attesa
+ * attiva toglierebbe la CPU proprio al server che deve rispondere, quindi si parte dalla cessione.
+ */
+final class MLPSharedMemoryChannel implements MLPTransport {
+
+    /** "MLPS" letto come intero little-endian */
+    static final int MAGIC = 0x53504C4D;
+    static final int VERSION = 1;
+
+    /** Dimensione in byte del file condiviso */
+    static final long SIZE = 256;
+
+    /** Valore dello stato quando il server interroga lo slot delle richieste */
+    static final long SERVER_READY = 1;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /** Accesso ai long del file con semantica acquire/release (indice in unità di 8 byte) */
+    private static final VarHandle SEQUENCE = LONG.arrayElementVarHandle();
+
+    // Campi del file (offset in byte)
+    private static final long H_MAGIC = 0;
+    private static final long H_VERSION = 4;
+    private static final long H_STATE = 8;
+    private static final long REQUEST_START = 64;
+    private static final long REQUEST_END = 72;
+    private static final long REQUEST_FEATURES = 80;
+    private static final long RESPONSE_START = 192;
+    private static final long RESPONSE_END = 200;
+    private static final long RESPONSE_OUTPUTS = 208;
+
+    /** Durata dell'attesa attiva della risposta (nulla con un solo processore) */
+    private static final long SPIN_NANOS = Runtime.getRuntime().availableProcessors() > 1 ? 200_000 : 0;
+
+    /** Fine della fase in cui l'attesa cede il processore, prima di passare alle pause */
+    private static final long YIELD_NANOS = 2_000_000;
+
+    /** Pausa tra due controlli dopo l'attesa attiva */
+    private static final long PARK_NANOS = 20_000;
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final Path path;
+
+    // Stato del thread di controllo
+    private int currentSequence;
+    private long observedResponse;
+    private volatile boolean closed;
+
+    // Contatori scritti solo dal thread di controllo
+    private volatile long lateReplies;
+    private volatile long invalidReplies;
+
+    private MLPSharedMemoryChannel(Path path, Arena arena, MemorySegment segment) {
+        this.path = path;
+        this.arena = arena;
+        this.segment = segment;
+        // Il server può aver già servito un client precedente: la sequenza riparte da dove si era fermata
+        this.currentSequence = (int) sequence(REQUEST_END);
+        this.observedResponse = sequence(RESPONSE_END);
+    }
+
+    /**
+     * Mappa il file condiviso creato dal server Python.
+     *
+     * @param path File passato al server con {@code --shm}
+     * @return Canale pronto per le richieste
+     * @throws IOException Se il file non esiste, non è un canale MLP o il server non è attivo
+     */
+    static MLPSharedMemoryChannel open(Path path) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (file.size() < SIZE) {
+                throw new IOException("File di memoria condivisa troppo piccolo: " + path);
+            }
+            MemorySegment segment = file.map(FileChannel.MapMode.READ_WRITE, 0, SIZE, arena);
+            if (segment.get(INT, H_MAGIC) != MAGIC || segment.get(INT, H_VERSION) != VERSION) {
+                throw new IOException("Il file non è un canale di memoria condivisa MLP: " + path);
+            }
+            if ((long) SEQUENCE.getAcquire(segment, H_STATE / Long.BYTES) != SERVER_READY) {
+                throw new IOException("Il server MLP non sta servendo la memoria condivisa " + path);
+            }
+            return new MLPSharedMemoryChannel(path, arena, segment);
+        } catch (IOException | RuntimeException ex) {
+            arena.close();
+            throw ex;
+        }
+    }
+
+    private long sequence(long offset) {
+        return (long) SEQUENCE.getAcquire(segment, offset / Long.BYTES);
+    }
+
+    @Override
+    public int send(double[] features) throws IOException {
+        if (closed) {
+            throw new IOException("Canale di memoria condivisa chiuso: " + path);
+        }
+        int sequence = currentSequence + 1;
+        currentSequence = sequence;
+        SEQUENCE.setOpaque(segment, REQUEST_START / Long.BYTES, (long) sequence);
+        // Le features non possono essere visibili prima della sequenza iniziale
+        VarHandle.storeStoreFence();
+        for (int i = 0; i < MLPProtocol.FEATURES; i++) {
+            segment.set(DOUBLE, REQUEST_FEATURES + (long) i * Double.BYTES, features[i]);
+        }
+        SEQUENCE.setRelease(segment, REQUEST_END / Long.BYTES, (long) sequence);
+        return sequence;
+    }
+
+    @Override
+    public boolean await(int sequence, long deadline, double[] out) {
+        long start = System.nanoTime();
+        long spinUntil = start + SPIN_NANOS;
+        long yieldUntil = start + YIELD_NANOS;
+        while (true) {
+            long end = sequence(RESPONSE_END);
+            if (end == sequence) {
+                double steering = segment.get(DOUBLE, RESPONSE_OUTPUTS);
+                double accelerate = segment.get(DOUBLE, RESPONSE_OUTPUTS + Double.BYTES);
+                double brake = segment.get(DOUBLE, RESPONSE_OUTPUTS + 2 * Double.BYTES);
+                VarHandle.loadLoadFence();
+                if ((long) SEQUENCE.getOpaque(segment, RESPONSE_START / Long.BYTES) == end) {
+                    out[0] = steering;
+                    out[1] = accelerate;
+                    out[2] = brake;
+                    observedResponse = end;
+                    return true;
+                }
+                // Il server ha iniziato a riscrivere la risposta durante la lettura
+                invalidReplies++;
+                continue;
+            }
+            if (end != observedResponse) {
+                // Risposta a una richiesta già superata, arrivata dopo la scadenza del suo tick
+                observedResponse = end;
+                lateReplies++;
+            }
+            long now = System.nanoTime();
+            if (now >= deadline || closed) {
+                return false;
+            }
+            if (now < spinUntil) {
+                Thread.onSpinWait();
+            } else if (now < yieldUntil) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, Math.min(PARK_NANOS, deadline - now));
+            }
+        }
+    }
+
+    @Override
+    public long getLateReplies() {
+        return lateReplies;
+    }
+
+    /**
+     * Lo slot contiene una sola risposta per sequenza: non ci sono duplicati.
+     *
+     * @return Sempre 0
+     */
+    @Override
+    public long getDuplicateReplies() {
+        return 0L;
+    }
+
+    /**
+     * Restituisce le letture della risposta scartate perché il server stava riscrivendo lo slot.
+     *
+     * @return Letture incoerenti dall'avvio
+     */
+    @Override
+    public long getInvalidReplies() {
+        return invalidReplies;
+    }
+
+    /**
+     * Indica se il server Python sta ancora servendo la memoria condivisa.
+     *
+     * @return true se lo stato del file è attivo
+     */
+    boolean isServerReady() {
+        return !closed && sequence(H_STATE) == SERVER_READY;
+    }
+
+    /**
+     * Ferma il canale: le richieste successive falliscono. La mappatura resta valida fino a
+     * {@link #join(long)}, quindi un'attesa in corso su un altro thread non legge memoria rilasciata.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Rilascia la mappatura del file. Va chiamato dal thread di controllo dopo {@link #close()}.
+     *
+     * @param millis Ignorato: il rilascio è immediato
+     */
+    @Override
+    public void join(long millis) {
+        if (arena.scope().isAlive()) {
+            arena.close();
+        }
+    }
+}
@@ -0,0 +1,754 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Addestramento in Java della rete MLP di {@link MLPDriver}, senza passare da {@code mlpFitting.ipynb}:
+ * legge il dataset standard di {@link DatasetConverter} (14 features + steering, acceleration, brake),
+ * addestra un regressore con mini-batch e Adam e salva i pesi nel formato di {@link MLPModel}.
+ * Le impostazioni di default sono quelle del modello migliore del notebook: layer 32-16, ReLU,
+ * regolarizzazione L2 0.01, learning rate 0.001, early stopping sul 10% dei dati.
+ *
+ * Tutti i parametri stanno in un unico array primitivo (per ogni layer i pesi per righe, come in
+ * {@link MLPModel}, seguiti dai bias) e così i gradienti e i momenti di Adam: la riduzione e
+ * l'aggiornamento sono cicli sequenziali sull'intero vettore. Ogni mini-batch è diviso in parti
+ * contigue, una per thread del pool: ogni worker propaga i propri campioni e accumula il gradiente
+ * nei suoi buffer preallocati, poi i buffer vengono sommati in ordine fisso (il risultato dipende
+ * solo dal seme e dal numero di thread). Durante l'addestramento non ci sono allocazioni.
+ */
+public class MLPTrainer {
+
+    /** Features in ingresso e uscite della rete */
+    private static final int INPUTS = KNNDataset.FEATURE_COUNT;
+    private static final int OUTPUTS = 3;
+
+    // Costanti di Adam (le stesse di scikit-learn)
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    /**
+     * Campioni di addestramento in array primitivi contigui, una riga ogni 14 features e 3 uscite.
+     */
+    public static final class Samples {
+
+        private final double[] features;
+        private final double[] targets;
+        private final int size;
+
+        /**
+         * Crea l'insieme di campioni dagli array per righe.
+         *
+         * @param features Features grezze, {@code size * 14} valori
+         * @param targets Azioni (steering, acceleration, brake), {@code size * 3} valori
+         * @param size Numero di campioni
+         */
+        public Samples(double[] features, double[] targets, int size) {
+            if (features.length < size * INPUTS || targets.length < size * OUTPUTS) {
+                throw new IllegalArgumentException("Array dei campioni troppo corti per " + size + " righe");
+            }
+            this.features = features;
+            this.targets = targets;
+            this.size = size;
+        }
+
+        /**
+         * Legge un dataset standard o discretizzato riga per riga direttamente negli array primitivi,
+         * senza un oggetto per campione.
+         *
+         * @param path Percorso del file CSV o della registrazione binaria ({@link TelemetryFile})
+         * @return Campioni letti
+         * @throws IOException Se si verifica un errore durante la lettura
+         */
+        public static Samples load(String path) throws IOException {
+            if (TelemetryFile.isTelemetry(path)) {
+                // Colonne per nome: vale anche per una registrazione enhanced
+                try (TelemetryFile telemetry = TelemetryFile.open(Path.of(path))) {
+                    int[] featureColumns = telemetry.requireColumns(TelemetryFile.FEATURE_COLUMNS);
+                    int[] targetColumns = telemetry.requireColumns(TelemetryFile.TARGET_COLUMNS);
+                    int size = Math.toIntExact(telemetry.size());
+                    double[] features = new double[size * INPUTS];
+                    double[] targets = new double[size * OUTPUTS];
+                    for (int row = 0; row < size; row++) {
+                        telemetry.read(row, featureColumns, features, row * INPUTS);
+                        telemetry.read(row, targetColumns, targets, row * OUTPUTS);
+                    }
+                    System.out.printf("[MLP-TRAIN] %s: %d campioni (binario)%n", path, size);
+                    return new Samples(features, targets, size);
+                }
+            }
+            double[] features = new double[1024 * INPUTS];
+            double[] targets = new double[1024 * OUTPUTS];
+            int size = 0;
+            int total = 0;
+
+            int bufferSize = IOConfig.getOptimalBufferSize(new File(path).length());
+            try (BufferedReader reader = new BufferedReader(new FileReader(path), bufferSize)) {
+                String header = reader.readLine();
+                if (header == null) {
+                    throw new IOException("Dataset vuoto: " + path);
+                }
+                // Nel formato discretizzato le azioni continue seguono la colonna actionClass
+                boolean discretized = header.contains("actionClass");
+                int targetColumn = discretized ? INPUTS + 1 : INPUTS;
+
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    total++;
+                    String[] values = line.split(",");
+                    if (values.length < targetColumn + OUTPUTS) {
+                        System.err.println("[MLP-TRAIN] Riga " + total + " senza azioni continue");
+                        continue;
+                    }
+                    if (size == features.length / INPUTS) {
+                        features = Arrays.copyOf(features, features.length * 2);
+                        targets = Arrays.copyOf(targets, targets.length * 2);
+                    }
+                    try {
+                        for (int i = 0; i < INPUTS; i++) {
+                            features[size * INPUTS + i] = Double.parseDouble(values[i]);
+                        }
+                        for (int o = 0; o < OUTPUTS; o++) {
+                            targets[size * OUTPUTS + o] = Double.parseDouble(values[targetColumn + o]);
+                        }
+                        size++;
+                    } catch (NumberFormatException e) {
+                        System.err.println("[MLP-TRAIN] Errore parsing riga " + total + ": " + e.getMessage());
+                    }
+                }
+            }
+
+            System.out.printf("[MLP-TRAIN] %s: %d/%d campioni validi%n", path, size, total);
+            return new Samples(features, targets, size);
+        }
+
+        /**
+         * Restituisce il numero di campioni.
+         *
+         * @return Righe valide
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    private final int[] hidden;
+    private final ForkJoinPool pool;
+    private MLPModel.Activation activation = MLPModel.Activation.RELU;
+    private int batchSize = 512;
+    private int maxEpochs = 200;
+    private double learningRate = 1e-3;
+    private double alpha = 0.01;
+    private double validationFraction = 0.1;
+    private int patience = 10;
+    private double tolerance = 1e-4;
+    private long seed = 42;
+
+    // Struttura della rete e parametri (impostati da train)
+    private int[] sizes;
+    private int[] weightOffsets;
+    private int[] biasOffsets;
+    private double[] mean;
+    private double[] inverseScale;
+    private double[] params;
+
+    /**
+     * Prepara l'addestramento di una rete con i layer nascosti indicati.
+     *
+     * @param hidden Neuroni di ogni layer nascosto (es. 32, 16)
+     * @param pool Pool su cui calcolare i gradienti in parallelo
+     */
+    public MLPTrainer(int[] hidden, ForkJoinPool pool) {
+        for (int width : hidden) {
+            if (width < 1) {
+                throw new IllegalArgumentException("Layer nascosto non valido: " + width);
+            }
+        }
+        this.hidden = hidden.clone();
+        this.pool = pool;
+    }
+
+    /**
+     * Imposta l'attivazione dei layer nascosti (ReLU di default). L'uscita è sempre lineare.
+     *
+     * @param activation Attivazione nascosta
+     */
+    public void setActivation(MLPModel.Activation activation) {
+        this.activation = activation;
+    }
+
+    /**
+     * Imposta i campioni per mini-batch (512 di default: più del default di scikit-learn, 200,
+     * perché ogni mini-batch è diviso tra i thread del pool).
+     *
+     * @param batchSize Campioni per aggiornamento (almeno 1)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Imposta il numero massimo di epoche (200 di default).
+     *
+     * @param maxEpochs Epoche massime
+     */
+    public void setMaxEpochs(int maxEpochs) {
+        this.maxEpochs = Math.max(1, maxEpochs);
+    }
+
+    /**
+     * Imposta il learning rate di Adam (0.001 di default).
+     *
+     * @param learningRate Passo iniziale
+     */
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * Imposta il coefficiente della regolarizzazione L2 (0.01 di default, come nel notebook).
+     *
+     * @param alpha Coefficiente L2 dei pesi (i bias non sono regolarizzati)
+     */
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
+    /**
+     * Imposta la quota di campioni tenuti da parte per l'early stopping (0.1 di default).
+     * Con 0 l'addestramento dura sempre {@link #setMaxEpochs(int)} epoche.
+     *
+     * @param validationFraction Quota in [0, 0.5]
+     */
+    public void setValidationFraction(double validationFraction) {
+        this.validationFraction = Math.max(0.0, Math.min(0.5, validationFraction));
+    }
+
+    /**
+     * Imposta le epoche senza miglioramento della validazione dopo cui l'addestramento si ferma
+     * (10 di default).
+     *
+     * @param patience Epoche di tolleranza
+     */
+    public void setPatience(int patience) {
+        this.patience = Math.max(1, patience);
+    }
+
+    /**
+     * Imposta il seme per l'inizializzazione, la divisione della validazione e il rimescolamento.
+     *
+     * @param seed Seme del generatore
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Addestra la rete sui campioni e restituisce il modello con la migliore perdita di validazione
+     * (o quello dell'ultima epoca senza validazione).
+     *
+     * @param samples Campioni di addestramento
+     * @return Modello pronto per {@link MLPDriver} e {@link MLPModel#save(Path)}
+     */
+    public MLPModel train(Samples samples) {
+        int n = samples.size();
+        if (n < 2) {
+            throw new IllegalArgumentException("Servono almeno 2 campioni per l'addestramento");
+        }
+        Random random = new Random(seed);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        shuffle(order, n, random);
+        int validation = (int) Math.round(n * validationFraction);
+        int trainSize = n - validation;
+        // Le prime trainSize posizioni sono il training, le altre la validazione (fissa)
+        int[] validationRows = Arrays.copyOfRange(order, trainSize, n);
+
+        initialize(samples, order, trainSize, random);
+        double[] firstMoment = new double[params.length];
+        double[] secondMoment = new double[params.length];
+        double[] gradient = new double[params.length];
+        double[] best = params.clone();
+
+        int threads = Math.max(1, pool.getParallelism());
+        Worker[] workers = new Worker[threads];
+        for (int w = 0; w < threads; w++) {
+            workers[w] = new Worker();
+        }
+
+        System.out.printf("[MLP-TRAIN] Rete %s, %s, %d parametri | %d campioni di training, %d di validazione"
+            + " | batch %d su %d thread%n", layerString(), activation.sklearnName(), params.length,
+            trainSize, validation, batchSize, threads);
+
+        double bestLoss = Double.POSITIVE_INFINITY;
+        int stale = 0;
+        long step = 0;
+        for (int epoch = 1; epoch <= maxEpochs; epoch++) {
+            long start = System.nanoTime();
+            shuffle(order, trainSize, random);
+            double trainLoss = 0.0;
+            for (int from = 0; from < trainSize; from += batchSize) {
+                int to = Math.min(trainSize, from + batchSize);
+                trainLoss += computeGradient(samples, order, from, to, workers, gradient);
+                step++;
+                adamStep(gradient, firstMoment, secondMoment, step);
+            }
+            trainLoss /= trainSize * OUTPUTS;
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            if (validation == 0) {
+                System.out.printf("[MLP-TRAIN] Epoca %3d | mse train %.5f | %.2f s (%.0f campioni/s)%n",
+                    epoch, trainLoss, seconds, trainSize / seconds);
+                continue;
+            }
+            double validationLoss = meanSquaredError(samples, validationRows, workers);
+            System.out.printf("[MLP-TRAIN] Epoca %3d | mse train %.5f | mse validazione %.5f | %.2f s (%.0f campioni/s)%n",
+                epoch, trainLoss, validationLoss, seconds, trainSize / seconds);
+            if (validationLoss < bestLoss - tolerance) {
+                bestLoss = validationLoss;
+                System.arraycopy(params, 0, best, 0, params.length);
+                stale = 0;
+            } else if (++stale >= patience) {
+                System.out.println("[MLP-TRAIN] Early stopping: nessun miglioramento in " + patience + " epoche");
+                break;
+            }
+        }
+        if (validation > 0) {
+            System.arraycopy(best, 0, params, 0, params.length);
+            System.out.printf("[MLP-TRAIN] Migliore mse di validazione: %.5f%n", bestLoss);
+        }
+        return toModel();
+    }
+
+    /**
+     * Scaler sui campioni di training (deviazione standard di popolazione, 1 per le features costanti,
+     * come StandardScaler) e pesi iniziali di Glorot uniformi, come scikit-learn.
+     */
+    private void initialize(Samples samples, int[] order, int trainSize, Random random) {
+        sizes = new int[hidden.length + 2];
+        sizes[0] = INPUTS;
+        System.arraycopy(hidden, 0, sizes, 1, hidden.length);
+        sizes[sizes.length - 1] = OUTPUTS;
+
+        mean = new double[INPUTS];
+        double[] squares = new double[INPUTS];
+        for (int r = 0; r < trainSize; r++) {
+            int base = order[r] * INPUTS;
+            for (int i = 0; i < INPUTS; i++) {
+                double x = samples.features[base + i];
+                mean[i] += x;
+                squares[i] += x * x;
+            }
+        }
+        inverseScale = new double[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            mean[i] /= trainSize;
+            double std = Math.sqrt(Math.max(0.0, squares[i] / trainSize - mean[i] * mean[i]));
+            inverseScale[i] = std > 1e-12 ? 1.0 / std : 1.0;
+        }
+
+        int layers = sizes.length - 1;
+        weightOffsets = new int[layers];
+        biasOffsets = new int[layers];
+        int count = 0;
+        for (int l = 0; l < layers; l++) {
+            weightOffsets[l] = count;
+            count += sizes[l] * sizes[l + 1];
+            biasOffsets[l] = count;
+            count += sizes[l + 1];
+        }
+        params = new double[count];
+        double factor = activation == MLPModel.Activation.LOGISTIC ? 2.0 : 6.0;
+        for (int l = 0; l < layers; l++) {
+            double bound = Math.sqrt(factor / (sizes[l] + sizes[l + 1]));
+            int end = biasOffsets[l] + sizes[l + 1];
+            for (int p = weightOffsets[l]; p < end; p++) {
+                params[p] = (2.0 * random.nextDouble() - 1.0) * bound;
+            }
+        }
+    }
+
+    /**
+     * Calcola in parallelo il gradiente medio del mini-batch [from, to) dell'ordine, regolarizzazione
+     * compresa, e restituisce la somma degli errori quadratici dei campioni.
+     */
+    private double computeGradient(Samples samples, int[] order, int from, int to, Worker[] workers, double[] gradient) {
+        int count = to - from;
+        int parts = Math.min(workers.length, count);
+        pool.submit(() -> IntStream.range(0, parts).parallel().forEach(w ->
+            workers[w].accumulate(samples, order, from + count * w / parts, from + count * (w + 1) / parts))).join();
+
+        double loss = 0.0;
+        Arrays.fill(gradient, 0.0);
+        for (int w = 0; w < parts; w++) {
+            double[] partial = workers[w].gradient;
+            for (int p = 0; p < gradient.length; p++) {
+                gradient[p] += partial[p];
+            }
+            loss += workers[w].loss;
+        }
+        double scale = 1.0 / count;
+        for (int p = 0; p < gradient.length; p++) {
+            gradient[p] *= scale;
+        }
+        for (int l = 0; l < weightOffsets.length; l++) {
+            for (int p = weightOffsets[l]; p < biasOffsets[l]; p++) {
+                gradient[p] += alpha * params[p] * scale;
+            }
+        }
+        return loss;
+    }
+
+    /**
+     * Aggiornamento di Adam con correzione del bias dei momenti.
+     */
+    private void adamStep(double[] gradient, double[] firstMoment, double[] secondMoment, long step) {
+        double rate = learningRate * Math.sqrt(1.0 - Math.pow(BETA2, step)) / (1.0 - Math.pow(BETA1, step));
+        for (int p = 0; p < params.length; p++) {
+            double g = gradient[p];
+            firstMoment[p] = BETA1 * firstMoment[p] + (1.0 - BETA1) * g;
+            secondMoment[p] = BETA2 * secondMoment[p] + (1.0 - BETA2) * g * g;
+            params[p] -= rate * firstMoment[p] / (Math.sqrt(secondMoment[p]) + EPSILON);
+        }
+    }
+
+    /**
+     * Errore quadratico medio per uscita sulle righe indicate, calcolato in parallelo.
+     */
+    private double meanSquaredError(Samples samples, int[] rows, Worker[] workers) {
+        int count = rows.length;
+        int parts = Math.min(workers.length, count);
+        pool.submit(() -> IntStream.range(0, parts).parallel().forEach(w ->
+            workers[w].evaluate(samples, rows, count * w / parts, count * (w + 1) / parts))).join();
+        double loss = 0.0;
+        for (int w = 0; w < parts; w++) {
+            loss += workers[w].loss;
+        }
+        return loss / (count * OUTPUTS);
+    }
+
+    /**
+     * Derivata dell'attivazione espressa in funzione del valore già attivato.
+     */
+    private static double derivative(MLPModel.Activation activation, double activated) {
+        return switch (activation) {
+            case RELU -> activated > 0.0 ? 1.0 : 0.0;
+            case TANH -> 1.0 - activated * activated;
+            case LOGISTIC -> activated * (1.0 - activated);
+            case IDENTITY -> 1.0;
+        };
+    }
+
+    /**
+     * Buffer di un thread: attivazioni e delta di ogni layer per un campione, gradiente accumulato
+     * sulla propria parte del mini-batch e somma degli errori quadratici.
+     */
+    private final class Worker {
+
+        private final double[][] activations;
+        private final double[][] deltas;
+        private final double[] gradient;
+        private double loss;
+
+        Worker() {
+            activations = new double[sizes.length][];
+            deltas = new double[sizes.length][];
+            for (int l = 0; l < sizes.length; l++) {
+                activations[l] = new double[sizes[l]];
+                deltas[l] = new double[sizes[l]];
+            }
+            gradient = new double[params.length];
+        }
+
+        /**
+         * Propagazione in avanti di un campione: l'uscita resta in activations[ultimo layer].
+         */
+        private void forward(Samples samples, int row) {
+            double[] input = activations[0];
+            int base = row * INPUTS;
+            for (int i = 0; i < INPUTS; i++) {
+                input[i] = (samples.features[base + i] - mean[i]) * inverseScale[i];
+            }
+            int layers = sizes.length - 1;
+            for (int l = 0; l < layers; l++) {
+                int m = sizes[l];
+                int n = sizes[l + 1];
+                double[] source = activations[l];
+                double[] target = activations[l + 1];
+                System.arraycopy(params, biasOffsets[l], target, 0, n);
+                int weights = weightOffsets[l];
+                for (int i = 0; i < m; i++) {
+                    double x = source[i];
+                    if (x == 0.0) {
+                        continue;
+                    }
+                    int rowOffset = weights + i * n;
+                    for (int j = 0; j < n; j++) {
+                        target[j] += params[rowOffset + j] * x;
+                    }
+                }
+                if (l < layers - 1) {
+                    activation.apply(target, 0, n);
+                }
+            }
+        }
+
+        /**
+         * Accumula il gradiente (non ancora mediato) delle posizioni [from, to) dell'ordine.
+         */
+        void accumulate(Samples samples, int[] order, int from, int to) {
+            Arrays.fill(gradient, 0.0);
+            loss = 0.0;
+            int last = sizes.length - 1;
+            for (int r = from; r < to; r++) {
+                int row = order[r];
+                forward(samples, row);
+
+                // Errore in uscita (perdita quadratica / 2, uscita lineare)
+                double[] output = activations[last];
+                double[] delta = deltas[last];
+                int targetBase = row * OUTPUTS;
+                for (int o = 0; o < OUTPUTS; o++) {
+                    double error = output[o] - samples.targets[targetBase + o];
+                    delta[o] = error;
+                    loss += error * error;
+                }
+
+                for (int l = last - 1; l >= 0; l--) {
+                    int m = sizes[l];
+                    int n = sizes[l + 1];
+                    double[] input = activations[l];
+                    double[] next = deltas[l + 1];
+                    int weights = weightOffsets[l];
+                    int biases = biasOffsets[l];
+                    for (int j = 0; j < n; j++) {
+                        gradient[biases + j] += next[j];
+                    }
+                    double[] current = deltas[l];
+                    for (int i = 0; i < m; i++) {
+                        int rowOffset = weights + i * n;
+                        double x = input[i];
+                        if (x != 0.0) {
+                            for (int j = 0; j < n; j++) {
+                                gradient[rowOffset + j] += x * next[j];
+                            }
+                        }
+                        if (l == 0) {
+                            continue;
+                        }
+                        // Delta del layer nascosto: niente prodotto se l'attivazione è piatta (ReLU spenta)
+                        double slope = derivative(activation, x);
+                        double back = 0.0;
+                        if (slope != 0.0) {
+                            for (int j = 0; j < n; j++) {
+                                back += params[rowOffset + j] * next[j];
+                            }
+                        }
+                        current[i] = back * slope;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Somma gli errori quadratici delle righe [from, to) senza calcolare il gradiente.
+         */
+        void evaluate(Samples samples, int[] rows, int from, int to) {
+            loss = 0.0;
+            double[] output = activations[sizes.length - 1];
+            for (int r = from; r < to; r++) {
+                int row = rows[r];
+                forward(samples, row);
+                int targetBase = row * OUTPUTS;
+                for (int o = 0; o < OUTPUTS; o++) {
+                    double error = output[o] - samples.targets[targetBase + o];
+                    loss += error * error;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copia i parametri correnti in un {@link MLPModel}.
+     */
+    private MLPModel toModel() {
+        int layers = sizes.length - 1;
+        double[][] weights = new double[layers][];
+        double[][] biases = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            weights[l] = Arrays.copyOfRange(params, weightOffsets[l], biasOffsets[l]);
+            biases[l] = Arrays.copyOfRange(params, biasOffsets[l], biasOffsets[l] + sizes[l + 1]);
+        }
+        double[] scale = new double[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            scale[i] = 1.0 / inverseScale[i];
+        }
+        return new MLPModel(sizes, mean, scale, weights, biases, activation, MLPModel.Activation.IDENTITY);
+    }
+
+    /**
+     * Mescola (Fisher-Yates) le prime count posizioni dell'array.
+     */
+    private static void shuffle(int[] values, int count, Random random) {
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    private String layerString() {
+        StringBuilder text = new StringBuilder();
+        for (int size : sizes) {
+            if (text.length() > 0) {
+                text.append('-');
+            }
+            text.append(size);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Valuta un modello su un insieme di campioni: errore quadratico medio e R2 di ogni uscita.
+     *
+     * @param label Etichetta della riga del report
+     * @param model Modello da valutare
+     * @param samples Campioni di confronto
+     */
+    public static void report(String label, MLPModel model, Samples samples) {
+        int n = samples.size();
+        double[] features = new double[INPUTS];
+        double[] output = new double[OUTPUTS];
+        double[] workspace = model.newWorkspace();
+        double[] squared = new double[OUTPUTS];
+        double[] sum = new double[OUTPUTS];
+        double[] sumSquares = new double[OUTPUTS];
+        for (int row = 0; row < n; row++) {
+            System.arraycopy(samples.features, row * INPUTS, features, 0, INPUTS);
+            model.predict(features, output, workspace);
+            for (int o = 0; o < OUTPUTS; o++) {
+                double y = samples.targets[row * OUTPUTS + o];
+                double error = output[o] - y;
+                squared[o] += error * error;
+                sum[o] += y;
+                sumSquares[o] += y * y;
+            }
+        }
+        String[] names = { "steering", "acceleration", "brake" };
+        StringBuilder line = new StringBuilder();
+        for (int o = 0; o < OUTPUTS; o++) {
+            double variance = sumSquares[o] - sum[o] * sum[o] / n;
+            double r2 = variance > 0.0 ? 1.0 - squared[o] / variance : 0.0;
+            line.append(String.format(" | %s mse %.5f R2 %.3f", names[o], squared[o] / n, r2));
+        }
+        System.out.printf("[MLP-TRAIN] %-5s | %6d righe%s%n", label, n, line);
+    }
+
+    /**
+     * Addestra la rete su un dataset standard e salva i pesi per {@link MLPDriver}.
+     *
+     * @param args train:&lt;dataset.csv&gt; [output:&lt;modello.bin&gt;] [test:&lt;dataset.csv&gt;] [hidden:32-16]
+     *             [activation:relu|tanh|logistic] [batch:512] [epochs:200] [lr:0.001] [alpha:0.01]
+     *             [validation:0.1] [patience:10] [threads:N] [seed:42]
+     */
+    public static void main(String[] args) {
+        String trainPath = null;
+        String outputPath = null;
+        String testPath = null;
+        int[] hidden = { 32, 16 };
+        MLPModel.Activation activation = MLPModel.Activation.RELU;
+        int batch = 512;
+        int epochs = 200;
+        double lr = 1e-3;
+        double alpha = 0.01;
+        double validation = 0.1;
+        int patience = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+
+        for (String arg : args) {
+            int sep = arg.indexOf(':');
+            if (sep <= 0) {
+                System.err.println("[MLP-TRAIN] Parametro non riconosciuto: " + arg);
+                continue;
+            }
+            String key = arg.substring(0, sep);
+            String value = arg.substring(sep + 1);
+            switch (key) {
+                case "train" -> trainPath = value;
+                case "output" -> outputPath = value;
+                case "test" -> testPath = value;
+                case "hidden" -> hidden = Arrays.stream(value.split("-")).mapToInt(Integer::parseInt).toArray();
+                case "activation" -> activation = MLPModel.Activation.fromName(value);
+                case "batch" -> batch = Integer.parseInt(value);
+                case "epochs" -> epochs = Integer.parseInt(value);
+                case "lr" -> lr = Double.parseDouble(value);
+                case "alpha" -> alpha = Double.parseDouble(value);
+                case "validation" -> validation = Double.parseDouble(value);
+                case "patience" -> patience = Integer.parseInt(value);
+                case "threads" -> threads = Integer.parseInt(value);
+                case "seed" -> seed = Long.parseLong(value);
+                default -> System.err.println("[MLP-TRAIN] Parametro non riconosciuto: " + arg);
+            }
+        }
+
+        if (trainPath == null) {
+            System.out.println("Uso: java MLPTrainer train:<dataset.csv> [output:<modello.bin>] [test:<dataset.csv>]");
+            System.out.println("       [hidden:32-16] [activation:relu|tanh|logistic] [batch:512] [epochs:200] [lr:0.001]");
+            System.out.println("       [alpha:0.01] [validation:0.1] [patience:10] [threads:N] [seed:42]");
+            System.out.println("  Il modello si usa con MLPDriver (model:<modello.bin> nel Client)");
+            return;
+        }
+        if (outputPath == null) {
+            outputPath = TelemetryFile.derivedPath(trainPath, "_mlp.bin");
+        }
+        if (TelemetryFile.samePath(trainPath, outputPath)) {
+            System.err.println("[MLP-TRAIN] Il file di output coincide con il dataset di input: " + outputPath);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            Samples samples = Samples.load(trainPath);
+            MLPTrainer trainer = new MLPTrainer(hidden, pool);
+            trainer.setActivation(activation);
+            trainer.setBatchSize(batch);
+            trainer.setMaxEpochs(epochs);
+            trainer.setLearningRate(lr);
+            trainer.setAlpha(alpha);
+            trainer.setValidationFraction(validation);
+            trainer.setPatience(patience);
+            trainer.setSeed(seed);
+
+            long start = System.nanoTime();
+            MLPModel model = trainer.train(samples);
+            System.out.printf("[MLP-TRAIN] %s addestrato in %.2f s%n", model, (System.nanoTime() - start) / 1e9);
+
+            report("TRAIN", model, samples);
+            if (testPath != null) {
+                report("TEST", model, Samples.load(testPath));
+            }
+
+            model.save(Path.of(outputPath));
+            System.out.println("[MLP-TRAIN] Modello salvato in " + outputPath);
+        } catch (IOException e) {
+            System.err.println("[MLP-TRAIN] Errore: " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+
+/**
+ * Trasporto delle predizioni tra {@link MLPDriver} e il processo Python del modello.
+ * La semantica è la stessa per tutte le implementazioni: il thread di controllo invia le features
+ * del tick con un numero di sequenza e attende la risposta con la stessa sequenza al più fino alla
+ * scadenza del tick; le risposte a richieste già superate vengono scartate e contate.
+ *
+ * @see MLPPredictionChannel
+ * @see MLPSharedMemoryChannel
+ */
+interface MLPTransport extends AutoCloseable {
+
+    /**
+     * Invia la richiesta per un tick, senza attendere la risposta e senza allocare.
+     *
+     * @param features Features del tick nell'ordine del dataset
+     * @return Numero di sequenza della richiesta, da passare a {@link #await}
+     * @throws IOException Se l'invio fallisce
+     */
+    int send(double[] features) throws IOException;
+
+    /**
+     * Attende la risposta alla richiesta indicata fino alla scadenza, senza allocare.
+     *
+     * @param sequence Numero di sequenza restituito da {@link #send}
+     * @param deadline Scadenza in nanosecondi ({@link System#nanoTime()})
+     * @param out Buffer delle uscite: sterzo, accelerazione, freno (non modificato se la risposta manca)
+     * @return true se la risposta è arrivata entro la scadenza
+     */
+    boolean await(int sequence, long deadline, double[] out);
+
+    /**
+     * Restituisce le risposte scartate perché arrivate dopo una richiesta più recente.
+     *
+     * @return Risposte in ritardo dall'avvio
+     */
+    long getLateReplies();
+
+    /**
+     * Restituisce le risposte scartate perché duplicate o con una sequenza mai inviata.
+     *
+     * @return Risposte duplicate dall'avvio
+     */
+    long getDuplicateReplies();
+
+    /**
+     * Restituisce le risposte scartate perché non valide.
+     *
+     * @return Risposte non valide dall'avvio
+     */
+    long getInvalidReplies();
+
+    /**
+     * Chiude il trasporto: le risposte successive vengono ignorate e un'attesa in corso termina.
+     */
+    @Override
+    void close();
+
+    /**
+     * Attende il rilascio delle risorse del trasporto dopo la chiusura.
+     *
+     * @param millis Attesa massima in millisecondi
+     */
+    void join(long millis);
+}
@@ -0,0 +1,245 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+
+/**
+ * Max-heap a capacità limitata per la ricerca dei K vicini più prossimi.
+ * Memorizza indici e distanze in array primitivi, senza creare oggetti per ogni candidato:
+ * una singola istanza può essere riutilizzata per tutte le query eseguite da uno stesso thread.
+ */
+public class NeighborHeap {
+
+    private int[] ids;
+    private double[] distances;
+    private double[] queryBuffer;
+    private int[] visitMarks;
+    private int visitEpoch;
+    private int size;
+    private int capacity;
+    private int offered;
+
+    /**
+     * Costruttore dell'heap.
+     *
+     * @param capacity Numero massimo di vicini da mantenere (K)
+     */
+    public NeighborHeap(int capacity) {
+        this.ids = new int[Math.max(1, capacity)];
+        this.distances = new double[Math.max(1, capacity)];
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    /**
+     * Svuota l'heap e imposta una nuova capacità.
+     * Gli array interni vengono riallocati solo se la capacità richiesta supera quella attuale.
+     *
+     * @param capacity Numero massimo di vicini da mantenere (K)
+     */
+    public void reset(int capacity) {
+        if (capacity > ids.length) {
+            ids = new int[capacity];
+            distances = new double[capacity];
+        }
+        this.capacity = capacity;
+        this.size = 0;
+        this.offered = 0;
+    }
+
+    /**
+     * Restituisce il numero di vicini attualmente presenti.
+     *
+     * @return Numero di vicini
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce la capacità corrente (K).
+     *
+     * @return Capacità dell'heap
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Verifica se l'heap contiene già K vicini.
+     *
+     * @return true se l'heap è pieno
+     */
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    /**
+     * Restituisce la distanza del vicino peggiore (il più lontano) tra quelli mantenuti.
+     *
+     * @return Distanza del vicino peggiore, o +infinito se l'heap non è ancora pieno
+     */
+    public double worstDistance() {
+        return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    /**
+     * Propone un candidato: viene inserito se c'è spazio o se è migliore del peggiore.
+     *
+     * @param id Indice del punto candidato
+     * @param distance Distanza del candidato dal punto di query
+     */
+    public void offer(int id, double distance) {
+        offered++;
+        if (size < capacity) {
+            // Inserimento in coda e risalita
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distance) {
+                    break;
+                }
+                ids[i] = ids[parent];
+                distances[i] = distances[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            distances[i] = distance;
+        } else if (capacity > 0 && distance < distances[0]) {
+            // Sostituisce il peggiore e ridiscende
+            siftDown(0, id, distance, size);
+        }
+    }
+
+    /**
+     * Restituisce il numero di candidati proposti dall'ultima {@link #reset(int)}.
+     * Le ricerche dei KD-tree propongono ogni nodo visitato, quindi è il numero di nodi visitati.
+     *
+     * @return Candidati proposti
+     */
+    public int getOfferCount() {
+        return offered;
+    }
+
+    /**
+     * Ordina i vicini per distanza crescente (heapsort in loco).
+     * Dopo l'ordinamento l'heap va riutilizzato solo dopo una chiamata a {@link #reset(int)}.
+     *
+     * @return Numero di vicini ordinati
+     */
+    public int sortAscending() {
+        for (int end = size - 1; end > 0; end--) {
+            int topId = ids[0];
+            double topDistance = distances[0];
+            siftDown(0, ids[end], distances[end], end);
+            ids[end] = topId;
+            distances[end] = topDistance;
+        }
+        return size;
+    }
+
+    /**
+     * Restituisce l'indice del vicino in posizione i.
+     *
+     * @param i Posizione del vicino
+     * @return Indice del punto nel dataset
+     */
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Restituisce la distanza del vicino in posizione i.
+     *
+     * @param i Posizione del vicino
+     * @return Distanza dal punto di query
+     */
+    public double getDistance(int i) {
+        return distances[i];
+    }
+
+    /**
+     * Sovrascrive la distanza del vicino in posizione i (usato per convertire le distanze
+     * interne, ad esempio quadratiche, nella distanza finale dopo l'ordinamento).
+     *
+     * @param i Posizione del vicino
+     * @param distance Nuova distanza
+     */
+    void setDistance(int i, double distance) {
+        distances[i] = distance;
+    }
+
+    /**
+     * Restituisce un buffer di lavoro per trasformare la query (normalizzazione e pesi della metrica),
+     * riallocato solo se la dimensione richiesta cresce.
+     *
+     * @param dimensions Numero di features
+     * @return Buffer di almeno dimensions elementi
+     */
+    double[] queryBuffer(int dimensions) {
+        if (queryBuffer == null || queryBuffer.length < dimensions) {
+            queryBuffer = new double[dimensions];
+        }
+        return queryBuffer;
+    }
+
+    /**
+     * Inizia una nuova ricerca con deduplicazione dei candidati (punti che compaiono in più
+     * bucket di {@link LSHIndex}). I marcatori sono riallocati solo se l'indice cresce e
+     * azzerati solo quando il contatore delle ricerche ricomincia da capo.
+     *
+     * @param points Numero di punti dell'indice
+     */
+    void beginVisit(int points) {
+        if (visitMarks == null || visitMarks.length < points) {
+            visitMarks = new int[points];
+            visitEpoch = 0;
+        }
+        if (++visitEpoch == 0) {
+            Arrays.fill(visitMarks, 0);
+            visitEpoch = 1;
+        }
+    }
+
+    /**
+     * Marca un punto come visitato nella ricerca corrente.
+     *
+     * @param id Indice del punto
+     * @return true se il punto non era ancora stato visitato
+     */
+    boolean markVisited(int id) {
+        if (visitMarks[id] == visitEpoch) {
+            return false;
+        }
+        visitMarks[id] = visitEpoch;
+        return true;
+    }
+
+    /**
+     * Fa ridiscendere un elemento a partire dalla posizione indicata.
+     *
+     * @param start Posizione di partenza
+     * @param id Indice dell'elemento da collocare
+     * @param distance Distanza dell'elemento da collocare
+     * @param limit Numero di elementi validi nell'heap
+     */
+    private void siftDown(int start, int id, double distance, int limit) {
+        int i = start;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= limit) {
+                break;
+            }
+            if (child + 1 < limit && distances[child + 1] > distances[child]) {
+                child++;
+            }
+            if (distances[child] <= distance) {
+                break;
+            }
+            ids[i] = ids[child];
+            distances[i] = distances[child];
+            i = child;
+        }
+        ids[i] = id;
+        distances[i] = distance;
+    }
+}
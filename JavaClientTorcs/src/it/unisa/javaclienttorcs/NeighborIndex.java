@@ -0,0 +1,161 @@
+package it.unisa.javaclienttorcs;
+
+import java.lang.foreign.Arena;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Indice per la ricerca dei K vicini più prossimi, indipendente da dove sono memorizzati i punti.
+ * Le implementazioni sono {@link KDTreeIndex} (array sullo heap Java) e {@link OffHeapKDTreeIndex}
+ * (segmenti di memoria nativa o file mappati). Le ricerche restituiscono gli indici dei punti
+ * nella matrice usata per la costruzione e accettano features grezze: l'eventuale
+ * {@link FeatureNormalizer} è memorizzata con l'indice.
+ */
+public interface NeighborIndex {
+
+    /**
+     * Costruisce un indice sullo heap o fuori heap.
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @param offHeap true per memorizzare coordinate e nodi in memoria nativa
+     * @return Indice costruito
+     */
+    static NeighborIndex build(double[][] points, DistanceKernel kernel, double[] weights,
+                               FeatureNormalizer normalizer, boolean offHeap) {
+        return build(points, kernel, weights, normalizer, SplitStrategy.ROUND_ROBIN, offHeap);
+    }
+
+    /**
+     * Costruisce un indice sullo heap o fuori heap con la strategia di split indicata.
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     * @param offHeap true per memorizzare coordinate e nodi in memoria nativa
+     * @return Indice costruito
+     */
+    static NeighborIndex build(double[][] points, DistanceKernel kernel, double[] weights,
+                               FeatureNormalizer normalizer, SplitStrategy strategy, boolean offHeap) {
+        return offHeap ? OffHeapKDTreeIndex.build(points, kernel, weights, normalizer, strategy, Arena.ofAuto())
+                       : new KDTreeIndex(points, kernel, weights, normalizer, strategy);
+    }
+
+    /**
+     * Costruisce un indice, eventualmente sulle componenti principali delle features ({@link ProjectedIndex}).
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     * @param pcaComponents Componenti principali da mantenere, 0 per indicizzare le features senza proiezione
+     * @param pcaWhiten true per dividere ogni componente per la propria deviazione standard
+     * @param offHeap true per memorizzare coordinate e nodi in memoria nativa
+     * @return Indice costruito
+     */
+    static NeighborIndex build(double[][] points, DistanceKernel kernel, double[] weights,
+                               FeatureNormalizer normalizer, SplitStrategy strategy,
+                               int pcaComponents, boolean pcaWhiten, boolean offHeap) {
+        if (pcaComponents <= 0 || points.length == 0) {
+            return build(points, kernel, weights, normalizer, strategy, offHeap);
+        }
+        return ProjectedIndex.build(points, kernel, weights, normalizer, strategy, pcaComponents, pcaWhiten, offHeap);
+    }
+
+    /**
+     * Trova i K vicini più prossimi al punto target usando l'heap fornito come spazio di lavoro.
+     * Al termine l'heap contiene i vicini ordinati per distanza crescente secondo la metrica dell'indice.
+     *
+     * @param target Features grezze del punto di query
+     * @param k Numero di vicini da trovare
+     * @param heap Heap di lavoro (viene svuotato all'inizio)
+     * @return Numero di vicini trovati (al più K)
+     */
+    int query(double[] target, int k, NeighborHeap heap);
+
+    /**
+     * Voto pesato (inverso della distanza) dei K vicini più prossimi sulle classi indicate.
+     * L'implementazione di default cerca tutti i K vicini e poi vota; {@link KDTreeIndex}
+     * visita i nodi in ordine di distanza e si ferma appena i vicini mancanti non possono
+     * più ribaltare la classe in testa. Il vincitore è lo stesso in entrambi i casi.
+     *
+     * @param target Features grezze del punto di query
+     * @param k Numero di vicini che votano
+     * @param labels Classe di ogni punto, per indice nella matrice di costruzione
+     * @param vote Stato di lavoro (voti e statistiche dell'ultima ricerca)
+     * @return Classe vincente (la prima con il voto massimo), -1 se nessun vicino
+     */
+    default int vote(double[] target, int k, int[] labels, NeighborVote vote) {
+        vote.reset();
+        NeighborHeap heap = vote.heap(k);
+        int count = query(target, k, heap);
+        for (int i = 0; i < count; i++) {
+            vote.add(labels[heap.getId(i)], heap.getDistance(i));
+        }
+        return vote.winner();
+    }
+
+    /**
+     * Trova i K vicini più prossimi per un lotto di query usando il pool comune.
+     *
+     * @param queries Matrice delle features di query (una riga per query)
+     * @param k Numero di vicini per query
+     * @return Matrici degli indici e delle distanze dei vicini
+     */
+    default KNNBatchResult queryBatch(double[][] queries, int k) {
+        return queryBatch(queries, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Trova i K vicini più prossimi per un lotto di query in parallelo.
+     * Il lotto viene diviso ricorsivamente tra i worker del pool; ogni worker riusa il proprio
+     * heap di lavoro e scrive su righe disgiunte del risultato, senza sincronizzazione.
+     *
+     * @param queries Matrice delle features di query (una riga per query)
+     * @param k Numero di vicini per query
+     * @param pool Pool su cui eseguire le query
+     * @return Matrici degli indici e delle distanze dei vicini
+     */
+    default KNNBatchResult queryBatch(double[][] queries, int k, ForkJoinPool pool) {
+        return BatchQueryTask.run(this, queries, k, pool);
+    }
+
+    /**
+     * Restituisce il numero di punti nell'indice.
+     *
+     * @return Numero di punti
+     */
+    int size();
+
+    /**
+     * Restituisce il numero di dimensioni delle features.
+     *
+     * @return Numero di dimensioni
+     */
+    int getDimensions();
+
+    /**
+     * Restituisce la metrica di distanza dell'indice.
+     *
+     * @return Metrica scelta alla costruzione
+     */
+    DistanceKernel getKernel();
+
+    /**
+     * Restituisce la normalizzazione memorizzata con l'indice.
+     *
+     * @return Normalizzazione delle features, null se l'indice lavora su valori grezzi
+     */
+    FeatureNormalizer getNormalizer();
+
+    /**
+     * Calcola l'altezza dell'albero.
+     *
+     * @return Altezza (0 se vuoto)
+     */
+    int height();
+}
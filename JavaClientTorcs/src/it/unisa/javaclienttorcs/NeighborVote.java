@@ -0,0 +1,424 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+
+/**
+ * Stato riutilizzabile del voto pesato sui K vicini con terminazione anticipata
+ * ({@link NeighborIndex#vote(double[], int, int[], NeighborVote)}).
+ * Contiene la coda dei sottoalberi da visitare (min-heap su array primitivi), i termini per
+ * coordinata dei limiti inferiori delle loro celle, i candidati non ancora confermati (al più K,
+ * in un array non ordinato), i voti per classe e le statistiche dell'ultima ricerca.
+ * Una singola istanza può essere riutilizzata per tutte le query di uno stesso thread:
+ * gli array crescono solo se necessario.
+ */
+public final class NeighborVote {
+
+    /** Piccola costante aggiunta alla distanza, come nel voto di {@link KNNClassifierDriver} */
+    static final double EPSILON = 1e-10;
+
+    private final double[] votes;
+    private int[] nodeIds = new int[64];
+    private int[] nodeLo = new int[64];
+    private int[] nodeHi = new int[64];
+    private double[] nodeBounds = new double[64];
+    private int[] nodeCells = new int[64];
+    private int nodeCount;
+    private double[] cellTerms = new double[64 * DistanceKernel.UNROLLED_DIMENSIONS];
+    private int cellCount;
+    private int[] candidateIds = new int[16];
+    private double[] candidateRanks = new double[16];
+    private int candidateCount;
+    private int worstCandidate;
+    private int nearestCandidate;
+    private double[] queryBuffer;
+    private NeighborHeap heap;
+    private int neighbors;
+    private int visitedNodes;
+    private boolean terminatedEarly;
+
+    /**
+     * Costruttore.
+     *
+     * @param classes Numero di classi votabili
+     */
+    public NeighborVote(int classes) {
+        this.votes = new double[classes];
+    }
+
+    /**
+     * Azzera voti, code e statistiche prima di una nuova ricerca.
+     */
+    void reset() {
+        Arrays.fill(votes, 0.0);
+        nodeCount = 0;
+        cellCount = 0;
+        candidateCount = 0;
+        neighbors = 0;
+        visitedNodes = 0;
+        terminatedEarly = false;
+    }
+
+    /**
+     * Aggiunge il voto di un vicino confermato (i vicini arrivano in ordine di distanza crescente).
+     *
+     * @param label Classe del vicino
+     * @param distance Distanza del vicino dalla query
+     */
+    void add(int label, double distance) {
+        votes[label] += 1.0 / (distance + EPSILON);
+        neighbors++;
+    }
+
+    /**
+     * Verifica se la classe in testa non può più essere superata da remaining vicini
+     * a distanza non inferiore a minDistance.
+     *
+     * @param remaining Vicini ancora da confermare
+     * @param minDistance Distanza minima dei vicini mancanti
+     * @return true se il vincitore è già determinato
+     */
+    boolean isDecided(int remaining, double minDistance) {
+        double first = 0.0;
+        double second = 0.0;
+        for (double v : votes) {
+            if (v > first) {
+                second = first;
+                first = v;
+            } else if (v > second) {
+                second = v;
+            }
+        }
+        return first - second > remaining / (minDistance + EPSILON);
+    }
+
+    /**
+     * Restituisce la classe vincente: la prima con il voto massimo, -1 se nessun voto.
+     *
+     * @return Indice della classe vincente o -1
+     */
+    public int winner() {
+        int best = -1;
+        double max = 0.0;
+        for (int c = 0; c < votes.length; c++) {
+            if (votes[c] > max) {
+                max = votes[c];
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Segna la ricerca come terminata prima di confermare K vicini.
+     */
+    void markTerminatedEarly() {
+        terminatedEarly = true;
+    }
+
+    /**
+     * Conta un punto di cui è stata calcolata la distanza.
+     */
+    void countVisit() {
+        visitedNodes++;
+    }
+
+    /**
+     * Crea una cella con tutti i termini nulli (la cella della radice contiene la query).
+     *
+     * @param dimensions Numero di features
+     * @return Identificativo della cella
+     */
+    int rootCell(int dimensions) {
+        int cell = newCell(dimensions);
+        Arrays.fill(cellTerms, cell * dimensions, (cell + 1) * dimensions, 0.0);
+        return cell;
+    }
+
+    /**
+     * Crea una cella copiando i termini di quella di partenza e sostituendo quello di una coordinata.
+     *
+     * @param parent Cella di partenza
+     * @param dimensions Numero di features
+     * @param dim Coordinata da sostituire
+     * @param term Nuovo termine della coordinata
+     * @return Identificativo della cella
+     */
+    int childCell(int parent, int dimensions, int dim, double term) {
+        int cell = newCell(dimensions);
+        System.arraycopy(cellTerms, parent * dimensions, cellTerms, cell * dimensions, dimensions);
+        cellTerms[cell * dimensions + dim] = term;
+        return cell;
+    }
+
+    private int newCell(int dimensions) {
+        if ((cellCount + 1) * dimensions > cellTerms.length) {
+            cellTerms = Arrays.copyOf(cellTerms, Math.max(cellTerms.length * 2, (cellCount + 1) * dimensions));
+        }
+        return cellCount++;
+    }
+
+    /**
+     * Restituisce il termine di una coordinata nel limite inferiore di una cella.
+     */
+    double cellTerm(int cell, int dimensions, int dim) {
+        return cellTerms[cell * dimensions + dim];
+    }
+
+    /**
+     * Inserisce un sottoalbero nella coda con il limite inferiore della distanza dei suoi punti e
+     * la cella che ne conserva i termini per coordinata. Un sottoalbero ha radice nel nodo
+     * indicato e occupa l'intervallo di posizioni [lo, hi) nell'ordine dell'albero.
+     */
+    void pushNode(int node, int lo, int hi, double bound, int cell) {
+        if (nodeCount == nodeLo.length) {
+            nodeIds = Arrays.copyOf(nodeIds, nodeCount * 2);
+            nodeLo = Arrays.copyOf(nodeLo, nodeCount * 2);
+            nodeHi = Arrays.copyOf(nodeHi, nodeCount * 2);
+            nodeBounds = Arrays.copyOf(nodeBounds, nodeCount * 2);
+            nodeCells = Arrays.copyOf(nodeCells, nodeCount * 2);
+        }
+        int i = nodeCount++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (nodeBounds[parent] <= bound) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        nodeIds[i] = node;
+        nodeLo[i] = lo;
+        nodeHi[i] = hi;
+        nodeBounds[i] = bound;
+        nodeCells[i] = cell;
+    }
+
+    private void move(int from, int to) {
+        nodeIds[to] = nodeIds[from];
+        nodeLo[to] = nodeLo[from];
+        nodeHi[to] = nodeHi[from];
+        nodeBounds[to] = nodeBounds[from];
+        nodeCells[to] = nodeCells[from];
+    }
+
+    boolean hasNodes() {
+        return nodeCount > 0;
+    }
+
+    /**
+     * Limite inferiore del sottoalbero in testa alla coda (+infinito se vuota).
+     */
+    double nextNodeBound() {
+        return nodeCount > 0 ? nodeBounds[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Radice del sottoalbero in testa alla coda.
+     */
+    int nextNode() {
+        return nodeIds[0];
+    }
+
+    /**
+     * Inizio dell'intervallo del sottoalbero in testa alla coda.
+     */
+    int nextNodeLo() {
+        return nodeLo[0];
+    }
+
+    /**
+     * Fine (esclusa) dell'intervallo del sottoalbero in testa alla coda.
+     */
+    int nextNodeHi() {
+        return nodeHi[0];
+    }
+
+    /**
+     * Cella del sottoalbero in testa alla coda.
+     */
+    int nextNodeCell() {
+        return nodeCells[0];
+    }
+
+    /**
+     * Rimuove il sottoalbero in testa alla coda.
+     */
+    void popNode() {
+        int last = --nodeCount;
+        double lastBound = nodeBounds[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && nodeBounds[child + 1] < nodeBounds[child]) {
+                child++;
+            }
+            if (nodeBounds[child] >= lastBound) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        move(last, i);
+    }
+
+    /**
+     * Propone un punto candidato: i candidati sono al più limit (i vicini ancora da confermare),
+     * oltre il limite il nuovo punto sostituisce il peggiore se è più vicino.
+     *
+     * @param id Indice del punto
+     * @param rank Distanza di ordinamento dalla query
+     * @param limit Numero massimo di candidati
+     */
+    void offerCandidate(int id, double rank, int limit) {
+        if (candidateCount < limit) {
+            if (candidateCount == candidateIds.length) {
+                candidateIds = Arrays.copyOf(candidateIds, candidateCount * 2);
+                candidateRanks = Arrays.copyOf(candidateRanks, candidateCount * 2);
+            }
+            int slot = candidateCount++;
+            candidateIds[slot] = id;
+            candidateRanks[slot] = rank;
+            if (slot == 0 || rank < candidateRanks[nearestCandidate]) {
+                nearestCandidate = slot;
+            }
+            if (candidateCount == limit) {
+                worstCandidate = findWorstCandidate();
+            }
+            return;
+        }
+        if (candidateCount > 0 && rank < candidateRanks[worstCandidate]) {
+            int slot = worstCandidate;
+            candidateIds[slot] = id;
+            candidateRanks[slot] = rank;
+            worstCandidate = findWorstCandidate();
+            if (slot == nearestCandidate || rank < candidateRanks[nearestCandidate]) {
+                nearestCandidate = slot == nearestCandidate ? findNearestCandidate() : slot;
+            }
+        }
+    }
+
+    /**
+     * Distanza oltre la quale un nodo non può più migliorare i candidati: la distanza del
+     * peggiore se i candidati sono al completo, altrimenti +infinito.
+     *
+     * @param limit Numero massimo di candidati
+     * @return Limite per la potatura dei nodi
+     */
+    double candidateLimit(int limit) {
+        if (candidateCount < limit) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return candidateCount == 0 ? Double.NEGATIVE_INFINITY : candidateRanks[worstCandidate];
+    }
+
+    private int findWorstCandidate() {
+        int worst = -1;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < candidateCount; i++) {
+            if (candidateRanks[i] >= max) {
+                max = candidateRanks[i];
+                worst = i;
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * Posizione del candidato più vicino, -1 se non ci sono candidati.
+     */
+    int nearestCandidate() {
+        return candidateCount > 0 ? nearestCandidate : -1;
+    }
+
+    private int findNearestCandidate() {
+        int nearest = 0;
+        for (int i = 1; i < candidateCount; i++) {
+            if (candidateRanks[i] < candidateRanks[nearest]) {
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    int candidateId(int slot) {
+        return candidateIds[slot];
+    }
+
+    double candidateRank(int slot) {
+        return candidateRanks[slot];
+    }
+
+    /**
+     * Rimuove il candidato più vicino (spostando l'ultimo al suo posto): il peggiore resta lo stesso.
+     */
+    void removeNearestCandidate() {
+        int slot = nearestCandidate;
+        candidateCount--;
+        candidateIds[slot] = candidateIds[candidateCount];
+        candidateRanks[slot] = candidateRanks[candidateCount];
+        if (worstCandidate == candidateCount) {
+            worstCandidate = slot;
+        }
+        nearestCandidate = findNearestCandidate();
+    }
+
+    /**
+     * Buffer di lavoro per la query trasformata, riallocato solo se la dimensione cresce.
+     */
+    double[] queryBuffer(int dimensions) {
+        if (queryBuffer == null || queryBuffer.length < dimensions) {
+            queryBuffer = new double[dimensions];
+        }
+        return queryBuffer;
+    }
+
+    /**
+     * Heap per le implementazioni che cercano tutti i K vicini prima di votare.
+     */
+    NeighborHeap heap(int k) {
+        if (heap == null) {
+            heap = new NeighborHeap(k);
+        }
+        return heap;
+    }
+
+    /**
+     * Restituisce il voto accumulato da una classe nell'ultima ricerca.
+     *
+     * @param label Classe
+     * @return Somma dei pesi (inverso della distanza) dei vicini della classe
+     */
+    public double getVotes(int label) {
+        return votes[label];
+    }
+
+    /**
+     * Restituisce il numero di vicini che hanno votato nell'ultima ricerca.
+     *
+     * @return Vicini confermati (al più K)
+     */
+    public int getNeighborCount() {
+        return neighbors;
+    }
+
+    /**
+     * Restituisce il numero di punti visitati (distanze calcolate) nell'ultima ricerca.
+     *
+     * @return Punti visitati (0 per le implementazioni che cercano tutti i K vicini)
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * Verifica se l'ultima ricerca si è fermata prima di confermare K vicini.
+     *
+     * @return true se il vincitore era già determinato
+     */
+    public boolean isTerminatedEarly() {
+        return terminatedEarly;
+    }
+}
@@ -0,0 +1,414 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * KD-Tree con coordinate e nodi fuori dallo heap Java, in un unico {@link MemorySegment}
+ * allocato da un {@link Arena} o mappato da file. Lo heap contiene solo l'intestazione e i
+ * vettori di normalizzazione: il garbage collector non deve visitare né copiare i punti,
+ * quindi le pause non crescono con la dimensione del dataset.
+ * La struttura e la ricerca sono le stesse di {@link KDTreeIndex} (costruzione con la stessa
+ * {@link SplitStrategy}, potatura sul piano di split della metrica, query grezze normalizzate
+ * dall'indice).
+ *
+ * Il segmento ha lo stesso formato in memoria e su file (little-endian):
+ * intestazione di 64 byte, vettori di normalizzazione (scale, offset, lower, upper) e pesi
+ * se presenti, coordinate normalizzate per righe nell'ordine dell'albero, e per ogni nodo
+ * quattro interi (indice del punto, dimensione di split, figlio sinistro, figlio destro)
+ * contigui per leggere un nodo con un solo accesso alla cache.
+ */
+public final class OffHeapKDTreeIndex implements NeighborIndex {
+
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /** "KNNIDX01" in ASCII, letto come long little-endian */
+    private static final long MAGIC = 0x3130584449_4E4E4BL;
+    private static final int VERSION = 1;
+    private static final long HEADER_BYTES = 64;
+
+    // Campi dell'intestazione (offset in byte)
+    private static final long H_MAGIC = 0;
+    private static final long H_VERSION = 8;
+    private static final long H_DIMENSIONS = 12;
+    private static final long H_SIZE = 16;
+    private static final long H_ROOT = 20;
+    private static final long H_KERNEL = 24;
+    private static final long H_NORMALIZATION = 28;
+    private static final long H_WEIGHTED = 32;
+
+    /** Interi per nodo: indice del punto, dimensione di split, figlio sinistro, figlio destro */
+    private static final int NODE_INTS = 4;
+
+    private final MemorySegment segment;
+    private final MemorySegment coords;
+    private final MemorySegment nodes;
+    private final int dimensions;
+    private final int size;
+    private final int root;
+    private final DistanceKernel kernel;
+    private final FeatureNormalizer normalizer;
+    private final FeatureNormalizer transform;
+
+    /**
+     * Interpreta un segmento già popolato (costruito da {@link #build} o mappato da file).
+     *
+     * @param segment Segmento con intestazione, vettori, coordinate e nodi
+     */
+    private OffHeapKDTreeIndex(MemorySegment segment) {
+        if (segment.byteSize() < HEADER_BYTES || segment.get(LONG, H_MAGIC) != MAGIC) {
+            throw new IllegalArgumentException("Il segmento non contiene un indice KNN");
+        }
+        if (segment.get(INT, H_VERSION) != VERSION) {
+            throw new IllegalArgumentException("Versione dell'indice non supportata: " + segment.get(INT, H_VERSION));
+        }
+
+        this.segment = segment;
+        this.dimensions = segment.get(INT, H_DIMENSIONS);
+        this.size = segment.get(INT, H_SIZE);
+        this.root = segment.get(INT, H_ROOT);
+        this.kernel = DistanceKernel.values()[segment.get(INT, H_KERNEL)];
+        int normalization = segment.get(INT, H_NORMALIZATION);
+        boolean weighted = segment.get(INT, H_WEIGHTED) != 0;
+
+        long offset = HEADER_BYTES;
+        if (normalization >= 0) {
+            double[][] vectors = new double[4][];
+            for (int v = 0; v < vectors.length; v++) {
+                vectors[v] = readDoubles(segment, offset, dimensions);
+                offset += (long) dimensions * Double.BYTES;
+            }
+            this.normalizer = FeatureNormalizer.fromVectors(FeatureNormalizer.Mode.values()[normalization], vectors);
+        } else {
+            this.normalizer = null;
+        }
+        double[] weights = null;
+        if (weighted) {
+            weights = readDoubles(segment, offset, dimensions);
+            offset += (long) dimensions * Double.BYTES;
+        }
+        this.transform = size > 0 ? FeatureNormalizer.forIndex(normalizer, kernel, weights, dimensions) : null;
+
+        long coordBytes = (long) size * dimensions * Double.BYTES;
+        long nodeBytes = (long) size * NODE_INTS * Integer.BYTES;
+        if (segment.byteSize() < offset + coordBytes + nodeBytes) {
+            throw new IllegalArgumentException("Indice troncato: " + segment.byteSize() + " byte");
+        }
+        this.coords = segment.asSlice(offset, coordBytes);
+        this.nodes = segment.asSlice(offset + coordBytes, nodeBytes);
+    }
+
+    /**
+     * Costruisce l'indice in memoria nativa gestita dal garbage collector (rilasciata quando
+     * l'indice non è più raggiungibile).
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @return Indice fuori heap
+     */
+    public static OffHeapKDTreeIndex build(double[][] points, DistanceKernel kernel, double[] weights,
+                                           FeatureNormalizer normalizer) {
+        return build(points, kernel, weights, normalizer, Arena.ofAuto());
+    }
+
+    /**
+     * Costruisce l'indice in un segmento allocato dall'arena indicata.
+     * Per le ricerche a lotti l'arena deve consentire l'accesso da più thread (auto o condivisa).
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @param arena Arena che possiede la memoria dell'indice
+     * @return Indice fuori heap
+     */
+    public static OffHeapKDTreeIndex build(double[][] points, DistanceKernel kernel, double[] weights,
+                                           FeatureNormalizer normalizer, Arena arena) {
+        return build(points, kernel, weights, normalizer, SplitStrategy.ROUND_ROBIN, arena);
+    }
+
+    /**
+     * Costruisce l'indice con la strategia di split indicata in un segmento allocato dall'arena.
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @param strategy Strategia di scelta del piano di split
+     * @param arena Arena che possiede la memoria dell'indice
+     * @return Indice fuori heap
+     */
+    public static OffHeapKDTreeIndex build(double[][] points, DistanceKernel kernel, double[] weights,
+                                           FeatureNormalizer normalizer, SplitStrategy strategy, Arena arena) {
+        int size = points.length;
+        int dimensions = size > 0 ? points[0].length : 0;
+        FeatureNormalizer transform = FeatureNormalizer.forIndex(normalizer, kernel, weights, size > 0 ? dimensions : -1);
+        // Un indice vuoto non ha dimensioni: non memorizza né normalizzazione né pesi
+        if (size == 0) {
+            normalizer = null;
+        }
+        boolean weighted = kernel.isWeighted() && size > 0;
+
+        long vectorBytes = (long) dimensions * Double.BYTES;
+        long offset = HEADER_BYTES + (normalizer != null ? 4 * vectorBytes : 0) + (weighted ? vectorBytes : 0);
+        long coordBytes = (long) size * dimensions * Double.BYTES;
+        long nodeBytes = (long) size * NODE_INTS * Integer.BYTES;
+        MemorySegment segment = arena.allocate(offset + coordBytes + nodeBytes, Double.BYTES);
+
+        segment.set(LONG, H_MAGIC, MAGIC);
+        segment.set(INT, H_VERSION, VERSION);
+        segment.set(INT, H_DIMENSIONS, dimensions);
+        segment.set(INT, H_SIZE, size);
+        segment.set(INT, H_KERNEL, kernel.ordinal());
+        segment.set(INT, H_NORMALIZATION, normalizer != null ? normalizer.getMode().ordinal() : -1);
+        segment.set(INT, H_WEIGHTED, weighted ? 1 : 0);
+
+        long vectorOffset = HEADER_BYTES;
+        if (normalizer != null) {
+            for (double[] vector : normalizer.vectors()) {
+                writeDoubles(segment, vectorOffset, vector);
+                vectorOffset += vectorBytes;
+            }
+        }
+        if (weighted) {
+            writeDoubles(segment, vectorOffset, weights);
+        }
+
+        MemorySegment coords = segment.asSlice(offset, coordBytes);
+        MemorySegment nodes = segment.asSlice(offset + coordBytes, nodeBytes);
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // Unica struttura temporanea sullo heap: la permutazione dei punti usata dal quickselect
+        int root = KDTreeBuilder.build(points, order, transform, strategy, (pos, splitDim, left, right) -> {
+            long node = (long) pos * NODE_INTS;
+            nodes.setAtIndex(INT, node + 1, splitDim);
+            nodes.setAtIndex(INT, node + 2, left);
+            nodes.setAtIndex(INT, node + 3, right);
+        });
+        segment.set(INT, H_ROOT, root);
+
+        for (int pos = 0; pos < size; pos++) {
+            double[] point = points[order[pos]];
+            long base = (long) pos * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                double value = transform == null ? point[i] : transform.apply(i, point[i]);
+                coords.setAtIndex(DOUBLE, base + i, value);
+            }
+            nodes.setAtIndex(INT, (long) pos * NODE_INTS, order[pos]);
+        }
+        return new OffHeapKDTreeIndex(segment);
+    }
+
+    /**
+     * Mappa in sola lettura un indice salvato con {@link #save(Path)}.
+     * Le pagine vengono caricate dal sistema operativo alla prima lettura e restano fuori heap.
+     *
+     * @param path File dell'indice
+     * @param arena Arena che controlla la durata della mappatura (auto o condivisa per più thread)
+     * @return Indice mappato
+     * @throws IOException Se il file non può essere letto
+     */
+    public static OffHeapKDTreeIndex map(Path path, Arena arena) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OffHeapKDTreeIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+        }
+    }
+
+    /**
+     * Salva l'indice su file con lo stesso formato del segmento, per ricaricarlo con {@link #map(Path, Arena)}.
+     *
+     * @param path File di destinazione (sovrascritto se esiste)
+     * @throws IOException Se il file non può essere scritto
+     */
+    public void save(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Arena arena = Arena.ofConfined()) {
+            MemorySegment target = channel.map(FileChannel.MapMode.READ_WRITE, 0, segment.byteSize(), arena);
+            MemorySegment.copy(segment, 0, target, 0, segment.byteSize());
+            target.force();
+        }
+    }
+
+    @Override
+    public int query(double[] target, int k, NeighborHeap heap) {
+        heap.reset(k);
+        if (root < 0 || k <= 0) {
+            return 0;
+        }
+
+        if (transform != null) {
+            double[] normalized = heap.queryBuffer(dimensions);
+            double rootRank = normalizeQuery(target, normalized);
+            visit(root, normalized, heap, rootRank);
+        } else {
+            searchKNN(root, target, heap);
+        }
+
+        int count = heap.sortAscending();
+        for (int i = 0; i < count; i++) {
+            heap.setDistance(i, kernel.toDistance(heap.getDistance(i)));
+        }
+        return count;
+    }
+
+    /**
+     * Normalizza la query nel buffer calcolando nella stessa passata la distanza dalla radice
+     * (stesso ordine delle somme di {@link KDTreeIndex}, quindi risultati identici).
+     */
+    private double normalizeQuery(double[] target, double[] out) {
+        long base = (long) root * dimensions;
+        double acc = 0.0;
+        for (int i = 0; i < dimensions; i++) {
+            double q = transform.apply(i, target[i]);
+            out[i] = q;
+            double d = coords.getAtIndex(DOUBLE, base + i) - q;
+            switch (kernel) {
+                case L1 -> acc += Math.abs(d);
+                case LINF -> acc = Math.abs(d) > acc ? Math.abs(d) : acc;
+                default -> acc += d * d;
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Ricerca ricorsiva dei K vicini più prossimi, con le letture dei nodi e delle coordinate dal segmento.
+     */
+    private void searchKNN(int node, double[] target, NeighborHeap heap) {
+        visit(node, target, heap, rank(target, (long) node * dimensions));
+    }
+
+    /**
+     * Visita un nodo di cui è già nota la distanza di ordinamento dal target.
+     */
+    private void visit(int node, double[] target, NeighborHeap heap, double rank) {
+        long nodeBase = (long) node * NODE_INTS;
+        long base = (long) node * dimensions;
+        heap.offer(nodes.getAtIndex(INT, nodeBase), rank);
+
+        // Determina quale sottoalbero esplorare per primo
+        int splitDim = nodes.getAtIndex(INT, nodeBase + 1);
+        double diff = target[splitDim] - coords.getAtIndex(DOUBLE, base + splitDim);
+        int left = nodes.getAtIndex(INT, nodeBase + 2);
+        int right = nodes.getAtIndex(INT, nodeBase + 3);
+        int firstChild = diff <= 0 ? left : right;
+        int secondChild = diff <= 0 ? right : left;
+
+        if (firstChild >= 0) {
+            searchKNN(firstChild, target, heap);
+        }
+
+        // Esplora l'altro sottoalbero solo se il piano di split è più vicino del peggiore
+        if (secondChild >= 0 && kernel.planeBound(diff) < heap.worstDistance()) {
+            searchKNN(secondChild, target, heap);
+        }
+    }
+
+    /**
+     * Distanza di ordinamento della metrica tra il target e il punto memorizzato a partire da base.
+     * Con 14 features somma indici pari e dispari in due accumulatori come i nuclei srotolati
+     * di {@link DistanceKernel}, così le distanze coincidono con quelle dell'indice sullo heap.
+     */
+    private double rank(double[] target, long base) {
+        if (kernel == DistanceKernel.LINF) {
+            double max = 0.0;
+            for (int i = 0; i < dimensions; i++) {
+                double d = Math.abs(coords.getAtIndex(DOUBLE, base + i) - target[i]);
+                max = d > max ? d : max;
+            }
+            return max;
+        }
+        if (dimensions != DistanceKernel.UNROLLED_DIMENSIONS) {
+            return partialRank(target, base, 0, 1);
+        }
+        return partialRank(target, base, 0, 2) + partialRank(target, base, 1, 2);
+    }
+
+    /**
+     * Somma dei termini della metrica (L1 o quadratici) sulle features from, from + step, ...
+     */
+    private double partialRank(double[] target, long base, int from, int step) {
+        double acc = 0.0;
+        if (kernel == DistanceKernel.L1) {
+            for (int i = from; i < dimensions; i += step) {
+                acc += Math.abs(coords.getAtIndex(DOUBLE, base + i) - target[i]);
+            }
+        } else {
+            for (int i = from; i < dimensions; i += step) {
+                double d = coords.getAtIndex(DOUBLE, base + i) - target[i];
+                acc += d * d;
+            }
+        }
+        return acc;
+    }
+
+    private static double[] readDoubles(MemorySegment segment, long offset, int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = segment.get(DOUBLE, offset + (long) i * Double.BYTES);
+        }
+        return values;
+    }
+
+    private static void writeDoubles(MemorySegment segment, long offset, double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            segment.set(DOUBLE, offset + (long) i * Double.BYTES, values[i]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public DistanceKernel getKernel() {
+        return kernel;
+    }
+
+    @Override
+    public FeatureNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * Restituisce la memoria occupata dall'indice fuori heap.
+     *
+     * @return Dimensione del segmento in byte
+     */
+    public long byteSize() {
+        return segment.byteSize();
+    }
+
+    @Override
+    public int height() {
+        return height(root);
+    }
+
+    private int height(int node) {
+        if (node < 0) {
+            return 0;
+        }
+        long nodeBase = (long) node * NODE_INTS;
+        return 1 + Math.max(height(nodes.getAtIndex(INT, nodeBase + 2)), height(nodes.getAtIndex(INT, nodeBase + 3)));
+    }
+}
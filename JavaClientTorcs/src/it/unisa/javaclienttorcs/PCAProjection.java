@@ -0,0 +1,292 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+
+/**
+ * Proiezione PCA delle features su un numero ridotto di componenti principali, calcolata offline
+ * sui dati di training. I dieci sensori di pista sottocampionati sono fortemente correlati tra loro:
+ * poche componenti mantengono quasi tutta la varianza e il KD-tree lavora in meno dimensioni,
+ * dove la potatura è più efficace.
+ *
+ * La proiezione parte dalle features grezze: applica la trasformazione dell'indice
+ * (normalizzazione ed eventuali pesi della metrica pesata), sottrae la media e moltiplica per gli
+ * autovettori della matrice di covarianza con gli autovalori maggiori. Con il whitening ogni
+ * componente viene anche divisa per la propria deviazione standard. La matrice è memorizzata
+ * trasposta (una riga per feature di ingresso), così la proiezione di una query scorre le
+ * features una sola volta e non alloca.
+ */
+public final class PCAProjection {
+
+    /** Iterazioni massime del metodo di Jacobi (ogni iterazione è una passata su tutte le coppie) */
+    private static final int MAX_SWEEPS = 64;
+
+    /** Autovalori relativi sotto questa soglia sono considerati nulli (nessuno scaling nel whitening) */
+    private static final double EPSILON = 1e-12;
+
+    private final FeatureNormalizer transform;
+    private final int inputDimensions;
+    private final int outputDimensions;
+    private final double[] mean;
+    private final double[] basis;
+    private final double[] eigenvalues;
+    private final boolean whiten;
+
+    private PCAProjection(FeatureNormalizer transform, int outputDimensions, double[] mean, double[] basis,
+                          double[] eigenvalues, boolean whiten) {
+        this.transform = transform;
+        this.inputDimensions = mean.length;
+        this.outputDimensions = outputDimensions;
+        this.mean = mean;
+        this.basis = basis;
+        this.eigenvalues = eigenvalues;
+        this.whiten = whiten;
+    }
+
+    /**
+     * Calcola la proiezione sulle prime componenti principali dei dati.
+     *
+     * @param rows Features grezze del training (una riga per punto)
+     * @param transform Trasformazione applicata prima della proiezione, null per valori grezzi
+     * @param components Numero di componenti da mantenere (tra 1 e il numero di features)
+     * @param whiten true per dividere ogni componente per la propria deviazione standard
+     * @return Proiezione calcolata
+     * @throws IllegalArgumentException Se non ci sono dati o il numero di componenti non è valido
+     */
+    public static PCAProjection fit(double[][] rows, FeatureNormalizer transform, int components, boolean whiten) {
+        if (rows.length == 0) {
+            throw new IllegalArgumentException("La PCA richiede almeno un punto di training");
+        }
+        int d = rows[0].length;
+        if (components < 1 || components > d) {
+            throw new IllegalArgumentException("Numero di componenti non valido: " + components
+                + " (features: " + d + ")");
+        }
+
+        // Media e covarianza nello spazio trasformato, in due passate per stabilità numerica
+        double[] mean = new double[d];
+        for (double[] row : rows) {
+            for (int i = 0; i < d; i++) {
+                mean[i] += value(transform, i, row[i]);
+            }
+        }
+        for (int i = 0; i < d; i++) {
+            mean[i] /= rows.length;
+        }
+
+        double[][] covariance = new double[d][d];
+        double[] centered = new double[d];
+        for (double[] row : rows) {
+            for (int i = 0; i < d; i++) {
+                centered[i] = value(transform, i, row[i]) - mean[i];
+            }
+            for (int i = 0; i < d; i++) {
+                for (int j = i; j < d; j++) {
+                    covariance[i][j] += centered[i] * centered[j];
+                }
+            }
+        }
+        for (int i = 0; i < d; i++) {
+            for (int j = i; j < d; j++) {
+                covariance[i][j] /= rows.length;
+                covariance[j][i] = covariance[i][j];
+            }
+        }
+
+        double[][] vectors = new double[d][d];
+        double[] values = jacobi(covariance, vectors);
+
+        // Ordina le componenti per autovalore decrescente
+        Integer[] rank = new Integer[d];
+        for (int i = 0; i < d; i++) {
+            rank[i] = i;
+        }
+        Arrays.sort(rank, (a, b) -> Double.compare(values[b], values[a]));
+
+        double largest = Math.max(values[rank[0]], 0.0);
+        double[] eigenvalues = new double[d];
+        double[] basis = new double[d * components];
+        for (int c = 0; c < d; c++) {
+            eigenvalues[c] = Math.max(values[rank[c]], 0.0);
+            if (c >= components) {
+                continue;
+            }
+            double scale = 1.0;
+            if (whiten && eigenvalues[c] > EPSILON * largest) {
+                scale = 1.0 / Math.sqrt(eigenvalues[c]);
+            }
+            for (int i = 0; i < d; i++) {
+                basis[i * components + c] = vectors[i][rank[c]] * scale;
+            }
+        }
+        return new PCAProjection(transform, components, mean, basis, eigenvalues, whiten);
+    }
+
+    /**
+     * Metodo di Jacobi ciclico per matrici simmetriche: annulla gli elementi fuori diagonale con
+     * rotazioni successive. La matrice viene distrutta; al termine le colonne di vectors sono
+     * gli autovettori.
+     *
+     * @param a Matrice simmetrica (modificata)
+     * @param vectors Matrice di output degli autovettori (per colonne)
+     * @return Autovalori, nello stesso ordine delle colonne
+     */
+    private static double[] jacobi(double[][] a, double[][] vectors) {
+        int n = a.length;
+        for (int i = 0; i < n; i++) {
+            vectors[i][i] = 1.0;
+        }
+
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            double off = 0.0;
+            double diagonal = 0.0;
+            for (int i = 0; i < n; i++) {
+                diagonal += a[i][i] * a[i][i];
+                for (int j = i + 1; j < n; j++) {
+                    off += a[i][j] * a[i][j];
+                }
+            }
+            if (off <= EPSILON * EPSILON * diagonal) {
+                break;
+            }
+
+            for (int p = 0; p < n; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    if (a[p][q] == 0.0) {
+                        continue;
+                    }
+                    double theta = (a[q][q] - a[p][p]) / (2.0 * a[p][q]);
+                    double t = theta == 0.0 ? 1.0
+                        : Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1.0));
+                    double c = 1.0 / Math.sqrt(t * t + 1.0);
+                    double s = t * c;
+
+                    for (int k = 0; k < n; k++) {
+                        double akp = a[k][p];
+                        double akq = a[k][q];
+                        a[k][p] = c * akp - s * akq;
+                        a[k][q] = s * akp + c * akq;
+                    }
+                    for (int k = 0; k < n; k++) {
+                        double apk = a[p][k];
+                        double aqk = a[q][k];
+                        a[p][k] = c * apk - s * aqk;
+                        a[q][k] = s * apk + c * aqk;
+                    }
+                    for (int k = 0; k < n; k++) {
+                        double vkp = vectors[k][p];
+                        double vkq = vectors[k][q];
+                        vectors[k][p] = c * vkp - s * vkq;
+                        vectors[k][q] = s * vkp + c * vkq;
+                    }
+                }
+            }
+        }
+
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = a[i][i];
+        }
+        return values;
+    }
+
+    private static double value(FeatureNormalizer transform, int i, double v) {
+        return transform == null ? v : transform.apply(i, v);
+    }
+
+    /**
+     * Proietta un vettore di features grezze nel buffer indicato, senza allocare.
+     *
+     * @param features Features grezze
+     * @param out Buffer di output (almeno {@link #getOutputDimensions()} elementi)
+     * @return Il buffer di output
+     */
+    public double[] project(double[] features, double[] out) {
+        int m = outputDimensions;
+        for (int j = 0; j < m; j++) {
+            out[j] = 0.0;
+        }
+        for (int i = 0; i < inputDimensions; i++) {
+            double x = value(transform, i, features[i]) - mean[i];
+            int base = i * m;
+            for (int j = 0; j < m; j++) {
+                out[j] += basis[base + j] * x;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Proietta una matrice di features grezze (costruzione dell'indice).
+     *
+     * @param rows Features grezze (una riga per punto)
+     * @return Nuova matrice delle features proiettate
+     */
+    public double[][] projectAll(double[][] rows) {
+        double[][] projected = new double[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            projected[i] = project(rows[i], new double[outputDimensions]);
+        }
+        return projected;
+    }
+
+    /**
+     * Restituisce il numero di features in ingresso.
+     *
+     * @return Features grezze
+     */
+    public int getInputDimensions() {
+        return inputDimensions;
+    }
+
+    /**
+     * Restituisce il numero di componenti mantenute.
+     *
+     * @return Dimensioni dopo la proiezione
+     */
+    public int getOutputDimensions() {
+        return outputDimensions;
+    }
+
+    /**
+     * Indica se le componenti sono divise per la propria deviazione standard.
+     *
+     * @return true con whitening
+     */
+    public boolean isWhitened() {
+        return whiten;
+    }
+
+    /**
+     * Restituisce la frazione della varianza totale spiegata dalle componenti mantenute.
+     *
+     * @return Varianza mantenuta, tra 0 e 1
+     */
+    public double getVarianceRetained() {
+        double total = 0.0;
+        double kept = 0.0;
+        for (int c = 0; c < eigenvalues.length; c++) {
+            total += eigenvalues[c];
+            if (c < outputDimensions) {
+                kept += eigenvalues[c];
+            }
+        }
+        return total > 0 ? kept / total : 1.0;
+    }
+
+    /**
+     * Restituisce gli autovalori della covarianza (varianza di ogni componente) in ordine decrescente,
+     * comprese le componenti scartate.
+     *
+     * @return Copia degli autovalori
+     */
+    public double[] getEigenvalues() {
+        return eigenvalues.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PCAProjection{%d -> %d dimensioni, varianza mantenuta=%.2f%%%s}",
+                             inputDimensions, outputDimensions, getVarianceRetained() * 100.0,
+                             whiten ? ", whitening" : "");
+    }
+}
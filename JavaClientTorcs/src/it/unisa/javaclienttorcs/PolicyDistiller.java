@@ -0,0 +1,430 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Distillazione di una politica KNN in una rete MLP piccola, con inferenza a costo costante.
+ * Il maestro ({@link KNNDriver} o {@link KNNClassifierDriver}) etichetta gli stati registrati e stati
+ * campionati attorno a essi (righe del dataset con rumore gaussiano proporzionale alla dispersione di
+ * ogni feature), con ricerche a lotti in parallelo sul pool; lo studente è addestrato con {@link MLPTrainer} a riprodurre
+ * le azioni del maestro e si usa come {@link Controller} tramite {@link MLPDriver}.
+ *
+ * Il costo di una decisione del maestro cresce con il dataset (ricerca dei vicini), quello dello
+ * studente dipende solo dai layer: il report mette accanto l'accordo con il maestro e la latenza
+ * della decisione di entrambi, sulle righe tenute da parte.
+ */
+public class PolicyDistiller {
+
+    private static final int INPUTS = KNNDataset.FEATURE_COUNT;
+    private static final int OUTPUTS = 3;
+
+    /** Stati per ricerca a lotti: limita la memoria dei vicini (K indici e distanze per stato) */
+    private static final int LABEL_BLOCK = 1 << 16;
+
+    private final KNNDriver regressor;
+    private final KNNClassifierDriver classifier;
+    private final ForkJoinPool pool;
+    private int augment = 2;
+    private double noise = 0.05;
+    private long seed = 42;
+
+    /**
+     * Prepara la distillazione di un regressore KNN (azioni continue).
+     *
+     * @param teacher Regressore già costruito
+     * @param pool Pool su cui interrogare il maestro in parallelo
+     */
+    public PolicyDistiller(KNNDriver teacher, ForkJoinPool pool) {
+        this.regressor = teacher;
+        this.classifier = null;
+        this.pool = pool;
+    }
+
+    /**
+     * Prepara la distillazione di un classificatore KNN (azioni discrete di {@link DrivingAction}).
+     *
+     * @param teacher Classificatore già costruito (con o senza tabella di decisione)
+     * @param pool Pool su cui interrogare il maestro in parallelo
+     */
+    public PolicyDistiller(KNNClassifierDriver teacher, ForkJoinPool pool) {
+        this.regressor = null;
+        this.classifier = teacher;
+        this.pool = pool;
+    }
+
+    /**
+     * Imposta il numero di stati campionati per ogni stato registrato (2 di default).
+     *
+     * @param augment Copie perturbate per riga (0 per usare solo gli stati registrati)
+     */
+    public void setAugment(int augment) {
+        this.augment = Math.max(0, augment);
+    }
+
+    /**
+     * Imposta l'ampiezza del rumore degli stati campionati, come frazione della deviazione
+     * standard di ogni feature (0.05 di default).
+     *
+     * @param noise Frazione della deviazione standard
+     */
+    public void setNoise(double noise) {
+        this.noise = Math.max(0.0, noise);
+    }
+
+    /**
+     * Imposta il seme per il campionamento degli stati.
+     *
+     * @param seed Seme del generatore
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Restituisce gli stati registrati seguiti da {@link #setAugment(int)} copie perturbate di ognuno.
+     * I sensori restano non negativi e la posizione sulla pista nei limiti dei dati.
+     *
+     * @param recorded Features grezze degli stati registrati
+     * @return Stati da etichettare (gli array registrati non vengono copiati)
+     */
+    public double[][] sampleStates(double[][] recorded) {
+        int n = recorded.length;
+        double[] min = new double[INPUTS];
+        double[] max = new double[INPUTS];
+        double[] std = new double[INPUTS];
+        double[] mean = new double[INPUTS];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (double[] row : recorded) {
+            for (int i = 0; i < INPUTS; i++) {
+                min[i] = Math.min(min[i], row[i]);
+                max[i] = Math.max(max[i], row[i]);
+                mean[i] += row[i] / n;
+            }
+        }
+        for (double[] row : recorded) {
+            for (int i = 0; i < INPUTS; i++) {
+                std[i] += (row[i] - mean[i]) * (row[i] - mean[i]) / n;
+            }
+        }
+        for (int i = 0; i < INPUTS; i++) {
+            std[i] = Math.sqrt(std[i]) * noise;
+        }
+
+        double[][] states = Arrays.copyOf(recorded, n * (1 + augment));
+        Random random = new Random(seed);
+        for (int copy = 1; copy <= augment; copy++) {
+            for (int r = 0; r < n; r++) {
+                double[] state = recorded[r].clone();
+                for (int i = 0; i < INPUTS; i++) {
+                    state[i] = Math.max(min[i], Math.min(max[i], state[i] + random.nextGaussian() * std[i]));
+                }
+                states[copy * n + r] = state;
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Etichetta gli stati con le azioni del maestro tramite le ricerche a lotti sul pool
+     * ({@link KNNDriver#predictBatch} e {@link KNNClassifierDriver#predictClassBatch}), a blocchi di
+     * {@link #LABEL_BLOCK} stati. Le etichette sono le stesse del tick di guida (voto pesato e tabella
+     * di decisione compresi).
+     *
+     * @param states Features grezze
+     * @return Azioni del maestro per righe (steering, acceleration, brake)
+     */
+    public double[] label(double[][] states) {
+        double[] labels = new double[states.length * OUTPUTS];
+        for (int from = 0; from < states.length; from += LABEL_BLOCK) {
+            double[][] block = Arrays.copyOfRange(states, from, Math.min(states.length, from + LABEL_BLOCK));
+            if (regressor != null) {
+                double[] actions = new double[block.length * OUTPUTS];
+                regressor.predictBatch(block, actions, pool);
+                System.arraycopy(actions, 0, labels, from * OUTPUTS, actions.length);
+            } else {
+                DrivingAction[] predicted = classifier.predictClassBatch(block, pool);
+                for (int s = 0; s < block.length; s++) {
+                    int base = (from + s) * OUTPUTS;
+                    labels[base] = predicted[s].getSteering();
+                    labels[base + 1] = predicted[s].getAcceleration();
+                    labels[base + 2] = predicted[s].getBrake();
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Decisione del maestro per uno stato, con il percorso del tick di guida (per la misura della latenza).
+     */
+    private void teacherAction(double[] state, double[] action) {
+        if (regressor != null) {
+            regressor.predict(state, action);
+        } else {
+            DrivingAction predicted = classifier.predictClass(state);
+            action[0] = predicted.getSteering();
+            action[1] = predicted.getAcceleration();
+            action[2] = predicted.getBrake();
+        }
+    }
+
+    /**
+     * Addestra lo studente sugli stati etichettati dal maestro.
+     *
+     * @param states Features grezze
+     * @param labels Azioni del maestro restituite da {@link #label(double[][])}
+     * @param trainer Addestratore configurato con i layer dello studente
+     * @return Studente da usare con {@link MLPDriver}
+     */
+    public MLPModel distill(double[][] states, double[] labels, MLPTrainer trainer) {
+        double[] features = new double[states.length * INPUTS];
+        for (int s = 0; s < states.length; s++) {
+            System.arraycopy(states[s], 0, features, s * INPUTS, INPUTS);
+        }
+        return trainer.train(new MLPTrainer.Samples(features, labels, states.length));
+    }
+
+    /**
+     * Confronta studente e maestro sugli stati indicati: errore medio assoluto rispetto alle azioni
+     * del maestro, accordo sulla classe di azione ({@link DrivingAction#fromContinuous}) e, se
+     * disponibili, accuratezza rispetto alle classi registrate; poi la latenza di una decisione di
+     * entrambi, misurata in sequenza sullo stesso thread.
+     *
+     * @param label Etichetta della riga del report
+     * @param student Studente distillato
+     * @param states Features grezze
+     * @param recordedClasses Classi registrate degli stati, o null
+     */
+    public void report(String label, MLPModel student, double[][] states, DrivingAction[] recordedClasses) {
+        int n = states.length;
+        if (n == 0) {
+            System.out.printf("[DISTILL] %-5s | nessuno stato da confrontare%n", label);
+            return;
+        }
+        double[] teacherLabels = label(states);
+        double[] output = new double[OUTPUTS];
+        double[] workspace = student.newWorkspace();
+        double[] absErrors = new double[OUTPUTS];
+        int agree = 0;
+        int teacherCorrect = 0;
+        int studentCorrect = 0;
+        for (int s = 0; s < n; s++) {
+            student.predict(states[s], output, workspace);
+            clamp(output);
+            int base = s * OUTPUTS;
+            for (int o = 0; o < OUTPUTS; o++) {
+                absErrors[o] += Math.abs(output[o] - teacherLabels[base + o]);
+            }
+            DrivingAction teacherClass = DrivingAction.fromContinuous(
+                teacherLabels[base], teacherLabels[base + 1], teacherLabels[base + 2]);
+            DrivingAction studentClass = DrivingAction.fromContinuous(output[0], output[1], output[2]);
+            if (teacherClass == studentClass) {
+                agree++;
+            }
+            if (recordedClasses != null) {
+                teacherCorrect += teacherClass == recordedClasses[s] ? 1 : 0;
+                studentCorrect += studentClass == recordedClasses[s] ? 1 : 0;
+            }
+        }
+        System.out.printf("[DISTILL] %-5s | %6d stati | accordo sulla classe %5.1f%% | MAE steering %.4f"
+            + " acceleration %.4f brake %.4f%n", label, n, agree * 100.0 / n,
+            absErrors[0] / n, absErrors[1] / n, absErrors[2] / n);
+        if (recordedClasses != null) {
+            System.out.printf("[DISTILL] %-5s | accuratezza sulle classi registrate: maestro %5.1f%% | studente %5.1f%%%n",
+                label, teacherCorrect * 100.0 / n, studentCorrect * 100.0 / n);
+        }
+
+        long[] teacherNanos = new long[n];
+        long[] studentNanos = new long[n];
+        double[] action = new double[OUTPUTS];
+        // Un passaggio di riscaldamento per il JIT, poi la misura
+        for (int pass = 0; pass < 2; pass++) {
+            for (int s = 0; s < n; s++) {
+                long t0 = System.nanoTime();
+                teacherAction(states[s], action);
+                long t1 = System.nanoTime();
+                student.predict(states[s], output, workspace);
+                long t2 = System.nanoTime();
+                teacherNanos[s] = t1 - t0;
+                studentNanos[s] = t2 - t1;
+            }
+        }
+        Arrays.sort(teacherNanos);
+        Arrays.sort(studentNanos);
+        System.out.printf("[DISTILL] %-5s | latenza per tick: maestro p50 %.2f us p99 %.2f us | studente p50 %.2f us"
+            + " p99 %.2f us | %.0fx%n", label, teacherNanos[n / 2] / 1e3, teacherNanos[n * 99 / 100] / 1e3,
+            studentNanos[n / 2] / 1e3, studentNanos[n * 99 / 100] / 1e3,
+            (double) teacherNanos[n / 2] / Math.max(1L, studentNanos[n / 2]));
+    }
+
+    /**
+     * Limita le uscite dello studente ai range delle azioni, come fa il maestro.
+     */
+    private static void clamp(double[] action) {
+        action[0] = Math.max(-1.0, Math.min(1.0, action[0]));
+        action[1] = Math.max(0.0, Math.min(1.0, action[1]));
+        action[2] = Math.max(0.0, Math.min(1.0, action[2]));
+    }
+
+    /**
+     * Distilla il regressore o il classificatore KNN costruito su un dataset e salva lo studente.
+     *
+     * @param args train:&lt;dataset.csv&gt; [teacher:knn|classifier] [output:&lt;studente.bin&gt;]
+     *             [test:&lt;dataset.csv&gt;] [holdout:0.1] [k:15] [normalization:fixed|minmax|zscore]
+     *             [metric:...] [weights:...] [policy:&lt;tabella.bin&gt;] [augment:2] [noise:0.05]
+     *             [hidden:16-8] [epochs:200] [batch:512] [threads:N] [seed:42]
+     */
+    public static void main(String[] args) {
+        String trainPath = null;
+        String outputPath = null;
+        String testPath = null;
+        String policyPath = null;
+        boolean classifierTeacher = false;
+        double holdout = 0.1;
+        int k = 15;
+        FeatureNormalizer.Mode normalizationMode = FeatureNormalizer.Mode.FIXED;
+        DistanceKernel kernel = DistanceKernel.SQUARED_L2;
+        double[] weights = null;
+        int augment = 2;
+        double noise = 0.05;
+        int[] hidden = { 16, 8 };
+        int epochs = 200;
+        int batch = 512;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+
+        for (String arg : args) {
+            int sep = arg.indexOf(':');
+            if (sep <= 0) {
+                System.err.println("[DISTILL] Parametro non riconosciuto: " + arg);
+                continue;
+            }
+            String key = arg.substring(0, sep);
+            String value = arg.substring(sep + 1);
+            switch (key) {
+                case "train" -> trainPath = value;
+                case "teacher" -> classifierTeacher = switch (value.toLowerCase()) {
+                    case "knn", "regressor" -> false;
+                    case "classifier" -> true;
+                    default -> throw new IllegalArgumentException("Maestro non supportato: " + value);
+                };
+                case "output" -> outputPath = value;
+                case "test" -> testPath = value;
+                case "holdout" -> holdout = Double.parseDouble(value);
+                case "k" -> k = Integer.parseInt(value);
+                case "normalization" -> normalizationMode = FeatureNormalizer.Mode.fromName(value);
+                case "metric" -> kernel = DistanceKernel.fromName(value);
+                case "weights" -> weights = DistanceKernel.parseWeights(value);
+                case "policy" -> policyPath = value;
+                case "augment" -> augment = Integer.parseInt(value);
+                case "noise" -> noise = Double.parseDouble(value);
+                case "hidden" -> hidden = Arrays.stream(value.split("-")).mapToInt(Integer::parseInt).toArray();
+                case "epochs" -> epochs = Integer.parseInt(value);
+                case "batch" -> batch = Integer.parseInt(value);
+                case "threads" -> threads = Integer.parseInt(value);
+                case "seed" -> seed = Long.parseLong(value);
+                default -> System.err.println("[DISTILL] Parametro non riconosciuto: " + arg);
+            }
+        }
+
+        if (trainPath == null) {
+            System.out.println("Uso: java PolicyDistiller train:<dataset.csv> [teacher:knn|classifier] [output:<studente.bin>]");
+            System.out.println("       [test:<dataset.csv>] [holdout:0.1] [k:15] [normalization:fixed|minmax|zscore] [metric:...]");
+            System.out.println("       [weights:w0,...,w13] [policy:<tabella.bin>] [augment:2] [noise:0.05] [hidden:16-8]");
+            System.out.println("       [epochs:200] [batch:512] [threads:N] [seed:42]");
+            System.out.println("  holdout: quota di righe escluse dal maestro e dallo studente per il report (senza test)");
+            System.out.println("  Lo studente si usa con MLPDriver (model:<studente.bin> nel Client)");
+            return;
+        }
+        if (outputPath == null) {
+            outputPath = TelemetryFile.derivedPath(trainPath, "_student.bin");
+        }
+        if (TelemetryFile.samePath(trainPath, outputPath)) {
+            System.err.println("[DISTILL] Il file di output coincide con il dataset di input: " + outputPath);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            KNNDataset dataset = KNNDataset.load(trainPath);
+            int[] rows = dataset.allRows();
+            int[] trainRows = rows;
+            int[] reportRows = new int[0];
+            KNNDataset reportSet = dataset;
+            if (testPath != null) {
+                reportSet = KNNDataset.load(testPath);
+                reportRows = reportSet.allRows();
+            } else if (holdout > 0) {
+                Random random = new Random(seed);
+                for (int i = rows.length - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = rows[i];
+                    rows[i] = rows[j];
+                    rows[j] = tmp;
+                }
+                int held = (int) Math.round(rows.length * Math.min(0.5, holdout));
+                reportRows = Arrays.copyOfRange(rows, 0, held);
+                trainRows = Arrays.copyOfRange(rows, held, rows.length);
+            }
+
+            KNNConfig config = new KNNConfig(k, trainPath, true, classifierTeacher);
+            config.setNormalizationMode(normalizationMode);
+            config.setDistanceKernel(kernel);
+            config.setFeatureWeights(weights);
+            long start = System.nanoTime();
+            PolicyDistiller distiller;
+            if (classifierTeacher) {
+                KNNClassifierDriver teacher = new KNNClassifierDriver(config, dataset.toClassifierPoints(trainRows));
+                if (policyPath != null) {
+                    teacher.loadPolicyTable(policyPath);
+                }
+                distiller = new PolicyDistiller(teacher, pool);
+            } else {
+                distiller = new PolicyDistiller(new KNNDriver(config, dataset.toDataPoints(trainRows)), pool);
+            }
+            distiller.setAugment(augment);
+            distiller.setNoise(noise);
+            distiller.setSeed(seed);
+
+            double[][] recorded = new double[trainRows.length][];
+            for (int i = 0; i < trainRows.length; i++) {
+                recorded[i] = dataset.getFeatures(trainRows[i]);
+            }
+            double[][] states = distiller.sampleStates(recorded);
+            double[] labels = distiller.label(states);
+            System.out.printf("[DISTILL] Maestro %s (K=%d, %d punti): %d stati etichettati in %.2f s%n",
+                classifierTeacher ? "KNNClassifierDriver" : "KNNDriver", k, trainRows.length, states.length,
+                (System.nanoTime() - start) / 1e9);
+
+            MLPTrainer trainer = new MLPTrainer(hidden, pool);
+            trainer.setMaxEpochs(epochs);
+            trainer.setBatchSize(batch);
+            trainer.setSeed(seed);
+            MLPModel student = distiller.distill(states, labels, trainer);
+            System.out.println("[DISTILL] Studente: " + student);
+
+            distiller.report("TRAIN", student, Arrays.copyOf(recorded, Math.min(recorded.length, 20000)), null);
+            if (reportRows.length > 0) {
+                double[][] reportStates = new double[reportRows.length][];
+                DrivingAction[] reportClasses = new DrivingAction[reportRows.length];
+                for (int i = 0; i < reportRows.length; i++) {
+                    reportStates[i] = reportSet.getFeatures(reportRows[i]);
+                    reportClasses[i] = reportSet.getActionClass(reportRows[i]);
+                }
+                distiller.report("TEST", student, reportStates, reportClasses);
+            }
+
+            student.save(Path.of(outputPath));
+            System.out.println("[DISTILL] Studente salvato in " + outputPath);
+        } catch (IOException e) {
+            System.err.println("[DISTILL] Errore: " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Tabella di decisione precompilata per {@link KNNClassifierDriver}.
+ * Lo spazio delle features è diviso in una griglia regolare (stesso numero di intervalli per ogni
+ * feature, tra minimo e massimo del dataset; i valori esterni finiscono nelle celle di bordo).
+ * Solo le celle visitate dal compilatore ({@link PolicyTableCompiler}) sono memorizzate, in una
+ * tabella hash ad indirizzamento aperto su array primitivi: per ognuna la classe decisa dal
+ * classificatore, oppure l'indicazione che la cella è ambigua.
+ * Una ricerca costa O(numero di features) e non alloca memoria; se la cella manca o è ambigua
+ * il driver ricade sulla ricerca KNN esatta.
+ * Poiché la normalizzazione è affine per feature, la griglia sulle features grezze coincide con
+ * una griglia regolare nello spazio normalizzato del classificatore.
+ * La tabella ricorda K e la normalizzazione del classificatore per cui è stata compilata, così
+ * {@link KNNClassifierDriver#setPolicyTable(PolicyTable)} rifiuta una tabella compilata per un altro.
+ */
+public final class PolicyTable {
+
+    /** Risultato di {@link #lookup(double[])} per celle assenti o ambigue */
+    public static final int MISS = -1;
+
+    /** Decisione memorizzata per le celle in cui i campioni non concordano */
+    private static final byte AMBIGUOUS = MISS;
+
+    /** Chiave delle posizioni libere (non ottenibile da una cella: i bit usati sono al più 63) */
+    private static final long EMPTY = -1L;
+
+    private static final int MAGIC = 0x504F4C54; // "POLT"
+    private static final int VERSION = 2;
+
+    private final int dimensions;
+    private final int bins;
+    private final int k;
+    private final FeatureNormalizer.Mode normalization;
+    private final int bitsPerFeature;
+    private final double[] low;
+    private final double[] width;
+    private final double[] inverseWidth;
+
+    private long[] keys;
+    private byte[] decisions;
+    private int shift;
+    private int cells;
+    private int ambiguousCells;
+
+    /**
+     * Crea una tabella vuota con la griglia indicata.
+     *
+     * @param low Estremo inferiore della griglia per ogni feature
+     * @param width Ampiezza di un intervallo per ogni feature (positiva)
+     * @param bins Intervalli per feature
+     * @param expectedCells Numero di celle previsto (per dimensionare la tabella)
+     * @param k K del classificatore per cui la tabella è compilata
+     * @param normalization Normalizzazione del classificatore, null se lavora su valori grezzi
+     */
+    PolicyTable(double[] low, double[] width, int bins, int expectedCells, int k, FeatureNormalizer.Mode normalization) {
+        if (bins < 1) {
+            throw new IllegalArgumentException("La griglia richiede almeno un intervallo per feature");
+        }
+        this.dimensions = low.length;
+        this.bins = bins;
+        this.k = k;
+        this.normalization = normalization;
+        this.bitsPerFeature = Math.max(1, 32 - Integer.numberOfLeadingZeros(bins - 1));
+        if ((long) bitsPerFeature * dimensions > 63) {
+            throw new IllegalArgumentException("Troppi intervalli (" + bins + ") per " + dimensions
+                + " features: la chiave di una cella supera i 63 bit");
+        }
+        this.low = low.clone();
+        this.width = width.clone();
+        this.inverseWidth = new double[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            inverseWidth[d] = 1.0 / width[d];
+        }
+        // Potenza di due con fattore di carico al più 1/2
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(1, expectedCells) * 4 - 1)));
+    }
+
+    /**
+     * Crea una tabella vuota con la griglia adattata all'intervallo dei dati.
+     *
+     * @param rows Features grezze del dataset
+     * @param bins Intervalli per feature
+     * @param k K del classificatore per cui la tabella è compilata
+     * @param normalization Normalizzazione del classificatore, null se lavora su valori grezzi
+     * @return Tabella vuota
+     */
+    static PolicyTable forData(double[][] rows, int bins, int k, FeatureNormalizer.Mode normalization) {
+        int dimensions = rows[0].length;
+        double[] low = new double[dimensions];
+        double[] width = new double[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double[] row : rows) {
+                min = Math.min(min, row[d]);
+                max = Math.max(max, row[d]);
+            }
+            low[d] = min;
+            // Feature costante: un solo intervallo di ampiezza unitaria
+            width[d] = max > min ? (max - min) / bins : 1.0;
+        }
+        return new PolicyTable(low, width, bins, rows.length, k, normalization);
+    }
+
+    /**
+     * Restituisce la classe decisa per la cella che contiene le features indicate.
+     * Non alloca memoria.
+     *
+     * @param features Features grezze (14 valori)
+     * @return Ordinale della classe di {@link DrivingAction}, o {@link #MISS} se la cella è assente o ambigua
+     */
+    public int lookup(double[] features) {
+        long key = cellKey(features);
+        int mask = keys.length - 1;
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long stored = keys[slot];
+            if (stored == key) {
+                return decisions[slot];
+            }
+            if (stored == EMPTY) {
+                return MISS;
+            }
+        }
+    }
+
+    /**
+     * Calcola la chiave della cella che contiene le features indicate.
+     *
+     * @param features Features grezze
+     * @return Chiave della cella (indici degli intervalli impacchettati)
+     */
+    long cellKey(double[] features) {
+        long key = 0L;
+        for (int d = 0; d < dimensions; d++) {
+            int bin = (int) ((features[d] - low[d]) * inverseWidth[d]);
+            bin = bin < 0 ? 0 : (bin >= bins ? bins - 1 : bin);
+            key |= (long) bin << (d * bitsPerFeature);
+        }
+        return key;
+    }
+
+    /**
+     * Restituisce l'intervallo di una feature codificato nella chiave di una cella.
+     *
+     * @param key Chiave della cella
+     * @param feature Indice della feature
+     * @return Indice dell'intervallo
+     */
+    int binOf(long key, int feature) {
+        return (int) ((key >>> (feature * bitsPerFeature)) & ((1L << bitsPerFeature) - 1));
+    }
+
+    /**
+     * Restituisce il valore grezzo di una feature in una posizione relativa della cella.
+     *
+     * @param key Chiave della cella
+     * @param feature Indice della feature
+     * @param fraction Posizione nell'intervallo, in [0, 1)
+     * @return Valore grezzo della feature
+     */
+    double valueIn(long key, int feature, double fraction) {
+        return low[feature] + (binOf(key, feature) + fraction) * width[feature];
+    }
+
+    /**
+     * Memorizza la decisione di una cella.
+     *
+     * @param key Chiave della cella
+     * @param decision Ordinale della classe, o {@link #MISS} per una cella ambigua
+     */
+    void put(long key, int decision) {
+        if ((cells + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            cells++;
+        } else if (decisions[slot] == AMBIGUOUS) {
+            ambiguousCells--;
+        }
+        keys[slot] = key;
+        decisions[slot] = (byte) decision;
+        if (decision == MISS) {
+            ambiguousCells++;
+        }
+    }
+
+    /**
+     * Hashing di Fibonacci: i bit alti del prodotto distribuiscono bene chiavi vicine.
+     */
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        decisions = new byte[capacity];
+        Arrays.fill(keys, EMPTY);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        byte[] oldDecisions = decisions;
+        allocate(capacity);
+        cells = 0;
+        ambiguousCells = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldDecisions[i]);
+            }
+        }
+    }
+
+    /**
+     * Salva la tabella in formato binario.
+     *
+     * @param path File di destinazione
+     * @throws IOException Se si verifica un errore durante la scrittura
+     */
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dimensions);
+            out.writeInt(bins);
+            out.writeInt(k);
+            out.writeByte(normalization == null ? -1 : normalization.ordinal());
+            for (int d = 0; d < dimensions; d++) {
+                out.writeDouble(low[d]);
+                out.writeDouble(width[d]);
+            }
+            out.writeInt(cells);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    out.writeLong(keys[i]);
+                    out.writeByte(decisions[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Carica una tabella salvata con {@link #save(Path)}.
+     *
+     * @param path File della tabella
+     * @return Tabella caricata
+     * @throws IOException Se il file non è leggibile, non è una tabella di decisione o contiene
+     *         decisioni che non corrispondono a una classe di {@link DrivingAction}
+     */
+    public static PolicyTable load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Formato della tabella di decisione non riconosciuto: " + path);
+            }
+            int dimensions = in.readInt();
+            int bins = in.readInt();
+            int k = in.readInt();
+            int mode = in.readByte();
+            FeatureNormalizer.Mode[] modes = FeatureNormalizer.Mode.values();
+            if (dimensions < 1 || bins < 1 || k < 1 || mode < -1 || mode >= modes.length) {
+                throw new IOException("Intestazione della tabella di decisione non valida: " + path);
+            }
+            double[] low = new double[dimensions];
+            double[] width = new double[dimensions];
+            for (int d = 0; d < dimensions; d++) {
+                low[d] = in.readDouble();
+                width[d] = in.readDouble();
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Numero di celle non valido nella tabella di decisione: " + count);
+            }
+            PolicyTable table = new PolicyTable(low, width, bins, count, k, mode < 0 ? null : modes[mode]);
+            int classes = DrivingAction.values().length;
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                int decision = in.readByte();
+                // Una decisione fuori dalle classi farebbe fallire il tick di controllo
+                if (decision < MISS || decision >= classes) {
+                    throw new IOException("Decisione non valida nella tabella di decisione: " + decision);
+                }
+                table.put(key, decision);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Restituisce il numero di features della griglia.
+     *
+     * @return Numero di features
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Restituisce il K del classificatore per cui la tabella è stata compilata.
+     *
+     * @return Numero di vicini
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Restituisce la normalizzazione del classificatore per cui la tabella è stata compilata.
+     *
+     * @return Modalità di normalizzazione, null se il classificatore lavora su valori grezzi
+     */
+    public FeatureNormalizer.Mode getNormalization() {
+        return normalization;
+    }
+
+    /**
+     * Restituisce il numero di intervalli per feature.
+     *
+     * @return Intervalli per feature
+     */
+    public int getBins() {
+        return bins;
+    }
+
+    /**
+     * Restituisce il numero di celle memorizzate (decise e ambigue).
+     *
+     * @return Numero di celle
+     */
+    public int getCellCount() {
+        return cells;
+    }
+
+    /**
+     * Restituisce il numero di celle ambigue (risolte con la ricerca KNN esatta).
+     *
+     * @return Numero di celle ambigue
+     */
+    public int getAmbiguousCellCount() {
+        return ambiguousCells;
+    }
+
+    /**
+     * Restituisce la memoria occupata dalla tabella hash.
+     *
+     * @return Byte occupati da chiavi e decisioni
+     */
+    public long byteSize() {
+        return keys.length * (long) (Long.BYTES + 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PolicyTable{features=%d, intervalli=%d, celle=%d, ambigue=%d, K=%d, normalizzazione=%s}",
+                             dimensions, bins, cells, ambiguousCells, k,
+                             normalization == null ? "nessuna" : normalization.name().toLowerCase());
+    }
+}
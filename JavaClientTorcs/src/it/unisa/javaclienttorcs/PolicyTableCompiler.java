@@ -0,0 +1,284 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Compilazione offline della {@link PolicyTable} di {@link KNNClassifierDriver}.
+ * Le celle candidate sono quelle che contengono i campioni di training ed eventualmente celle
+ * estratte uniformemente nel riquadro del dataset. In ogni cella il classificatore esatto viene
+ * interrogato sul centro e su punti casuali: se una classe raccoglie almeno la quota di accordo
+ * richiesta la cella la memorizza, altrimenti la cella è marcata ambigua e in guida viene
+ * risolta dalla ricerca KNN.
+ */
+public class PolicyTableCompiler {
+
+    private final KNNClassifierDriver driver;
+    private final ForkJoinPool pool;
+    private int bins = 8;
+    private int samplesPerCell = 16;
+    private double agreement = 1.0;
+    private int boxSamples = 0;
+    private long seed = 42;
+
+    /**
+     * Prepara la compilazione sulle decisioni del classificatore indicato.
+     *
+     * @param driver Classificatore di riferimento, senza tabella di decisione
+     * @param pool Pool su cui valutare le celle in parallelo
+     */
+    public PolicyTableCompiler(KNNClassifierDriver driver, ForkJoinPool pool) {
+        if (driver.getPolicyTable() != null) {
+            throw new IllegalArgumentException("Il classificatore di riferimento non deve usare una tabella di decisione");
+        }
+        this.driver = driver;
+        this.pool = pool;
+    }
+
+    /**
+     * Imposta il numero di intervalli della griglia per ogni feature (8 di default).
+     *
+     * @param bins Intervalli per feature (al più 16 con 14 features)
+     */
+    public void setBins(int bins) {
+        this.bins = bins;
+    }
+
+    /**
+     * Imposta il numero di punti valutati per cella, centro compreso (16 di default).
+     *
+     * @param samplesPerCell Punti per cella (almeno 1)
+     */
+    public void setSamplesPerCell(int samplesPerCell) {
+        this.samplesPerCell = Math.max(1, samplesPerCell);
+    }
+
+    /**
+     * Imposta la quota minima di punti della cella che devono concordare sulla classe
+     * (1 di default: la cella è decisa solo se tutti i punti concordano).
+     *
+     * @param agreement Quota di accordo in (0, 1]
+     */
+    public void setAgreement(double agreement) {
+        this.agreement = agreement;
+    }
+
+    /**
+     * Imposta il numero di punti estratti uniformemente nel riquadro del dataset, le cui celle
+     * si aggiungono a quelle coperte dal training (0 di default: solo celle coperte dai dati).
+     *
+     * @param boxSamples Punti casuali nel riquadro
+     */
+    public void setBoxSamples(int boxSamples) {
+        this.boxSamples = boxSamples;
+    }
+
+    /**
+     * Imposta il seme per i punti casuali.
+     *
+     * @param seed Seme del generatore
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Compila la tabella sulle celle coperte dai dati indicati (ed eventualmente sul riquadro).
+     *
+     * @param rows Features grezze del training (definiscono la griglia e le celle coperte)
+     * @return Tabella di decisione
+     */
+    public PolicyTable compile(double[][] rows) {
+        KNNConfig config = driver.getConfig();
+        PolicyTable table = PolicyTable.forData(rows, bins, config.getK(), config.getEffectiveNormalization());
+        int dimensions = table.getDimensions();
+
+        Set<Long> candidates = new LinkedHashSet<>();
+        for (double[] row : rows) {
+            candidates.add(table.cellKey(row));
+        }
+        Random random = new Random(seed);
+        double[] point = new double[dimensions];
+        for (int i = 0; i < boxSamples; i++) {
+            for (int d = 0; d < dimensions; d++) {
+                point[d] = table.valueIn(0L, d, random.nextDouble() * bins);
+            }
+            candidates.add(table.cellKey(point));
+        }
+
+        long[] keys = candidates.stream().mapToLong(Long::longValue).toArray();
+        byte[] decisions = new byte[keys.length];
+        pool.submit(() -> IntStream.range(0, keys.length).parallel().forEach(i ->
+            decisions[i] = (byte) decide(table, keys[i]))).join();
+
+        for (int i = 0; i < keys.length; i++) {
+            table.put(keys[i], decisions[i]);
+        }
+        return table;
+    }
+
+    /**
+     * Valuta il classificatore sui punti di una cella e restituisce la classe concorde o
+     * {@link PolicyTable#MISS} se nessuna classe raggiunge la quota di accordo.
+     */
+    private int decide(PolicyTable table, long key) {
+        int dimensions = table.getDimensions();
+        Random random = new Random(seed ^ (key * 0x9E3779B97F4A7C15L));
+        int[] votes = new int[DrivingAction.values().length];
+        double[] point = new double[dimensions];
+        for (int s = 0; s < samplesPerCell; s++) {
+            for (int d = 0; d < dimensions; d++) {
+                point[d] = table.valueIn(key, d, s == 0 ? 0.5 : random.nextDouble());
+            }
+            votes[driver.predictClass(point).ordinal()]++;
+        }
+
+        int best = 0;
+        for (int c = 1; c < votes.length; c++) {
+            if (votes[c] > votes[best]) {
+                best = c;
+            }
+        }
+        return votes[best] >= agreement * samplesPerCell ? best : PolicyTable.MISS;
+    }
+
+    /**
+     * Confronta tabella e classificatore esatto sulle righe di un dataset.
+     *
+     * @param label Etichetta della riga del report
+     * @param table Tabella da valutare
+     * @param dataset Dataset di confronto
+     */
+    public void report(String label, PolicyTable table, KNNDataset dataset) {
+        int n = dataset.size();
+        int hits = 0;
+        int agree = 0;
+        int correct = 0;
+        for (int row = 0; row < n; row++) {
+            double[] features = dataset.getFeatures(row);
+            int decision = table.lookup(features);
+            DrivingAction exact = driver.predictClass(features);
+            DrivingAction served = decision == PolicyTable.MISS ? exact : DrivingAction.values()[decision];
+            if (decision != PolicyTable.MISS) {
+                hits++;
+                if (decision == exact.ordinal()) {
+                    agree++;
+                }
+            }
+            if (served == dataset.getActionClass(row)) {
+                correct++;
+            }
+        }
+        System.out.printf("[POLICY] %-10s | %6d righe | risposte dalla tabella %5.1f%% | accordo con KNN %5.1f%%"
+            + " | accuratezza %5.2f%%%n", label, n, hits * 100.0 / n,
+            hits == 0 ? 0.0 : agree * 100.0 / hits, correct * 100.0 / n);
+    }
+
+    /**
+     * Compila la tabella di decisione da un dataset discretizzato e la salva su file.
+     *
+     * @param args train:&lt;dataset.csv&gt; [output:&lt;tabella.bin&gt;] [test:&lt;dataset.csv&gt;] [bins:8]
+     *             [samples:16] [agreement:1.0] [box:0] [k:15] [normalization:fixed|minmax|zscore]
+     *             [metric:...] [weights:...] [threads:N] [seed:42]
+     */
+    public static void main(String[] args) {
+        String trainPath = null;
+        String outputPath = null;
+        String testPath = null;
+        int bins = 8;
+        int samples = 16;
+        double agreement = 1.0;
+        int box = 0;
+        int k = 15;
+        FeatureNormalizer.Mode normalizationMode = FeatureNormalizer.Mode.FIXED;
+        DistanceKernel kernel = DistanceKernel.SQUARED_L2;
+        double[] weights = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+
+        for (String arg : args) {
+            int sep = arg.indexOf(':');
+            if (sep <= 0) {
+                System.err.println("[POLICY] Parametro non riconosciuto: " + arg);
+                continue;
+            }
+            String key = arg.substring(0, sep);
+            String value = arg.substring(sep + 1);
+            switch (key) {
+                case "train" -> trainPath = value;
+                case "output" -> outputPath = value;
+                case "test" -> testPath = value;
+                case "bins" -> bins = Integer.parseInt(value);
+                case "samples" -> samples = Integer.parseInt(value);
+                case "agreement" -> agreement = Double.parseDouble(value);
+                case "box" -> box = Integer.parseInt(value);
+                case "k" -> k = Integer.parseInt(value);
+                case "normalization" -> normalizationMode = FeatureNormalizer.Mode.fromName(value);
+                case "metric" -> kernel = DistanceKernel.fromName(value);
+                case "weights" -> weights = DistanceKernel.parseWeights(value);
+                case "threads" -> threads = Integer.parseInt(value);
+                case "seed" -> seed = Long.parseLong(value);
+                default -> System.err.println("[POLICY] Parametro non riconosciuto: " + arg);
+            }
+        }
+
+        if (trainPath == null) {
+            System.out.println("Uso: java PolicyTableCompiler train:<dataset.csv> [output:<tabella.bin>] [test:<dataset.csv>]");
+            System.out.println("       [bins:8] [samples:16] [agreement:1.0] [box:0] [k:15]");
+            System.out.println("       [normalization:fixed|minmax|zscore] [metric:...] [weights:w0,...,w13] [threads:N] [seed:42]");
+            System.out.println("  box: punti casuali nel riquadro del dataset oltre alle celle coperte dal training");
+            System.out.println("  La tabella si usa con KNNClassifierDriver (policy:<tabella.bin> nel Client)");
+            return;
+        }
+        if (outputPath == null) {
+            outputPath = TelemetryFile.derivedPath(trainPath, "_policy.bin");
+        }
+        if (TelemetryFile.samePath(trainPath, outputPath)) {
+            System.err.println("[POLICY] Il file di output coincide con il dataset di input: " + outputPath);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            KNNDataset dataset = KNNDataset.load(trainPath);
+            KNNConfig config = new KNNConfig(k, trainPath, true, true);
+            config.setNormalizationMode(normalizationMode);
+            config.setDistanceKernel(kernel);
+            config.setFeatureWeights(weights);
+            KNNClassifierDriver driver = new KNNClassifierDriver(config, dataset.toClassifierPoints(dataset.allRows()));
+
+            PolicyTableCompiler compiler = new PolicyTableCompiler(driver, pool);
+            compiler.setBins(bins);
+            compiler.setSamplesPerCell(samples);
+            compiler.setAgreement(agreement);
+            compiler.setBoxSamples(box);
+            compiler.setSeed(seed);
+
+            long start = System.nanoTime();
+            double[][] rows = new double[dataset.size()][];
+            for (int row = 0; row < rows.length; row++) {
+                rows[row] = dataset.getFeatures(row);
+            }
+            PolicyTable table = compiler.compile(rows);
+            System.out.printf("[POLICY] %s compilata in %.2f s (%d KB)%n", table,
+                (System.nanoTime() - start) / 1e9, table.byteSize() / 1024);
+
+            compiler.report("TRAIN", table, dataset);
+            if (testPath != null) {
+                compiler.report("TEST", table, KNNDataset.load(testPath));
+            }
+
+            table.save(Path.of(outputPath));
+            System.out.println("[POLICY] Tabella salvata in " + outputPath);
+        } catch (IOException e) {
+            System.err.println("[POLICY] Errore: " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
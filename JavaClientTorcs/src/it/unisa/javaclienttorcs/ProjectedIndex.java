@@ -0,0 +1,108 @@
+package it.unisa.javaclienttorcs;
+
+/**
+ * Indice KD-tree costruito sulle componenti principali delle features ({@link PCAProjection}).
+ * La proiezione è memorizzata con l'indice: le ricerche accettano features grezze, le proiettano
+ * nel buffer di query dell'heap (o dello stato del voto) e interrogano un indice interno con meno
+ * dimensioni, senza allocare. Normalizzazione e pesi della metrica pesata sono applicati dalla
+ * proiezione, quindi l'indice interno lavora su valori già trasformati.
+ * Le distanze restituite sono misurate nello spazio proiettato.
+ */
+public final class ProjectedIndex implements NeighborIndex {
+
+    private final PCAProjection projection;
+    private final NeighborIndex inner;
+    private final DistanceKernel kernel;
+    private final FeatureNormalizer normalizer;
+
+    private ProjectedIndex(PCAProjection projection, NeighborIndex inner, DistanceKernel kernel,
+                           FeatureNormalizer normalizer) {
+        this.projection = projection;
+        this.inner = inner;
+        this.kernel = kernel;
+        this.normalizer = normalizer;
+    }
+
+    /**
+     * Calcola la proiezione sui punti e costruisce l'indice sulle componenti principali.
+     *
+     * @param points Matrice delle features grezze (una riga per punto, tutte della stessa lunghezza)
+     * @param kernel Metrica di distanza
+     * @param weights Pesi per feature (obbligatori solo per la metrica pesata, altrimenti ignorati)
+     * @param normalizer Normalizzazione delle features, null per usare i valori grezzi
+     * @param strategy Strategia di split dell'indice interno
+     * @param components Numero di componenti principali da mantenere
+     * @param whiten true per dividere ogni componente per la propria deviazione standard
+     * @param offHeap true per memorizzare l'indice interno in memoria nativa
+     * @return Indice proiettato
+     */
+    public static ProjectedIndex build(double[][] points, DistanceKernel kernel, double[] weights,
+                                       FeatureNormalizer normalizer, SplitStrategy strategy,
+                                       int components, boolean whiten, boolean offHeap) {
+        int dimensions = points.length > 0 ? points[0].length : -1;
+        FeatureNormalizer transform = FeatureNormalizer.forIndex(normalizer, kernel, weights, dimensions);
+        PCAProjection projection = PCAProjection.fit(points, transform, components, whiten);
+
+        // I pesi sono già nella proiezione: la metrica pesata diventa Euclidea sulle componenti
+        DistanceKernel innerKernel = kernel.isWeighted() ? DistanceKernel.SQUARED_L2 : kernel;
+        NeighborIndex inner = NeighborIndex.build(projection.projectAll(points), innerKernel, null, null,
+                                                  strategy, offHeap);
+        return new ProjectedIndex(projection, inner, kernel, normalizer);
+    }
+
+    @Override
+    public int query(double[] target, int k, NeighborHeap heap) {
+        // L'indice interno non ha trasformazioni e non usa il buffer di query dell'heap
+        double[] projected = projection.project(target, heap.queryBuffer(projection.getOutputDimensions()));
+        return inner.query(projected, k, heap);
+    }
+
+    @Override
+    public int vote(double[] target, int k, int[] labels, NeighborVote vote) {
+        double[] projected = projection.project(target, vote.queryBuffer(projection.getOutputDimensions()));
+        return inner.vote(projected, k, labels, vote);
+    }
+
+    /**
+     * Restituisce la proiezione memorizzata con l'indice.
+     *
+     * @return Proiezione PCA
+     */
+    public PCAProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Restituisce l'indice costruito sulle componenti principali.
+     *
+     * @return Indice interno
+     */
+    public NeighborIndex getInner() {
+        return inner;
+    }
+
+    @Override
+    public int size() {
+        return inner.size();
+    }
+
+    @Override
+    public int getDimensions() {
+        return projection.getInputDimensions();
+    }
+
+    @Override
+    public DistanceKernel getKernel() {
+        return kernel;
+    }
+
+    @Override
+    public FeatureNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    @Override
+    public int height() {
+        return inner.height();
+    }
+}
@@ -4,18 +4,31 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.Objects;
 
 /**
  * Classe per la gestione di una socket UDP.
+ * I pacchetti di invio e ricezione e il buffer di ricezione sono creati una volta e riutilizzati,
+ * così lo scambio di messaggi binari ({@link #send(ByteBuffer)}, {@link #receive(ByteBuffer)})
+ * non alloca a ogni chiamata.
+ * La socket è quella di un {@link DatagramChannel}, così i datagrammi già in coda possono essere
+ * scartati senza attese ({@link #discardPending()}).
  * Implementa AutoCloseable per l'uso con try-with-resources.
  */
 public class SocketUDPClient implements AutoCloseable {
 
     private static final int BUFFER_SIZE = 1024;
+    private final DatagramChannel channel;
     private final DatagramSocket socket;
     private final InetAddress serverAddress;
     private final int serverPort;
+    private final byte[] receiveData = new byte[BUFFER_SIZE];
+    private final DatagramPacket sendPacket;
+    private final DatagramPacket receivePacket;
+    private final ByteBuffer discardBuffer = ByteBuffer.wrap(receiveData);
 
     /**
      * Costruisce un UdpClient e crea la DatagramSocket.
@@ -31,7 +44,11 @@ public class SocketUDPClient implements AutoCloseable {
         }
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
-        this.socket = new DatagramSocket(); 
+        this.channel = DatagramChannel.open();
+        channel.bind(null);
+        this.socket = channel.socket();
+        this.sendPacket = new DatagramPacket(new byte[0], 0, serverAddress, serverPort);
+        this.receivePacket = new DatagramPacket(receiveData, receiveData.length);
     }
 
     /**
@@ -44,18 +61,84 @@ public class SocketUDPClient implements AutoCloseable {
     public String sendAndReceive(String message) throws IOException {
         // Prepara il pacchetto per l'invio
         byte[] sendData = message.getBytes();
-        DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, serverAddress, serverPort);
+        sendPacket.setData(sendData, 0, sendData.length);
         socket.send(sendPacket);
 
-        // Prepara il pacchetto per la ricezione
-        byte[] receiveData = new byte[BUFFER_SIZE];
-        DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
+        // Riceve nel buffer riutilizzato
+        receivePacket.setData(receiveData, 0, receiveData.length);
         socket.receive(receivePacket);
 
         // Converte i dati ricevuti in una stringa e la restituisce
         return new String(receivePacket.getData(), 0, receivePacket.getLength());
     }
 
+    /**
+     * Invia un messaggio testuale senza attendere la risposta.
+     *
+     * @param message Il messaggio da inviare.
+     * @throws IOException Se si verifica un errore di I/O.
+     */
+    public void send(String message) throws IOException {
+        byte[] sendData = message.getBytes();
+        sendPacket.setData(sendData, 0, sendData.length);
+        socket.send(sendPacket);
+    }
+
+    /**
+     * Invia i byte del buffer dall'inizio fino alla posizione corrente, senza copiarli.
+     *
+     * @param message Buffer su heap con il messaggio (ad esempio scritto con put)
+     * @throws IOException Se si verifica un errore di I/O.
+     */
+    public void send(ByteBuffer message) throws IOException {
+        sendPacket.setData(message.array(), message.arrayOffset(), message.position());
+        socket.send(sendPacket);
+    }
+
+    /**
+     * Attende un datagramma e lo scrive all'inizio del buffer (i byte oltre la capacità vengono scartati).
+     *
+     * @param response Buffer su heap di destinazione
+     * @return Numero di byte ricevuti
+     * @throws java.net.SocketTimeoutException Se scade il timeout impostato con {@link #setTimeout(int)}
+     * @throws IOException Se si verifica un errore di I/O.
+     */
+    public int receive(ByteBuffer response) throws IOException {
+        receivePacket.setData(response.array(), response.arrayOffset(), response.capacity());
+        socket.receive(receivePacket);
+        return receivePacket.getLength();
+    }
+
+    /**
+     * Scarta i datagrammi già ricevuti e non ancora letti, senza attenderne altri.
+     * Non va chiamato mentre un altro thread è in attesa su {@link #receive(ByteBuffer)}.
+     *
+     * @return Numero di datagrammi scartati
+     * @throws IOException Se si verifica un errore di I/O.
+     */
+    public int discardPending() throws IOException {
+        int discarded = 0;
+        channel.configureBlocking(false);
+        try {
+            while (channel.receive(discardBuffer.clear()) != null) {
+                discarded++;
+            }
+        } finally {
+            channel.configureBlocking(true);
+        }
+        return discarded;
+    }
+
+    /**
+     * Imposta il tempo massimo di attesa delle ricezioni.
+     *
+     * @param millis Millisecondi di attesa, 0 per attendere senza limite
+     * @throws SocketException Se l'opzione non può essere impostata
+     */
+    public void setTimeout(int millis) throws SocketException {
+        socket.setSoTimeout(millis);
+    }
+
     /**
      * Chiude la socket.
      */
@@ -0,0 +1,44 @@
+package it.unisa.javaclienttorcs;
+
+/**
+ * Strategie di scelta del piano di split nella costruzione dei KD-tree ({@link KDTreeIndex}
+ * e {@link OffHeapKDTreeIndex}). Le statistiche sono calcolate sulle coordinate memorizzate
+ * dall'indice (normalizzate e pesate), cioè nello spazio in cui avviene la ricerca.
+ * La qualità dell'albero ottenuto su un dataset si confronta con {@link KDTreeStatistics}.
+ */
+public enum SplitStrategy {
+
+    /** Dimensioni a turno in base alla profondità, split sul mediano (albero bilanciato) */
+    ROUND_ROBIN,
+
+    /** Dimensione con l'intervallo di valori più ampio nel sottoalbero, split sul mediano */
+    MAX_SPREAD,
+
+    /** Dimensione con la varianza massima nel sottoalbero, split sul mediano */
+    MAX_VARIANCE,
+
+    /**
+     * Dimensione con l'intervallo più ampio, split a metà dell'intervallo (celle più compatte,
+     * albero non necessariamente bilanciato). Se da un lato non cade nessun punto il piano
+     * scivola sul punto più vicino, che diventa il nodo.
+     */
+    SLIDING_MIDPOINT;
+
+    /**
+     * Restituisce la strategia corrispondente al nome indicato (case insensitive).
+     * Accetta sia i nomi delle costanti sia roundrobin, spread, variance e midpoint.
+     *
+     * @param name Nome della strategia
+     * @return Strategia corrispondente
+     * @throws IllegalArgumentException Se il nome non corrisponde a nessuna strategia
+     */
+    public static SplitStrategy fromName(String name) {
+        return switch (name.toLowerCase()) {
+            case "roundrobin", "round_robin", "cyclic" -> ROUND_ROBIN;
+            case "spread", "max_spread" -> MAX_SPREAD;
+            case "variance", "max_variance" -> MAX_VARIANCE;
+            case "midpoint", "sliding_midpoint" -> SLIDING_MIDPOINT;
+            default -> throw new IllegalArgumentException("Strategia di split non supportata: " + name);
+        };
+    }
+}
@@ -0,0 +1,772 @@
+package it.unisa.javaclienttorcs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato binario delle registrazioni di guida ({@code .tlm}), alternativo ai CSV: record a larghezza
+ * fissa little-endian, preceduti da un'intestazione versionata che descrive lo schema delle colonne
+ * (nome e tipo). Lo stesso formato contiene il dataset enhanced di {@link EnhancedDataCollector},
+ * il dataset standard e quello discretizzato; i caricatori cercano le colonne per nome, quindi leggono
+ * direttamente anche una registrazione enhanced.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   0    magic "TELM" (int), versione (int)
+ *   8    record confermati (long)
+ *   16   numero di colonne (int), offset del primo record (int, multiplo di 64)
+ *   24   schema: per colonna tipo (byte), lunghezza del nome (byte), nome ASCII
+ *   ...  record: i valori delle colonne in ordine, senza separatori, ognuno della dimensione del suo tipo
+ * </pre>
+ * I sensori sono memorizzati a precisione singola: TORCS li calcola come float e li invia con
+ * al più sei cifre significative, quindi il float li conserva e il CSV riconvertito riporta lo stesso
+ * testo. Le azioni del driver, calcolate in double, restano a precisione doppia. Un record enhanced
+ * occupa 208 byte.
+ * Il numero di record confermati è aggiornato dopo ogni record scritto: un file lasciato aperto da un
+ * processo interrotto resta leggibile fino all'ultimo record completo. La scrittura ({@link Writer})
+ * accoda i record in blocchi di file mappati in memoria, senza copie nel kernel per record;
+ * la lettura mappa l'intero file.
+ */
+public final class TelemetryFile implements AutoCloseable {
+
+    /** Estensione dei file binari: sceglie il formato in scrittura */
+    public static final String EXTENSION = ".tlm";
+
+    /**
+     * Tipo dei valori di una colonna: decide la dimensione nel record e il formato CSV.
+     */
+    public enum Type {
+        /** Valore reale a precisione doppia (azioni del driver) */
+        DOUBLE(Double.BYTES),
+        /** Valore reale a precisione singola (sensori di TORCS) */
+        FLOAT(Float.BYTES),
+        /** Valore intero (marcia) */
+        INT(Integer.BYTES),
+        /** Classe di {@link DrivingAction}, memorizzata come ordinale e scritta nel CSV per nome */
+        ACTION(Integer.BYTES);
+
+        private final int bytes;
+
+        Type(int bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Restituisce la dimensione di un valore nel record.
+         *
+         * @return Byte per valore
+         */
+        public int bytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Colonna dello schema.
+     *
+     * @param name Nome della colonna, come nell'header CSV
+     * @param type Tipo dei valori
+     */
+    public record Column(String name, Type type) {
+    }
+
+    /** Colonne del dataset enhanced, nell'ordine di {@link EnhancedDataPoint#toCSV()} */
+    public static final List<Column> ENHANCED_SCHEMA = schema(
+        "track0,track1,track2,track3,track4,track5,track6,track7,track8,track9,"
+        + "track10,track11,track12,track13,track14,track15,track16,track17,track18,"
+        + "speedX,angleToTrackAxis,trackPosition,"
+        + "lateralSpeed,currentLapTime,damage,distanceFromStartLine,"
+        + "distanceRaced,fuelLevel,lastLapTime,RPM,zSpeed,z,"
+        + "focus0,focus1,focus2,focus3,focus4,"
+        + "wheelSpinFL,wheelSpinFR,wheelSpinRL,wheelSpinRR,"
+        + "targetSpeed,steering,acceleration,brake,gear,clutch");
+
+    /** Colonne delle features dei driver KNN e MLP, nell'ordine del dataset standard */
+    public static final String[] FEATURE_COLUMNS = {
+        "track0", "track2", "track4", "track6", "track8", "track10", "track12", "track14", "track16", "track18",
+        "speedX", "angleToTrackAxis", "trackPosition", "distanceFromStartLine"
+    };
+
+    /** Colonne delle azioni continue */
+    public static final String[] TARGET_COLUMNS = { "steering", "acceleration", "brake" };
+
+    /** Colonna della classe di azione del dataset discretizzato */
+    public static final String ACTION_COLUMN = "actionClass";
+
+    /** Colonne del dataset standard ({@code human_dataset.csv}) */
+    public static final List<Column> STANDARD_SCHEMA = schema(String.join(",", FEATURE_COLUMNS) + ","
+        + String.join(",", TARGET_COLUMNS));
+
+    /** Colonne del dataset discretizzato di {@link ActionDiscretizer} */
+    public static final List<Column> DISCRETIZED_SCHEMA = schema(String.join(",", FEATURE_COLUMNS) + ","
+        + ACTION_COLUMN + "," + String.join(",", TARGET_COLUMNS));
+
+    /** "TELM" letto come intero little-endian */
+    static final int MAGIC = 0x4D4C4554;
+    static final int VERSION = 1;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.LITTLE_ENDIAN);
+    // Valori dei record senza vincoli di allineamento (le colonne hanno dimensioni diverse)
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt VALUE_INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /** Accesso al numero di record con semantica acquire/release (indice in unità di 8 byte) */
+    private static final VarHandle RECORDS = LONG.arrayElementVarHandle();
+
+    // Campi dell'intestazione (offset in byte)
+    private static final long H_MAGIC = 0;
+    private static final long H_VERSION = 4;
+    private static final long H_RECORDS = 8;
+    private static final long H_COLUMNS = 16;
+    private static final long H_DATA = 20;
+    private static final long H_SCHEMA = 24;
+
+    /** Allineamento del primo record */
+    private static final int ALIGNMENT = 64;
+
+    private final Path path;
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final List<Column> columns;
+    private final long size;
+    private final long dataOffset;
+    private final int width;
+    private final long recordBytes;
+    private final long[] offsets;
+    private final Type[] types;
+
+    private TelemetryFile(Path path, Arena arena, MemorySegment segment, List<Column> columns, long size,
+                          long dataOffset) {
+        this.path = path;
+        this.arena = arena;
+        this.segment = segment;
+        this.columns = columns;
+        this.size = size;
+        this.dataOffset = dataOffset;
+        this.width = columns.size();
+        this.recordBytes = recordBytes(columns);
+        this.offsets = columnOffsets(columns);
+        this.types = columns.stream().map(Column::type).toArray(Type[]::new);
+    }
+
+    /**
+     * Costruisce uno schema di colonne dai nomi di un header CSV: {@code gear} è intera,
+     * {@code actionClass} è una classe di azione, le colonne dei sensori (nomi del dataset enhanced
+     * fino a {@code wheelSpinRR}) sono a precisione singola, le altre a precisione doppia.
+     *
+     * @param header Nomi delle colonne separati da virgole
+     * @return Schema immutabile
+     */
+    public static List<Column> schema(String header) {
+        String[] names = header.split(",");
+        List<Column> schema = new ArrayList<>(names.length);
+        for (String name : names) {
+            String trimmed = name.trim();
+            Type type = switch (trimmed) {
+                case "gear" -> Type.INT;
+                case ACTION_COLUMN -> Type.ACTION;
+                case "targetSpeed", "steering", "acceleration", "brake", "clutch" -> Type.DOUBLE;
+                default -> isSensor(trimmed) ? Type.FLOAT : Type.DOUBLE;
+            };
+            schema.add(new Column(trimmed, type));
+        }
+        return List.copyOf(schema);
+    }
+
+    /**
+     * Indica se una colonna è un sensore di TORCS (precisione float all'origine).
+     */
+    private static boolean isSensor(String name) {
+        return switch (name) {
+            case "speedX", "angleToTrackAxis", "trackPosition", "lateralSpeed", "currentLapTime", "damage",
+                 "distanceFromStartLine", "distanceRaced", "fuelLevel", "lastLapTime", "RPM", "zSpeed", "z",
+                 "wheelSpinFL", "wheelSpinFR", "wheelSpinRL", "wheelSpinRR" -> true;
+            default -> name.matches("(track|focus)\\d+");
+        };
+    }
+
+    /**
+     * Restituisce la dimensione di un record.
+     *
+     * @param schema Colonne
+     * @return Byte per record
+     */
+    public static int recordBytes(List<Column> schema) {
+        int bytes = 0;
+        for (Column column : schema) {
+            bytes += column.type().bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Restituisce la posizione di ogni colonna nel record.
+     */
+    private static long[] columnOffsets(List<Column> schema) {
+        long[] offsets = new long[schema.size()];
+        long offset = 0;
+        for (int c = 0; c < offsets.length; c++) {
+            offsets[c] = offset;
+            offset += schema.get(c).type().bytes();
+        }
+        return offsets;
+    }
+
+    /**
+     * Legge un valore del tipo indicato come double.
+     */
+    private static double readValue(MemorySegment segment, long offset, Type type) {
+        return switch (type) {
+            case DOUBLE -> segment.get(DOUBLE, offset);
+            case FLOAT -> segment.get(FLOAT, offset);
+            case INT, ACTION -> segment.get(VALUE_INT, offset);
+        };
+    }
+
+    /**
+     * Scrive un valore nel formato del tipo indicato.
+     */
+    private static void writeValue(MemorySegment segment, long offset, Type type, double value) {
+        switch (type) {
+            case DOUBLE -> segment.set(DOUBLE, offset, value);
+            case FLOAT -> segment.set(FLOAT, offset, (float) value);
+            case INT, ACTION -> segment.set(VALUE_INT, offset, (int) value);
+        }
+    }
+
+    /**
+     * Restituisce l'header CSV di uno schema.
+     *
+     * @param schema Colonne
+     * @return Nomi delle colonne separati da virgole
+     */
+    public static String csvHeader(List<Column> schema) {
+        StringBuilder header = new StringBuilder(IOConfig.STRINGBUILDER_HEADER);
+        for (int c = 0; c < schema.size(); c++) {
+            if (c > 0) {
+                header.append(',');
+            }
+            header.append(schema.get(c).name());
+        }
+        return header.toString();
+    }
+
+    /**
+     * Costruisce il percorso di un file prodotto da un dataset, sostituendo l'estensione
+     * {@code .csv} o {@link #EXTENSION} con il suffisso indicato
+     * (ad esempio {@code train.tlm} e {@code _mlp.bin} danno {@code train_mlp.bin}).
+     *
+     * @param inputPath Percorso del dataset
+     * @param suffix Suffisso da aggiungere, estensione compresa
+     * @return Percorso del file prodotto, diverso da quello del dataset
+     */
+    public static String derivedPath(String inputPath, String suffix) {
+        String base = inputPath;
+        if (base.endsWith(".csv") || base.endsWith(EXTENSION)) {
+            base = base.substring(0, base.lastIndexOf('.'));
+        }
+        return base + suffix;
+    }
+
+    /**
+     * Indica se due percorsi indicano lo stesso file, per non sovrascrivere un dataset con l'output.
+     *
+     * @param first Primo percorso
+     * @param second Secondo percorso
+     * @return true se i percorsi coincidono una volta risolti
+     */
+    public static boolean samePath(String first, String second) {
+        Path a = Path.of(first).toAbsolutePath().normalize();
+        Path b = Path.of(second).toAbsolutePath().normalize();
+        try {
+            return a.equals(b) || (Files.exists(a) && Files.exists(b) && Files.isSameFile(a, b));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Indica se un file è in formato binario, dal magic number (non dall'estensione).
+     *
+     * @param path Percorso del file
+     * @return true se il file inizia con l'intestazione di una registrazione binaria
+     */
+    public static boolean isTelemetry(String path) {
+        File file = new File(path);
+        if (!file.isFile() || file.length() < H_SCHEMA) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Mappa in sola lettura una registrazione binaria.
+     *
+     * @param path Percorso del file
+     * @return Registrazione da chiudere dopo l'uso
+     * @throws IOException Se il file non è una registrazione valida
+     */
+    public static TelemetryFile open(Path path) throws IOException {
+        Arena arena = Arena.ofConfined();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment segment = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size(), arena);
+            List<Column> columns = readSchema(segment, path);
+            long dataOffset = segment.get(INT, H_DATA);
+            long size = (long) RECORDS.getAcquire(segment, H_RECORDS / Long.BYTES);
+            if (size < 0 || dataOffset + size * recordBytes(columns) > segment.byteSize()) {
+                throw new IOException("Registrazione troncata: " + path);
+            }
+            return new TelemetryFile(path, arena, segment, columns, size, dataOffset);
+        } catch (IOException | RuntimeException ex) {
+            arena.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Legge e verifica intestazione e schema.
+     */
+    private static List<Column> readSchema(MemorySegment segment, Path path) throws IOException {
+        if (segment.byteSize() < H_SCHEMA || segment.get(INT, H_MAGIC) != MAGIC) {
+            throw new IOException("Il file non è una registrazione binaria: " + path);
+        }
+        if (segment.get(INT, H_VERSION) != VERSION) {
+            throw new IOException("Versione della registrazione non supportata: " + segment.get(INT, H_VERSION));
+        }
+        int count = segment.get(INT, H_COLUMNS);
+        long offset = H_SCHEMA;
+        List<Column> columns = new ArrayList<>(count);
+        Type[] types = Type.values();
+        for (int c = 0; c < count; c++) {
+            int type = segment.get(ValueLayout.JAVA_BYTE, offset);
+            int length = Byte.toUnsignedInt(segment.get(ValueLayout.JAVA_BYTE, offset + 1));
+            if (type < 0 || type >= types.length || offset + 2 + length > segment.get(INT, H_DATA)) {
+                throw new IOException("Schema della registrazione non valido: " + path);
+            }
+            byte[] name = segment.asSlice(offset + 2, length).toArray(ValueLayout.JAVA_BYTE);
+            columns.add(new Column(new String(name, StandardCharsets.US_ASCII), types[type]));
+            offset += 2 + length;
+        }
+        return List.copyOf(columns);
+    }
+
+    /**
+     * Byte dell'intestazione per uno schema, fino al primo record.
+     */
+    private static int headerBytes(List<Column> schema) {
+        long bytes = H_SCHEMA;
+        for (Column column : schema) {
+            bytes += 2 + column.name().length();
+        }
+        return (int) ((bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT);
+    }
+
+    /**
+     * Restituisce lo schema delle colonne.
+     *
+     * @return Colonne nell'ordine dei record
+     */
+    public List<Column> columns() {
+        return columns;
+    }
+
+    /**
+     * Restituisce il numero di record confermati al momento dell'apertura.
+     *
+     * @return Record leggibili
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Restituisce la posizione di una colonna.
+     *
+     * @param name Nome della colonna
+     * @return Indice della colonna, o -1 se manca
+     */
+    public int columnIndex(String name) {
+        for (int c = 0; c < width; c++) {
+            if (columns.get(c).name().equals(name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Restituisce la posizione di più colonne, tutte obbligatorie.
+     *
+     * @param names Nomi delle colonne
+     * @return Indici delle colonne nell'ordine dei nomi
+     * @throws IOException Se una colonna manca
+     */
+    public int[] requireColumns(String... names) throws IOException {
+        int[] indices = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indices[i] = columnIndex(names[i]);
+            if (indices[i] < 0) {
+                throw new IOException("Colonna " + names[i] + " assente nella registrazione " + path);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Legge un valore.
+     *
+     * @param row Record
+     * @param column Colonna
+     * @return Valore memorizzato
+     */
+    public double get(long row, int column) {
+        return readValue(segment, dataOffset + row * recordBytes + offsets[column], types[column]);
+    }
+
+    /**
+     * Legge le colonne indicate di un record.
+     *
+     * @param row Record
+     * @param indices Colonne da leggere, da {@link #requireColumns}
+     * @param out Array di destinazione
+     * @param offset Posizione del primo valore in out
+     */
+    public void read(long row, int[] indices, double[] out, int offset) {
+        long base = dataOffset + row * recordBytes;
+        for (int i = 0; i < indices.length; i++) {
+            int column = indices[i];
+            out[offset + i] = readValue(segment, base + offsets[column], types[column]);
+        }
+    }
+
+    /**
+     * Rilascia la mappatura del file.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    /**
+     * Accoda record a una registrazione: il file viene creato se manca, altrimenti deve avere lo
+     * stesso schema. Da usare da un solo thread.
+     *
+     * @param path Percorso del file
+     * @param schema Colonne dei record
+     * @return Scrittore da chiudere per troncare il file all'ultimo record
+     * @throws IOException Se il file esiste con un altro schema o non si può scrivere
+     */
+    public static Writer append(Path path, List<Column> schema) throws IOException {
+        return new Writer(path, schema);
+    }
+
+    /**
+     * Scrittore di record su blocchi di file mappati in memoria. Ogni blocco è mappato all'offset del
+     * prossimo record e rilasciato quando è pieno; alla chiusura il file è troncato all'ultimo record.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        /** Record per blocco mappato */
+        private static final int CHUNK_RECORDS = 8192;
+
+        private final Path path;
+        private final FileChannel channel;
+        private final Arena headerArena;
+        private final MemorySegment header;
+        private final long dataOffset;
+        private final long recordBytes;
+        private final long[] offsets;
+        private final Type[] types;
+        private Arena chunkArena;
+        private MemorySegment chunk;
+        private long chunkStart;
+        private long records;
+
+        private Writer(Path path, List<Column> schema) throws IOException {
+            this.path = path;
+            this.recordBytes = recordBytes(schema);
+            this.offsets = columnOffsets(schema);
+            this.types = schema.stream().map(Column::type).toArray(Type[]::new);
+            boolean existing = Files.isRegularFile(path) && Files.size(path) > 0;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                            StandardOpenOption.WRITE);
+            this.headerArena = Arena.ofShared();
+            try {
+                int headerBytes = existing ? readHeaderBytes(channel, path) : headerBytes(schema);
+                this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerBytes, headerArena);
+                if (existing) {
+                    List<Column> stored = readSchema(header, path);
+                    if (!stored.equals(schema)) {
+                        throw new IOException("La registrazione " + path + " ha un altro schema: " + csvHeader(stored));
+                    }
+                    this.records = (long) RECORDS.getAcquire(header, H_RECORDS / Long.BYTES);
+                } else {
+                    writeHeader(schema);
+                }
+                this.dataOffset = header.get(INT, H_DATA);
+            } catch (IOException | RuntimeException ex) {
+                headerArena.close();
+                channel.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Legge l'offset dei record di un file esistente, per mapparne l'intestazione completa.
+         */
+        private static int readHeaderBytes(FileChannel channel, Path path) throws IOException {
+            try (Arena arena = Arena.ofConfined()) {
+                MemorySegment fixed = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                                  Math.min(channel.size(), H_SCHEMA), arena);
+                if (fixed.byteSize() < H_SCHEMA || fixed.get(INT, H_MAGIC) != MAGIC) {
+                    throw new IOException("Il file non è una registrazione binaria: " + path);
+                }
+                int bytes = fixed.get(INT, H_DATA);
+                if (bytes < H_SCHEMA || bytes > channel.size()) {
+                    throw new IOException("Intestazione della registrazione non valida: " + path);
+                }
+                return bytes;
+            }
+        }
+
+        private void writeHeader(List<Column> schema) {
+            header.set(INT, H_MAGIC, MAGIC);
+            header.set(INT, H_VERSION, VERSION);
+            header.set(INT, H_COLUMNS, schema.size());
+            header.set(INT, H_DATA, (int) header.byteSize());
+            long offset = H_SCHEMA;
+            for (Column column : schema) {
+                byte[] name = column.name().getBytes(StandardCharsets.US_ASCII);
+                header.set(ValueLayout.JAVA_BYTE, offset, (byte) column.type().ordinal());
+                header.set(ValueLayout.JAVA_BYTE, offset + 1, (byte) name.length);
+                MemorySegment.copy(name, 0, header, ValueLayout.JAVA_BYTE, offset + 2, name.length);
+                offset += 2 + name.length;
+            }
+            RECORDS.setRelease(header, H_RECORDS / Long.BYTES, 0L);
+        }
+
+        /**
+         * Accoda un record e lo conferma nell'intestazione. Ogni valore è convertito nel tipo della sua colonna.
+         *
+         * @param values Array dei valori, uno per colonna
+         * @param offset Posizione del primo valore del record
+         * @throws IOException Se non si può estendere il file
+         */
+        public void write(double[] values, int offset) throws IOException {
+            if (chunk == null || records - chunkStart == CHUNK_RECORDS) {
+                mapChunk();
+            }
+            long base = (records - chunkStart) * recordBytes;
+            for (int c = 0; c < types.length; c++) {
+                writeValue(chunk, base + offsets[c], types[c], values[offset + c]);
+            }
+            records++;
+            RECORDS.setRelease(header, H_RECORDS / Long.BYTES, records);
+        }
+
+        /**
+         * Rilascia il blocco pieno e mappa il successivo, estendendo il file.
+         */
+        private void mapChunk() throws IOException {
+            releaseChunk();
+            chunkArena = Arena.ofShared();
+            chunkStart = records;
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset + records * recordBytes,
+                                CHUNK_RECORDS * recordBytes, chunkArena);
+        }
+
+        private void releaseChunk() {
+            if (chunkArena != null) {
+                chunk.force();
+                chunkArena.close();
+                chunkArena = null;
+                chunk = null;
+            }
+        }
+
+        /**
+         * Restituisce i record nel file, compresi quelli già presenti all'apertura.
+         *
+         * @return Record confermati
+         */
+        public long size() {
+            return records;
+        }
+
+        /**
+         * Scarica i blocchi su disco e tronca il file all'ultimo record.
+         *
+         * @throws IOException Se la scrittura finale fallisce
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                releaseChunk();
+                header.force();
+                headerArena.close();
+                // Il troncamento segue il rilascio delle mappature (necessario su Windows)
+                channel.truncate(dataOffset + records * recordBytes);
+            } finally {
+                channel.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "TelemetryFile.Writer{" + path + ", record=" + records + "}";
+        }
+    }
+
+    /**
+     * Aggiunge un valore al CSV nel formato del suo tipo (come {@link EnhancedDataPoint#toCSV()}).
+     *
+     * @param sb Buffer di destinazione
+     * @param type Tipo della colonna
+     * @param value Valore memorizzato
+     */
+    static void appendValue(StringBuilder sb, Type type, double value) {
+        switch (type) {
+            case DOUBLE -> sb.append(value);
+            case FLOAT -> sb.append((float) value);
+            case INT -> sb.append((int) value);
+            case ACTION -> sb.append(DrivingAction.values()[(int) value].name());
+        }
+    }
+
+    /**
+     * Converte un valore CSV nel valore memorizzato per il tipo della colonna.
+     */
+    private static double parseValue(Type type, String text) {
+        return type == Type.ACTION ? DrivingAction.valueOf(text.trim()).ordinal() : Double.parseDouble(text);
+    }
+
+    /**
+     * Converte una registrazione binaria in CSV con lo stesso schema (header compreso), leggibile dal notebook.
+     *
+     * @param input Registrazione binaria
+     * @param output File CSV
+     * @return Record convertiti
+     * @throws IOException Se si verificano errori di lettura o scrittura
+     */
+    public static long toCsv(String input, String output) throws IOException {
+        try (TelemetryFile telemetry = open(Path.of(input));
+             BufferedWriter writer = new BufferedWriter(new FileWriter(output),
+                                                        IOConfig.getOptimalBufferSize(new File(input).length()))) {
+            List<Column> schema = telemetry.columns();
+            writer.write(csvHeader(schema));
+            writer.newLine();
+            StringBuilder line = new StringBuilder(IOConfig.STRINGBUILDER_CSV_FULL);
+            for (long row = 0; row < telemetry.size(); row++) {
+                line.setLength(0);
+                for (int c = 0; c < schema.size(); c++) {
+                    if (c > 0) {
+                        line.append(',');
+                    }
+                    appendValue(line, schema.get(c).type(), telemetry.get(row, c));
+                }
+                writer.append(line);
+                writer.newLine();
+            }
+            return telemetry.size();
+        }
+    }
+
+    /**
+     * Converte un CSV con header (enhanced, standard o discretizzato) in una registrazione binaria
+     * con le stesse colonne. Le righe malformate vengono saltate e segnalate.
+     *
+     * @param input File CSV
+     * @param output Registrazione binaria (sovrascritta)
+     * @return Record convertiti
+     * @throws IOException Se si verificano errori di lettura o scrittura
+     */
+    public static long fromCsv(String input, String output) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(input),
+                                                        IOConfig.getOptimalBufferSize(new File(input).length()))) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new IOException("File CSV vuoto: " + input);
+            }
+            List<Column> schema = schema(headerLine);
+            Files.deleteIfExists(Path.of(output));
+            try (Writer writer = append(Path.of(output), schema)) {
+                double[] values = new double[schema.size()];
+                int lineNumber = 1;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    String[] parts = line.split(",");
+                    try {
+                        if (parts.length < values.length) {
+                            throw new IllegalArgumentException(parts.length + " colonne invece di " + values.length);
+                        }
+                        for (int c = 0; c < values.length; c++) {
+                            values[c] = parseValue(schema.get(c).type(), parts[c]);
+                        }
+                        writer.write(values, 0);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("[TELEMETRY] Riga " + lineNumber + " saltata: " + e.getMessage());
+                    }
+                }
+                return writer.size();
+            }
+        }
+    }
+
+    /**
+     * Converte tra CSV e formato binario, nella direzione indicata dalle estensioni.
+     *
+     * @param args [0]=file di input (.csv o .tlm) [1]=file di output (.tlm o .csv)
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java TelemetryFile <input.csv|input.tlm> <output.tlm|output.csv>");
+            System.out.println("  Converte una registrazione tra CSV e formato binario mantenendo le colonne");
+            return;
+        }
+        if (samePath(args[0], args[1])) {
+            System.err.println("[TELEMETRY] Il file di output coincide con quello di input: " + args[1]);
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            long records = isTelemetry(args[0]) ? toCsv(args[0], args[1]) : fromCsv(args[0], args[1]);
+            System.out.printf("[TELEMETRY] %s -> %s: %d record in %.2f s (%d -> %d byte)%n", args[0], args[1],
+                records, (System.nanoTime() - start) / 1e9, new File(args[0]).length(), new File(args[1]).length());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[TELEMETRY] Errore durante la conversione: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TelemetryFile{" + path + ", record=" + size + ", colonne=" + width + "}";
+    }
+}
@@ -0,0 +1,128 @@
+package it.unisa.javaclienttorcs;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Coda circolare senza lock a produttore e consumatore singolo per record di double a larghezza fissa.
+ * Tutti i record stanno in un unico array preallocato: il produttore (il thread di controllo) scrive i
+ * valori direttamente nello slot riservato e lo pubblica, il consumatore (il thread di scrittura) legge
+ * lo slot e lo libera. Nessuna delle due operazioni alloca o prende lock.
+ *
+ * I contatori di scrittura e lettura sono pubblicati con semantica release/acquire e stanno su linee
+ * di cache diverse, così i due thread non si contendono la stessa linea a ogni record. Ogni lato tiene
+ * una copia del contatore dell'altro e la rilegge solo quando la coda sembra piena o vuota.
+ *
+ * Uso del produttore: {@link #claim()}, scrittura dei valori da {@link #values()} all'offset restituito,
+ * {@link #publish()}. Uso del consumatore: {@link #peek()}, lettura dei valori, {@link #release()}.
+ */
+final class TelemetryRing {
+
+    private static final VarHandle COUNTER = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Indici dei contatori in un array di long, distanti 64 byte tra loro e dai bordi dell'array
+    private static final int HEAD = 8;
+    private static final int TAIL = 24;
+
+    private final double[] values;
+    private final int width;
+    private final int mask;
+    private final long[] counters = new long[32];
+
+    // Stato privato del produttore
+    private long head;
+    private long cachedTail;
+
+    // Stato privato del consumatore
+    private long tail;
+    private long cachedHead;
+
+    /**
+     * Crea una coda vuota.
+     *
+     * @param capacity Numero minimo di record (arrotondato alla potenza di due successiva)
+     * @param width Numero di double per record
+     */
+    TelemetryRing(int capacity, int width) {
+        if (capacity < 1 || width < 1) {
+            throw new IllegalArgumentException("Capacità e larghezza devono essere positive");
+        }
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.values = new double[Math.multiplyExact(slots, width)];
+        this.width = width;
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Array condiviso dei valori dei record.
+     *
+     * @return Array in cui leggere e scrivere agli offset restituiti da {@link #claim()} e {@link #peek()}
+     */
+    double[] values() {
+        return values;
+    }
+
+    /**
+     * Restituisce il numero di record che la coda può contenere.
+     *
+     * @return Capacità in record
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Riserva lo slot del prossimo record (solo produttore).
+     *
+     * @return Offset del record in {@link #values()}, o -1 se la coda è piena
+     */
+    int claim() {
+        if (head - cachedTail > mask) {
+            cachedTail = (long) COUNTER.getAcquire(counters, TAIL);
+            if (head - cachedTail > mask) {
+                return -1;
+            }
+        }
+        return (int) (head & mask) * width;
+    }
+
+    /**
+     * Rende visibile al consumatore il record scritto nello slot riservato (solo produttore).
+     */
+    void publish() {
+        head++;
+        COUNTER.setRelease(counters, HEAD, head);
+    }
+
+    /**
+     * Restituisce il record più vecchio non ancora letto (solo consumatore).
+     *
+     * @return Offset del record in {@link #values()}, o -1 se la coda è vuota
+     */
+    int peek() {
+        if (tail == cachedHead) {
+            cachedHead = (long) COUNTER.getAcquire(counters, HEAD);
+            if (tail == cachedHead) {
+                return -1;
+            }
+        }
+        return (int) (tail & mask) * width;
+    }
+
+    /**
+     * Libera lo slot del record letto con {@link #peek()} (solo consumatore).
+     */
+    void release() {
+        tail++;
+        COUNTER.setRelease(counters, TAIL, tail);
+    }
+
+    /**
+     * Indica se la coda è vuota, da qualunque thread.
+     *
+     * @return true se tutti i record pubblicati sono stati letti
+     */
+    boolean isEmpty() {
+        return (long) COUNTER.getAcquire(counters, TAIL) == (long) COUNTER.getAcquire(counters, HEAD);
+    }
+}
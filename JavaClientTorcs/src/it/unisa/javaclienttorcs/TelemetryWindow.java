@@ -0,0 +1,305 @@
+package it.unisa.javaclienttorcs;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finestra in memoria degli ultimi tick registrati, organizzata per colonne di double primitivi.
+ * Ogni colonna è un array circolare preallocato: l'aggiunta di un tick è O(1), non alloca e non
+ * sposta i tick precedenti, e le interrogazioni leggono direttamente gli array senza copiarli.
+ *
+ * Le statistiche sugli ultimi N tick sono mantenute in modo incrementale:
+ * <ul>
+ *   <li>media: somma cumulativa per colonna, salvata per ogni tick, quindi la somma degli ultimi N
+ *       tick è una differenza, O(1) per qualunque N (le somme sono riportate a zero a ogni giro
+ *       della finestra, O(1) ammortizzato)</li>
+ *   <li>minimo e massimo: code monotone di tick per colonna (valori crescenti per il minimo,
+ *       decrescenti per il massimo), O(1) ammortizzato per tick; il minimo degli ultimi N tick è il
+ *       primo elemento della coda ancora nella finestra, trovato per ricerca binaria (O(1) per
+ *       l'intera finestra)</li>
+ * </ul>
+ *
+ * La finestra non è thread-safe: va scritta e letta dallo stesso thread, tipicamente quello di
+ * controllo (vedi {@link EnhancedDataCollector#getRecentTicks()}).
+ */
+public final class TelemetryWindow {
+
+    private final List<TelemetryFile.Column> columns;
+    private final int width;
+    private final int mask;
+
+    // [colonna][slot]: valore del tick e somma cumulativa della colonna prima del tick
+    private final double[][] values;
+    private final double[][] sumsBefore;
+    private final double[] totals;
+
+    // [colonna][posizione]: code monotone di numeri di tick, con inizio e fine per colonna
+    private final long[][] minQueue;
+    private final long[][] maxQueue;
+    private final long[] minHead;
+    private final long[] minTail;
+    private final long[] maxHead;
+    private final long[] maxTail;
+
+    private long ticks;
+
+    /**
+     * Crea una finestra vuota.
+     *
+     * @param capacity Numero minimo di tick mantenuti (arrotondato alla potenza di due successiva)
+     * @param columns Colonne di ogni tick, nell'ordine dei valori passati a {@link #append}
+     */
+    public TelemetryWindow(int capacity, List<TelemetryFile.Column> columns) {
+        if (capacity < 1 || columns.isEmpty()) {
+            throw new IllegalArgumentException("Capacità e numero di colonne devono essere positivi");
+        }
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.columns = List.copyOf(columns);
+        this.width = columns.size();
+        this.mask = slots - 1;
+        this.values = new double[width][slots];
+        this.sumsBefore = new double[width][slots];
+        this.totals = new double[width];
+        this.minQueue = new long[width][slots];
+        this.maxQueue = new long[width][slots];
+        this.minHead = new long[width];
+        this.minTail = new long[width];
+        this.maxHead = new long[width];
+        this.maxTail = new long[width];
+    }
+
+    /**
+     * Aggiunge un tick, sovrascrivendo il più vecchio se la finestra è piena.
+     *
+     * @param row Array con i valori del tick
+     * @param offset Posizione del primo valore in {@code row}, seguito dalle altre colonne in ordine
+     */
+    public void append(double[] row, int offset) {
+        long tick = ticks;
+        int slot = (int) (tick & mask);
+        long expired = tick - mask - 1;
+        if (slot == 0 && tick > 0) {
+            rebaseSums();
+        }
+        for (int c = 0; c < width; c++) {
+            double value = row[offset + c];
+            double[] column = values[c];
+            column[slot] = value;
+            sumsBefore[c][slot] = totals[c];
+            totals[c] += value;
+
+            // Il tick uscito dalla finestra occupava lo slot appena sovrascritto: se è in coda, è in testa
+            long[] queue = minQueue[c];
+            long head = minHead[c];
+            long tail = minTail[c];
+            if (head < tail && queue[(int) (head & mask)] == expired) {
+                head++;
+            }
+            while (tail > head && column[(int) (queue[(int) ((tail - 1) & mask)] & mask)] >= value) {
+                tail--;
+            }
+            queue[(int) (tail & mask)] = tick;
+            minHead[c] = head;
+            minTail[c] = tail + 1;
+
+            queue = maxQueue[c];
+            head = maxHead[c];
+            tail = maxTail[c];
+            if (head < tail && queue[(int) (head & mask)] == expired) {
+                head++;
+            }
+            while (tail > head && column[(int) (queue[(int) ((tail - 1) & mask)] & mask)] <= value) {
+                tail--;
+            }
+            queue[(int) (tail & mask)] = tick;
+            maxHead[c] = head;
+            maxTail[c] = tail + 1;
+        }
+        ticks = tick + 1;
+    }
+
+    /**
+     * Riporta a zero le somme cumulative a ogni giro della finestra, sottraendo lo stesso valore da
+     * tutte le somme salvate: le differenze non cambiano, ma i valori restano dell'ordine della somma
+     * di una finestra e la media degli ultimi tick non perde precisione nelle sessioni lunghe.
+     */
+    private void rebaseSums() {
+        for (int c = 0; c < width; c++) {
+            double base = totals[c];
+            double[] sums = sumsBefore[c];
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] -= base;
+            }
+            totals[c] = 0.0;
+        }
+    }
+
+    /**
+     * Svuota la finestra senza rilasciare gli array.
+     */
+    public void clear() {
+        ticks = 0;
+        Arrays.fill(totals, 0.0);
+        Arrays.fill(minHead, 0);
+        Arrays.fill(minTail, 0);
+        Arrays.fill(maxHead, 0);
+        Arrays.fill(maxTail, 0);
+    }
+
+    /**
+     * Restituisce le colonne di ogni tick.
+     *
+     * @return Colonne nell'ordine degli indici usati dalle interrogazioni
+     */
+    public List<TelemetryFile.Column> columns() {
+        return columns;
+    }
+
+    /**
+     * Cerca una colonna per nome.
+     *
+     * @param name Nome della colonna (ad esempio {@code speedX})
+     * @return Indice della colonna, o -1 se assente
+     */
+    public int columnIndex(String name) {
+        for (int c = 0; c < width; c++) {
+            if (columns.get(c).name().equals(name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Restituisce il numero di tick che la finestra può contenere.
+     *
+     * @return Capacità in tick
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Restituisce il numero di tick attualmente nella finestra.
+     *
+     * @return Tick disponibili, al più {@link #capacity()}
+     */
+    public int size() {
+        return (int) Math.min(ticks, mask + 1);
+    }
+
+    /**
+     * Restituisce il numero di tick aggiunti dall'ultimo svuotamento, anche se già usciti dalla finestra.
+     *
+     * @return Tick aggiunti
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * Legge un valore di un tick recente.
+     *
+     * @param column Indice della colonna
+     * @param back Distanza dall'ultimo tick (0 = ultimo tick aggiunto)
+     * @return Valore della colonna nel tick indicato
+     */
+    public double get(int column, int back) {
+        checkRange(back + 1);
+        return values[column][(int) ((ticks - 1 - back) & mask)];
+    }
+
+    /**
+     * Calcola la media di una colonna sull'intera finestra.
+     *
+     * @param column Indice della colonna
+     * @return Media dei valori nella finestra
+     */
+    public double mean(int column) {
+        return mean(column, size());
+    }
+
+    /**
+     * Calcola la media di una colonna sugli ultimi {@code n} tick in O(1).
+     *
+     * @param column Indice della colonna
+     * @param n Numero di tick, da 1 a {@link #size()}
+     * @return Media dei valori degli ultimi {@code n} tick
+     */
+    public double mean(int column, int n) {
+        checkRange(n);
+        return (totals[column] - sumsBefore[column][(int) ((ticks - n) & mask)]) / n;
+    }
+
+    /**
+     * Restituisce il minimo di una colonna sull'intera finestra in O(1).
+     *
+     * @param column Indice della colonna
+     * @return Valore minimo nella finestra
+     */
+    public double min(int column) {
+        return min(column, size());
+    }
+
+    /**
+     * Restituisce il minimo di una colonna sugli ultimi {@code n} tick.
+     *
+     * @param column Indice della colonna
+     * @param n Numero di tick, da 1 a {@link #size()}
+     * @return Valore minimo degli ultimi {@code n} tick
+     */
+    public double min(int column, int n) {
+        checkRange(n);
+        return extreme(column, minQueue[column], minHead[column], minTail[column], n);
+    }
+
+    /**
+     * Restituisce il massimo di una colonna sull'intera finestra in O(1).
+     *
+     * @param column Indice della colonna
+     * @return Valore massimo nella finestra
+     */
+    public double max(int column) {
+        return max(column, size());
+    }
+
+    /**
+     * Restituisce il massimo di una colonna sugli ultimi {@code n} tick.
+     *
+     * @param column Indice della colonna
+     * @param n Numero di tick, da 1 a {@link #size()}
+     * @return Valore massimo degli ultimi {@code n} tick
+     */
+    public double max(int column, int n) {
+        checkRange(n);
+        return extreme(column, maxQueue[column], maxHead[column], maxTail[column], n);
+    }
+
+    /**
+     * Cerca nella coda monotona il primo tick ancora compreso negli ultimi {@code n}: essendo la coda
+     * ordinata per tick e per valore, il suo valore è l'estremo della sottofinestra.
+     */
+    private double extreme(int column, long[] queue, long head, long tail, int n) {
+        long first = ticks - n;
+        if (queue[(int) (head & mask)] >= first) {
+            return values[column][(int) (queue[(int) (head & mask)] & mask)];
+        }
+        long lo = head + 1;
+        long hi = tail - 1;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (queue[(int) (mid & mask)] < first) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return values[column][(int) (queue[(int) (lo & mask)] & mask)];
+    }
+
+    private void checkRange(int n) {
+        if (n < 1 || n > size()) {
+            throw new IllegalArgumentException("Tick richiesti fuori dalla finestra: " + n + " (disponibili " + size() + ")");
+        }
+    }
+}
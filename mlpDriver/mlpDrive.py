@@ -1,53 +1,243 @@
+import argparse
+import atexit
+import mmap
+import os
+import select
+import signal
 import socket
+import struct
+import sys
+import threading
+import time
+import warnings
 import joblib
 import numpy as np
 import pandas as pd
 
+parser = argparse.ArgumentParser(description="Server UDP del modello MLP per gli MLPDriver")
+parser.add_argument("--window-ms", type=float, default=1.0,
+                    help="attesa massima per completare un batch di richieste binarie (default: 1.0)")
+parser.add_argument("--max-batch", type=int, default=32,
+                    help="richieste binarie massime per chiamata al modello (default: 32)")
+parser.add_argument("--stats-s", type=float, default=10.0,
+                    help="intervallo delle statistiche di throughput, 0 per disattivarle (default: 10)")
+parser.add_argument("--shm", metavar="FILE",
+                    help="serve anche le richieste in memoria condivisa su FILE (client sulla stessa macchina)")
+parser.add_argument("--shm-spin-ms", type=float, default=100.0,
+                    help="attesa attiva dopo l'ultima richiesta in memoria condivisa prima delle pause (default: 100)")
+args = parser.parse_args()
+
 with open("best_mlp_model.pkl", "rb") as f:
     model = joblib.load(f)
 
+# Il modello è stato addestrato su un DataFrame: con il protocollo binario riceve array numpy
+# con le colonne nello stesso ordine, quindi l'avviso sui nomi delle features è superfluo
+warnings.filterwarnings("ignore", message="X does not have valid feature names")
+
 # Configurazione UDP
 UDP_IP = "127.0.0.1" # loopback
 UDP_PORT = 35567 # porta in ascolto
 BUFFER_SIZE = 1024
 
+# Protocollo binario (MLPProtocol.java): magic "MLPB" e sequenza uint32, poi double little-endian
+MAGIC = b"MLPB"
+HEADER = struct.Struct("<4sI")
+N_FEATURES = 14
+REQUEST_SIZE = HEADER.size + 8 * N_FEATURES
+HELLO = "HELLO MLPB1"
+HELLO_ACK = "MLPB1"
+
+# Micro-batch: le richieste binarie di più client vengono raccolte e valutate con una sola predict.
+# Un batch si chiude quando contiene una richiesta per ogni client attivo (nessuna attesa con una
+# sola auto), quando raggiunge MAX_BATCH o allo scadere della finestra.
+BATCH_WINDOW = args.window_ms / 1000.0
+MAX_BATCH = max(1, args.max_batch)
+ACTIVE_CLIENT_SECONDS = 1.0
+features_batch = np.empty((MAX_BATCH, N_FEATURES), dtype="<f8")
+active_clients = {}  # indirizzo -> istante dell'ultima richiesta binaria
+stats = {"batches": 0, "requests": 0, "since": time.perf_counter()}
+
+# Memoria condivisa (MLPSharedMemoryChannel.java): file di 256 byte little-endian, aree su linee da 64 byte.
+# Ogni slot è un seqlock: sequenza iniziale, valori, sequenza finale.
+SHM_MAGIC = 0x53504C4D  # "MLPS"
+SHM_VERSION = 1
+SHM_SIZE = 256
+SHM_STATE = 8
+SHM_REQUEST_START, SHM_REQUEST_END, SHM_REQUEST_FEATURES = 64, 72, 80
+SHM_RESPONSE_START, SHM_RESPONSE_END, SHM_RESPONSE_OUTPUTS = 192, 200, 208
+SEQUENCE = struct.Struct("<q")
+FEATURES = struct.Struct("<%dd" % N_FEATURES)
+
+columns = ["track0", "track2", "track4", "track6", "track8",
+           "track10", "track12", "track14", "track16", "track18",
+           "speedX", "angleToTrackAxis", "trackPosition", "distanceFromStartLine"]
+
 # Crea socket UDP
 sock = socket.socket(socket.AF_INET, socket.SOCK_DGRAM)
 sock.bind((UDP_IP, UDP_PORT))
 
-print("Adessp aspetto")
-while True:
-    try:
-        # Riceve i dati dal client (Java)
+
+def count_active_clients(now):
+    """Numero di client che hanno inviato richieste binarie nell'ultimo secondo."""
+    for addr in [a for a, seen in active_clients.items() if now - seen > ACTIVE_CLIENT_SECONDS]:
+        del active_clients[addr]
+    return len(active_clients)
+
+
+def collect_batch(data, addr):
+    """Raccoglie le richieste binarie che arrivano insieme alla prima, entro la finestra del batch.
+    I messaggi testuali ricevuti nel frattempo sono gestiti subito, uno alla volta."""
+    batch = []
+    clients = set()
+    now = time.perf_counter()
+    deadline = now + BATCH_WINDOW
+
+    def add(data, addr):
+        if len(data) < REQUEST_SIZE:
+            print(f"Richiesta binaria troncata da {addr}: {len(data)} byte")
+            return
+        active_clients[addr] = now
+        clients.add(addr)
+        batch.append((data, addr))
+
+    add(data, addr)
+    expected = count_active_clients(now)
+    while len(batch) < MAX_BATCH and len(clients) < expected:
+        remaining = deadline - time.perf_counter()
+        if remaining <= 0:
+            break
+        ready, _, _ = select.select([sock], [], [], remaining)
+        if not ready:
+            break
         data, addr = sock.recvfrom(BUFFER_SIZE)
-        msg = data.decode("utf-8").strip()
+        if data[:4] == MAGIC:
+            add(data, addr)
+        else:
+            handle_text(data.decode("utf-8").strip(), addr)
+    return batch
+
 
-        msg = msg.strip("()")
+def predict_batch(batch):
+    """Una sola predict vettorizzata per il batch (14 double in, 3 double out per richiesta, nessun
+    parsing né DataFrame); ogni risposta torna all'indirizzo della richiesta con la stessa intestazione
+    (e quindi la stessa sequenza)."""
+    n = len(batch)
+    if n == 0:
+        return
+    for i, (data, _) in enumerate(batch):
+        features_batch[i] = np.frombuffer(data, dtype="<f8", count=N_FEATURES, offset=HEADER.size)
+    predictions = model.predict(features_batch[:n]).astype("<f8", copy=False)
+    for i, (data, addr) in enumerate(batch):
+        sock.sendto(data[:HEADER.size] + predictions[i].tobytes(), addr)
 
-        print(f"Ricevuto: {msg}")
+    stats["batches"] += 1
+    stats["requests"] += n
+    elapsed = time.perf_counter() - stats["since"]
+    if args.stats_s > 0 and elapsed >= args.stats_s:
+        print(f"[MLP-SERVER] {stats['requests'] / elapsed:.0f} richieste/s, "
+              f"batch medio {stats['requests'] / stats['batches']:.2f}, client attivi {len(active_clients)}", flush=True)
+        stats.update(batches=0, requests=0, since=time.perf_counter())
 
-        columns = ["track0", "track2", "track4", "track6", "track8",
-                   "track10", "track12", "track14", "track16", "track18",
-                   "speedX", "angleToTrackAxis", "trackPosition", "distanceFromStartLine"]
 
-        # Parsing input (es: "0.1,0.2,0.3")
-        features_array= np.array([float(x) for x in msg.split(",")]).reshape(1, -1)
-        features_df = pd.DataFrame(features_array, columns=columns)
-        print(features_df)
+def handle_text(msg, addr):
+    """Protocollo testuale: negoziazione, messaggi di controllo e predizioni "(f0,...,f13)"."""
+    if msg == HELLO:
+        sock.sendto(HELLO_ACK.encode("utf-8"), addr)
+        print(f"Protocollo binario negoziato con {addr}")
+        return
+    if msg in ("test", "Chiudi"):
+        # Un client che chiude non va più atteso per completare i batch
+        if msg == "Chiudi":
+            active_clients.pop(addr, None)
+        sock.sendto(b"ok", addr)
+        return
 
-        # Predizione
-        """Il modello è una pipeline composta da 2 step : 'scaler' e 'mlp'. Quando viene chiamato il metodo predict i valori
-           delle features vengono quindi trasformati dallo scaler scelto"""
-        prediction = model.predict(features_df)
+    msg = msg.strip("()")
 
+    print(f"Ricevuto: {msg}")
 
-        # Prepara la risposta (es: valori separati da virgole)
-        # [0.12,0.51,0.32] -> ["0.12".. -> "0.12,0.51,..."
-        response = ",".join(map(str, prediction[0].tolist()))
-        print("la risposta è : "+response)
+    # Parsing input (es: "0.1,0.2,0.3")
+    features_array= np.array([float(x) for x in msg.split(",")]).reshape(1, -1)
+    features_df = pd.DataFrame(features_array, columns=columns)
+    print(features_df)
 
-        # Invia i dati al client
-        sock.sendto(response.encode("utf-8"), addr)
+    # Predizione
+    """Il modello è una pipeline composta da 2 step : 'scaler' e 'mlp'. Quando viene chiamato il metodo predict i valori
+       delle features vengono quindi trasformati dallo scaler scelto"""
+    prediction = model.predict(features_df)
+
+
+    # Prepara la risposta (es: valori separati da virgole)
+    # [0.12,0.51,0.32] -> ["0.12".. -> "0.12,0.51,..."
+    response = ",".join(map(str, prediction[0].tolist()))
+    print("la risposta è : "+response)
+
+    # Invia i dati al client
+    sock.sendto(response.encode("utf-8"), addr)
+
+
+def open_shared_memory(path):
+    """Crea (o riusa) il file condiviso, lo mappa e lo segna come servito."""
+    with open(path, "a+b") as f:
+        if f.seek(0, 2) < SHM_SIZE:
+            f.truncate(SHM_SIZE)
+        mm = mmap.mmap(f.fileno(), SHM_SIZE)
+    struct.pack_into("<ii", mm, 0, SHM_MAGIC, SHM_VERSION)
+    SEQUENCE.pack_into(mm, SHM_STATE, 1)
+    # Alla chiusura (anche con SIGTERM) il file torna fermo, così i client non si collegano a un server assente
+    atexit.register(SEQUENCE.pack_into, mm, SHM_STATE, 0)
+    signal.signal(signal.SIGTERM, lambda signum, frame: sys.exit(0))
+    return mm
+
+
+def serve_shared_memory(mm):
+    """Interroga lo slot delle richieste e risponde all'ultima, con la stessa sequenza.
+    Finché arrivano richieste l'attesa è attiva e cede solo il GIL al thread UDP (sched_yield: su Linux
+    time.sleep(0) costa decine di microsecondi); dopo --shm-spin-ms senza richieste passa a pause da 1 ms."""
+    yield_gil = getattr(os, "sched_yield", lambda: time.sleep(0))
+    features = np.empty((1, N_FEATURES), dtype="<f8")
+    served = SEQUENCE.unpack_from(mm, SHM_REQUEST_END)[0]
+    last_request = time.perf_counter()
+    spin = args.shm_spin_ms / 1000.0
+    while True:
+        end = SEQUENCE.unpack_from(mm, SHM_REQUEST_END)[0]
+        if end == served:
+            if time.perf_counter() - last_request < spin:
+                yield_gil()
+            else:
+                time.sleep(0.001)
+            continue
+        features[0] = FEATURES.unpack_from(mm, SHM_REQUEST_FEATURES)
+        if SEQUENCE.unpack_from(mm, SHM_REQUEST_START)[0] != end:
+            continue  # il client ha riscritto la richiesta durante la lettura
+        served = end
+        last_request = time.perf_counter()
+        try:
+            prediction = model.predict(features).astype("<f8", copy=False)
+        except Exception as e:
+            print(f"Errore: {e}")
+            continue
+        SEQUENCE.pack_into(mm, SHM_RESPONSE_START, end)
+        mm[SHM_RESPONSE_OUTPUTS:SHM_RESPONSE_OUTPUTS + 24] = prediction[0].tobytes()
+        SEQUENCE.pack_into(mm, SHM_RESPONSE_END, end)
+
+
+if args.shm:
+    shared_memory = open_shared_memory(args.shm)
+    threading.Thread(target=serve_shared_memory, args=(shared_memory,), daemon=True).start()
+    print(f"Memoria condivisa servita su {args.shm}")
+    if (os.cpu_count() or 1) < 2:
+        print("Attenzione: con un solo processore l'attesa attiva compete con il client, il protocollo UDP è preferibile")
+
+print(f"Adessp aspetto (batch fino a {MAX_BATCH} richieste, finestra {args.window_ms} ms)")
+while True:
+    try:
+        # Riceve i dati dal client (Java)
+        data, addr = sock.recvfrom(BUFFER_SIZE)
+        if data[:4] == MAGIC:
+            predict_batch(collect_batch(data, addr))
+        else:
+            handle_text(data.decode("utf-8").strip(), addr)
 
     except Exception as e:
-        print(f"Errore: {e}")
\ No newline at end of file
+        print(f"Errore: {e}")
@@ -0,0 +1,64 @@
+"""Esporta la pipeline scaler + MLP in un file di pesi caricabile dal client Java (MLPModel).
+
+Uso: python mlpExport.py [best_mlp_model.pkl] [mlp_model.bin]
+
+Formato binario (big-endian, come DataOutputStream):
+  int magic "MLPW", int versione, int numero di layer densi L, L+1 int dimensioni dei layer,
+  stringa UTF attivazione dei layer nascosti, stringa UTF attivazione di uscita,
+  double media e double scala dello StandardScaler per ogni feature,
+  per ogni layer: pesi per righe (una riga per neurone di ingresso) e bias.
+"""
+import struct
+import sys
+
+MAGIC = 0x4D4C5057  # "MLPW"
+VERSION = 1
+
+
+def write_utf(out, text):
+    data = text.encode("utf-8")
+    out.write(struct.pack(">H", len(data)))
+    out.write(data)
+
+
+def write_doubles(out, values):
+    values = [float(v) for v in values]
+    out.write(struct.pack(">%dd" % len(values), *values))
+
+
+def write_model(path, mean, scale, coefs, intercepts, activation, out_activation):
+    """Scrive il modello: coefs[l] ha una riga per neurone di ingresso del layer l."""
+    sizes = [len(coefs[0])] + [len(b) for b in intercepts]
+    with open(path, "wb") as out:
+        out.write(struct.pack(">iii", MAGIC, VERSION, len(coefs)))
+        out.write(struct.pack(">%di" % len(sizes), *sizes))
+        write_utf(out, activation)
+        write_utf(out, out_activation)
+        write_doubles(out, mean)
+        write_doubles(out, scale)
+        for weights, bias in zip(coefs, intercepts):
+            for row in weights:
+                write_doubles(out, row)
+            write_doubles(out, bias)
+    return sizes
+
+
+def main():
+    import joblib
+
+    source = sys.argv[1] if len(sys.argv) > 1 else "best_mlp_model.pkl"
+    target = sys.argv[2] if len(sys.argv) > 2 else "mlp_model.bin"
+
+    with open(source, "rb") as f:
+        model = joblib.load(f)
+    scaler = model.named_steps["scaler"]
+    mlp = model.named_steps["mlp"]
+
+    sizes = write_model(target, scaler.mean_, scaler.scale_,
+                        [c.tolist() for c in mlp.coefs_], [b.tolist() for b in mlp.intercepts_],
+                        mlp.activation, mlp.out_activation_)
+    print("Esportato %s -> %s (layer %s, attivazione %s)" % (source, target, sizes, mlp.activation))
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,87 @@
+"""Prova di carico del server del modello (mlpDrive.py) con più client simulati.
+
+Uso: python mlpLoadTest.py [--clients 1,2,4,8] [--seconds 5]
+
+Ogni client ha la propria socket e, come un MLPDriver, invia una richiesta binaria alla volta
+(MLPProtocol.java) e attende la risposta con la stessa sequenza prima di inviare la successiva.
+Per ogni numero di client stampa le richieste servite al secondo e la latenza mediana e al 99-esimo
+percentile: con il micro-batch del server il throughput deve crescere con il numero di client.
+"""
+import argparse
+import random
+import socket
+import struct
+import threading
+import time
+
+MAGIC = b"MLPB"
+REQUEST = struct.Struct("<4sI14d")
+RESPONSE = struct.Struct("<4sI3d")
+HELLO = b"HELLO MLPB1"
+HELLO_ACK = b"MLPB1"
+
+
+def run_client(server, seconds, start, latencies, errors):
+    sock = socket.socket(socket.AF_INET, socket.SOCK_DGRAM)
+    sock.settimeout(1.0)
+    sock.sendto(HELLO, server)
+    if sock.recvfrom(1024)[0].strip() != HELLO_ACK:
+        errors.append("il server non supporta il protocollo binario")
+        return
+    rng = random.Random(id(sock))
+    sequence = 0
+    start.wait()
+    end = time.perf_counter() + seconds
+    while time.perf_counter() < end:
+        sequence = (sequence + 1) & 0xFFFFFFFF
+        features = [rng.uniform(0, 200) for _ in range(10)] + [rng.uniform(0, 250), rng.uniform(-0.5, 0.5),
+                                                               rng.uniform(-1, 1), rng.uniform(0, 3000)]
+        sent = time.perf_counter()
+        sock.sendto(REQUEST.pack(MAGIC, sequence, *features), server)
+        try:
+            while True:
+                data, _ = sock.recvfrom(1024)
+                if len(data) >= RESPONSE.size and RESPONSE.unpack_from(data)[1] == sequence:
+                    break
+        except socket.timeout:
+            errors.append("timeout")
+            continue
+        latencies.append(time.perf_counter() - sent)
+    sock.sendto(b"Chiudi", server)
+    sock.close()
+
+
+def measure(server, clients, seconds):
+    latencies = []
+    errors = []
+    start = threading.Event()
+    threads = [threading.Thread(target=run_client, args=(server, seconds, start, latencies, errors))
+               for _ in range(clients)]
+    for thread in threads:
+        thread.start()
+    time.sleep(0.2)
+    start.set()
+    for thread in threads:
+        thread.join()
+    latencies.sort()
+    n = len(latencies)
+    if n == 0:
+        print(f"{clients:3d} client: nessuna risposta ({len(errors)} errori)")
+        return
+    print(f"{clients:3d} client: {n / seconds:8.0f} richieste/s, latenza p50 {latencies[n // 2] * 1e3:6.2f} ms, "
+          f"p99 {latencies[min(n - 1, int(n * 0.99))] * 1e3:6.2f} ms, errori {len(errors)}")
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[0])
+    parser.add_argument("--host", default="127.0.0.1")
+    parser.add_argument("--port", type=int, default=35567)
+    parser.add_argument("--clients", default="1,2,4,8", help="numeri di client da provare (default: 1,2,4,8)")
+    parser.add_argument("--seconds", type=float, default=5.0, help="durata di ogni prova (default: 5)")
+    args = parser.parse_args()
+    for clients in [int(c) for c in args.clients.split(",")]:
+        measure((args.host, args.port), clients, args.seconds)
+
+
+if __name__ == "__main__":
+    main()